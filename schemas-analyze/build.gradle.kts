@@ -1,6 +1,7 @@
 plugins {
   groovy
   jacoco
+  id("me.champeau.jmh").version("0.6.8")
   `java-library`
   `maven-publish`
 }
@@ -28,6 +29,11 @@ dependencies {
   testImplementation("org.spockframework:spock-core:${Versions.SPOCK}")
 }
 
+jmh {
+  // benchmarks read the test document, parsed with schemas-parse
+  includeTests.set(true)
+}
+
 tasks {
   val sourceJar = register<Jar>("sourceJar") {
     archiveClassifier.set("sources")
@@ -0,0 +1,83 @@
+package org.cedar.schemas.analyze;
+
+import org.cedar.schemas.avro.psi.Discovery;
+import org.cedar.schemas.parse.ISOStreamParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares counting syllables with {@link ReadingLevel} against matching the syllable pattern it used to, word by word
+ * and for a whole text, for the title and description of the full test document
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadingLevelBenchmark {
+
+  private static final Pattern SYLLABLE_PATTERN = Pattern.compile("[aiouy]+e*|e(?!d$|ly).|[td]ed|le$");
+
+  String text;
+  String[] words;
+
+  @Setup
+  public void setup() throws IOException {
+    try (InputStream input = ReadingLevelBenchmark.class.getClassLoader().getResourceAsStream("test-iso-metadata.xml")) {
+      Discovery discovery = ISOStreamParser.parseXMLMetadataToDiscovery(input);
+      text = discovery.getTitle() + ". " + discovery.getDescription();
+      words = ReadingLevel.splitIntoWords(text);
+    }
+    catch (Exception e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static long syllablesByPattern(String word) {
+    Matcher matcher = SYLLABLE_PATTERN.matcher(word.toLowerCase());
+    long count = 0;
+    while (matcher.find()) {
+      count++;
+    }
+    return count;
+  }
+
+  @Benchmark
+  public long patternPerWord() {
+    long total = 0;
+    for (String word : words) {
+      total += syllablesByPattern(word);
+    }
+    return total;
+  }
+
+  @Benchmark
+  public long findSyllablesInWord() {
+    long total = 0;
+    for (String word : words) {
+      total += ReadingLevel.findSyllablesInWord(word);
+    }
+    return total;
+  }
+
+  @Benchmark
+  public long patternOverText() {
+    long total = 0;
+    for (String word : ReadingLevel.splitIntoWords(text)) {
+      total += syllablesByPattern(word);
+    }
+    return total;
+  }
+
+  @Benchmark
+  public long countSyllables() {
+    return ReadingLevel.countSyllables(text, 0, text.length());
+  }
+
+}
@@ -15,12 +15,21 @@ public class Analyzers {
   private static final Logger log = LoggerFactory.getLogger(Analyzers.class);
 
   public static ParsedRecord addAnalysis(ParsedRecord record) {
+    return addAnalysis(record, null);
+  }
+
+  /**
+   * @param record The record to analyze
+   * @param dates A cache of date analyses shared between records, or null
+   * @return The record with its analysis, or with an error if it couldn't be analyzed
+   */
+  public static ParsedRecord addAnalysis(ParsedRecord record, DateInfoCache dates) {
     if (record == null) {
       return null; // pass through
     }
     try {
       return ParsedRecord.newBuilder(record)
-          .setAnalysis(analyze(record.getDiscovery()))
+          .setAnalysis(analyze(record.getDiscovery(), dates))
           .build();
     } catch (Exception e) {
       log.error("An error occurred during analysis", e);
@@ -35,13 +44,22 @@ public class Analyzers {
   }
 
   public static Analysis analyze(Discovery discovery) {
+    return analyze(discovery, null);
+  }
+
+  /**
+   * @param discovery The metadata to analyze
+   * @param dates A cache of date analyses shared between records, or null
+   * @return The analysis
+   */
+  public static Analysis analyze(Discovery discovery, DateInfoCache dates) {
     log.debug("Analyzing record: {}", discovery);
     if (discovery == null) {
       return null;
     }
     return Analysis.newBuilder()
         .setIdentification(analyzeIdentifiers(discovery))
-        .setTemporalBounding(Temporal.analyzeBounding(discovery))
+        .setTemporalBounding(Temporal.analyzeBounding(discovery, dates))
         .setSpatialBounding(analyzeSpatialBounding(discovery))
         .setTitles(analyzeTitles(discovery))
         .setDescription(analyzeDescription(discovery))
@@ -140,8 +158,10 @@ public class Analyzers {
       value = input;
       exists = input != null && input.length() > 0;
       characters = exists ? input.length() : 0;
-      readingEase = exists ? ReadingLevel.FleschReadingEaseScore(input) : null;
-      gradeLevel = exists ? ReadingLevel.FleschKincaidReadingGradeLevel(input) : null;
+      // both scores come from the same statistics, so the text is only scanned once
+      TextStatistics statistics = exists ? TextStatistics.of(input) : null;
+      readingEase = exists ? ReadingLevel.FleschReadingEaseScore(statistics) : null;
+      gradeLevel = exists ? ReadingLevel.FleschKincaidReadingGradeLevel(statistics) : null;
     }
   }
 
@@ -0,0 +1,283 @@
+package org.cedar.schemas.analyze;
+
+import org.cedar.schemas.avro.psi.ValidDescriptor;
+
+import java.time.DateTimeException;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import static org.cedar.schemas.analyze.Temporal.*;
+
+/**
+ * What is known about one date of a temporal bounding, held as primitives and enum constants only: the fields of the
+ * date, and the UTC instant it stands for as a year and a nano of that year, which covers paleo years as well as
+ * indexable dates. Dates compare numerically on those instants.
+ * <br>
+ * The UTC strings are not kept, but formatted by {@link #getUtcDateTimeString()} and
+ * {@link #getEndUtcDateTimeString()} on each call, which {@link Temporal#analyzeBounding} makes once per date as it
+ * fills in the analysis. That keeps instances small enough to cache in bulk, see {@link DateInfoCache}.
+ * {@link DateInfo} is the public form, with the strings formatted up front.
+ */
+final class CompactDateInfo implements Comparable<CompactDateInfo> {
+
+  private static final int[] DAYS_BEFORE_MONTH = {0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+  private static final long NANOS_PER_DAY = 86_400L * NANOS_PER_SECOND;
+  private static final long END_OF_DAY = NANOS_PER_DAY - NANOS_PER_SECOND + 999_000_000L; // 23:59:59.999
+
+  private final ValidDescriptor descriptor;
+  private final ChronoUnit unit;
+  private final boolean indexable;
+  private final boolean start;
+  private final boolean zoned;
+  private final boolean hasYear;
+  private final int offsetSeconds;
+  private final long year;
+  // 0 when unknown; otherwise 1 - 366, 1 - 31 and 1 - 12
+  private final short dayOfYear;
+  private final short endDayOfYear;
+  private final byte dayOfMonth;
+  private final byte endDayOfMonth;
+  private final byte month;
+  private final byte endMonth;
+  // the instant of the start, or the end for end dates, in UTC, which dates are compared on
+  private final long utcYear;
+  private final long utcNanoOfYear;
+
+  CompactDateInfo(String dateString, boolean start) {
+    this.start = start;
+    if (dateString == null || dateString.length() == 0) {
+      descriptor = ValidDescriptor.UNDEFINED;
+      unit = null;
+      indexable = true;
+      zoned = false;
+      hasYear = false;
+      offsetSeconds = 0;
+      year = 0;
+      dayOfYear = 0;
+      endDayOfYear = 0;
+      dayOfMonth = 0;
+      endDayOfMonth = 0;
+      month = 0;
+      endMonth = 0;
+      utcYear = 0;
+      utcNanoOfYear = 0;
+      return;
+    }
+
+    // a single pass classifies the date and notes whether it is a whole number, which may be a year too large to be
+    // a date
+    DateScanner scanner = new DateScanner();
+    boolean parsed = scanner.scan(dateString);
+    boolean integral = scanner.isIntegral();
+    long longDate = scanner.getIntegralValue();
+
+    long yearValue = parsed ? scanner.getYear() : longDate;
+    ChronoUnit parsedPrecision = scanner.getPrecision();
+    if (parsedPrecision == ChronoUnit.MONTHS) {
+      int length = DateScanner.lengthOfMonth(yearValue, scanner.getMonth());
+      month = (byte) scanner.getMonth();
+      endMonth = month;
+      dayOfMonth = 1;
+      endDayOfMonth = (byte) length;
+      dayOfYear = (short) dayOfYear(yearValue, month, 1);
+      endDayOfYear = (short) dayOfYear(yearValue, month, length);
+    } else if (parsedPrecision == ChronoUnit.YEARS) {
+      dayOfMonth = 1;
+      dayOfYear = 1;
+      endDayOfYear = (short) lengthOfYear(yearValue); // number of days in the year, including leap years
+      endDayOfMonth = 31;
+      month = 1;
+      endMonth = 12;
+    } else if (parsed) {
+      dayOfYear = (short) dayOfYear(yearValue, scanner.getMonth(), scanner.getDayOfMonth());
+      dayOfMonth = (byte) scanner.getDayOfMonth();
+      month = (byte) scanner.getMonth();
+      endMonth = month;
+      endDayOfMonth = dayOfMonth;
+      endDayOfYear = dayOfYear;
+    } else {
+      dayOfYear = 0;
+      dayOfMonth = 0;
+      month = 0;
+      endMonth = 0;
+      endDayOfMonth = 0;
+      endDayOfYear = 0;
+    }
+    hasYear = parsed || integral;
+    year = hasYear ? yearValue : 0;
+
+    if (integral && !indexable(longDate)) {
+      // paleo years are formatted as is
+      descriptor = ValidDescriptor.VALID;
+      unit = ChronoUnit.YEARS;
+      indexable = false;
+      zoned = false;
+      offsetSeconds = 0;
+      utcYear = longDate;
+      utcNanoOfYear = start ? 0 : endOfYear(longDate);
+    }
+    else if (parsed) {
+      descriptor = ValidDescriptor.VALID;
+      unit = parsedPrecision;
+      indexable = true;
+      zoned = scanner.isZoned();
+      offsetSeconds = scanner.getOffsetSeconds();
+      if (parsedPrecision == ChronoUnit.NANOS) {
+        // a date-time is a single instant, shifted to UTC if it had an offset
+        long local = (dayOfYear - 1) * NANOS_PER_DAY + (scanner.getHour() * 3600L + scanner.getMinute() * 60L
+            + scanner.getSecond()) * NANOS_PER_SECOND + scanner.getNano();
+        long utc = local - offsetSeconds * NANOS_PER_SECOND;
+        long shiftedYear = yearValue;
+        // offsets are at most 18 hours, so the UTC instant is at most a day into the year either side
+        if (utc < 0) {
+          shiftedYear--;
+          utc += lengthOfYear(shiftedYear) * NANOS_PER_DAY;
+        }
+        else if (utc >= lengthOfYear(yearValue) * NANOS_PER_DAY) {
+          utc -= lengthOfYear(yearValue) * NANOS_PER_DAY;
+          shiftedYear++;
+        }
+        utcYear = shiftedYear;
+        utcNanoOfYear = utc;
+      }
+      else {
+        utcYear = yearValue;
+        utcNanoOfYear = start ? (dayOfYear - 1) * NANOS_PER_DAY : endOfRange();
+      }
+    }
+    else {
+      descriptor = ValidDescriptor.INVALID;
+      unit = null;
+      indexable = false;
+      zoned = false;
+      offsetSeconds = 0;
+      utcYear = 0;
+      utcNanoOfYear = 0;
+    }
+  }
+
+  private static int dayOfYear(long year, int month, int dayOfMonth) {
+    int leapDay = month > 2 && DateScanner.isLeapYear(year) ? 1 : 0;
+    return DAYS_BEFORE_MONTH[month - 1] + leapDay + dayOfMonth;
+  }
+
+  private static int lengthOfYear(long year) {
+    return DateScanner.isLeapYear(year) ? 366 : 365;
+  }
+
+  private static long endOfYear(long year) {
+    return (lengthOfYear(year) - 1) * NANOS_PER_DAY + END_OF_DAY;
+  }
+
+  private long endOfRange() {
+    return (endDayOfYear - 1) * NANOS_PER_DAY + END_OF_DAY;
+  }
+
+  ValidDescriptor getDescriptor() {
+    return descriptor;
+  }
+
+  String getPrecision() {
+    return unit == null ? null : unit.toString();
+  }
+
+  boolean isIndexable() {
+    return indexable;
+  }
+
+  String getZoneSpecified() {
+    return zoned ? ZoneOffset.ofTotalSeconds(offsetSeconds).toString() : null;
+  }
+
+  /**
+   * @return The start of the date in UTC, or the end if it is an end date, formatted on each call
+   */
+  String getUtcDateTimeString() {
+    if (descriptor != ValidDescriptor.VALID) {
+      return null;
+    }
+    return indexable ? utcString(utcYear, utcNanoOfYear) : utcDateTimeString(utcYear, start);
+  }
+
+  /**
+   * @return The end of the date in UTC, formatted on each call
+   */
+  String getEndUtcDateTimeString() {
+    if (descriptor != ValidDescriptor.VALID) {
+      return null;
+    }
+    if (!indexable) {
+      return utcDateTimeString(utcYear, false);
+    }
+    // a date-time is its own end, as is the end date of a range
+    return unit == ChronoUnit.NANOS || !start ? utcString(utcYear, utcNanoOfYear) : utcString(year, endOfRange());
+  }
+
+  Long getYear() {
+    return hasYear ? year : null;
+  }
+
+  Integer getDayOfYear() {
+    return orNull(dayOfYear);
+  }
+
+  Integer getDayOfMonth() {
+    return orNull(dayOfMonth);
+  }
+
+  Integer getMonth() {
+    return orNull(month);
+  }
+
+  Integer getEndDayOfYear() {
+    return orNull(endDayOfYear);
+  }
+
+  Integer getEndDayOfMonth() {
+    return orNull(endDayOfMonth);
+  }
+
+  Integer getEndMonth() {
+    return orNull(endMonth);
+  }
+
+  private static String utcString(long utcYear, long nanoOfYear) {
+    int day = (int) (nanoOfYear / NANOS_PER_DAY) + 1;
+    int utcMonth = 1;
+    while (utcMonth < 12 && day > DateScanner.lengthOfMonth(utcYear, utcMonth)) {
+      day -= DateScanner.lengthOfMonth(utcYear, utcMonth);
+      utcMonth++;
+    }
+    long nanoOfDay = nanoOfYear % NANOS_PER_DAY;
+    int secondOfDay = (int) (nanoOfDay / NANOS_PER_SECOND);
+    return formatUtc(utcYear, utcMonth, day, secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60,
+        (int) (nanoOfDay % NANOS_PER_SECOND));
+  }
+
+  private static Integer orNull(int value) {
+    return value == 0 ? null : value;
+  }
+
+  @Override
+  public int compareTo(CompactDateInfo o) {
+    boolean thisIndexable = this.indexable;
+    boolean oIndexable = o.indexable;
+    boolean thisIsYears = this.unit == ChronoUnit.YEARS;
+    boolean oIsYears = o.unit == ChronoUnit.YEARS;
+
+    if (thisIndexable && oIndexable) {
+      // Compare actual instants in UTC
+      int years = Long.compare(this.utcYear, o.utcYear);
+      return years != 0 ? years : Long.compare(this.utcNanoOfYear, o.utcNanoOfYear);
+    }
+    else if ((thisIsYears && oIsYears) || (thisIsYears && oIndexable) || (thisIndexable && oIsYears)) {
+      // Compare years only, since a paleo year has no more precise instant
+      return Long.compare(this.utcYear, o.utcYear);
+    }
+    else {
+      // One or both has an INVALID search format that is not just due to a paleo year
+      throw new DateTimeException("One or both dates being compared have an INVALID format.");
+    }
+  }
+}
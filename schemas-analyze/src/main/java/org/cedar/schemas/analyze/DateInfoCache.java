@@ -0,0 +1,215 @@
+package org.cedar.schemas.analyze;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size-bounded, thread-safe memo of the analysis of date strings, for catalogs where the same begin and end dates
+ * repeat across many records, e.g. the granules of one collection. Dates are cached in their compact form, without
+ * their UTC strings, and since they are immutable a cached one is shared by every record with the same date.
+ * <br>
+ * Start and end dates, which are analyzed differently, are kept apart but share the cache's size, so that e.g. a
+ * catalog with many more begin and instant dates than end dates can fill all of it with start dates. The least
+ * recently used dates are evicted once a cache is full. The cache is split into segments by date string, each
+ * guarded by its own lock, so threads analyzing different dates rarely contend; dates are analyzed outside of the
+ * locks.
+ * <pre>{@code
+ * DateInfoCache cache = new DateInfoCache(10_000);
+ * TemporalBoundingAnalysis analysis = Temporal.analyzeBounding(discovery, cache);
+ * }</pre>
+ */
+public class DateInfoCache {
+
+  private static final int MAX_SEGMENTS = 16;
+
+  private final int maxSize;
+  private final Segment[] segments;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param maxSize The most date analyses to keep, for start and end dates combined
+   */
+  public DateInfoCache(int maxSize) {
+    if (maxSize < 2) {
+      throw new IllegalArgumentException("maxSize must be at least 2");
+    }
+    this.maxSize = maxSize;
+    // a power of two, with each segment holding at least a few entries
+    int segments = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, maxSize / 16)));
+    int segmentSize = maxSize / segments;
+    this.segments = new Segment[segments];
+    for (int i = 0; i < segments; i++) {
+      this.segments[i] = new Segment(segmentSize, evictions);
+    }
+  }
+
+  /**
+   * @param dateString The date to analyze
+   * @param start true if it is the start of a range or an instant, false if it is the end of a range
+   * @return The cached analysis of the date, or a new one if there is none
+   */
+  CompactDateInfo get(String dateString, boolean start) {
+    if (dateString == null || dateString.length() == 0) {
+      // as cheap to analyze as to look up
+      return new CompactDateInfo(dateString, start);
+    }
+    Segment segment = segment(dateString);
+    CompactDateInfo result;
+    synchronized (segment) {
+      result = segment.get(dateString, start);
+    }
+    if (result != null) {
+      hits.increment();
+      return result;
+    }
+    misses.increment();
+    result = new CompactDateInfo(dateString, start);
+    synchronized (segment) {
+      // another thread may have analyzed the same date meanwhile, in which case either result will do
+      segment.put(dateString, start, result);
+    }
+    return result;
+  }
+
+  private Segment segment(String key) {
+    int hash = key.hashCode();
+    hash ^= hash >>> 16;
+    return segments[hash & (segments.length - 1)];
+  }
+
+  /**
+   * @return The number of lookups that found a cached date
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * @return The number of lookups that had to analyze the date
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * @return The number of date analyses evicted to keep the cache within its size
+   */
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * @return The fraction of lookups that found a cached date, or 0 if there have been none
+   */
+  public double getHitRate() {
+    long hitCount = hits.sum();
+    long total = hitCount + misses.sum();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  /**
+   * @return The number of cached date analyses
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Removes every cached date, leaving the metrics as they are
+   */
+  public void clear() {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "DateInfoCache{size=" + size() + ", maxSize=" + maxSize + ", hits=" + getHits() + ", misses=" + getMisses()
+        + ", evictions=" + getEvictions() + "}";
+  }
+
+  /**
+   * The start and end date analyses for a date string, either of which may not have been analyzed yet
+   */
+  private static final class Entry {
+    CompactDateInfo start;
+    CompactDateInfo end;
+
+    int size() {
+      return (start == null ? 0 : 1) + (end == null ? 0 : 1);
+    }
+  }
+
+  /**
+   * A least-recently-used map of date strings to their analyses, bounded by the number of analyses, to be used while
+   * holding its lock
+   */
+  private static final class Segment {
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxSize;
+    private final LongAdder evictions;
+    private int size;
+
+    Segment(int maxSize, LongAdder evictions) {
+      this.maxSize = maxSize;
+      this.evictions = evictions;
+    }
+
+    CompactDateInfo get(String dateString, boolean start) {
+      Entry entry = entries.get(dateString);
+      return entry == null ? null : start ? entry.start : entry.end;
+    }
+
+    void put(String dateString, boolean start, CompactDateInfo info) {
+      Entry entry = entries.get(dateString);
+      if (entry == null) {
+        entry = new Entry();
+        entries.put(dateString, entry);
+      }
+      size -= entry.size();
+      if (start) {
+        entry.start = info;
+      }
+      else {
+        entry.end = info;
+      }
+      size += entry.size();
+
+      // the entry just used is the most recent, and holds at most 2 of the at least 2 analyses allowed, so it stays
+      Iterator<Entry> eldest = entries.values().iterator();
+      while (size > maxSize) {
+        int evicted = eldest.next().size();
+        eldest.remove();
+        size -= evicted;
+        evictions.add(evicted);
+      }
+    }
+
+    int size() {
+      return size;
+    }
+
+    void clear() {
+      entries.clear();
+      size = 0;
+    }
+  }
+
+}
@@ -0,0 +1,455 @@
+package org.cedar.schemas.analyze;
+
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * A hand-written scanner for the date strings accepted by {@link Temporal#PARSE_DATE_FORMATTER}, which classifies the
+ * precision of a date and extracts its fields in a single pass over the text, without throwing exceptions or building
+ * intermediate {@link TemporalAccessor}s. The accepted forms are, from most to least precise:
+ * <ul>
+ *   <li>zoned date-times, e.g. 2010-12-30T00:00:00Z or 2010-12-30T00:00:00.5-05:00</li>
+ *   <li>local date-times, e.g. 2010-12-30T00:00:00</li>
+ *   <li>dates, e.g. 2010-12-30 or -200-01-01</li>
+ *   <li>year-months, e.g. 2010-12 or -200-10</li>
+ *   <li>years, e.g. 2010 or -35000000</li>
+ * </ul>
+ * with the same field widths, signs and STRICT validation as the formatter. The scanner also notes whether the text is
+ * a whole number as {@link Long#parseLong(String)} would read it, since paleo years may be too large to be dates.
+ * <br>
+ * A scanner holds the fields of the last text it scanned, so one instance can be reused for many texts, but not by
+ * several threads at once.
+ */
+public final class DateScanner {
+
+  private static final long MAX_YEAR = Year.MAX_VALUE;
+  private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+
+  private ChronoUnit precision;
+  private long year;
+  private int month;
+  private int dayOfMonth;
+  private int hour;
+  private int minute;
+  private int second;
+  private int nano;
+  private boolean zoned;
+  private int offsetSeconds;
+  private ZonedDateTime regionDate;
+
+  private boolean integral;
+  private long integralValue;
+
+  // the position reached by the last scan of a number or field
+  private int end;
+
+  /**
+   * @param text The text to scan
+   * @return true if the text is a date, in which case its fields are available from this scanner
+   */
+  public boolean scan(CharSequence text) {
+    precision = null;
+    zoned = false;
+    regionDate = null;
+    year = 0;
+    month = 1;
+    dayOfMonth = 1;
+    hour = 0;
+    minute = 0;
+    second = 0;
+    nano = 0;
+    offsetSeconds = 0;
+    integral = scanLong(text);
+    if (text == null) {
+      return false;
+    }
+
+    if (scanIsoDate(text)) {
+      return scanAfterIsoDate(text);
+    }
+    return scanYearFirstDate(text);
+  }
+
+  /**
+   * @return The precision of the scanned date: NANOS for date-times, DAYS, MONTHS or YEARS, or null if the text was
+   * not a date
+   */
+  public ChronoUnit getPrecision() {
+    return precision;
+  }
+
+  public boolean isDate() {
+    return precision != null;
+  }
+
+  public long getYear() {
+    return year;
+  }
+
+  /**
+   * @return The month of the year, from 1, which is 1 for dates with a precision of years
+   */
+  public int getMonth() {
+    return month;
+  }
+
+  /**
+   * @return The day of the month, from 1, which is 1 for dates with a precision of months or years
+   */
+  public int getDayOfMonth() {
+    return dayOfMonth;
+  }
+
+  public int getHour() {
+    return hour;
+  }
+
+  public int getMinute() {
+    return minute;
+  }
+
+  public int getSecond() {
+    return second;
+  }
+
+  public int getNano() {
+    return nano;
+  }
+
+  /**
+   * @return true if the date had an offset or zone, in which case its fields are local to that offset
+   */
+  public boolean isZoned() {
+    return zoned;
+  }
+
+  public int getOffsetSeconds() {
+    return offsetSeconds;
+  }
+
+  /**
+   * @return true if the text is a number {@link Long#parseLong(String)} would accept
+   */
+  public boolean isIntegral() {
+    return integral;
+  }
+
+  public long getIntegralValue() {
+    return integralValue;
+  }
+
+  /**
+   * @return The scanned date as the type {@link Temporal#PARSE_DATE_FORMATTER} would have parsed it to, or null if the
+   * text was not a date
+   */
+  TemporalAccessor toTemporal() {
+    if (precision == null) {
+      return null;
+    }
+    switch (precision) {
+      case YEARS:
+        return Year.of((int) year);
+      case MONTHS:
+        return YearMonth.of((int) year, month);
+      case DAYS:
+        return LocalDate.of((int) year, month, dayOfMonth);
+      default:
+        if (regionDate != null) {
+          return regionDate;
+        }
+        LocalDateTime dateTime = LocalDateTime.of((int) year, month, dayOfMonth, hour, minute, second, nano);
+        return zoned ? ZonedDateTime.of(dateTime, ZoneOffset.ofTotalSeconds(offsetSeconds)) : dateTime;
+    }
+  }
+
+  //-- dates with a four digit or signed year, i.e. ISO_LOCAL_DATE, and the times which may follow them
+
+  private boolean scanIsoDate(CharSequence text) {
+    int length = text.length();
+    int position = 0;
+    boolean negative = false;
+    boolean positive = false;
+    if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+      negative = text.charAt(0) == '-';
+      positive = !negative;
+      position++;
+    }
+    long value = scanDigits(text, position, 10);
+    int digits = end - position;
+    // as SignStyle.EXCEEDS_PAD: a sign is required for, and a plus only allowed for, more than four digits
+    if (digits < 4 || (positive && digits <= 4) || (!negative && !positive && digits > 4) || (negative && value == 0)) {
+      return false;
+    }
+    position = end;
+    if (!literal(text, position, '-') || !twoDigits(text, position + 1)) {
+      return false;
+    }
+    int monthValue = twoDigitValue(text, position + 1);
+    position += 3;
+    if (!literal(text, position, '-') || !twoDigits(text, position + 1)) {
+      return false;
+    }
+    year = negative ? -value : value;
+    month = monthValue;
+    dayOfMonth = twoDigitValue(text, position + 1);
+    end = position + 3;
+    return true;
+  }
+
+  private boolean scanAfterIsoDate(CharSequence text) {
+    int length = text.length();
+    int position = end;
+    if (!validDate(year, month, dayOfMonth)) {
+      return false;
+    }
+    if (position == length) {
+      precision = ChronoUnit.DAYS;
+      return true;
+    }
+    char separator = text.charAt(position);
+    if ((separator != 'T' && separator != 't') || !scanTime(text, position + 1)) {
+      return false;
+    }
+    position = end;
+    if (position == length) {
+      precision = ChronoUnit.NANOS;
+      return true;
+    }
+    if (!scanOffset(text, position)) {
+      return false;
+    }
+    position = end;
+    if (position == length) {
+      zoned = true;
+      precision = ChronoUnit.NANOS;
+      return true;
+    }
+    return text.charAt(position) == '[' && scanWithRegion(text);
+  }
+
+  /**
+   * HH:mm[:ss[.fraction]], as ISO_LOCAL_TIME
+   */
+  private boolean scanTime(CharSequence text, int position) {
+    if (!twoDigits(text, position) || !literal(text, position + 2, ':') || !twoDigits(text, position + 3)) {
+      return false;
+    }
+    hour = twoDigitValue(text, position);
+    minute = twoDigitValue(text, position + 3);
+    position += 5;
+    if (literal(text, position, ':') && twoDigits(text, position + 1)) {
+      second = twoDigitValue(text, position + 1);
+      position += 3;
+      if (literal(text, position, '.')) {
+        // as the formatter, a decimal point may be followed by up to nine digits, or none
+        position++;
+        int fraction = 0;
+        int digits = 0;
+        while (digits < 9 && position < text.length() && isDigit(text.charAt(position))) {
+          fraction = fraction * 10 + (text.charAt(position) - '0');
+          digits++;
+          position++;
+        }
+        for (; digits < 9; digits++) {
+          fraction *= 10;
+        }
+        nano = fraction;
+      }
+    }
+    end = position;
+    return hour <= 23 && minute <= 59 && second <= 59;
+  }
+
+  /**
+   * Z, or +HH[:mm[:ss]], as the offset of ISO_OFFSET_DATE_TIME when parsed leniently
+   */
+  private boolean scanOffset(CharSequence text, int position) {
+    char sign = text.charAt(position);
+    if (sign == 'Z' || sign == 'z') {
+      offsetSeconds = 0;
+      end = position + 1;
+      return true;
+    }
+    if ((sign != '+' && sign != '-') || !twoDigits(text, position + 1)) {
+      return false;
+    }
+    int hours = twoDigitValue(text, position + 1);
+    int minutes = 0;
+    int seconds = 0;
+    position += 3;
+    if (literal(text, position, ':') && twoDigits(text, position + 1) && twoDigitValue(text, position + 1) <= 59) {
+      minutes = twoDigitValue(text, position + 1);
+      position += 3;
+      if (literal(text, position, ':') && twoDigits(text, position + 1) && twoDigitValue(text, position + 1) <= 59) {
+        seconds = twoDigitValue(text, position + 1);
+        position += 3;
+      }
+    }
+    int total = hours * 3600 + minutes * 60 + seconds;
+    if (total > MAX_OFFSET_SECONDS) {
+      return false;
+    }
+    offsetSeconds = sign == '-' ? -total : total;
+    end = position;
+    return true;
+  }
+
+  /**
+   * Zone region ids, e.g. 2010-12-30T00:00:00-05:00[America/New_York], are rare enough to be left to the formatter,
+   * which resolves the offset against the rules of the zone.
+   */
+  private boolean scanWithRegion(CharSequence text) {
+    try {
+      regionDate = ZonedDateTime.from(Temporal.PARSE_DATE_FORMATTER.parse(text));
+    }
+    catch (DateTimeException e) {
+      return false;
+    }
+    year = regionDate.getYear();
+    month = regionDate.getMonthValue();
+    dayOfMonth = regionDate.getDayOfMonth();
+    hour = regionDate.getHour();
+    minute = regionDate.getMinute();
+    second = regionDate.getSecond();
+    nano = regionDate.getNano();
+    offsetSeconds = regionDate.getOffset().getTotalSeconds();
+    zoned = true;
+    precision = ChronoUnit.NANOS;
+    return true;
+  }
+
+  //-- dates with a year of any width, e.g. paleo years, and optionally a month and a day
+
+  private boolean scanYearFirstDate(CharSequence text) {
+    int length = text.length();
+    int position = 0;
+    boolean negative = length > 0 && text.charAt(0) == '-';
+    if (negative) {
+      position++;
+    }
+    long value = scanDigits(text, position, 19);
+    if (end == position || (negative && value == 0) || value > MAX_YEAR) {
+      return false;
+    }
+    year = negative ? -value : value;
+    position = end;
+    precision = ChronoUnit.YEARS;
+    if (literal(text, position, '-') && twoDigits(text, position + 1)) {
+      month = twoDigitValue(text, position + 1);
+      position += 3;
+      precision = ChronoUnit.MONTHS;
+      if (literal(text, position, '-') && twoDigits(text, position + 1)) {
+        dayOfMonth = twoDigitValue(text, position + 1);
+        position += 3;
+        precision = ChronoUnit.DAYS;
+      }
+    }
+    if (position != length) {
+      precision = null;
+      return false;
+    }
+    if (precision == ChronoUnit.MONTHS && (month < 1 || month > 12)) {
+      // as the formatter, which only validates the month when resolving a YearMonth or a date, so falls back to a Year
+      month = 1;
+      precision = ChronoUnit.YEARS;
+    }
+    if (!validDate(year, month, dayOfMonth)) {
+      precision = null;
+      return false;
+    }
+    return true;
+  }
+
+  //-- helpers
+
+  /**
+   * Scans up to maxDigits ASCII digits, leaving the position after them in {@link #end}
+   *
+   * @return The value of the digits, or a value greater than {@link #MAX_YEAR} if they exceed it
+   */
+  private long scanDigits(CharSequence text, int position, int maxDigits) {
+    int limit = Math.min(text.length(), position + maxDigits);
+    long value = 0;
+    int i = position;
+    for (; i < limit && isDigit(text.charAt(i)); i++) {
+      if (value <= MAX_YEAR) {
+        value = value * 10 + (text.charAt(i) - '0');
+      }
+    }
+    end = i;
+    return value;
+  }
+
+  /**
+   * An exception-free equivalent of {@link Long#parseLong(String)}, which accepts the digits of any script
+   */
+  private boolean scanLong(CharSequence text) {
+    integralValue = 0;
+    int length = text == null ? 0 : text.length();
+    int i = 0;
+    boolean negative = false;
+    if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+      negative = text.charAt(0) == '-';
+      i++;
+    }
+    if (i == length) {
+      return false;
+    }
+    // accumulate negatively, since the magnitude of Long.MIN_VALUE exceeds that of Long.MAX_VALUE
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long result = 0;
+    for (; i < length; i++) {
+      int digit = Character.digit(text.charAt(i), 10);
+      if (digit < 0 || result < (limit + digit) / 10) {
+        return false;
+      }
+      result = result * 10 - digit;
+      if (result < limit) {
+        return false;
+      }
+    }
+    integralValue = negative ? result : -result;
+    return true;
+  }
+
+  private static boolean validDate(long year, int month, int dayOfMonth) {
+    return year >= -MAX_YEAR && year <= MAX_YEAR && month >= 1 && month <= 12
+        && dayOfMonth >= 1 && dayOfMonth <= lengthOfMonth(year, month);
+  }
+
+  static boolean isLeapYear(long year) {
+    return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+  }
+
+  static int lengthOfMonth(long year, int month) {
+    switch (month) {
+      case 2:
+        return isLeapYear(year) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  private static boolean literal(CharSequence text, int position, char c) {
+    return position < text.length() && text.charAt(position) == c;
+  }
+
+  private static boolean twoDigits(CharSequence text, int position) {
+    return position + 1 < text.length() && isDigit(text.charAt(position)) && isDigit(text.charAt(position + 1));
+  }
+
+  private static int twoDigitValue(CharSequence text, int position) {
+    return (text.charAt(position) - '0') * 10 + (text.charAt(position + 1) - '0');
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+}
@@ -3,25 +3,68 @@ package org.cedar.schemas.analyze;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Locale;
 
 public class ReadingLevel {
   private static final Logger log = LoggerFactory.getLogger(ReadingLevel.class);
 
   // source for syllables: https://codegolf.stackexchange.com/questions/47322/how-to-count-the-syllables-in-a-word
   // note this is an estimate, and occasionally gets the answer wrong, but is generally close enough
-  private static Pattern syllablePattern = Pattern.compile("[aiouy]+e*|e(?!d$|ly).|[td]ed|le$");
-
+  // the syllables of a word are the matches of [aiouy]+e*|e(?!d$|ly).|[td]ed|le$ in it, lowercased, which are counted
+  // by a SyllableCounter without regexes
   public static long findSyllablesInWord(String originalWord) {
-    String word = originalWord.toLowerCase();
-    Matcher matcher = syllablePattern.matcher(word);
-    long count = 0;
-    while (matcher.find()) {
-      count++;
+    return countSyllablesInWord(originalWord, 0, originalWord.length());
+  }
+
+  /**
+   * Counts the syllables of a word within a text, the same as {@link #findSyllablesInWord(String)} for the substring,
+   * without creating it
+   *
+   * @throws IndexOutOfBoundsException If the range isn't within the text
+   */
+  public static long countSyllablesInWord(CharSequence text, int start, int end) {
+    TextStatistics.checkRange(text, start, end);
+    Locale locale = Locale.getDefault();
+    if (TextStatistics.hasContextualLowerCase(locale) && !TextStatistics.isAscii(text, start, end)) {
+      String lowerCase = text.subSequence(start, end).toString().toLowerCase(locale);
+      return countLowerCaseSyllables(lowerCase, 0, lowerCase.length(), false);
     }
-    return count;
+    return countLowerCaseSyllables(text, start, end, TextStatistics.hasDotlessI(locale));
+  }
+
+  private static long countLowerCaseSyllables(CharSequence text, int start, int end, boolean dotlessI) {
+    // '$' also matches before a line terminator at the end, after which nothing else can match
+    int wordEnd = end;
+    if (end - start >= 2 && text.charAt(end - 2) == '\r' && text.charAt(end - 1) == '\n') {
+      wordEnd = end - 2;
+    }
+    else if (end > start && SyllableCounter.isLineTerminator(text.charAt(end - 1))) {
+      wordEnd = end - 1;
+    }
+    SyllableCounter counter = new SyllableCounter();
+    for (int i = start; i < wordEnd; i++) {
+      char c = text.charAt(i);
+      if (c == '\u0130') {
+        // a dotted capital I lowercases to an 'i' and a combining dot, which ends any run of vowels
+        counter.feed('i');
+        counter.feed('\u0307');
+      }
+      else {
+        counter.feed(TextStatistics.lowerCase(c, dotlessI));
+      }
+    }
+    counter.endWord();
+    return counter.getCount();
+  }
+
+  /**
+   * Counts the syllables of all the words within a text, the same as {@link #totalSyllables(String)} for the
+   * substring, without creating it or any of the words
+   *
+   * @throws IndexOutOfBoundsException If the range isn't within the text
+   */
+  public static long countSyllables(CharSequence text, int start, int end) {
+    return TextStatistics.of(text, start, end).getSyllables();
   }
 
   public static String[] splitIntoSentences(String text) {
@@ -33,15 +76,15 @@ public class ReadingLevel {
   }
 
   public static int totalSentences(String text) {
-    return splitIntoSentences(text).length;
+    return TextStatistics.of(text).getSentences();
   }
 
   public static int totalWords(String text) {
-    return splitIntoWords(text).length;
+    return TextStatistics.of(text).getWords();
   }
 
   public static long totalSyllables(String text) {
-    return Arrays.stream(splitIntoWords(text)).mapToLong(ReadingLevel::findSyllablesInWord).sum();
+    return TextStatistics.of(text).getSyllables();
   }
 
   /**
@@ -50,17 +93,25 @@ public class ReadingLevel {
    *   0: readable only by college graduate (very difficult)
    */
   public static double FleschReadingEaseScore(String text) {
-    double words = (double) totalWords(text);
-    double sentences = (double) totalSentences(text);
-    double syllables = (double) totalSyllables(text);
-    return 206.835 - 1.015 * (words/sentences) - 84.6 * (syllables/words);
+    return FleschReadingEaseScore(TextStatistics.of(text));
+  }
+
+  /**
+   * @param statistics The statistics of the text, to compute both scores from one pass over it
+   */
+  public static double FleschReadingEaseScore(TextStatistics statistics) {
+    return statistics.getReadingEase();
   }
 
   public static double FleschKincaidReadingGradeLevel(String text) {
-    double words = (double) totalWords(text);
-    double sentences = (double) totalSentences(text);
-    double syllables = (double) totalSyllables(text);
-    return 0.39 * (words/sentences) + 11.8 * (syllables/words) - 15.59;
+    return FleschKincaidReadingGradeLevel(TextStatistics.of(text));
+  }
+
+  /**
+   * @param statistics The statistics of the text, to compute both scores from one pass over it
+   */
+  public static double FleschKincaidReadingGradeLevel(TextStatistics statistics) {
+    return statistics.getGradeLevel();
   }
 
   public static boolean wcagReadingLevelCriteria(String text) {
@@ -0,0 +1,158 @@
+package org.cedar.schemas.analyze;
+
+/**
+ * A state machine counting the matches of the syllable pattern {@code [aiouy]+e*|e(?!d$|ly).|[td]ed|le$} in lowercase
+ * words, fed one character at a time, with the same count as finding the pattern over and over with a Matcher.
+ * <br>
+ * The state is the part of a match seen so far, e.g. a 't' that may start "ted". When the next character rules a match
+ * out, the characters after the one it started at are tried again, as the Matcher would. The lookaheads are resolved by
+ * the following character, or by the end of the word.
+ * <br>
+ * A counter is reusable across words but not thread-safe.
+ */
+final class SyllableCounter {
+
+  private static final int NONE = 0;
+  private static final int VOWELS = 1;      // [aiouy]+, counted
+  private static final int VOWELS_E = 2;    // [aiouy]+e+, counted
+  private static final int E = 3;           // e, which may start e(?!d$|ly).
+  private static final int E_D = 4;         // ed, a match unless the word ends
+  private static final int E_L = 5;         // el, a match unless a 'y' follows
+  private static final int T = 6;           // t or d, which may start [td]ed
+  private static final int T_E = 7;         // te or de
+  private static final int L = 8;           // l, which may start le$
+  private static final int L_E = 9;         // le, a match if the word ends
+
+  private int state = NONE;
+  private long count;
+
+  /**
+   * @param c The next character of the word, already lowercased
+   */
+  void feed(char c) {
+    switch (state) {
+      case VOWELS:
+        if (isVowel(c)) {
+          return;
+        }
+        if (c == 'e') {
+          state = VOWELS_E;
+          return;
+        }
+        start(c);
+        return;
+      case VOWELS_E:
+        if (c != 'e') {
+          start(c);
+        }
+        return;
+      case E:
+        if (c == 'd') {
+          state = E_D;
+        }
+        else if (c == 'l') {
+          state = E_L;
+        }
+        else if (isLineTerminator(c)) {
+          // '.' doesn't match line terminators
+          state = NONE;
+        }
+        else {
+          count++;
+          state = NONE;
+        }
+        return;
+      case E_D:
+        count++;
+        start(c);
+        return;
+      case E_L:
+        if (c != 'y') {
+          count++;
+        }
+        // either way, "l" followed by c can't start a match, so the next one starts at c
+        start(c);
+        return;
+      case T:
+        if (c == 'e') {
+          state = T_E;
+        }
+        else {
+          start(c);
+        }
+        return;
+      case T_E:
+        if (c == 'd') {
+          count++;
+          state = NONE;
+        }
+        else {
+          // try again from the 'e'
+          state = E;
+          feed(c);
+        }
+        return;
+      case L:
+        if (c == 'e') {
+          state = L_E;
+        }
+        else {
+          start(c);
+        }
+        return;
+      case L_E:
+        // the word goes on, so try again from the 'e'
+        state = E;
+        feed(c);
+        return;
+      default:
+        start(c);
+    }
+  }
+
+  private void start(char c) {
+    if (isVowel(c)) {
+      count++;
+      state = VOWELS;
+    }
+    else if (c == 'e') {
+      state = E;
+    }
+    else if (c == 't' || c == 'd') {
+      state = T;
+    }
+    else if (c == 'l') {
+      state = L;
+    }
+    else {
+      state = NONE;
+    }
+  }
+
+  /**
+   * Ends the current word, where '$' matches, and readies the counter for the next one
+   */
+  void endWord() {
+    if (state == E_L || state == L_E) {
+      // "el" isn't followed by a 'y', and "le" is at the end
+      count++;
+    }
+    state = NONE;
+  }
+
+  /**
+   * @return The number of syllables in the words so far
+   */
+  long getCount() {
+    return count;
+  }
+
+  private static boolean isVowel(char c) {
+    return c == 'a' || c == 'i' || c == 'o' || c == 'u' || c == 'y';
+  }
+
+  static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+}
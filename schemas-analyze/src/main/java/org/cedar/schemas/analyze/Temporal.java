@@ -37,18 +37,15 @@ public class Temporal {
       .toFormatter()
       .withResolverStyle(ResolverStyle.STRICT);
 
+  /**
+   * @param date The text of a date
+   * @return The date as the most precise of ZonedDateTime, LocalDateTime, LocalDate, YearMonth or Year that
+   * {@link #PARSE_DATE_FORMATTER} accepts it as, or null if it is not a date
+   * @see DateScanner
+   */
   public static TemporalAccessor parseDate(String date) {
-    try {
-      return PARSE_DATE_FORMATTER.parseBest(
-          date,
-          ZonedDateTime::from,
-          LocalDateTime::from,
-          LocalDate::from,
-          YearMonth::from,
-          Year::from);
-    } catch (Exception e) {
-      return null;
-    }
+    DateScanner scanner = new DateScanner();
+    return scanner.scan(date) ? scanner.toTemporal() : null;
   }
 
   public static Long parseLong(String number) {
@@ -72,49 +69,58 @@ public class Temporal {
   }
 
   public static TemporalBoundingAnalysis analyzeBounding(Discovery metadata) {
+    return analyzeBounding(metadata, null);
+  }
+
+  /**
+   * @param metadata The record to analyze
+   * @param cache A cache to take the analysis of each date from, or null to analyze every date afresh
+   * @return The analysis of the record's temporal bounding
+   */
+  public static TemporalBoundingAnalysis analyzeBounding(Discovery metadata, DateInfoCache cache) {
     TemporalBoundingAnalysis.Builder builder = TemporalBoundingAnalysis.newBuilder();
 
     if (metadata != null && metadata.getTemporalBounding() != null) {
       // Gather info
-      DateInfo beginInfo = new DateInfo(metadata.getTemporalBounding().getBeginDate(), true);
-      DateInfo endInfo = new DateInfo(metadata.getTemporalBounding().getEndDate(), false);
-      DateInfo instantInfo = new DateInfo(metadata.getTemporalBounding().getInstant(), true);
+      CompactDateInfo beginInfo = dateInfo(metadata.getTemporalBounding().getBeginDate(), true, cache);
+      CompactDateInfo endInfo = dateInfo(metadata.getTemporalBounding().getEndDate(), false, cache);
+      CompactDateInfo instantInfo = dateInfo(metadata.getTemporalBounding().getInstant(), true, cache);
       TimeRangeDescriptor rangeDescriptor = rangeDescriptor(beginInfo, endInfo, instantInfo);
 
-      // Build
-      builder.setBeginDescriptor(beginInfo.descriptor);
-      builder.setBeginPrecision(beginInfo.precision);
-      builder.setBeginIndexable(beginInfo.indexable);
-      builder.setBeginZoneSpecified(beginInfo.zoneSpecified);
-      builder.setBeginUtcDateTimeString(beginInfo.utcDateTimeString);
-      builder.setBeginYear(beginInfo.year);
-      builder.setBeginDayOfYear(beginInfo.dayOfYear);
-      builder.setBeginDayOfMonth(beginInfo.dayOfMonth);
-      builder.setBeginMonth(beginInfo.month);
-
-      builder.setEndDescriptor(endInfo.descriptor);
-      builder.setEndPrecision(endInfo.precision);
-      builder.setEndIndexable(endInfo.indexable);
-      builder.setEndZoneSpecified(endInfo.zoneSpecified);
-      builder.setEndUtcDateTimeString(endInfo.utcDateTimeString);
-      builder.setEndYear(endInfo.year);
-      builder.setEndDayOfYear(endInfo.endDayOfYear == null ? endInfo.dayOfYear : endInfo.endDayOfYear);
-      builder.setEndDayOfMonth(endInfo.endDayOfMonth == null ? endInfo.dayOfMonth : endInfo.endDayOfMonth);
-      builder.setEndMonth(endInfo.endMonth == null ? endInfo.month : endInfo.endMonth);
-
-      builder.setInstantDescriptor(instantInfo.descriptor);
-      builder.setInstantPrecision(instantInfo.precision);
-      builder.setInstantIndexable(instantInfo.indexable);
-      builder.setInstantZoneSpecified(instantInfo.zoneSpecified);
-      builder.setInstantUtcDateTimeString(instantInfo.utcDateTimeString);
-      builder.setInstantEndUtcDateTimeString(instantInfo.endUtcDateTimeString);
-      builder.setInstantYear(instantInfo.year);
-      builder.setInstantDayOfYear(instantInfo.dayOfYear);
-      builder.setInstantDayOfMonth(instantInfo.dayOfMonth);
-      builder.setInstantMonth(instantInfo.month);
-      builder.setInstantEndDayOfYear(instantInfo.endDayOfYear);
-      builder.setInstantEndDayOfMonth(instantInfo.endDayOfMonth);
-      builder.setInstantEndMonth(instantInfo.endMonth);
+      // Build, formatting each UTC string only here
+      builder.setBeginDescriptor(beginInfo.getDescriptor());
+      builder.setBeginPrecision(beginInfo.getPrecision());
+      builder.setBeginIndexable(beginInfo.isIndexable());
+      builder.setBeginZoneSpecified(beginInfo.getZoneSpecified());
+      builder.setBeginUtcDateTimeString(beginInfo.getUtcDateTimeString());
+      builder.setBeginYear(beginInfo.getYear());
+      builder.setBeginDayOfYear(beginInfo.getDayOfYear());
+      builder.setBeginDayOfMonth(beginInfo.getDayOfMonth());
+      builder.setBeginMonth(beginInfo.getMonth());
+
+      builder.setEndDescriptor(endInfo.getDescriptor());
+      builder.setEndPrecision(endInfo.getPrecision());
+      builder.setEndIndexable(endInfo.isIndexable());
+      builder.setEndZoneSpecified(endInfo.getZoneSpecified());
+      builder.setEndUtcDateTimeString(endInfo.getUtcDateTimeString());
+      builder.setEndYear(endInfo.getYear());
+      builder.setEndDayOfYear(endInfo.getEndDayOfYear());
+      builder.setEndDayOfMonth(endInfo.getEndDayOfMonth());
+      builder.setEndMonth(endInfo.getEndMonth());
+
+      builder.setInstantDescriptor(instantInfo.getDescriptor());
+      builder.setInstantPrecision(instantInfo.getPrecision());
+      builder.setInstantIndexable(instantInfo.isIndexable());
+      builder.setInstantZoneSpecified(instantInfo.getZoneSpecified());
+      builder.setInstantUtcDateTimeString(instantInfo.getUtcDateTimeString());
+      builder.setInstantEndUtcDateTimeString(instantInfo.getEndUtcDateTimeString());
+      builder.setInstantYear(instantInfo.getYear());
+      builder.setInstantDayOfYear(instantInfo.getDayOfYear());
+      builder.setInstantDayOfMonth(instantInfo.getDayOfMonth());
+      builder.setInstantMonth(instantInfo.getMonth());
+      builder.setInstantEndDayOfYear(instantInfo.getEndDayOfYear());
+      builder.setInstantEndDayOfMonth(instantInfo.getEndDayOfMonth());
+      builder.setInstantEndMonth(instantInfo.getEndMonth());
 
       builder.setRangeDescriptor(rangeDescriptor);
     }
@@ -122,6 +128,10 @@ public class Temporal {
     return builder.build();
   }
 
+  private static CompactDateInfo dateInfo(String dateString, boolean start, DateInfoCache cache) {
+    return cache == null ? new CompactDateInfo(dateString, start) : cache.get(dateString, start);
+  }
+
   static boolean indexable(Long year) {
     // Year must be in the range [-292_275_055, 292_278_994] in order to be parsed as a date by ES (Joda time magic number). However,
     // this number is a bit arbitrary, and prone to change when ES switches to the Java time library (minimum supported year
@@ -178,10 +188,58 @@ public class Temporal {
     return start ? year.toString() + "-01-01T00:00:00Z" : year.toString() + "-12-31T23:59:59.999Z";
   }
 
-  static TimeRangeDescriptor rangeDescriptor(DateInfo beginInfo, DateInfo endInfo, DateInfo instantInfo) {
-    ValidDescriptor begin = beginInfo.descriptor;
-    ValidDescriptor end = endInfo.descriptor;
-    ValidDescriptor instant = instantInfo.descriptor;
+  /**
+   * The output of DateTimeFormatter.ISO_ZONED_DATE_TIME for a date-time in UTC
+   */
+  static String formatUtc(long year, int month, int day, int hour, int minute, int second, int nano) {
+    StringBuilder result = new StringBuilder(32);
+    long absYear = Math.abs(year);
+    if (year > 9999) {
+      result.append('+');
+    }
+    else if (year < 0) {
+      result.append('-');
+    }
+    for (long pad = 1000; pad > absYear && pad > 0; pad /= 10) {
+      result.append('0');
+    }
+    if (absYear > 0) {
+      result.append(absYear);
+    }
+    appendTwoDigits(result.append('-'), month);
+    appendTwoDigits(result.append('-'), day);
+    appendTwoDigits(result.append('T'), hour);
+    appendTwoDigits(result.append(':'), minute);
+    appendTwoDigits(result.append(':'), second);
+    if (nano > 0) {
+      // as many digits as needed, without trailing zeros
+      int digits = 9;
+      int fraction = nano;
+      while (fraction % 10 == 0) {
+        fraction /= 10;
+        digits--;
+      }
+      result.append('.');
+      for (int remaining = fraction; remaining > 0; remaining /= 10) {
+        digits--;
+      }
+      for (; digits > 0; digits--) {
+        result.append('0');
+      }
+      result.append(fraction);
+    }
+    return result.append('Z').toString();
+  }
+
+  private static void appendTwoDigits(StringBuilder builder, int value) {
+    builder.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+  }
+
+  static TimeRangeDescriptor rangeDescriptor(CompactDateInfo beginInfo, CompactDateInfo endInfo,
+                                             CompactDateInfo instantInfo) {
+    ValidDescriptor begin = beginInfo.getDescriptor();
+    ValidDescriptor end = endInfo.getDescriptor();
+    ValidDescriptor instant = instantInfo.getDescriptor();
 
     // A time range cannot be described as an error exists with one or more dates:
     if(begin == ValidDescriptor.INVALID ||
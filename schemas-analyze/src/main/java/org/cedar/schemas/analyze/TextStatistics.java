@@ -0,0 +1,209 @@
+package org.cedar.schemas.analyze;
+
+import java.util.Locale;
+
+/**
+ * The counts of sentences, words and syllables in a text, from which both {@link ReadingLevel} scores derive.
+ * <br>
+ * The counts are the same as {@link ReadingLevel#totalSentences(String)}, {@link ReadingLevel#totalWords(String)} and
+ * {@link ReadingLevel#totalSyllables(String)} give, but are gathered in a single pass over the text, without regular
+ * expressions or splitting it into strings, lowercasing it a character at a time:
+ * <ul>
+ *   <li>sentences end at a '.', '?' or '!' followed by whitespace</li>
+ *   <li>words are separated by single whitespace characters, once everything but letters, digits, underscores,
+ *   whitespace and ')' has been removed, so that e.g. "multi-channel" is one word</li>
+ *   <li>syllables are estimated per word, as by {@link ReadingLevel#findSyllablesInWord(String)}</li>
+ * </ul>
+ * and, as with {@link String#split(String)}, empty sentences and words at the end of the text are not counted.
+ */
+public class TextStatistics {
+
+  private final int sentences;
+  private final int words;
+  private final long syllables;
+
+  private TextStatistics(int sentences, int words, long syllables) {
+    this.sentences = sentences;
+    this.words = words;
+    this.syllables = syllables;
+  }
+
+  /**
+   * @param text The text to measure
+   * @return Its statistics
+   */
+  public static TextStatistics of(String text) {
+    return of(text, 0, text.length());
+  }
+
+  /**
+   * @param text A text containing the one to measure
+   * @param start The index the text to measure starts at
+   * @param end The index after the text to measure
+   * @return The statistics of the range, the same as for the substring
+   * @throws IndexOutOfBoundsException If the range isn't within the text
+   */
+  public static TextStatistics of(CharSequence text, int start, int end) {
+    checkRange(text, start, end);
+    Locale locale = Locale.getDefault();
+    if (hasContextualLowerCase(locale) && !isAscii(text, start, end)) {
+      // lowercasing doesn't move any sentence breaks, so the whole text can be measured lowercased
+      String lowerCase = text.subSequence(start, end).toString().toLowerCase(locale);
+      return measure(lowerCase, 0, lowerCase.length(), false);
+    }
+    return measure(text, start, end, hasDotlessI(locale));
+  }
+
+  private static TextStatistics measure(CharSequence text, int start, int end, boolean dotlessI) {
+    // sentences, as text.split("([.?!])\\s").length
+    int sentenceBreaks = 0;
+    int sentences = 0;
+    int trailingEmptySentences = 0;
+    int sentenceStart = start;
+
+    // words, as text.toLowerCase().replaceAll("[^\\w\\a\\s)]", "").split("\\s").length
+    int wordBreaks = 0;
+    int words = 0;
+    int trailingEmptyWords = 0;
+    int wordLength = 0;
+    SyllableCounter syllables = new SyllableCounter();
+
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+
+      if ((c == '.' || c == '?' || c == '!') && i + 1 < end && isWhitespace(text.charAt(i + 1))) {
+        sentenceBreaks++;
+        sentences++;
+        trailingEmptySentences = i == sentenceStart ? trailingEmptySentences + 1 : 0;
+        sentenceStart = i + 2;
+      }
+
+      if (isWhitespace(c)) {
+        wordBreaks++;
+        words++;
+        trailingEmptyWords = wordLength == 0 ? trailingEmptyWords + 1 : 0;
+        syllables.endWord();
+        wordLength = 0;
+        continue;
+      }
+      char lower = lowerCase(c, dotlessI);
+      if (isWordCharacter(lower)) {
+        wordLength++;
+        syllables.feed(lower);
+      }
+    }
+
+    // the last sentence and word run to the end of the text
+    sentences++;
+    trailingEmptySentences = sentenceStart >= end ? trailingEmptySentences + 1 : 0;
+    words++;
+    trailingEmptyWords = wordLength == 0 ? trailingEmptyWords + 1 : 0;
+    syllables.endWord();
+
+    // without any breaks, split gives the whole text, even if it is empty
+    return new TextStatistics(
+        sentenceBreaks == 0 ? 1 : sentences - trailingEmptySentences,
+        wordBreaks == 0 ? 1 : words - trailingEmptyWords,
+        syllables.getCount());
+  }
+
+  static void checkRange(CharSequence text, int start, int end) {
+    if (start < 0 || end > text.length() || start > end) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + text.length());
+    }
+  }
+
+  /**
+   * The characters matched by \s
+   */
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || (c >= '\t' && c <= '\r');
+  }
+
+  /**
+   * The characters kept by replaceAll("[^\\w\\a\\s)]", ""), other than whitespace
+   */
+  private static boolean isWordCharacter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == ')' || c == '\u0007';
+  }
+
+  /**
+   * Whether String.toLowerCase maps some characters depending on those around them in a locale, e.g. an 'I' followed
+   * by a combining dot to 'i' in Turkish, in which case text that isn't ASCII has to be lowercased as a whole
+   */
+  static boolean hasContextualLowerCase(Locale locale) {
+    String language = locale.getLanguage();
+    return "tr".equals(language) || "az".equals(language) || "lt".equals(language);
+  }
+
+  /**
+   * Whether 'I' lowercases to a dotless i in a locale, as in Turkish and Azerbaijani
+   */
+  static boolean hasDotlessI(Locale locale) {
+    String language = locale.getLanguage();
+    return "tr".equals(language) || "az".equals(language);
+  }
+
+  static boolean isAscii(CharSequence text, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The lowercase of a character, as far as it matters for counting words and syllables; other than in the locales
+   * with contextual mappings, String.toLowerCase either maps a character to the same one, or to a character that
+   * doesn't matter, e.g. a dotted capital I to 'i' and a combining dot
+   */
+  static char lowerCase(char c, boolean dotlessI) {
+    if (c < 0x80) {
+      if (c >= 'A' && c <= 'Z') {
+        return dotlessI && c == 'I' ? '\u0131' : (char) (c + ('a' - 'A'));
+      }
+      return c;
+    }
+    // e.g. the Kelvin sign lowercases to 'k'
+    return Character.toLowerCase(c);
+  }
+
+  public int getSentences() {
+    return sentences;
+  }
+
+  public int getWords() {
+    return words;
+  }
+
+  public long getSyllables() {
+    return syllables;
+  }
+
+  /**
+   * @see ReadingLevel#FleschReadingEaseScore(String)
+   */
+  public double getReadingEase() {
+    double words = (double) this.words;
+    double sentences = (double) this.sentences;
+    double syllables = (double) this.syllables;
+    return 206.835 - 1.015 * (words/sentences) - 84.6 * (syllables/words);
+  }
+
+  /**
+   * @see ReadingLevel#FleschKincaidReadingGradeLevel(String)
+   */
+  public double getGradeLevel() {
+    double words = (double) this.words;
+    double sentences = (double) this.sentences;
+    double syllables = (double) this.syllables;
+    return 0.39 * (words/sentences) + 11.8 * (syllables/words) - 15.59;
+  }
+
+  @Override
+  public String toString() {
+    return "TextStatistics{sentences=" + sentences + ", words=" + words + ", syllables=" + syllables + "}";
+  }
+
+}
@@ -3,6 +3,9 @@ package org.cedar.schemas.analyze
 import org.cedar.schemas.avro.geojson.Point
 import org.cedar.schemas.avro.psi.*
 import org.cedar.schemas.avro.util.AvroUtils
+import org.cedar.schemas.parse.DefaultParser
+import org.cedar.schemas.parse.ISODocument
+import org.cedar.schemas.parse.ISOIngestPipeline
 import org.cedar.schemas.parse.ISOParser
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -29,6 +32,26 @@ class AnalyzersSpec extends Specification {
     result.discovery == record.discovery
   }
 
+  def 'adds an analysis to each record of an ingest pipeline'() {
+    given:
+    def inputXml = ClassLoader.systemClassLoader.getResourceAsStream('test-iso-metadata.xml').bytes
+    def pipeline = ISOIngestPipeline.builder()
+        .type(RecordType.collection)
+        .stage(DefaultParser.&fillInDefaults)
+        .stage(Analyzers.&addAnalysis)
+        .threads(2)
+        .build()
+    def results = []
+
+    when:
+    pipeline.run(ISODocument.fromBytes([inputXml, inputXml, inputXml].iterator()), { results << it.record })
+
+    then:
+    def discovery = ISOParser.parseXMLMetadataToDiscovery(inputXml)
+    results.size() == 3
+    results.every { it.discovery.equals(discovery) && it.analysis.equals(Analyzers.analyze(discovery)) }
+  }
+
   def 'analyzing null discovery returns null'() {
     expect:
     Analyzers.analyze(null) == null
@@ -0,0 +1,188 @@
+package org.cedar.schemas.analyze
+
+import org.cedar.schemas.avro.psi.Discovery
+import org.cedar.schemas.avro.psi.TemporalBounding
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+@Unroll
+class DateInfoCacheSpec extends Specification {
+
+  def 'returns the same analysis for a repeated date'() {
+    given:
+    def cache = new DateInfoCache(100)
+
+    when:
+    def first = cache.get('2010-01-01', true)
+    def second = cache.get('2010-01-01', true)
+
+    then:
+    first.is(second)
+    cache.hits == 1
+    cache.misses == 1
+    cache.hitRate == 0.5d
+    cache.size() == 1
+  }
+
+  def 'keeps start and end dates apart'() {
+    given:
+    def cache = new DateInfoCache(100)
+
+    when:
+    def start = cache.get('2010-01', true)
+    def end = cache.get('2010-01', false)
+
+    then:
+    start.utcDateTimeString == '2010-01-01T00:00:00Z'
+    end.utcDateTimeString == '2010-01-31T23:59:59.999Z'
+    cache.misses == 2
+    cache.size() == 2
+  }
+
+  def 'does not cache #description dates'() {
+    given:
+    def cache = new DateInfoCache(100)
+
+    when:
+    def result = cache.get(date, true)
+
+    then:
+    result.descriptor == new DateInfo(date, true).descriptor
+    cache.size() == 0
+    cache.hits + cache.misses == 0
+
+    where:
+    description | date
+    'null'      | null
+    'empty'     | ''
+  }
+
+  def 'caches invalid dates too'() {
+    given:
+    def cache = new DateInfoCache(100)
+
+    when:
+    cache.get('present', false)
+    cache.get('present', false)
+
+    then:
+    cache.hits == 1
+    cache.misses == 1
+  }
+
+  def 'evicts the least recently used dates beyond its size'() {
+    given:
+    def cache = new DateInfoCache(4)
+
+    when:
+    cache.get('2001', true)
+    cache.get('2002', true)
+    cache.get('2003', false)
+    cache.get('2004', true)
+    cache.get('2001', true) // 2001 is now more recently used than 2002
+    cache.get('2005', true)
+    def hitsBefore = cache.hits
+    cache.get('2001', true)
+    cache.get('2002', true)
+
+    then:
+    cache.size() == 4
+    cache.evictions == 2
+    cache.hits == hitsBefore + 1
+  }
+
+  def 'shares its size between start and end dates'() {
+    given:
+    def cache = new DateInfoCache(16)
+
+    when:
+    (1000..<1016).each { cache.get(it.toString(), true) }
+    cache.get('1000', false)
+
+    then:
+    cache.size() == 16
+    cache.evictions == 1
+    cache.misses == 17
+  }
+
+  def 'stays within its size'() {
+    given:
+    def cache = new DateInfoCache(64)
+
+    when:
+    (1000..2999).each { cache.get(it.toString(), it % 2 == 0) }
+
+    then:
+    cache.size() <= 64
+    cache.misses == 2000
+    cache.evictions == 2000 - cache.size()
+  }
+
+  def 'rejects a size of #size'() {
+    when:
+    new DateInfoCache(size)
+
+    then:
+    thrown(IllegalArgumentException)
+
+    where:
+    size << [-1, 0, 1]
+  }
+
+  def 'is safe to share between threads'() {
+    given:
+    def cache = new DateInfoCache(32)
+    def dates = (0..<50).collect { "20${(it % 25).toString().padLeft(2, '0')}-01-01" }
+    def pool = Executors.newFixedThreadPool(8)
+
+    when:
+    def futures = (0..<8).collect { thread ->
+      pool.submit({
+        (0..<2000).collect { i ->
+          def date = dates[(i * 7 + thread) % dates.size()]
+          cache.get(date, i % 2 == 0).utcDateTimeString == new DateInfo(date, i % 2 == 0).utcDateTimeString
+        }.every()
+      } as Callable<Boolean>)
+    }
+    def results = futures*.get()
+    pool.shutdown()
+
+    then:
+    results.every()
+    cache.hits + cache.misses == 16000
+    cache.size() <= 32
+  }
+
+  def 'analyzes bounding the same with and without a cache'() {
+    given:
+    def cache = new DateInfoCache(100)
+    def discovery = Discovery.newBuilder()
+        .setTemporalBounding(TemporalBounding.newBuilder()
+            .setBeginDate(begin)
+            .setEndDate(end)
+            .setInstant(instant)
+            .build())
+        .build()
+
+    when:
+    def uncached = Temporal.analyzeBounding(discovery)
+    def cold = Temporal.analyzeBounding(discovery, cache)
+    def warm = Temporal.analyzeBounding(discovery, cache)
+
+    then:
+    cold == uncached
+    warm == uncached
+    Analyzers.analyze(discovery, cache) == Analyzers.analyze(discovery)
+
+    where:
+    begin                  | end                    | instant
+    '2010-01-01'           | '2011-06'              | null
+    '-1000000000'          | '2015'                 | null
+    '2000-01-01T00:00:00Z' | '2000-01-01T00:00:00Z' | null
+    null                   | null                   | '1999-12'
+    'present'              | '2010'                 | null
+  }
+}
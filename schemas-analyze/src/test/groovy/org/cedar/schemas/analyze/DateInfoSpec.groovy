@@ -7,6 +7,7 @@ import org.cedar.schemas.parse.ISOParser
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.time.DateTimeException
 import java.time.temporal.ChronoUnit
 
 import static org.cedar.schemas.avro.psi.TimeRangeDescriptor.*
@@ -61,6 +62,8 @@ class DateInfoSpec extends Specification {
     input                  | start || descriptor                | precision | indexable | zone | string
     '2042-04-02T00:42:42Z' | false || ValidDescriptor.VALID     | 'Nanos'   | true      | 'Z'  | '2042-04-02T00:42:42Z'
     '2042-04-02T00:42:42'  | false || ValidDescriptor.VALID     | 'Nanos'   | true      | null | '2042-04-02T00:42:42Z'
+    '2042-12-31T20:00-05:00' | true || ValidDescriptor.VALID   | 'Nanos'   | true      | '-05:00' | '2043-01-01T01:00:00Z'
+    '2042-03-01T00:42:42.120+01:00' | true || ValidDescriptor.VALID | 'Nanos' | true   | '+01:00' | '2042-02-28T23:42:42.12Z'
     '2042-04-02'           | false || ValidDescriptor.VALID     | 'Days'    | true      | null | '2042-04-02T23:59:59.999Z'
     '2042-04-02'           | true  || ValidDescriptor.VALID     | 'Days'    | true      | null | '2042-04-02T00:00:00Z'
     '2042-05'              | true  || ValidDescriptor.VALID     | 'Months'  | true      | null | '2042-05-01T00:00:00Z'
@@ -72,8 +75,81 @@ class DateInfoSpec extends Specification {
     '-100000001'           | true  || ValidDescriptor.VALID     | 'Years'   | false     | null | '-100000001-01-01T00:00:00Z'
     '-100000002'           | false || ValidDescriptor.VALID     | 'Years'   | false     | null | '-100000002-12-31T23:59:59.999Z'
     '100000002'            | false || ValidDescriptor.VALID     | 'Years'   | false     | null | '100000002-12-31T23:59:59.999Z'
+    '20191025'             | true  || ValidDescriptor.VALID     | 'Years'   | true      | null | '+20191025-01-01T00:00:00Z'
     'ABC'                  | true  || ValidDescriptor.INVALID   | null      | false     | null | null
     ''                     | true  || ValidDescriptor.UNDEFINED | null      | true      | null | null
     null                   | true  || ValidDescriptor.UNDEFINED | null      | true      | null | null
   }
+
+  def 'formats the end of #input in UTC when it is a start date: #start'() {
+    expect:
+    new CompactDateInfo(input, start).endUtcDateTimeString == string
+    new DateInfo(input, start).endUtcDateTimeString == string
+
+    where:
+    input                    | start || string
+    '2042-05'                | true  || '2042-05-31T23:59:59.999Z'
+    '2042-05'                | false || '2042-05-31T23:59:59.999Z'
+    '2042'                   | true  || '2042-12-31T23:59:59.999Z'
+    '2042-12-31T20:00-05:00' | true  || '2043-01-01T01:00:00Z'
+    '-100000001'             | true  || '-100000001-12-31T23:59:59.999Z'
+    'ABC'                    | true  || null
+    ''                       | true  || null
+  }
+
+  def 'keeps the public fields the same as the getters for #input'() {
+    when:
+    def result = new DateInfo(input, start)
+
+    then:
+    result.@descriptor == result.getDescriptor()
+    result.@precision == result.getPrecision()
+    result.@indexable == result.isIndexable()
+    result.@zoneSpecified == result.getZoneSpecified()
+    result.@utcDateTimeString == result.getUtcDateTimeString()
+    result.@endUtcDateTimeString == result.getEndUtcDateTimeString()
+    result.@year == result.getYear()
+    result.@dayOfYear == result.getDayOfYear()
+    result.@dayOfMonth == result.getDayOfMonth()
+    result.@month == result.getMonth()
+    result.@endDayOfYear == result.getEndDayOfYear()
+    result.@endDayOfMonth == result.getEndDayOfMonth()
+    result.@endMonth == result.getEndMonth()
+
+    where:
+    input                    | start
+    '2042-12-31T20:00-05:00' | true
+    '2042-05'                | false
+    '-100000002'             | true
+    'ABC'                    | true
+    ''                       | false
+  }
+
+  def 'compares #first to #second as #expected'() {
+    expect:
+    Math.signum(new DateInfo(first, true).compareTo(new DateInfo(second, false))) == expected
+
+    where:
+    first                           | second              | expected
+    '2042-04-02'                    | '2042-04-02'        | -1       // start of day to end of day
+    '2042-04-02T23:59:59.999Z'      | '2042-04-02'        | 0
+    '2042-04-03T01:59:59.999+02:00' | '2042-04-02'        | 0        // 23:59:59.999 UTC
+    '2042-12-31T20:00-05:00'        | '2043-01-01T00:59Z' | 1        // 01:00 UTC in 2043
+    '-1000000000'                   | '-1000000000'       | 0        // paleo years compare by year alone
+    '-1000000000'                   | '-999999999-06'     | -1
+    '-100000001'                    | '-100000001-01-01'  | 0
+  }
+
+  def 'throws comparing #first to #second'() {
+    when:
+    new DateInfo(first, true).compareTo(new DateInfo(second, false))
+
+    then:
+    thrown(DateTimeException)
+
+    where:
+    first         | second
+    'ABC'         | '2042'
+    '2042-04-02'  | '2042-02-30'
+  }
 }
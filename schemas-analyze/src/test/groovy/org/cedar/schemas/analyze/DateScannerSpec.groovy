@@ -0,0 +1,112 @@
+package org.cedar.schemas.analyze
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.*
+import java.time.temporal.ChronoUnit
+import java.time.temporal.TemporalAccessor
+import java.time.temporal.TemporalQuery
+
+@Unroll
+class DateScannerSpec extends Specification {
+
+  static final TemporalQuery[] QUERIES = [
+      { ZonedDateTime.from(it) } as TemporalQuery,
+      { LocalDateTime.from(it) } as TemporalQuery,
+      { LocalDate.from(it) } as TemporalQuery,
+      { YearMonth.from(it) } as TemporalQuery,
+      { Year.from(it) } as TemporalQuery
+  ]
+
+  static TemporalAccessor parseWithFormatter(String date) {
+    try {
+      return Temporal.PARSE_DATE_FORMATTER.parseBest(date, QUERIES)
+    }
+    catch (Exception e) {
+      return null
+    }
+  }
+
+  def 'scans #input as the formatter parses it'() {
+    when:
+    def scanner = new DateScanner()
+    def scanned = scanner.scan(input)
+
+    then:
+    scanned == (expected != null)
+    scanner.toTemporal() == expected
+    Temporal.parseDate(input) == expected
+
+    where:
+    input << [
+        '2010-12-30T00:00:00Z', '2010-12-30t00:00:00z', '2010-12-30T00:00:00.123456789+05:30', '2010-12-30T00:00:00.-05',
+        '2010-12-30T00:00:00-05:00:30', '2010-12-30T00:00:00+18:00', '2010-12-30T00:00:00+18:01', '2010-12-30T00:00+24',
+        '2010-12-30T00:00:00-00:00', '2010-12-30T00:00:00-05:00[America/New_York]', '2010-12-30T00:00:00Z[Nowhere]',
+        '2010-12-30T00:00:00', '2010-12-30T00:00', '2010-12-30T24:00', '2010-12-30T23:60', '2010-12-30T00:00:',
+        '2010-12-30', '2020-02-29', '2019-02-29', '2010-13-01', '+10000-01-01', '+2010-01-01', '12345-01-01',
+        '-0200-01-01', '-0000-01-01', '2010-12', '2010-00', '2010-13', '-200-10', '2010-1', '2010-12-1',
+        '2010', '-200', '-35000000', '999999999', '1000000000', '-0', '0', '+2010', ' 2010', '2010 ', '', 'not a date',
+        null
+    ]
+    expected = parseWithFormatter(input)
+  }
+
+  def 'classifies the precision and fields of #input'() {
+    when:
+    def scanner = new DateScanner()
+    scanner.scan(input)
+
+    then:
+    scanner.precision == precision
+    scanner.year == year
+    scanner.month == month
+    scanner.dayOfMonth == day
+    scanner.zoned == zoned
+    scanner.offsetSeconds == offset
+
+    where:
+    input                       | precision         | year        | month | day | zoned | offset
+    '1975-06-15T12:30:00-05:00' | ChronoUnit.NANOS  | 1975        | 6     | 15  | true  | -18000
+    '1975-06-15T12:30:00'       | ChronoUnit.NANOS  | 1975        | 6     | 15  | false | 0
+    '1975-06-15'                | ChronoUnit.DAYS   | 1975        | 6     | 15  | false | 0
+    '-1975-06'                  | ChronoUnit.MONTHS | -1975       | 6     | 1   | false | 0
+    '-35000000'                 | ChronoUnit.YEARS  | -35_000_000 | 1     | 1   | false | 0
+    'ABC'                       | null              | 0           | 1     | 1   | false | 0
+  }
+
+  def 'notes whether #input is a whole number'() {
+    when:
+    def scanner = new DateScanner()
+    def scanned = scanner.scan(input)
+
+    then:
+    !scanned
+    scanner.integral == integral
+    scanner.integralValue == value
+
+    where:
+    input                  | integral | value
+    '-1000000000'          | true     | -1_000_000_000L
+    '+1000000000'          | true     | 1_000_000_000L
+    '-9223372036854775808' | true     | Long.MIN_VALUE
+    '9223372036854775808'  | false    | 0
+    '1000000000.5'         | false    | 0
+    '-'                    | false    | 0
+  }
+
+  def 'can be reused for many dates'() {
+    given:
+    def scanner = new DateScanner()
+
+    expect:
+    scanner.scan('2010-12-30T00:00:00.5+01:00')
+    scanner.scan('2010')
+    scanner.precision == ChronoUnit.YEARS
+    scanner.month == 1
+    scanner.nano == 0
+    !scanner.zoned
+    !scanner.scan('ABC')
+    scanner.precision == null
+  }
+}
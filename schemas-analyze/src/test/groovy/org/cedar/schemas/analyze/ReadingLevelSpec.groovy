@@ -3,11 +3,25 @@ package org.cedar.schemas.analyze
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.util.regex.Pattern
+
 import static spock.util.matcher.HamcrestMatchers.closeTo
 
 @Unroll
 class ReadingLevelSpec extends Specification {
 
+  // the pattern syllables were counted with before SyllableCounter
+  static final Pattern SYLLABLE_PATTERN = Pattern.compile('[aiouy]+e*|e(?!d$|ly).|[td]ed|le$')
+
+  static long syllablesByPattern(String word) {
+    def matcher = SYLLABLE_PATTERN.matcher(word.toLowerCase())
+    long count = 0
+    while (matcher.find()) {
+      count++
+    }
+    return count
+  }
+
   def 'words in a few sentences'() {
     when:
     def words = ReadingLevel.splitIntoWords('A few separate. Sentences! And such?! That are not too confusing? Hopefully... Anyway.')
@@ -74,4 +88,79 @@ class ReadingLevelSpec extends Specification {
     'where is the negative reading ease score from?' | -41.98       | 20.85         | false                       | 'Important Organization\'s Important File\'s Super Important Title'
     'A GHRSST description'                           | 20.6         | 16.51         | false                       | 'A Group for High Resolution Sea Surface Temperature (GHRSST) Level 2P dataset based on multi-channel sea surface temperature (SST) retrievals generated in real-time from the Infrared Atmospheric Sounding Interferometer (IASI) on the European Meteorological Operational-B (MetOp-B)satellite (launched 17 Sep 2012). The European Organization for the Exploitation of Meteorological Satellites (EUMETSAT),Ocean and Sea Ice Satellite Application Facility (OSI SAF) is producing SST products in near realtime from METOP/IASI. The Infrared Atmospheric Sounding Interferometer (IASI) measures inthe infrared part of the electromagnetic spectrum at a horizontal resolution of 12 km at nadir up to40km over a swath width of about 2,200 km. With 14 orbits in a sun-synchronous mid-morningorbit (9:30 Local Solar Time equator crossing, descending node) global observations can beprovided twice a day. The SST retrieval is performed and provided by the IASI L2 processor atEUMETSAT headquarters. The product format is compliant with the GHRSST Data Specification(GDS) version 2.'
   }
+
+  def 'counts syllables as the pattern does for every word of up to 6 letters like #letters'() {
+    given:
+    def words = ['']
+    def differences = []
+
+    when:
+    6.times {
+      words = words.collectMany { word -> letters.collect { word + it } }
+      words.each { word ->
+        if (ReadingLevel.findSyllablesInWord(word) != syllablesByPattern(word)) {
+          differences << word
+        }
+      }
+    }
+
+    then:
+    differences.empty
+
+    where:
+    letters << [
+        ['a', 'e', 'd', 'l', 't', 'y'],
+        ['e', 'E', 'D', 'L', 'y', 'x', '\n', '\r'],
+        ['e', 'l', 'd', 'i', '\u0130', '\u0085', '\u2028', ')']
+    ]
+  }
+
+  def 'counts syllables as the pattern does for the words of the test metadata'() {
+    given:
+    def text = ClassLoader.systemClassLoader.getResourceAsStream('test-iso-metadata.xml').text
+    def words = text.split(/\s+/)
+
+    expect:
+    words.size() > 1000
+    words.findAll { ReadingLevel.findSyllablesInWord(it) != syllablesByPattern(it) }.empty
+    ReadingLevel.countSyllables(text, 0, text.length()) ==
+        ReadingLevel.splitIntoWords(text).collect { syllablesByPattern(it) }.sum()
+  }
+
+  def 'counts the syllables of #description within a text'() {
+    given:
+    def text = 'The tested table: freely added'
+
+    expect:
+    ReadingLevel.countSyllablesInWord(text, start, end) == ReadingLevel.findSyllablesInWord(text.substring(start, end))
+    ReadingLevel.countSyllables(text, start, end) == ReadingLevel.totalSyllables(text.substring(start, end))
+
+    where:
+    description      | start | end
+    'a word'         | 4     | 10
+    'a word ending'  | 4     | 9
+    'the last word'  | 25    | 30
+    'a few words'    | 0     | 17
+    'nothing'        | 3     | 3
+  }
+
+  def 'rejects counting syllables from #start to #end'() {
+    when:
+    ReadingLevel.countSyllablesInWord('word', start, end)
+
+    then:
+    thrown(IndexOutOfBoundsException)
+
+    when:
+    ReadingLevel.countSyllables('word', start, end)
+
+    then:
+    thrown(IndexOutOfBoundsException)
+
+    where:
+    start | end
+    -1    | 2
+    0     | 5
+    3     | 2
+  }
 }
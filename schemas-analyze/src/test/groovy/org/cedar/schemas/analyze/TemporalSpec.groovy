@@ -124,6 +124,9 @@ class TemporalSpec extends Specification {
     BOUNDED        | 'start and end both paleo and start before end'         | '-2000000000'          | '-1000000000'
     BOUNDED        | 'start valid LT end valid but years less than 4 digits' | '-900'                 | '100-01-01'
     BACKWARDS      | 'start and end both paleo and start after end'          | '-1000000000'          | '-2000000000'
+    INSTANT        | 'start and end both the same paleo year'                | '-1000000000'          | '-1000000000'
+    BACKWARDS      | 'start is an offset date-time after end in UTC'         | '2010-01-01T20:00-05:00' | '2010-01-02T00:30Z'
+    BOUNDED        | 'start is before an offset date-time end in UTC'        | '2010-01-02T00:30Z'    | '2010-01-01T20:00-05:00'
     INSTANT        | 'start and end both same instant'                       | '2000-01-01T00:00:00Z' | '2000-01-01T00:00:00Z'
     ONGOING        | 'start exists but not end'                              | '2000-01-01T00:00:00Z' | ''
     INVALID        | 'start does not exist but end does'                     | ''                     | '2000-01-01T00:00:00Z'
@@ -0,0 +1,54 @@
+package org.cedar.schemas.analyze
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+@Unroll
+class TextStatisticsSpec extends Specification {
+
+  def 'counts #description as the split text does'() {
+    when:
+    def statistics = TextStatistics.of(text)
+    def words = ReadingLevel.splitIntoWords(text)
+
+    then:
+    statistics.sentences == ReadingLevel.splitIntoSentences(text).length
+    statistics.words == words.length
+    statistics.syllables == words.collect { ReadingLevel.findSyllablesInWord(it) }.sum(0L)
+
+    where:
+    description                   | text
+    'a few sentences'             | 'A few separate. Sentences! And such?! That are not too confusing? Hopefully... Anyway.'
+    'an empty text'               | ''
+    'only whitespace'             | ' \t\n'
+    'only breaks'                 | '. ! ? '
+    'a leading break'             | '. Then the rest'
+    'trailing whitespace'         | 'The end.  \n'
+    'repeated whitespace'         | 'Spaced  out\t\twords'
+    'punctuation within words'    | 'Multi-channel (GHRSST) sea-surface temperature, e.g. level 4'
+    'non-ASCII letters'           | 'Café naïve Kelvin İstanbul'
+    'endings of words'            | 'The tested table bled only freely; added lead sled'
+  }
+
+  def 'scores #description as ReadingLevel does'() {
+    when:
+    def statistics = TextStatistics.of(text)
+
+    then:
+    statistics.readingEase == ReadingLevel.FleschReadingEaseScore(text)
+    statistics.gradeLevel == ReadingLevel.FleschKincaidReadingGradeLevel(text)
+    ReadingLevel.FleschReadingEaseScore(statistics) == statistics.readingEase
+    ReadingLevel.FleschKincaidReadingGradeLevel(statistics) == statistics.gradeLevel
+
+    where:
+    description     | text
+    'a sentence'    | 'The cat sat on the mat.'
+    'a few'         | 'A few separate. Sentences! And such?! That are not too confusing? Hopefully... Anyway.'
+  }
+
+  def 'has the totals of a few sentences'() {
+    expect:
+    TextStatistics.of('A few separate. Sentences! And such?! That are not too confusing? Hopefully... Anyway.').toString() ==
+        'TextStatistics{sentences=6, words=13, syllables=24}'
+  }
+}
@@ -2,6 +2,7 @@ plugins {
   groovy
   jacoco
   id("com.github.davidmc24.gradle.plugin.avro").version("1.5.0")
+  id("me.champeau.jmh").version("0.6.8")
   `java-library`
   `maven-publish`
 }
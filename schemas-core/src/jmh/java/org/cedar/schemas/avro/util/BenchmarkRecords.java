@@ -0,0 +1,83 @@
+package org.cedar.schemas.avro.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cedar.schemas.avro.psi.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds representative records for the benchmarks in this package.
+ */
+class BenchmarkRecords {
+
+  /**
+   * @param size The number of keywords, links, and responsible parties to include
+   * @return A ParsedRecord with a populated Discovery
+   */
+  static ParsedRecord parsedRecord(int size) {
+    List<KeywordsElement> keywords = new ArrayList<>();
+    List<Link> links = new ArrayList<>();
+    List<ResponsibleParty> parties = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      keywords.add(KeywordsElement.newBuilder()
+          .setValues(Arrays.asList("EARTH SCIENCE > OCEANS > " + i, "Sea Surface Temperature " + i))
+          .setType(i % 2 == 0 ? "theme" : null)
+          .setNamespace("GCMD Science Keywords")
+          .build());
+      links.add(Link.newBuilder()
+          .setLinkName("Link " + i)
+          .setLinkUrl("https://www.example.com/data/" + i)
+          .setLinkProtocol("HTTPS")
+          .setLinkFunction("download")
+          .build());
+      parties.add(ResponsibleParty.newBuilder()
+          .setIndividualName("Person " + i)
+          .setOrganizationName("Important Organization")
+          .setRole("pointOfContact")
+          .setEmail("person" + i + "@example.com")
+          .build());
+    }
+    Discovery discovery = Discovery.newBuilder()
+        .setFileIdentifier("gov.super.important:FILE-ID")
+        .setParentIdentifier("gov.super.important:PARENT-ID")
+        .setHierarchyLevelName("granule")
+        .setTitle("Important Organization's Important File's Super Important Title")
+        .setDescription("Wall of overly detailed, super informative, extra important text.")
+        .setKeywords(keywords)
+        .setTopicCategories(Arrays.asList("oceans", "climatologyMeteorologyAtmosphere"))
+        .setTemporalBounding(TemporalBounding.newBuilder()
+            .setBeginDate("2005-05-09T00:00:00Z")
+            .setEndDate("2010-10-01")
+            .build())
+        .setLinks(links)
+        .setResponsibleParties(parties)
+        .setDsmmAccessibility(4)
+        .setDsmmUsability(3)
+        .build();
+    return ParsedRecord.newBuilder()
+        .setType(RecordType.granule)
+        .setDiscovery(discovery)
+        .setFileInformation(FileInformation.newBuilder()
+            .setName("file.nc")
+            .setSize(42)
+            .setChecksums(Arrays.asList(Checksum.newBuilder().setAlgorithm(ChecksumAlgorithm.MD5).setValue("abc").build()))
+            .build())
+        .build();
+  }
+
+  /**
+   * @param size The number of keywords, links, and responsible parties to include
+   * @return The plain JSON form of {@link #parsedRecord(int)}, as a generic map
+   */
+  static Map parsedRecordMap(int size) throws IOException {
+    Map map = new ObjectMapper().readValue(AvroUtils.avroToJson(parsedRecord(size)), Map.class);
+    // the default json parsing reads floats as doubles, which the lenient coercion does not narrow
+    ((Map) map.get("discovery")).remove("dsmmAverage");
+    return map;
+  }
+
+}
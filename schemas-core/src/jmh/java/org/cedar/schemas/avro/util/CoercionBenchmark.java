@@ -0,0 +1,278 @@
+package org.cedar.schemas.avro.util;
+
+import org.apache.avro.JsonProperties;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.specific.SpecificFixed;
+import org.cedar.schemas.avro.psi.ParsedRecord;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the compiled coercion plans behind {@link AvroUtils#mapToAvro(Map, Class)} with the
+ * schema-walking implementation they replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoercionBenchmark {
+
+  @Param({"1", "50"})
+  int size;
+
+  Map input;
+
+  @Setup
+  public void setup() throws Exception {
+    input = BenchmarkRecords.parsedRecordMap(size);
+  }
+
+  @Benchmark
+  public ParsedRecord compiledPlan() {
+    return AvroUtils.mapToAvro(input, ParsedRecord.class);
+  }
+
+  @Benchmark
+  public ParsedRecord schemaWalk() {
+    return SchemaWalk.mapToAvro(input, ParsedRecord.class);
+  }
+
+  /**
+   * The coercion as it was implemented before compiled plans, copied verbatim from {@link AvroUtils} as the benchmark
+   * baseline, including its eager debug logging and uncached class lookups
+   */
+  static class SchemaWalk {
+    static private Logger log = LoggerFactory.getLogger(AvroUtils.class);
+
+    public static <T extends IndexedRecord> T mapToAvro(Map input, Class<T> avroClass) {
+      if (input == null) { return null; }
+      log.debug("Transforming a type map to Avro type [" + avroClass + "]");
+      try {
+        T instance = avroClass.getDeclaredConstructor().newInstance();
+        Schema schema = instance.getSchema();
+        List<Schema.Field> fields = schema.getFields();
+        log.debug("Schema "+schema.getName()+" has fields "+fields.toArray());
+        fields.forEach(f -> {
+          Object value = input.containsKey(f.name()) ? input.get(f.name()) : f.defaultVal();
+          log.debug("Input "+(input.containsKey(f.name()) ? "contains" : "does NOT contain")+" field "+f.name());
+          instance.put(f.pos(), coerceValueForSchema(value, f.schema()));
+        });
+        log.debug("Finished map to avro.");
+        return instance;
+      }
+      catch (Exception e) {
+        throw new IllegalStateException("Unable to build Avro object of type " + avroClass, e);
+      }
+    }
+
+    public static Object coerceValueForSchema(Object value, Schema schema) {
+      log.debug("coercing value [" + value + "] for schema [" + schema.getFullName() + "] for schema type [" +
+              schema.getType() + "]");
+      switch(schema.getType()) {
+        case RECORD:
+          if (value instanceof Map) {
+            try {
+              Class<? extends IndexedRecord> recordClass = findAvroClass(schema.getFullName());
+              return mapToAvro((Map) value, recordClass);
+            }
+            catch(Exception e) {
+              log.debug("Unable to build record of type " + schema.getFullName(), e);
+              throw new UnsupportedOperationException("Unable to build record of type " + schema.getFullName(), e);
+            }
+          }
+          break;
+
+        case ENUM:
+          try {
+            Class<? extends Enum> enumClass = findEnum(schema.getFullName());
+            if (enumClass.isAssignableFrom(value.getClass())) {
+              return value;
+            }
+            else {
+              return Enum.valueOf(enumClass, value.toString());
+            }
+          }
+          catch (Exception e) {
+            log.debug("Unable to build enum of type " + schema.getFullName(), e);
+            throw new UnsupportedOperationException("Unable to build enum of type " + schema.getFullName(), e);
+          }
+
+        case ARRAY:
+          if (value instanceof List) {
+            Schema elementType = schema.getElementType();
+            return ((List) value).stream().map(v -> coerceValueForSchema(v, elementType)).collect(Collectors.toList());
+          }
+          break;
+
+        case MAP:
+          if (value instanceof Map) {
+            Schema valueType = schema.getValueType();
+            Map mapValue = (Map) value;
+            Map result = new LinkedHashMap();
+            mapValue.keySet().forEach(key -> result.put(key, coerceValueForSchema(mapValue.get(key), valueType)));
+            return result;
+          }
+          break;
+
+        case UNION:
+          log.debug("Recursively trying to coerce the value into one of these schemas types: "+schema.getTypes());
+          for (Schema type : schema.getTypes()) {
+            try {
+              return coerceValueForSchema(value, type);
+            }
+            catch (Exception e) {
+              log.debug("tried and failed to coerce value for specific type " + type, e);
+            }
+          }
+
+        case FIXED:
+          if (value instanceof byte[]) {
+            try {
+              Class<? extends SpecificFixed> fixedClass = findAvroFixed(schema.getFullName());
+              return fixedClass.getDeclaredConstructor(byte[].class).newInstance(value);
+            }
+            catch (Exception e) {
+              log.debug("Unable to build fixed of type " + schema.getFullName(), e);
+              throw new UnsupportedOperationException("Unable to build fixed of type " + schema.getFullName(), e);
+            }
+          }
+          break;
+
+        case STRING:
+          return value.toString();
+
+        case BYTES:
+          if (value instanceof byte[]) {
+            return value;
+          }
+          else if (value instanceof String) {
+            return ((String) value).getBytes();
+          }
+          break;
+
+        case INT:
+          if (value instanceof Integer) {
+            return value;
+          }
+          else if (value instanceof BigInteger) {
+            return ((BigInteger) value).intValueExact();
+          }
+          if (value instanceof String) {
+            return Integer.parseInt((String) value);
+          }
+          break;
+
+        case LONG:
+          if (value instanceof Long) {
+            return value;
+          }
+          else if (value instanceof Integer) {
+            return ((Integer) value).longValue();
+          }
+          else if (value instanceof BigInteger) {
+            return ((BigInteger) value).longValueExact();
+          }
+          else if (value instanceof String) {
+            return Long.parseLong((String) value);
+          }
+          break;
+
+        case FLOAT:
+          if (value instanceof Float) {
+            return value;
+          }
+          else if (value instanceof BigDecimal) {
+            Float result = ((BigDecimal) value).floatValue();
+            if (!result.equals(Float.NEGATIVE_INFINITY) && !result.equals(Float.POSITIVE_INFINITY)) {
+              return result;
+            }
+          }
+          else if (value instanceof String) {
+            return Float.parseFloat((String) value);
+          }
+          break;
+
+        case DOUBLE:
+          if (value instanceof Double) {
+            return value;
+          }
+          else if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+          }
+          else if (value instanceof BigDecimal) {
+            Double result = ((BigDecimal) value).doubleValue();
+            if (!result.equals(Double.NEGATIVE_INFINITY) && !result.equals(Double.POSITIVE_INFINITY)) {
+              return result;
+            }
+          }
+          else if (value instanceof String) {
+            return Double.parseDouble((String) value);
+          }
+          break;
+
+        case BOOLEAN:
+          if (value instanceof Boolean) {
+            return value;
+          }
+          else if (value instanceof String) {
+            return Boolean.parseBoolean((String) value);
+          }
+          break;
+
+        case NULL:
+          if (value == null || value instanceof JsonProperties.Null) {
+            return null;
+          }
+          break;
+      }
+      throw new UnsupportedOperationException("Unable to coerce value [" + value + "] of type ["
+          + (value == null ? "null" : value.getClass()) + "] for schema [" + schema.getFullName() + "] of schema type ["+schema.getType()+"]");
+    }
+
+    public static <T extends IndexedRecord> Class<T> findAvroClass(String className) throws ClassNotFoundException {
+      Class clazz = AvroUtils.class.getClassLoader().loadClass(className);
+      if (IndexedRecord.class.isAssignableFrom(clazz)) {
+        return clazz;
+      }
+      else {
+        log.debug("Class " + className + " is not an Avro IndexedRecord class");
+        throw new IllegalArgumentException("Class " + className + " is not an Avro IndexedRecord class");
+      }
+    }
+
+    public static <T extends Enum> Class<T> findEnum(String className) throws ClassNotFoundException {
+      Class clazz = AvroUtils.class.getClassLoader().loadClass(className);
+      if (clazz.isEnum()) {
+        return clazz;
+      }
+      else {
+        log.debug("Class " + className + " is not an enumeration");
+        throw new IllegalArgumentException("Class " + className + " is not an enumeration");
+      }
+    }
+
+    public static <T extends SpecificFixed> Class<T> findAvroFixed(String className) throws ClassNotFoundException {
+      Class clazz = AvroUtils.class.getClassLoader().loadClass(className);
+      if (SpecificFixed.class.isAssignableFrom(clazz)) {
+        return clazz;
+      }
+      else {
+        log.debug("Class " + className + " is not a fixed");
+        throw new IllegalArgumentException("Class " + className + " is not a fixed");
+      }
+    }
+  }
+
+}
@@ -0,0 +1,66 @@
+package org.cedar.schemas.avro.util;
+
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.io.JsonEncoder;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.cedar.schemas.avro.psi.ParsedRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link AvroJsonWriter} with {@link AvroUtils#avroToJson} and Avro's own {@link JsonEncoder}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonWriterBenchmark {
+
+  @Param({"1", "50"})
+  int size;
+
+  ParsedRecord record;
+  DatumWriter<ParsedRecord> datumWriter;
+
+  @Setup
+  public void setup() {
+    record = BenchmarkRecords.parsedRecord(size);
+    datumWriter = new SpecificDatumWriter<>(ParsedRecord.class);
+  }
+
+  @Benchmark
+  public String avroToJson() {
+    return AvroUtils.avroToJson(record);
+  }
+
+  @Benchmark
+  public byte[] avroJsonEncoder() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JsonEncoder encoder = EncoderFactory.get().jsonEncoder(ParsedRecord.getClassSchema(), out);
+    datumWriter.write(record, encoder);
+    encoder.flush();
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] plainWriter() throws IOException {
+    return AvroJsonWriter.plain().toJsonBytes(record);
+  }
+
+  @Benchmark
+  public byte[] avroWriter() throws IOException {
+    return AvroJsonWriter.avro().toJsonBytes(record);
+  }
+
+  @Benchmark
+  public byte[] plainWriterWithoutNulls() throws IOException {
+    return AvroJsonWriter.plain().omitNulls(true).toJsonBytes(record);
+  }
+
+}
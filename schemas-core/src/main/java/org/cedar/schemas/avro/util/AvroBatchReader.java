@@ -0,0 +1,368 @@
+package org.cedar.schemas.avro.util;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Converts batches of JSON documents into Avro objects of a single schema, in parallel.
+ * <br>
+ * Documents are split into chunks which are decoded concurrently using the shared, per-schema infrastructure
+ * of {@link AvroJsonReader} (or the compiled plans behind {@link AvroUtils#jsonToAvroLenient(String, Schema)}),
+ * and a failure to decode one document is recorded against its index rather than aborting the batch.
+ * <br>
+ * A {@link Result} holds every record of a batch, so it suits batches which fit in memory. Larger inputs, e.g. the
+ * backfill of an archive, can be streamed to a {@link Listener} with {@link #read(Stream, Listener)} or
+ * {@link #readLines(InputStream, Listener)}, which read at most {@link #maxInFlight(int) maxInFlight} documents ahead
+ * of the listener.
+ * <br>
+ * Instances are immutable and safe to share; the {@code lenient}, {@code parallelism}, {@code maxInFlight} and
+ * {@code executor} methods return a new reader with the given setting.
+ *
+ * @param <T> The type of Avro object produced
+ */
+public class AvroBatchReader<T extends GenericRecord> {
+
+  private static final int CHUNKS_PER_THREAD = 4;
+  private static final int DEFAULT_MAX_IN_FLIGHT = 10_000;
+
+  // shared by every reader of the same parallelism; idle fork-join workers exit on their own
+  private static final Map<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>();
+
+  private final Schema schema;
+  private final boolean lenient;
+  private final int parallelism;
+  private final int maxInFlight;
+  private final Executor executor;
+
+  private AvroBatchReader(Schema schema, boolean lenient, int parallelism, int maxInFlight, Executor executor) {
+    this.schema = schema;
+    this.lenient = lenient;
+    this.parallelism = parallelism;
+    this.maxInFlight = maxInFlight;
+    this.executor = executor;
+  }
+
+  /**
+   * @param schema The schema to read
+   * @return A strict reader for the schema which runs on the common fork-join pool
+   */
+  public static <T extends GenericRecord> AvroBatchReader<T> forSchema(Schema schema) {
+    return new AvroBatchReader<>(schema, false, ForkJoinPool.getCommonPoolParallelism(), DEFAULT_MAX_IN_FLIGHT, null);
+  }
+
+  /**
+   * @param lenient If true, documents are read with the rules of {@link AvroUtils#jsonToAvroLenient(String, Schema)},
+   *                otherwise they must be valid Avro JSON as read by {@link AvroUtils#jsonToAvro(String, Schema)}
+   * @return A copy of this reader with the given setting
+   */
+  public AvroBatchReader<T> lenient(boolean lenient) {
+    return new AvroBatchReader<>(schema, lenient, parallelism, maxInFlight, executor);
+  }
+
+  /**
+   * @param parallelism The number of documents to decode concurrently. Without an {@link #executor(Executor)}, the
+   *                    documents are decoded on a fork-join pool of this size, which is created once and shared by
+   *                    every reader of the same parallelism.
+   * @return A copy of this reader with the given setting
+   */
+  public AvroBatchReader<T> parallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive but was " + parallelism);
+    }
+    return new AvroBatchReader<>(schema, lenient, parallelism, maxInFlight, executor);
+  }
+
+  /**
+   * @param maxInFlight The most documents a streamed read holds at once, i.e. reads ahead of its listener. Defaults
+   *                    to 10,000.
+   * @return A copy of this reader with the given setting
+   */
+  public AvroBatchReader<T> maxInFlight(int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("Max in flight must be positive but was " + maxInFlight);
+    }
+    return new AvroBatchReader<>(schema, lenient, parallelism, maxInFlight, executor);
+  }
+
+  /**
+   * @param executor The executor to decode documents with, or null to use a fork-join pool
+   * @return A copy of this reader with the given setting
+   */
+  public AvroBatchReader<T> executor(Executor executor) {
+    return new AvroBatchReader<>(schema, lenient, parallelism, maxInFlight, executor);
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /**
+   * @param documents The JSON documents to read
+   * @return The records read, in the same order as the documents, and any errors
+   */
+  public Result<T> read(List<String> documents) {
+    if (documents == null || documents.isEmpty()) {
+      return new Result<>(Collections.emptyList(), Collections.emptyMap());
+    }
+    return withExecutor(executor -> read(documents, executor));
+  }
+
+  /**
+   * @param documents The JSON documents to read
+   * @return The records read, in the same order as the documents, and any errors
+   */
+  public Result<T> read(Stream<String> documents) {
+    List<T> records = new ArrayList<>();
+    Map<Integer, Exception> errors = new TreeMap<>();
+    read(documents, new Listener<T>() {
+      @Override
+      public void onRecord(long index, T record) {
+        records.add(record);
+      }
+
+      @Override
+      public void onError(long index, Exception error) {
+        records.add(null);
+        errors.put((int) index, error);
+      }
+    });
+    return new Result<>(Collections.unmodifiableList(records), Collections.unmodifiableMap(errors));
+  }
+
+  /**
+   * Reads documents in small batches, keeping at most {@link #maxInFlight(int) maxInFlight} of them read and not yet
+   * passed to the listener. The oldest batch is handed to the listener as soon as it is decoded, and a new one is read
+   * and submitted in its place, so that the workers keep decoding while the listener runs and neither the documents
+   * nor the records are all held at once.
+   *
+   * @param documents The JSON documents to read, which are consumed lazily
+   * @param listener  Receives every record or error, in the same order as the documents, on the calling thread
+   * @return The number of documents read
+   */
+  public long read(Stream<String> documents, Listener<? super T> listener) {
+    Iterator<String> iterator = documents.iterator();
+    int batchSize = Math.max(1, maxInFlight / (parallelism * CHUNKS_PER_THREAD));
+    return withExecutor(executor -> {
+      Deque<Batch> inFlight = new ArrayDeque<>();
+      int inFlightDocuments = 0;
+      long index = 0;
+      while (iterator.hasNext()) {
+        if (inFlightDocuments + batchSize > maxInFlight && !inFlight.isEmpty()) {
+          inFlightDocuments -= deliver(inFlight.removeFirst(), listener);
+          continue;
+        }
+        List<String> batch = new ArrayList<>(batchSize);
+        while (batch.size() < batchSize && iterator.hasNext()) {
+          batch.add(iterator.next());
+        }
+        inFlight.addLast(submit(batch, index, executor));
+        inFlightDocuments += batch.size();
+        index += batch.size();
+      }
+      while (!inFlight.isEmpty()) {
+        deliver(inFlight.removeFirst(), listener);
+      }
+      return index;
+    });
+  }
+
+  private Batch submit(List<String> documents, long start, Executor executor) {
+    Batch batch = new Batch(start, documents.size());
+    batch.decoded = CompletableFuture.runAsync(() -> {
+      for (int i = 0; i < documents.size(); i++) {
+        try {
+          batch.records[i] = decode(documents.get(i));
+        }
+        catch (Exception e) {
+          batch.errors[i] = e;
+        }
+      }
+    }, executor);
+    return batch;
+  }
+
+  private int deliver(Batch batch, Listener<? super T> listener) {
+    batch.decoded.join();
+    for (int i = 0; i < batch.records.length; i++) {
+      if (batch.errors[i] != null) {
+        listener.onError(batch.start + i, batch.errors[i]);
+      }
+      else {
+        listener.onRecord(batch.start + i, (T) batch.records[i]);
+      }
+    }
+    return batch.records.length;
+  }
+
+  /**
+   * Reads newline-delimited JSON, one document per line. Blank lines are skipped and are not counted
+   * towards the indices of the result.
+   *
+   * @param ndjson A stream of UTF-8 encoded, newline-delimited JSON
+   * @return The records read, in the same order as the documents, and any errors
+   */
+  public Result<T> readLines(InputStream ndjson) throws IOException {
+    try {
+      return read(lines(ndjson));
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Streams newline-delimited JSON to a listener, as {@link #read(Stream, Listener)} does. Blank lines are skipped
+   * and are not counted towards the indices.
+   *
+   * @param ndjson   A stream of UTF-8 encoded, newline-delimited JSON
+   * @param listener Receives every record or error, in the same order as the documents, on the calling thread
+   * @return The number of documents read
+   */
+  public long readLines(InputStream ndjson, Listener<? super T> listener) throws IOException {
+    try {
+      return read(lines(ndjson), listener);
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static Stream<String> lines(InputStream ndjson) {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+    return reader.lines().filter(line -> !line.trim().isEmpty());
+  }
+
+  private <R> R withExecutor(Function<Executor, R> task) {
+    if (executor != null) {
+      return task.apply(executor);
+    }
+    if (parallelism == ForkJoinPool.getCommonPoolParallelism()) {
+      return task.apply(ForkJoinPool.commonPool());
+    }
+    return task.apply(pools.computeIfAbsent(parallelism, ForkJoinPool::new));
+  }
+
+  private Result<T> read(List<String> documents, Executor executor) {
+    int size = documents.size();
+    Object[] records = new Object[size];
+    Map<Integer, Exception> errors = new ConcurrentHashMap<>();
+    int chunkSize = Math.max(1, (size + parallelism * CHUNKS_PER_THREAD - 1) / (parallelism * CHUNKS_PER_THREAD));
+
+    List<CompletableFuture<Void>> chunks = new ArrayList<>();
+    for (int start = 0; start < size; start += chunkSize) {
+      int from = start;
+      int to = Math.min(size, start + chunkSize);
+      chunks.add(CompletableFuture.runAsync(() -> {
+        for (int i = from; i < to; i++) {
+          try {
+            records[i] = decode(documents.get(i));
+          }
+          catch (Exception e) {
+            errors.put(i, e);
+          }
+        }
+      }, executor));
+    }
+    CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).join();
+
+    List<T> recordList = (List<T>) (List<?>) Arrays.asList(records);
+    return new Result<>(Collections.unmodifiableList(recordList), Collections.unmodifiableMap(new TreeMap<>(errors)));
+  }
+
+  private T decode(String document) throws Exception {
+    if (document == null) {
+      throw new IllegalArgumentException("Document is null");
+    }
+    return lenient ?
+        AvroUtils.jsonToAvroLenient(document, schema) :
+        AvroJsonReader.<T>forSchema(schema).read(document);
+  }
+
+  /**
+   * Documents of a streamed read being decoded together, whose outcomes are complete once {@code decoded} is
+   */
+  private static class Batch {
+    final long start;
+    final Object[] records;
+    final Exception[] errors;
+    CompletableFuture<Void> decoded;
+
+    Batch(long start, int size) {
+      this.start = start;
+      this.records = new Object[size];
+      this.errors = new Exception[size];
+    }
+  }
+
+  /**
+   * Receives the outcome of each document of a streamed read
+   *
+   * @param <T> The type of Avro object produced
+   */
+  public interface Listener<T> {
+    /**
+     * @param index  The index of the document
+     * @param record The record it was decoded into
+     */
+    void onRecord(long index, T record);
+
+    /**
+     * @param index The index of the document
+     * @param error Why it could not be decoded
+     */
+    void onError(long index, Exception error);
+  }
+
+  /**
+   * The outcome of reading a batch of documents
+   *
+   * @param <T> The type of Avro object produced
+   */
+  public static class Result<T> {
+    private final List<T> records;
+    private final Map<Integer, Exception> errors;
+
+    private Result(List<T> records, Map<Integer, Exception> errors) {
+      this.records = records;
+      this.errors = errors;
+    }
+
+    /**
+     * @return One entry per document, in input order, which is null where the document failed to decode, including
+     *         where the document itself was null
+     */
+    public List<T> getRecords() {
+      return records;
+    }
+
+    /**
+     * @return The errors for documents which failed to decode or were null, keyed and sorted by document index
+     */
+    public Map<Integer, Exception> getErrors() {
+      return errors;
+    }
+
+    public boolean hasErrors() {
+      return !errors.isEmpty();
+    }
+
+    public int size() {
+      return records.size();
+    }
+  }
+
+}
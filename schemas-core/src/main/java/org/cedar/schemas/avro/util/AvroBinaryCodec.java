@@ -0,0 +1,287 @@
+package org.cedar.schemas.avro.util;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.message.BinaryMessageDecoder;
+import org.apache.avro.message.BinaryMessageEncoder;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes and decodes Avro objects of a single schema in the Avro binary format, without going through JSON.
+ * <br>
+ * Two forms are supported: plain binary, where the reader must already know the schema, and Avro single-object
+ * encoding, where each message is prefixed with the 64-bit fingerprint of its writer schema (the same format as
+ * the generated {@code toByteBuffer} and {@code fromByteBuffer} methods).
+ * <br>
+ * Codecs are cached per schema and are safe to share between threads. Encoders, decoders and output buffers are
+ * reused per thread. A codec which also decodes messages from other versions of its schema is created with
+ * {@link #withWriterSchema(Schema)}, which leaves the shared codec unchanged.
+ *
+ * @param <T> The type of Avro object encoded
+ */
+public class AvroBinaryCodec<T extends IndexedRecord> {
+
+  private static final int MAX_RETAINED_BUFFER = 1 << 20;
+  private static final Map<Schema, AvroBinaryCodec<?>> codecs = new ConcurrentHashMap<>();
+
+  private final Schema schema;
+  private final long fingerprint;
+  private final List<Schema> writerSchemas;
+  private final SpecificDatumWriter<T> datumWriter;
+  private final SpecificDatumReader<T> datumReader;
+  private final BinaryMessageEncoder<T> messageEncoder;
+  private final BinaryMessageDecoder<T> messageDecoder;
+  private final ThreadLocal<ReusableOutputStream> buffers = ThreadLocal.withInitial(ReusableOutputStream::new);
+  private final ThreadLocal<BinaryEncoder> encoders = new ThreadLocal<>();
+  private final ThreadLocal<BinaryDecoder> decoders = new ThreadLocal<>();
+
+  private AvroBinaryCodec(Schema schema) {
+    this(schema, Collections.emptyList());
+  }
+
+  private AvroBinaryCodec(Schema schema, List<Schema> writerSchemas) {
+    SpecificData model = SpecificData.getForSchema(schema);
+    this.schema = schema;
+    this.writerSchemas = writerSchemas;
+    this.fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+    this.datumWriter = new SpecificDatumWriter<>(schema, model);
+    this.datumReader = new SpecificDatumReader<>(schema, schema, model);
+    this.messageEncoder = new BinaryMessageEncoder<>(model, schema);
+    this.messageDecoder = new BinaryMessageDecoder<>(model, schema);
+    writerSchemas.forEach(messageDecoder::addSchema);
+  }
+
+  /**
+   * @param schema The schema to encode
+   * @return The shared codec for the schema
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends IndexedRecord> AvroBinaryCodec<T> forSchema(Schema schema) {
+    return (AvroBinaryCodec<T>) codecs.computeIfAbsent(schema, AvroBinaryCodec::new);
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /**
+   * @return The CRC-64-AVRO fingerprint of the schema, which prefixes single-object encoded messages
+   */
+  public long getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * Creates a codec which also decodes single-object encoded messages written with an older or newer version of the
+   * schema. The new codec is not cached, so callers should keep and reuse it.
+   *
+   * @param writerSchema Another version of the schema
+   * @return A new codec for the same schema, which accepts messages written with this codec's writer schemas and the
+   *         given one
+   */
+  public AvroBinaryCodec<T> withWriterSchema(Schema writerSchema) {
+    List<Schema> combined = new ArrayList<>(writerSchemas);
+    combined.add(writerSchema);
+    return new AvroBinaryCodec<>(schema, Collections.unmodifiableList(combined));
+  }
+
+  //
+  // Plain binary
+  //
+
+  public byte[] encode(T record) throws IOException {
+    if (record == null) { return null; }
+    ReusableOutputStream buffer = buffers.get();
+    buffer.reset();
+    try {
+      encode(record, buffer);
+      return buffer.toByteArray();
+    }
+    finally {
+      release(buffer);
+    }
+  }
+
+  public void encode(T record, OutputStream out) throws IOException {
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, encoders.get());
+    encoders.set(encoder);
+    try {
+      datumWriter.write(record, encoder);
+      encoder.flush();
+    }
+    catch (IOException | RuntimeException e) {
+      // a reused encoder would flush whatever it still buffers into the next output
+      encoders.remove();
+      throw e;
+    }
+  }
+
+  /**
+   * Encodes the record directly into the buffer, starting at its position and advancing it past the encoded bytes
+   *
+   * @param record The record to encode
+   * @param out The buffer to write into
+   * @throws java.nio.BufferOverflowException If the record does not fit in the remaining space, in which case the
+   *                                          position is left where it was
+   */
+  public void encode(T record, ByteBuffer out) throws IOException {
+    int start = out.position();
+    try {
+      encode(record, new ByteBufferOutputStream(out));
+    }
+    catch (IOException | RuntimeException e) {
+      out.position(start);
+      throw e;
+    }
+  }
+
+  public T decode(byte[] bytes) throws IOException {
+    return decode(bytes, null);
+  }
+
+  public T decode(byte[] bytes, T reuse) throws IOException {
+    if (bytes == null) { return null; }
+    return decode(bytes, 0, bytes.length, reuse);
+  }
+
+  /**
+   * @param bytes A buffer containing a binary encoded record
+   * @param offset The offset of the record in the buffer
+   * @param length The length of the record in the buffer
+   * @param reuse An existing object to populate and return, if possible, or null to create a new one
+   * @return The Avro object
+   */
+  public T decode(byte[] bytes, int offset, int length, T reuse) throws IOException {
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(bytes, offset, length, decoders.get());
+    decoders.set(decoder);
+    return datumReader.read(reuse, decoder);
+  }
+
+  public T decode(ByteBuffer bytes) throws IOException {
+    return decode(bytes, null);
+  }
+
+  /**
+   * Decodes the remaining bytes of the buffer, without changing its position
+   *
+   * @param bytes A buffer containing a binary encoded record
+   * @param reuse An existing object to populate and return, if possible, or null to create a new one
+   * @return The Avro object
+   */
+  public T decode(ByteBuffer bytes, T reuse) throws IOException {
+    if (bytes == null) { return null; }
+    if (bytes.hasArray()) {
+      return decode(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining(), reuse);
+    }
+    byte[] copy = new byte[bytes.remaining()];
+    bytes.duplicate().get(copy);
+    return decode(copy, 0, copy.length, reuse);
+  }
+
+  /**
+   * Decodes a single record from the stream. The decoder buffers its input, so the stream should
+   * not be read further by the caller.
+   *
+   * @param in A stream containing a binary encoded record
+   * @param reuse An existing object to populate and return, if possible, or null to create a new one
+   * @return The Avro object
+   */
+  public T decode(InputStream in, T reuse) throws IOException {
+    if (in == null) { return null; }
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(in, decoders.get());
+    decoders.set(decoder);
+    return datumReader.read(reuse, decoder);
+  }
+
+  //
+  // Single-object encoding
+  //
+
+  public ByteBuffer encodeMessage(T record) throws IOException {
+    if (record == null) { return null; }
+    return messageEncoder.encode(record);
+  }
+
+  public void encodeMessage(T record, OutputStream out) throws IOException {
+    messageEncoder.encode(record, out);
+  }
+
+  public T decodeMessage(ByteBuffer message) throws IOException {
+    return decodeMessage(message, null);
+  }
+
+  /**
+   * @param message A single-object encoded record, written with this schema or one given to
+   *                {@link #withWriterSchema(Schema)}
+   * @param reuse An existing object to populate and return, if possible, or null to create a new one
+   * @return The Avro object
+   */
+  public T decodeMessage(ByteBuffer message, T reuse) throws IOException {
+    if (message == null) { return null; }
+    return messageDecoder.decode(message, reuse);
+  }
+
+  public T decodeMessage(byte[] message) throws IOException {
+    if (message == null) { return null; }
+    return messageDecoder.decode(message, null);
+  }
+
+  public T decodeMessage(InputStream message, T reuse) throws IOException {
+    if (message == null) { return null; }
+    return messageDecoder.decode(message, reuse);
+  }
+
+  // don't hold on to the buffer of an unusually large record for the life of the thread
+  private void release(ReusableOutputStream buffer) {
+    if (buffer.array().length > MAX_RETAINED_BUFFER) {
+      buffers.remove();
+    }
+  }
+
+  private static class ByteBufferOutputStream extends OutputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferOutputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) {
+      buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+      buffer.put(bytes, offset, length);
+    }
+  }
+
+  private static class ReusableOutputStream extends ByteArrayOutputStream {
+    ReusableOutputStream() {
+      super(1024);
+    }
+
+    byte[] array() {
+      return buf;
+    }
+  }
+
+}
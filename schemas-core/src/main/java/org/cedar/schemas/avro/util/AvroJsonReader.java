@@ -0,0 +1,130 @@
+package org.cedar.schemas.avro.util;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.JsonDecoder;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.util.ByteBufferInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads Avro JSON into Avro objects of a single schema.
+ * <br>
+ * Readers are cached per schema and are safe to share between threads. The underlying {@link SpecificDatumReader}
+ * is created once per schema, and each thread reuses its own {@link JsonDecoder}, so the schema is only resolved
+ * and the decoder's grammar only built once rather than for every document.
+ *
+ * @param <T> The type of Avro object produced
+ */
+public class AvroJsonReader<T extends GenericRecord> {
+
+  private static final Map<Schema, AvroJsonReader<?>> readers = new ConcurrentHashMap<>();
+
+  private final Schema schema;
+  private final SpecificDatumReader<T> datumReader;
+  private final ThreadLocal<JsonDecoder> decoders;
+
+  private AvroJsonReader(Schema schema) {
+    this.schema = schema;
+    this.datumReader = new SpecificDatumReader<>(schema);
+    this.decoders = ThreadLocal.withInitial(() -> {
+      try {
+        return DecoderFactory.get().jsonDecoder(schema, "");
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+
+  /**
+   * @param schema The schema to read
+   * @return The shared reader for the schema
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends GenericRecord> AvroJsonReader<T> forSchema(Schema schema) {
+    return (AvroJsonReader<T>) readers.computeIfAbsent(schema, AvroJsonReader::new);
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  public T read(String json) throws IOException {
+    return read(json, null);
+  }
+
+  /**
+   * @param json The Avro JSON to read
+   * @param reuse An existing object to populate and return, if possible, or null to create a new one
+   * @return The Avro object
+   */
+  public T read(String json, T reuse) throws IOException {
+    if (json == null) { return null; }
+    return datumReader.read(reuse, decoders.get().configure(json));
+  }
+
+  public T read(InputStream json) throws IOException {
+    return read(json, null);
+  }
+
+  /**
+   * @param json A stream of Avro JSON to read, in any of the encodings detected by Jackson
+   * @param reuse An existing object to populate and return, if possible, or null to create a new one
+   * @return The Avro object
+   */
+  public T read(InputStream json, T reuse) throws IOException {
+    if (json == null) { return null; }
+    return datumReader.read(reuse, decoders.get().configure(json));
+  }
+
+  public T read(byte[] utf8Json) throws IOException {
+    return read(utf8Json, null);
+  }
+
+  public T read(byte[] utf8Json, T reuse) throws IOException {
+    if (utf8Json == null) { return null; }
+    return read(utf8Json, 0, utf8Json.length, reuse);
+  }
+
+  /**
+   * @param utf8Json A buffer containing UTF-8 encoded Avro JSON
+   * @param offset The offset of the JSON in the buffer
+   * @param length The length of the JSON in the buffer
+   * @param reuse An existing object to populate and return, if possible, or null to create a new one
+   * @return The Avro object
+   */
+  public T read(byte[] utf8Json, int offset, int length, T reuse) throws IOException {
+    if (utf8Json == null) { return null; }
+    return read(new ByteArrayInputStream(utf8Json, offset, length), reuse);
+  }
+
+  public T read(ByteBuffer utf8Json) throws IOException {
+    return read(utf8Json, null);
+  }
+
+  /**
+   * Reads the remaining bytes of the buffer, without changing its position
+   *
+   * @param utf8Json A buffer containing UTF-8 encoded Avro JSON
+   * @param reuse An existing object to populate and return, if possible, or null to create a new one
+   * @return The Avro object
+   */
+  public T read(ByteBuffer utf8Json, T reuse) throws IOException {
+    if (utf8Json == null) { return null; }
+    if (utf8Json.hasArray()) {
+      return read(utf8Json.array(), utf8Json.arrayOffset() + utf8Json.position(), utf8Json.remaining(), reuse);
+    }
+    return read(new ByteBufferInputStream(Collections.singletonList(utf8Json.duplicate())), reuse);
+  }
+
+}
@@ -0,0 +1,422 @@
+package org.cedar.schemas.avro.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.util.Utf8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams Avro objects as JSON through a Jackson {@link JsonGenerator}.
+ * <br>
+ * Two formats are available: {@link #avro()} writes standard Avro JSON, with non-null union values wrapped in an
+ * object keyed by their branch, which can be read back with {@link AvroUtils#jsonToAvro(String, org.apache.avro.Schema)};
+ * {@link #plain()} writes union values directly. For records of the schemas in this library, which have no bytes or
+ * fixed fields, that produces the same values as {@link AvroUtils#avroToJson} but without its whitespace.
+ * In both formats bytes and fixed values are written as ISO-8859-1 strings, as in Avro JSON, and NaN and infinite
+ * floating point values as strings. {@link AvroUtils#avroToJson} differs there, writing bytes as a
+ * {@code {"bytes": ...}} object and fixed values as arrays of numbers.
+ * <br>
+ * The {@link #plain()} writer can optionally leave out fields which are null, or equal to their schema default.
+ * Documents written that way can be read back with {@link AvroUtils#jsonToAvroLenient(String, org.apache.avro.Schema)},
+ * which fills in defaults. Standard Avro JSON has to have every field, so the {@link #avro()} writer always writes
+ * them all.
+ * <br>
+ * How to write each schema is worked out once and cached, and instances are immutable and safe to share.
+ */
+public class AvroJsonWriter {
+
+  private static final JsonFactory jsonFactory = new JsonFactory();
+  private static final Map<Schema, Plan> plans = new ConcurrentHashMap<>();
+
+  private static final AvroJsonWriter AVRO = new AvroJsonWriter(true, false, false);
+  private static final AvroJsonWriter PLAIN = new AvroJsonWriter(false, false, false);
+
+  private final boolean wrapUnions;
+  private final boolean omitNulls;
+  private final boolean omitDefaults;
+
+  private AvroJsonWriter(boolean wrapUnions, boolean omitNulls, boolean omitDefaults) {
+    this.wrapUnions = wrapUnions;
+    this.omitNulls = omitNulls;
+    this.omitDefaults = omitDefaults;
+  }
+
+  /**
+   * @return A writer of standard Avro JSON
+   */
+  public static AvroJsonWriter avro() {
+    return AVRO;
+  }
+
+  /**
+   * @return A writer of plain JSON, without union branch names
+   */
+  public static AvroJsonWriter plain() {
+    return PLAIN;
+  }
+
+  /**
+   * @param omitNulls If true, record fields with null values are not written
+   * @return A copy of this writer with the given setting
+   * @throws IllegalStateException If fields are to be left out of standard Avro JSON, which can't be read without them
+   */
+  public AvroJsonWriter omitNulls(boolean omitNulls) {
+    checkCanOmit(omitNulls);
+    return new AvroJsonWriter(wrapUnions, omitNulls, omitDefaults);
+  }
+
+  /**
+   * @param omitDefaults If true, record fields whose values equal their schema default are not written
+   * @return A copy of this writer with the given setting
+   * @throws IllegalStateException If fields are to be left out of standard Avro JSON, which can't be read without them
+   */
+  public AvroJsonWriter omitDefaults(boolean omitDefaults) {
+    checkCanOmit(omitDefaults);
+    return new AvroJsonWriter(wrapUnions, omitNulls, omitDefaults);
+  }
+
+  // the strict reader needs every field, and the lenient one reads wrapped union values as maps
+  private void checkCanOmit(boolean omit) {
+    if (omit && wrapUnions) {
+      throw new IllegalStateException("Fields can only be left out of plain JSON, not standard Avro JSON");
+    }
+  }
+
+  public String toJson(IndexedRecord record) throws IOException {
+    if (record == null) { return null; }
+    StringWriter writer = new StringWriter();
+    write(record, writer);
+    return writer.toString();
+  }
+
+  public byte[] toJsonBytes(IndexedRecord record) throws IOException {
+    if (record == null) { return null; }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    write(record, out);
+    return out.toByteArray();
+  }
+
+  /**
+   * Writes the record as UTF-8 encoded JSON. The stream is flushed but not closed.
+   */
+  public void write(IndexedRecord record, OutputStream out) throws IOException {
+    try (JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      write(record, generator);
+    }
+  }
+
+  /**
+   * Writes the record as JSON. The writer is flushed but not closed.
+   */
+  public void write(IndexedRecord record, Writer writer) throws IOException {
+    try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      write(record, generator);
+    }
+  }
+
+  /**
+   * Writes the record as the next value of the generator
+   */
+  public void write(IndexedRecord record, JsonGenerator generator) throws IOException {
+    if (record == null) {
+      generator.writeNull();
+      return;
+    }
+    planFor(record.getSchema()).write(record, generator, this);
+  }
+
+  static Plan planFor(Schema schema) {
+    Plan plan = plans.get(schema);
+    if (plan == null) {
+      plan = plans.computeIfAbsent(schema, s -> compile(s, new HashMap<>()));
+    }
+    return plan;
+  }
+
+  private static Plan compile(Schema schema, Map<Schema, Plan> compiled) {
+    Plan existing = compiled.get(schema);
+    if (existing != null) { return existing; }
+    switch (schema.getType()) {
+      case RECORD:
+        RecordPlan record = new RecordPlan();
+        compiled.put(schema, record);
+        record.setFields(schema, compiled);
+        return record;
+      case ENUM:
+        return new EnumPlan(schema);
+      case ARRAY:
+        ArrayPlan array = new ArrayPlan();
+        compiled.put(schema, array);
+        array.elements = compile(schema.getElementType(), compiled);
+        return array;
+      case MAP:
+        MapPlan map = new MapPlan();
+        compiled.put(schema, map);
+        map.values = compile(schema.getValueType(), compiled);
+        return map;
+      case UNION:
+        UnionPlan union = new UnionPlan(schema);
+        compiled.put(schema, union);
+        union.setBranches(schema, compiled);
+        return union;
+      case STRING:
+        return STRING;
+      case BYTES:
+      case FIXED:
+        return BYTES;
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        return NUMBER;
+      case BOOLEAN:
+        return BOOLEAN;
+      case NULL:
+        return NULL;
+      default:
+        throw new UnsupportedOperationException("Unable to write schema of type " + schema.getType() + " as JSON");
+    }
+  }
+
+  static abstract class Plan {
+    abstract void write(Object value, JsonGenerator generator, AvroJsonWriter options) throws IOException;
+  }
+
+  private static class RecordPlan extends Plan {
+    private FieldPlan[] fields;
+
+    void setFields(Schema schema, Map<Schema, Plan> compiled) {
+      List<Schema.Field> schemaFields = schema.getFields();
+      FieldPlan[] result = new FieldPlan[schemaFields.size()];
+      for (int i = 0; i < result.length; i++) {
+        Schema.Field field = schemaFields.get(i);
+        result[i] = new FieldPlan(field, compile(field.schema(), compiled));
+      }
+      this.fields = result;
+    }
+
+    @Override
+    void write(Object value, JsonGenerator generator, AvroJsonWriter options) throws IOException {
+      IndexedRecord record = (IndexedRecord) value;
+      generator.writeStartObject();
+      for (FieldPlan field : fields) {
+        Object fieldValue = record.get(field.position);
+        if (fieldValue == null && options.omitNulls) { continue; }
+        if (options.omitDefaults && field.isDefault(fieldValue)) { continue; }
+        generator.writeFieldName(field.name);
+        field.plan.write(fieldValue, generator, options);
+      }
+      generator.writeEndObject();
+    }
+  }
+
+  private static class FieldPlan {
+    private final Schema.Field field;
+    private final SerializableString name;
+    private final int position;
+    private final Plan plan;
+    private volatile Object defaultValue;
+    private volatile boolean defaultResolved;
+
+    FieldPlan(Schema.Field field, Plan plan) {
+      this.field = field;
+      this.name = new SerializedString(field.name());
+      this.position = field.pos();
+      this.plan = plan;
+    }
+
+    boolean isDefault(Object value) {
+      if (!field.hasDefaultValue()) { return false; }
+      if (!defaultResolved) {
+        // resolved lazily since compiling a coercion plan for every field up front is wasted work
+        // when defaults are not being omitted; a default which can't be coerced is never omitted
+        Object resolved;
+        try {
+          resolved = CoercionPlan.forSchema(field.schema()).coerce(field.defaultVal());
+        }
+        catch (Exception e) {
+          resolved = NO_DEFAULT;
+        }
+        defaultValue = resolved;
+        defaultResolved = true;
+      }
+      Object expected = defaultValue;
+      if (expected == NO_DEFAULT) { return false; }
+      if (expected instanceof CharSequence && value instanceof CharSequence) {
+        return expected.toString().contentEquals((CharSequence) value);
+      }
+      return Objects.equals(expected, value);
+    }
+
+    private static final Object NO_DEFAULT = new Object();
+  }
+
+  private static class EnumPlan extends Plan {
+    private final Map<String, SerializableString> symbols = new HashMap<>();
+
+    EnumPlan(Schema schema) {
+      schema.getEnumSymbols().forEach(symbol -> symbols.put(symbol, new SerializedString(symbol)));
+    }
+
+    @Override
+    void write(Object value, JsonGenerator generator, AvroJsonWriter options) throws IOException {
+      String symbol = value instanceof Enum ? ((Enum) value).name() : value.toString();
+      SerializableString serialized = symbols.get(symbol);
+      if (serialized != null) {
+        generator.writeString(serialized);
+      }
+      else {
+        generator.writeString(symbol);
+      }
+    }
+  }
+
+  private static class ArrayPlan extends Plan {
+    private Plan elements;
+
+    @Override
+    void write(Object value, JsonGenerator generator, AvroJsonWriter options) throws IOException {
+      generator.writeStartArray();
+      for (Object element : (Collection<?>) value) {
+        elements.write(element, generator, options);
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  private static class MapPlan extends Plan {
+    private Plan values;
+
+    @Override
+    void write(Object value, JsonGenerator generator, AvroJsonWriter options) throws IOException {
+      generator.writeStartObject();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        generator.writeFieldName(String.valueOf(entry.getKey()));
+        values.write(entry.getValue(), generator, options);
+      }
+      generator.writeEndObject();
+    }
+  }
+
+  private static class UnionPlan extends Plan {
+    private final Schema schema;
+    private Plan[] branches;
+    private SerializableString[] branchNames;
+    private int nullBranch = -1;
+    private int otherBranch = -1;
+
+    UnionPlan(Schema schema) {
+      this.schema = schema;
+    }
+
+    void setBranches(Schema schema, Map<Schema, Plan> compiled) {
+      List<Schema> types = schema.getTypes();
+      branches = new Plan[types.size()];
+      branchNames = new SerializableString[types.size()];
+      for (int i = 0; i < branches.length; i++) {
+        Schema type = types.get(i);
+        branches[i] = compile(type, compiled);
+        branchNames[i] = new SerializedString(type.getFullName());
+        if (type.getType() == Schema.Type.NULL) {
+          nullBranch = i;
+        }
+      }
+      // the common case of an optional value doesn't need to be resolved against each branch
+      if (nullBranch >= 0 && branches.length == 2) {
+        otherBranch = 1 - nullBranch;
+      }
+    }
+
+    @Override
+    void write(Object value, JsonGenerator generator, AvroJsonWriter options) throws IOException {
+      if (value == null) {
+        generator.writeNull();
+        return;
+      }
+      int branch = otherBranch >= 0 ? otherBranch : SpecificData.get().resolveUnion(schema, value);
+      if (options.wrapUnions) {
+        generator.writeStartObject();
+        generator.writeFieldName(branchNames[branch]);
+        branches[branch].write(value, generator, options);
+        generator.writeEndObject();
+      }
+      else {
+        branches[branch].write(value, generator, options);
+      }
+    }
+  }
+
+  private static final Plan STRING = new Plan() {
+    @Override
+    void write(Object value, JsonGenerator generator, AvroJsonWriter options) throws IOException {
+      if (value instanceof Utf8) {
+        Utf8 utf8 = (Utf8) value;
+        generator.writeUTF8String(utf8.getBytes(), 0, utf8.getByteLength());
+      }
+      else {
+        generator.writeString(value.toString());
+      }
+    }
+  };
+
+  private static final Plan BYTES = new Plan() {
+    @Override
+    void write(Object value, JsonGenerator generator, AvroJsonWriter options) throws IOException {
+      ByteBuffer bytes = value instanceof GenericFixed ?
+          ByteBuffer.wrap(((GenericFixed) value).bytes()) :
+          ((ByteBuffer) value).duplicate();
+      generator.writeString(StandardCharsets.ISO_8859_1.decode(bytes).toString());
+    }
+  };
+
+  private static final Plan NUMBER = new Plan() {
+    @Override
+    void write(Object value, JsonGenerator generator, AvroJsonWriter options) throws IOException {
+      if (value instanceof Integer) {
+        generator.writeNumber((Integer) value);
+      }
+      else if (value instanceof Long) {
+        generator.writeNumber((Long) value);
+      }
+      else if (value instanceof Float) {
+        generator.writeNumber((Float) value);
+      }
+      else {
+        generator.writeNumber(((Number) value).doubleValue());
+      }
+    }
+  };
+
+  private static final Plan BOOLEAN = new Plan() {
+    @Override
+    void write(Object value, JsonGenerator generator, AvroJsonWriter options) throws IOException {
+      generator.writeBoolean((Boolean) value);
+    }
+  };
+
+  private static final Plan NULL = new Plan() {
+    @Override
+    void write(Object value, JsonGenerator generator, AvroJsonWriter options) throws IOException {
+      generator.writeNull();
+    }
+  };
+
+}
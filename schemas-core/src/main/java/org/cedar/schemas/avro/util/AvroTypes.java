@@ -0,0 +1,202 @@
+package org.cedar.schemas.avro.util;
+
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.specific.SpecificFixed;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of the generated classes behind Avro schema names, keyed by full name and class loader.
+ * <br>
+ * Each class is loaded once and resolved up front into what is needed to build its values: a constructor handle for
+ * records and fixed types, and a name-to-constant table for enums. Names which don't resolve to a class are cached
+ * too, so repeatedly looking up an unknown type doesn't keep going back to the class loader.
+ * <br>
+ * Class loaders other than this library's own are held weakly, and their names only refer weakly to the classes they
+ * resolve to, so caching a type never keeps a loader, or the classes it loaded, from being unloaded.
+ */
+class AvroTypes {
+
+  private static final MethodType RECORD_CONSTRUCTOR = MethodType.methodType(void.class);
+  private static final MethodType FIXED_CONSTRUCTOR = MethodType.methodType(void.class, byte[].class);
+
+  // resolved types are kept with their classes, which keeps them for exactly as long as the class is loaded
+  private static final ClassValue<AvroType> typesByClass = new ClassValue<AvroType>() {
+    @Override
+    protected AvroType computeValue(Class<?> type) {
+      return new AvroType(type.getName(), type);
+    }
+  };
+
+  // each name maps to a weak reference to its class, or to the missing type if it didn't resolve
+  private static final ClassLoader ownLoader = AvroTypes.class.getClassLoader();
+  private static final Map<String, Object> ownNames = new ConcurrentHashMap<>();
+  private static final Map<ClassLoader, Map<String, Object>> namesByLoader =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  /**
+   * @param className The full name of an Avro type
+   * @return The cached type, loaded with the class loader of this library
+   */
+  static AvroType lookup(String className) {
+    return lookup(className, ownLoader);
+  }
+
+  /**
+   * @param className The full name of an Avro type
+   * @param classLoader The class loader to load it with, or null for the bootstrap class loader
+   * @return The cached type, which may be {@link AvroType#isMissing() missing}
+   */
+  static AvroType lookup(String className, ClassLoader classLoader) {
+    Map<String, Object> names = classLoader == ownLoader && ownLoader != null ?
+        ownNames : namesByLoader.computeIfAbsent(classLoader, loader -> new ConcurrentHashMap<>());
+    Object cached = names.get(className);
+    if (cached instanceof AvroType) {
+      return (AvroType) cached;
+    }
+    Class<?> type = cached != null ? (Class<?>) ((Reference<?>) cached).get() : null;
+    if (type != null) {
+      return typesByClass.get(type);
+    }
+    AvroType result = load(className, classLoader);
+    names.put(className, result.isMissing() ? result : new WeakReference<>(result.type));
+    return result;
+  }
+
+  /**
+   * @param type A generated Avro class
+   * @return The cached type for the class
+   */
+  static AvroType lookup(Class<?> type) {
+    return typesByClass.get(type);
+  }
+
+  private static AvroType load(String className, ClassLoader classLoader) {
+    try {
+      Class<?> type = classLoader != null ? classLoader.loadClass(className) : Class.forName(className, false, null);
+      return typesByClass.get(type);
+    }
+    catch (ClassNotFoundException e) {
+      return new AvroType(className, null);
+    }
+  }
+
+  static class AvroType {
+    private final String name;
+    private final Class<?> type;
+    private final MethodHandle constructor;
+    private final Map<String, Enum<?>> constants;
+
+    private AvroType(String name, Class<?> type) {
+      this.name = name;
+      this.type = type;
+      this.constructor = findConstructor(type);
+      this.constants = findConstants(type);
+    }
+
+    private static MethodHandle findConstructor(Class<?> type) {
+      if (type == null) { return null; }
+      try {
+        if (IndexedRecord.class.isAssignableFrom(type)) {
+          return MethodHandles.publicLookup().findConstructor(type, RECORD_CONSTRUCTOR)
+              .asType(MethodType.methodType(IndexedRecord.class));
+        }
+        if (SpecificFixed.class.isAssignableFrom(type)) {
+          return MethodHandles.publicLookup().findConstructor(type, FIXED_CONSTRUCTOR)
+              .asType(MethodType.methodType(SpecificFixed.class, byte[].class));
+        }
+      }
+      catch (ReflectiveOperationException e) {
+        // not a generated class; it will fail when a value is built
+      }
+      return null;
+    }
+
+    private static Map<String, Enum<?>> findConstants(Class<?> type) {
+      if (type == null || !type.isEnum()) { return Collections.emptyMap(); }
+      Map<String, Enum<?>> result = new HashMap<>();
+      for (Object constant : type.getEnumConstants()) {
+        result.put(((Enum<?>) constant).name(), (Enum<?>) constant);
+      }
+      return Collections.unmodifiableMap(result);
+    }
+
+    String getName() {
+      return name;
+    }
+
+    boolean isMissing() {
+      return type == null;
+    }
+
+    boolean isRecord() {
+      return type != null && IndexedRecord.class.isAssignableFrom(type);
+    }
+
+    boolean isEnum() {
+      return type != null && type.isEnum();
+    }
+
+    boolean isFixed() {
+      return type != null && SpecificFixed.class.isAssignableFrom(type);
+    }
+
+    /**
+     * @return The class
+     * @throws ClassNotFoundException If there is no class with this name
+     */
+    Class<?> getType() throws ClassNotFoundException {
+      if (type == null) {
+        throw new ClassNotFoundException(name);
+      }
+      return type;
+    }
+
+    /**
+     * @return The enum constants, keyed by name, or an empty map if this is not an enum
+     */
+    Map<String, Enum<?>> getConstants() {
+      return constants;
+    }
+
+    IndexedRecord newRecord() throws ReflectiveOperationException {
+      if (!isRecord() || constructor == null) {
+        throw new NoSuchMethodException("No record constructor for " + name);
+      }
+      try {
+        return (IndexedRecord) constructor.invokeExact();
+      }
+      catch (RuntimeException | Error | ReflectiveOperationException e) {
+        throw e;
+      }
+      catch (Throwable t) {
+        throw new IllegalStateException("Unable to build record of type " + name, t);
+      }
+    }
+
+    SpecificFixed newFixed(byte[] bytes) throws ReflectiveOperationException {
+      if (!isFixed() || constructor == null) {
+        throw new NoSuchMethodException("No fixed constructor for " + name);
+      }
+      try {
+        return (SpecificFixed) constructor.invokeExact(bytes);
+      }
+      catch (RuntimeException | Error | ReflectiveOperationException e) {
+        throw e;
+      }
+      catch (Throwable t) {
+        throw new IllegalStateException("Unable to build fixed of type " + name, t);
+      }
+    }
+  }
+
+}
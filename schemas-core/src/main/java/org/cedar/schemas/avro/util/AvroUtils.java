@@ -1,28 +1,26 @@
 package org.cedar.schemas.avro.util;
 
-import org.apache.avro.JsonProperties;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.generic.IndexedRecord;
-import org.apache.avro.io.Decoder;
-import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.specific.SpecificDatumReader;
 import org.apache.avro.specific.SpecificFixed;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigDecimal;
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class AvroUtils {
-  static private Logger log = LoggerFactory.getLogger(AvroUtils.class);
+  static private final Logger log = LoggerFactory.getLogger(AvroUtils.class);
+  static private final ObjectMapper objectMapper = new ObjectMapper();
 
   public static Map<String, Object> avroToMap(GenericRecord record) {
     return avroToMap(record, true);
@@ -30,7 +28,7 @@ public class AvroUtils {
 
   public static Map<String, Object> avroToMap(GenericRecord record, boolean recurse) {
     if (record == null) { return null; }
-    log.debug("Transforming a record of type [" + record.getClass() + "] to a map, with recursive [" + recurse + "]");
+    log.debug("Transforming a record of type [{}] to a map, with recursive [{}]", record.getClass(), recurse);
     List<Schema.Field> fields = record.getSchema().getFields();
     Map<String, Object> result = new LinkedHashMap<>(fields.size());
     fields.forEach((field) -> {
@@ -57,13 +55,26 @@ public class AvroUtils {
     return result;
   }
 
+  /**
+   * Returns a read-only view of the record with the same contents as {@link #avroToMap(GenericRecord)}, without
+   * copying it. Nested records, collections and maps are wrapped as they are accessed, so callers which only read
+   * a few fields of a large record only pay for those fields.
+   *
+   * @param record The record to view
+   * @return A map view of the record, which reflects later changes to it
+   */
+  public static Map<String, Object> avroToMapView(GenericRecord record) {
+    if (record == null) { return null; }
+    return new RecordMapView(record);
+  }
+
   public static List<Object> avroCollectionToList(Collection<Object> collection) {
     return avroCollectionToList(collection, false);
   }
 
   public static List<Object> avroCollectionToList(Collection<Object> collection, boolean recurse) {
     if (collection == null) { return null; }
-    log.debug("Transforming a collection of type [" + collection.getClass() + "] to a list of maps, with recursive [" + recurse + "]");
+    log.debug("Transforming a collection of type [{}] to a list of maps, with recursive [{}]", collection.getClass(), recurse);
     return collection
         .stream()
         .map((it) -> it instanceof GenericRecord ? avroToMap((GenericRecord) it, recurse) : it)
@@ -77,41 +88,69 @@ public class AvroUtils {
 
   public static <T extends GenericRecord> T jsonToAvro(String json, Schema schema) throws IOException {
     if (json == null) { return null; }
-    return jsonToAvro(new ByteArrayInputStream(json.getBytes()), schema);
+    return AvroJsonReader.<T>forSchema(schema).read(json);
   }
 
   public static <T extends GenericRecord> T jsonToAvro(InputStream json, Schema schema) throws IOException {
     if (json == null) { return null; }
-    Decoder decoder = DecoderFactory.get().jsonDecoder(schema, json);
-    return new SpecificDatumReader<T>(schema).read(null, decoder);
+    return AvroJsonReader.<T>forSchema(schema).read(json);
+  }
+
+  public static <T extends GenericRecord> T jsonToAvro(byte[] utf8Json, Schema schema) throws IOException {
+    if (utf8Json == null) { return null; }
+    return AvroJsonReader.<T>forSchema(schema).read(utf8Json);
+  }
+
+  public static <T extends GenericRecord> T jsonToAvro(ByteBuffer utf8Json, Schema schema) throws IOException {
+    if (utf8Json == null) { return null; }
+    return AvroJsonReader.<T>forSchema(schema).read(utf8Json);
   }
 
   public static <T extends GenericRecord> T jsonToAvroLenient(String json, Schema schema) throws IOException, ClassNotFoundException {
     if (json == null) { return null; }
-    return jsonToAvroLenient(new ByteArrayInputStream(json.getBytes()), schema);
+    try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+      return jsonToAvroLenient(parser, schema);
+    }
   }
 
   public static <T extends GenericRecord> T jsonToAvroLenient(InputStream json, Schema schema) throws IOException, ClassNotFoundException {
     if (json == null) { return null; }
-    Map map = new ObjectMapper().readValue(json, Map.class);
-    return mapToAvro(map, findAvroClass(schema.getFullName()));
+    try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+      return jsonToAvroLenient(parser, schema);
+    }
+  }
+
+  /**
+   * Leniently reads the next JSON object from the parser into an Avro object, using the same rules as
+   * {@link #mapToAvro(Map, Class)} but without first reading the object into a map.
+   *
+   * @param parser A parser positioned before, or on, the start of a JSON object
+   * @param schema The schema of a generated Avro record class
+   * @return The Avro object, or null if the next value is a JSON null
+   */
+  public static <T extends GenericRecord> T jsonToAvroLenient(JsonParser parser, Schema schema) throws IOException, ClassNotFoundException {
+    Class<T> avroClass = findAvroClass(schema.getFullName());
+    JsonToken token = parser.hasCurrentToken() ? parser.currentToken() : parser.nextToken();
+    if (token == JsonToken.VALUE_NULL) { return null; }
+    if (token != JsonToken.START_OBJECT) {
+      throw new JsonParseException(parser, "Expected a JSON object for Avro type [" + avroClass + "] but found [" + token + "]");
+    }
+    try {
+      return (T) CoercionPlan.forClass(avroClass).readFields(parser);
+    }
+    catch (IOException e) {
+      throw e;
+    }
+    catch (Exception e) {
+      throw new IllegalStateException("Unable to build Avro object of type " + avroClass, e);
+    }
   }
 
   public static <T extends IndexedRecord> T mapToAvro(Map input, Class<T> avroClass) {
     if (input == null) { return null; }
-    log.debug("Transforming a type map to Avro type [" + avroClass + "]");
+    log.debug("Transforming a type map to Avro type [{}]", avroClass);
     try {
-      T instance = avroClass.getDeclaredConstructor().newInstance();
-      Schema schema = instance.getSchema();
-      List<Schema.Field> fields = schema.getFields();
-      log.debug("Schema "+schema.getName()+" has fields "+fields.toArray());
-      fields.forEach(f -> {
-        Object value = input.containsKey(f.name()) ? input.get(f.name()) : f.defaultVal();
-        log.debug("Input "+(input.containsKey(f.name()) ? "contains" : "does NOT contain")+" field "+f.name());
-        instance.put(f.pos(), coerceValueForSchema(value, f.schema()));
-      });
-      log.debug("Finished map to avro.");
-      return instance;
+      return (T) CoercionPlan.forClass(avroClass).build(input);
     }
     catch (Exception e) {
       throw new IllegalStateException("Unable to build Avro object of type " + avroClass, e);
@@ -119,198 +158,44 @@ public class AvroUtils {
   }
 
   public static Object coerceValueForSchema(Object value, Schema schema) {
-    log.debug("coercing value [" + value + "] for schema [" + schema.getFullName() + "] for schema type [" +
-            schema.getType() + "]");
-    switch(schema.getType()) {
-      case RECORD:
-        if (value instanceof Map) {
-          try {
-            Class<? extends IndexedRecord> recordClass = findAvroClass(schema.getFullName());
-            return mapToAvro((Map) value, recordClass);
-          }
-          catch(Exception e) {
-            log.debug("Unable to build record of type " + schema.getFullName(), e);
-            throw new UnsupportedOperationException("Unable to build record of type " + schema.getFullName(), e);
-          }
-        }
-        break;
-
-      case ENUM:
-        try {
-          Class<? extends Enum> enumClass = findEnum(schema.getFullName());
-          if (enumClass.isAssignableFrom(value.getClass())) {
-            return value;
-          }
-          else {
-            return Enum.valueOf(enumClass, value.toString());
-          }
-        }
-        catch (Exception e) {
-          log.debug("Unable to build enum of type " + schema.getFullName(), e);
-          throw new UnsupportedOperationException("Unable to build enum of type " + schema.getFullName(), e);
-        }
-
-      case ARRAY:
-        if (value instanceof List) {
-          Schema elementType = schema.getElementType();
-          return ((List) value).stream().map(v -> coerceValueForSchema(v, elementType)).collect(Collectors.toList());
-        }
-        break;
-
-      case MAP:
-        if (value instanceof Map) {
-          Schema valueType = schema.getValueType();
-          Map mapValue = (Map) value;
-          Map result = new LinkedHashMap();
-          mapValue.keySet().forEach(key -> result.put(key, coerceValueForSchema(mapValue.get(key), valueType)));
-          return result;
-        }
-        break;
-
-      case UNION:
-        log.debug("Recursively trying to coerce the value into one of these schemas types: "+schema.getTypes());
-        for (Schema type : schema.getTypes()) {
-          try {
-            return coerceValueForSchema(value, type);
-          }
-          catch (Exception e) {
-            log.debug("tried and failed to coerce value for specific type " + type, e);
-          }
-        }
-
-      case FIXED:
-        if (value instanceof byte[]) {
-          try {
-            Class<? extends SpecificFixed> fixedClass = findAvroFixed(schema.getFullName());
-            return fixedClass.getDeclaredConstructor(byte[].class).newInstance(value);
-          }
-          catch (Exception e) {
-            log.debug("Unable to build fixed of type " + schema.getFullName(), e);
-            throw new UnsupportedOperationException("Unable to build fixed of type " + schema.getFullName(), e);
-          }
-        }
-        break;
-
-      case STRING:
-        return value.toString();
-
-      case BYTES:
-        if (value instanceof byte[]) {
-          return value;
-        }
-        else if (value instanceof String) {
-          return ((String) value).getBytes();
-        }
-        break;
-
-      case INT:
-        if (value instanceof Integer) {
-          return value;
-        }
-        else if (value instanceof BigInteger) {
-          return ((BigInteger) value).intValueExact();
-        }
-        if (value instanceof String) {
-          return Integer.parseInt((String) value);
-        }
-        break;
-
-      case LONG:
-        if (value instanceof Long) {
-          return value;
-        }
-        else if (value instanceof Integer) {
-          return ((Integer) value).longValue();
-        }
-        else if (value instanceof BigInteger) {
-          return ((BigInteger) value).longValueExact();
-        }
-        else if (value instanceof String) {
-          return Long.parseLong((String) value);
-        }
-        break;
-
-      case FLOAT:
-        if (value instanceof Float) {
-          return value;
-        }
-        else if (value instanceof BigDecimal) {
-          Float result = ((BigDecimal) value).floatValue();
-          if (!result.equals(Float.NEGATIVE_INFINITY) && !result.equals(Float.POSITIVE_INFINITY)) {
-            return result;
-          }
-        }
-        else if (value instanceof String) {
-          return Float.parseFloat((String) value);
-        }
-        break;
-
-      case DOUBLE:
-        if (value instanceof Double) {
-          return value;
-        }
-        else if (value instanceof Float) {
-          return ((Float) value).doubleValue();
-        }
-        else if (value instanceof BigDecimal) {
-          Double result = ((BigDecimal) value).doubleValue();
-          if (!result.equals(Double.NEGATIVE_INFINITY) && !result.equals(Double.POSITIVE_INFINITY)) {
-            return result;
-          }
-        }
-        else if (value instanceof String) {
-          return Double.parseDouble((String) value);
-        }
-        break;
-
-      case BOOLEAN:
-        if (value instanceof Boolean) {
-          return value;
-        }
-        else if (value instanceof String) {
-          return Boolean.parseBoolean((String) value);
-        }
-        break;
-
-      case NULL:
-        if (value == null || value instanceof JsonProperties.Null) {
-          return null;
-        }
-        break;
+    if (log.isDebugEnabled()) {
+      log.debug("coercing value [{}] for schema [{}] for schema type [{}]", value, schema.getFullName(), schema.getType());
     }
-    throw new UnsupportedOperationException("Unable to coerce value [" + value + "] of type ["
-        + (value == null ? "null" : value.getClass()) + "] for schema [" + schema.getFullName() + "] of schema type ["+schema.getType()+"]");
+    return CoercionPlan.forSchema(schema).coerce(value);
   }
 
   public static <T extends IndexedRecord> Class<T> findAvroClass(String className) throws ClassNotFoundException {
-    Class clazz = AvroUtils.class.getClassLoader().loadClass(className);
-    if (IndexedRecord.class.isAssignableFrom(clazz)) {
+    AvroTypes.AvroType type = AvroTypes.lookup(className);
+    Class clazz = type.getType();
+    if (type.isRecord()) {
       return clazz;
     }
     else {
-      log.debug("Class " + className + " is not an Avro IndexedRecord class");
+      log.debug("Class {} is not an Avro IndexedRecord class", className);
       throw new IllegalArgumentException("Class " + className + " is not an Avro IndexedRecord class");
     }
   }
 
   public static <T extends Enum> Class<T> findEnum(String className) throws ClassNotFoundException {
-    Class clazz = AvroUtils.class.getClassLoader().loadClass(className);
-    if (clazz.isEnum()) {
+    AvroTypes.AvroType type = AvroTypes.lookup(className);
+    Class clazz = type.getType();
+    if (type.isEnum()) {
       return clazz;
     }
     else {
-      log.debug("Class " + className + " is not an enumeration");
+      log.debug("Class {} is not an enumeration", className);
       throw new IllegalArgumentException("Class " + className + " is not an enumeration");
     }
   }
 
   public static <T extends SpecificFixed> Class<T> findAvroFixed(String className) throws ClassNotFoundException {
-    Class clazz = AvroUtils.class.getClassLoader().loadClass(className);
-    if (SpecificFixed.class.isAssignableFrom(clazz)) {
+    AvroTypes.AvroType type = AvroTypes.lookup(className);
+    Class clazz = type.getType();
+    if (type.isFixed()) {
       return clazz;
     }
     else {
-      log.debug("Class " + className + " is not a fixed");
+      log.debug("Class {} is not a fixed", className);
       throw new IllegalArgumentException("Class " + className + " is not a fixed");
     }
   }
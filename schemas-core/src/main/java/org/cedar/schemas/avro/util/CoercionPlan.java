@@ -0,0 +1,979 @@
+package org.cedar.schemas.avro.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.JsonProperties;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A pre-compiled strategy for coercing loosely-typed values (e.g. the maps, lists, and scalars produced by a generic
+ * JSON parser) into values which conform to an Avro {@link Schema}.
+ * <br>
+ * Plans are compiled once per schema (or per target record class) and cached, so that the schema walk, the class
+ * lookups, and the reflective constructor and enum resolution all happen once rather than on every value. The
+ * coercion rules themselves are those of {@link AvroUtils#coerceValueForSchema(Object, Schema)}.
+ * <br>
+ * Plans can also {@link #read(JsonParser) read} values directly from a stream of JSON tokens, applying the same
+ * rules to each value as it is parsed rather than to a fully materialized map.
+ */
+abstract class CoercionPlan {
+
+  // reads nested values for parsers without a codec of their own, e.g. those from a bare JsonFactory
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private static final Map<Schema, CoercionPlan> plansBySchema = new ConcurrentHashMap<>();
+  private static final Map<Class<?>, RecordPlan> plansByClass = new ConcurrentHashMap<>();
+
+  final Schema schema;
+
+  CoercionPlan(Schema schema) {
+    this.schema = schema;
+  }
+
+  /**
+   * Coerce a value into the Java representation of this plan's schema
+   *
+   * @param value The value to coerce
+   * @return The coerced value
+   * @throws UnsupportedOperationException if the value cannot be coerced
+   */
+  abstract Object coerce(Object value);
+
+  /**
+   * A cheap, exception-free check of whether {@link #coerce(Object)} can succeed for values of the given type.
+   * Used to precompute the candidate branches of a union for each type of value.
+   *
+   * @param type The Java type of a non-null value
+   * @return false if no value of the type can be coerced by this plan
+   */
+  abstract boolean acceptsType(Class<?> type);
+
+  /**
+   * A cheap, exception-free check of whether {@link #coerce(Object)} can succeed for a value which is already known
+   * to be of an {@link #acceptsType(Class) accepted type}. This check may be optimistic, but it must never reject a
+   * value which could be coerced.
+   *
+   * @param value The value to check
+   * @return false if the value certainly cannot be coerced by this plan
+   */
+  boolean accepts(Object value) {
+    return true;
+  }
+
+  /**
+   * Read the value at the parser's current token and coerce it into the Java representation of this plan's schema.
+   * The result is the same as coercing the value which a Jackson {@code ObjectMapper} would read as a plain
+   * {@code Object}, but container types override this to build their results token by token.
+   *
+   * @param parser A parser positioned on the first token of a value. It is left on the last token of that value.
+   * @return The coerced value
+   * @throws IOException if the JSON cannot be read
+   * @throws UnsupportedOperationException if the value cannot be coerced
+   */
+  Object read(JsonParser parser) throws IOException {
+    return coerce(readPlainValue(parser));
+  }
+
+  /**
+   * Reads the value at the parser's current token as the plain Java types used by Jackson's untyped
+   * deserialization: maps, lists, strings, numbers, booleans, and nulls.
+   */
+  static Object readPlainValue(JsonParser parser) throws IOException {
+    switch (parser.currentToken()) {
+      case VALUE_STRING:
+        return parser.getText();
+      case VALUE_NUMBER_INT:
+      case VALUE_NUMBER_FLOAT:
+        return parser.getNumberValue();
+      case VALUE_TRUE:
+        return Boolean.TRUE;
+      case VALUE_FALSE:
+        return Boolean.FALSE;
+      case VALUE_NULL:
+        return null;
+      default:
+        return objectMapper.readValue(parser, Object.class);
+    }
+  }
+
+  /**
+   * @param schema The schema to coerce values into
+   * @return The cached plan for the schema, compiling it first if necessary
+   */
+  static CoercionPlan forSchema(Schema schema) {
+    CoercionPlan plan = plansBySchema.get(schema);
+    if (plan == null) {
+      // compile outside of the cache so that nested and recursive schemas can be registered along the way
+      Map<Schema, CoercionPlan> compiled = new HashMap<>();
+      plan = compile(schema, compiled);
+      compiled.forEach(plansBySchema::putIfAbsent);
+    }
+    return plan;
+  }
+
+  /**
+   * @param avroClass The record class to coerce maps into
+   * @return The cached plan for the class, compiling it first if necessary
+   * @throws ReflectiveOperationException if the class cannot be instantiated
+   */
+  static <T extends IndexedRecord> RecordPlan forClass(Class<T> avroClass) throws ReflectiveOperationException {
+    RecordPlan plan = plansByClass.get(avroClass);
+    if (plan == null) {
+      AvroTypes.AvroType type = AvroTypes.lookup(avroClass);
+      Schema schema = type.newRecord().getSchema();
+      Map<Schema, CoercionPlan> compiled = new HashMap<>();
+      plan = new RecordPlan(schema, type, null);
+      plan.resolveFields(compiled);
+      compiled.forEach(plansBySchema::putIfAbsent);
+      RecordPlan existing = plansByClass.putIfAbsent(avroClass, plan);
+      plan = existing != null ? existing : plan;
+    }
+    return plan;
+  }
+
+  private static CoercionPlan compile(Schema schema, Map<Schema, CoercionPlan> compiled) {
+    CoercionPlan cached = plansBySchema.get(schema);
+    if (cached == null) {
+      cached = compiled.get(schema);
+    }
+    if (cached != null) {
+      return cached;
+    }
+
+    switch (schema.getType()) {
+      case RECORD:
+        RecordPlan recordPlan = RecordPlan.forSchema(schema);
+        compiled.put(schema, recordPlan); // register before the fields to support recursive schemas
+        recordPlan.resolveFields(compiled);
+        return recordPlan;
+
+      case ENUM:
+        return register(new EnumPlan(schema), compiled);
+
+      case ARRAY:
+        ArrayPlan arrayPlan = new ArrayPlan(schema);
+        compiled.put(schema, arrayPlan);
+        arrayPlan.elementPlan = compile(schema.getElementType(), compiled);
+        return arrayPlan;
+
+      case MAP:
+        MapPlan mapPlan = new MapPlan(schema);
+        compiled.put(schema, mapPlan);
+        mapPlan.valuePlan = compile(schema.getValueType(), compiled);
+        return mapPlan;
+
+      case UNION:
+        UnionPlan unionPlan = new UnionPlan(schema);
+        compiled.put(schema, unionPlan);
+        List<Schema> types = schema.getTypes();
+        CoercionPlan[] branches = new CoercionPlan[types.size()];
+        for (int i = 0; i < branches.length; i++) {
+          branches[i] = compile(types.get(i), compiled);
+        }
+        unionPlan.setBranches(branches);
+        return unionPlan;
+
+      case FIXED:
+        return register(new FixedPlan(schema), compiled);
+      case STRING:
+        return register(new StringPlan(schema), compiled);
+      case BYTES:
+        return register(new BytesPlan(schema), compiled);
+      case INT:
+        return register(new IntPlan(schema), compiled);
+      case LONG:
+        return register(new LongPlan(schema), compiled);
+      case FLOAT:
+        return register(new FloatPlan(schema), compiled);
+      case DOUBLE:
+        return register(new DoublePlan(schema), compiled);
+      case BOOLEAN:
+        return register(new BooleanPlan(schema), compiled);
+      case NULL:
+        return register(new NullPlan(schema), compiled);
+      default:
+        throw new IllegalArgumentException("Unsupported schema type [" + schema.getType() + "]");
+    }
+  }
+
+  private static CoercionPlan register(CoercionPlan plan, Map<Schema, CoercionPlan> compiled) {
+    compiled.put(plan.schema, plan);
+    return plan;
+  }
+
+  UnsupportedOperationException unsupported(Object value) {
+    return new UnsupportedOperationException("Unable to coerce value [" + value + "] of type ["
+        + (value == null ? "null" : value.getClass()) + "] for schema [" + schema.getFullName() + "] of schema type ["
+        + schema.getType() + "]");
+  }
+
+  /**
+   * Values which are safe to share between all of the records built by a plan
+   */
+  static boolean isImmutable(Object value) {
+    return value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+        || value instanceof Enum;
+  }
+
+  /**
+   * An exception-free check of whether {@link Long#parseLong(String)} would parse the string to a value in the given
+   * range. Strings with non-ASCII characters, which may be digits in other scripts, are optimistically accepted.
+   */
+  static boolean isIntegral(String value, long min, long max) {
+    int length = value.length();
+    int i = 0;
+    boolean negative = false;
+    if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+      negative = value.charAt(0) == '-';
+      i++;
+    }
+    if (i == length) {
+      return false;
+    }
+    // accumulate negatively, since the magnitude of Long.MIN_VALUE exceeds that of Long.MAX_VALUE
+    long limit = negative ? min : -max;
+    long result = 0;
+    for (; i < length; i++) {
+      char c = value.charAt(i);
+      if (c > 0x7F) {
+        return true;
+      }
+      if (c < '0' || c > '9') {
+        return false;
+      }
+      int digit = c - '0';
+      if (result < (limit + digit) / 10) {
+        return false;
+      }
+      result = result * 10 - digit;
+      if (result < limit) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * An exception-free check of whether {@link Double#parseDouble(String)} would accept the string. Decimal
+   * notation is checked exactly; the hexadecimal, NaN, and Infinity forms are optimistically accepted.
+   */
+  static boolean isFloatingPoint(String value) {
+    String s = value.trim();
+    int length = s.length();
+    int i = 0;
+    if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+      i++;
+    }
+    if (i < length && (s.charAt(i) == 'N' || s.charAt(i) == 'I' || s.startsWith("0x", i) || s.startsWith("0X", i))) {
+      return true;
+    }
+    int digits = 0;
+    while (i < length && isAsciiDigit(s.charAt(i))) { i++; digits++; }
+    if (i < length && s.charAt(i) == '.') {
+      i++;
+      while (i < length && isAsciiDigit(s.charAt(i))) { i++; digits++; }
+    }
+    if (digits == 0) {
+      return false;
+    }
+    if (i < length && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+      i++;
+      if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+        i++;
+      }
+      int exponentDigits = 0;
+      while (i < length && isAsciiDigit(s.charAt(i))) { i++; exponentDigits++; }
+      if (exponentDigits == 0) {
+        return false;
+      }
+    }
+    if (i < length && "fFdD".indexOf(s.charAt(i)) >= 0) {
+      i++;
+    }
+    return i == length;
+  }
+
+  private static boolean isAsciiDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  //-- Records
+
+  static class RecordPlan extends CoercionPlan {
+    private final AvroTypes.AvroType type;
+    private final Exception lookupFailure;
+    private FieldPlan[] fields;
+    private Map<String, FieldPlan> fieldsByName;
+
+    RecordPlan(Schema schema, AvroTypes.AvroType type, Exception lookupFailure) {
+      super(schema);
+      this.type = type;
+      this.lookupFailure = lookupFailure;
+    }
+
+    static RecordPlan forSchema(Schema schema) {
+      try {
+        AvroUtils.findAvroClass(schema.getFullName());
+        return new RecordPlan(schema, AvroTypes.lookup(schema.getFullName()), null);
+      }
+      catch (Exception e) {
+        // defer the failure until a value actually needs to be built with this plan
+        return new RecordPlan(schema, null, e);
+      }
+    }
+
+    void resolveFields(Map<Schema, CoercionPlan> compiled) {
+      List<Schema.Field> schemaFields = schema.getFields();
+      FieldPlan[] fieldPlans = new FieldPlan[schemaFields.size()];
+      for (int i = 0; i < fieldPlans.length; i++) {
+        Schema.Field field = schemaFields.get(i);
+        fieldPlans[i] = new FieldPlan(field, compile(field.schema(), compiled));
+      }
+      Map<String, FieldPlan> byName = new HashMap<>();
+      for (FieldPlan fieldPlan : fieldPlans) {
+        byName.put(fieldPlan.name, fieldPlan);
+      }
+      fields = fieldPlans;
+      fieldsByName = byName;
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return this.type != null && Map.class.isAssignableFrom(type);
+    }
+
+    @Override
+    Object coerce(Object value) {
+      if (value instanceof Map) {
+        try {
+          return build((Map) value);
+        }
+        catch (Exception e) {
+          throw new UnsupportedOperationException("Unable to build record of type " + schema.getFullName(), e);
+        }
+      }
+      throw unsupported(value);
+    }
+
+    /**
+     * Build a new record, setting each field to the coerced input value of the same name,
+     * or to the field's default if the input does not contain it.
+     */
+    IndexedRecord build(Map input) throws ReflectiveOperationException {
+      IndexedRecord instance = newInstance();
+      CoercionTrace trace = CoercionTrace.active();
+      for (FieldPlan field : fields) {
+        Object value = trace != null ? field.traceCoerce(input, trace) :
+            input.containsKey(field.name) ? field.plan.coerce(input.get(field.name)) : field.defaultValue();
+        instance.put(field.pos, value);
+      }
+      return instance;
+    }
+
+    @Override
+    Object read(JsonParser parser) throws IOException {
+      if (parser.currentToken() != JsonToken.START_OBJECT) {
+        return super.read(parser);
+      }
+      try {
+        return readFields(parser);
+      }
+      catch (IOException e) {
+        throw e;
+      }
+      catch (Exception e) {
+        throw new UnsupportedOperationException("Unable to build record of type " + schema.getFullName(), e);
+      }
+    }
+
+    /**
+     * Build a new record from the fields of the JSON object at the parser's current token, skipping any unknown
+     * fields and setting any missing fields to their defaults.
+     */
+    IndexedRecord readFields(JsonParser parser) throws IOException, ReflectiveOperationException {
+      IndexedRecord instance = newInstance();
+      CoercionTrace trace = CoercionTrace.active();
+      boolean[] present = new boolean[fields.length];
+      String name;
+      while ((name = parser.nextFieldName()) != null) {
+        parser.nextToken();
+        FieldPlan field = fieldsByName.get(name);
+        if (field == null) {
+          parser.skipChildren();
+          continue;
+        }
+        instance.put(field.pos, trace != null ? field.traceRead(parser, trace) : field.plan.read(parser));
+        present[field.pos] = true;
+      }
+      for (FieldPlan field : fields) {
+        if (!present[field.pos]) {
+          instance.put(field.pos, trace != null ? field.traceDefault(trace) : field.defaultValue());
+        }
+      }
+      return instance;
+    }
+
+    IndexedRecord newInstance() throws ReflectiveOperationException {
+      if (type == null) {
+        throw new UnsupportedOperationException("Unable to build record of type " + schema.getFullName(), lookupFailure);
+      }
+      return type.newRecord();
+    }
+  }
+
+  static class FieldPlan {
+    final String name;
+    final int pos;
+    final Schema.Field field;
+    final CoercionPlan plan;
+    private Object sharedDefault;
+    private volatile boolean defaultShared;
+
+    FieldPlan(Schema.Field field, CoercionPlan plan) {
+      this.name = field.name();
+      this.pos = field.pos();
+      this.field = field;
+      this.plan = plan;
+    }
+
+    Object defaultValue() {
+      if (defaultShared) {
+        return sharedDefault;
+      }
+      // mutable defaults (e.g. empty lists) must be built fresh for every record
+      Object result = plan.coerce(field.defaultVal());
+      if (isImmutable(result)) {
+        sharedDefault = result;
+        defaultShared = true;
+      }
+      return result;
+    }
+
+    //-- Tracing, see CoercionTrace; kept apart so the untraced path stays as small as possible
+
+    Object traceCoerce(Map input, CoercionTrace trace) {
+      if (!input.containsKey(name)) {
+        return traceDefault(trace);
+      }
+      Object value = input.get(name);
+      return traced(trace, CoercionTrace.describe(value), () -> plan.coerce(value));
+    }
+
+    Object traceRead(JsonParser parser, CoercionTrace trace) throws IOException {
+      try {
+        return traced(trace, String.valueOf(parser.currentToken()), () -> plan.read(parser));
+      }
+      catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+
+    Object traceDefault(CoercionTrace trace) {
+      return traced(trace, "default", this::defaultValue);
+    }
+
+    private Object traced(CoercionTrace trace, String input, TracedStep step) {
+      trace.enter(name);
+      try {
+        Object result = step.run();
+        trace.coerced(field.schema(), input, result);
+        return result;
+      }
+      catch (IOException e) {
+        trace.failed(field.schema(), input, e);
+        throw new UncheckedIOException(e);
+      }
+      catch (RuntimeException e) {
+        trace.failed(field.schema(), input, e);
+        throw e;
+      }
+      finally {
+        trace.exit();
+      }
+    }
+  }
+
+  private interface TracedStep {
+    Object run() throws IOException;
+  }
+
+  //-- Named types
+
+  static class EnumPlan extends CoercionPlan {
+    private final Class<? extends Enum> enumClass;
+    private final Map<String, Enum<?>> constants;
+    private final Exception lookupFailure;
+
+    EnumPlan(Schema schema) {
+      super(schema);
+      Class<? extends Enum> resolvedClass = null;
+      Map<String, Enum<?>> resolvedConstants = Collections.emptyMap();
+      Exception failure = null;
+      try {
+        resolvedClass = AvroUtils.findEnum(schema.getFullName());
+        resolvedConstants = AvroTypes.lookup(schema.getFullName()).getConstants();
+      }
+      catch (Exception e) {
+        failure = e;
+      }
+      this.enumClass = resolvedClass;
+      this.constants = resolvedConstants;
+      this.lookupFailure = failure;
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return enumClass != null; // any value may be matched by its string form
+    }
+
+    @Override
+    boolean accepts(Object value) {
+      return enumClass.isInstance(value) || constants.containsKey(value.toString());
+    }
+
+    @Override
+    Object coerce(Object value) {
+      if (enumClass == null) {
+        throw new UnsupportedOperationException("Unable to build enum of type " + schema.getFullName(), lookupFailure);
+      }
+      if (enumClass.isInstance(value)) {
+        return value;
+      }
+      Enum result = value == null ? null : constants.get(value.toString());
+      if (result == null) {
+        throw new UnsupportedOperationException("Unable to build enum of type " + schema.getFullName(),
+            new IllegalArgumentException("No enum constant " + enumClass.getCanonicalName() + "." + value));
+      }
+      return result;
+    }
+  }
+
+  static class FixedPlan extends CoercionPlan {
+    private final AvroTypes.AvroType type;
+    private final Exception lookupFailure;
+
+    FixedPlan(Schema schema) {
+      super(schema);
+      AvroTypes.AvroType resolved = null;
+      Exception failure = null;
+      try {
+        AvroUtils.findAvroFixed(schema.getFullName());
+        resolved = AvroTypes.lookup(schema.getFullName());
+      }
+      catch (Exception e) {
+        failure = e;
+      }
+      this.type = resolved;
+      this.lookupFailure = failure;
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return this.type != null && type == byte[].class;
+    }
+
+    @Override
+    Object coerce(Object value) {
+      if (value instanceof byte[]) {
+        try {
+          if (type == null) {
+            throw lookupFailure;
+          }
+          return type.newFixed((byte[]) value);
+        }
+        catch (Exception e) {
+          throw new UnsupportedOperationException("Unable to build fixed of type " + schema.getFullName(), e);
+        }
+      }
+      throw unsupported(value);
+    }
+  }
+
+  //-- Complex types
+
+  static class ArrayPlan extends CoercionPlan {
+    private CoercionPlan elementPlan;
+
+    ArrayPlan(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return List.class.isAssignableFrom(type);
+    }
+
+    @Override
+    Object coerce(Object value) {
+      if (value instanceof List) {
+        List<?> input = (List<?>) value;
+        List<Object> result = new ArrayList<>(input.size());
+        for (Object element : input) {
+          result.add(elementPlan.coerce(element));
+        }
+        return result;
+      }
+      throw unsupported(value);
+    }
+
+    @Override
+    Object read(JsonParser parser) throws IOException {
+      if (parser.currentToken() != JsonToken.START_ARRAY) {
+        return super.read(parser);
+      }
+      List<Object> result = new ArrayList<>();
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        result.add(elementPlan.read(parser));
+      }
+      return result;
+    }
+  }
+
+  static class MapPlan extends CoercionPlan {
+    private CoercionPlan valuePlan;
+
+    MapPlan(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return Map.class.isAssignableFrom(type);
+    }
+
+    @Override
+    Object coerce(Object value) {
+      if (value instanceof Map) {
+        Map<?, ?> input = (Map<?, ?>) value;
+        Map<Object, Object> result = new LinkedHashMap<>();
+        input.forEach((k, v) -> result.put(k, valuePlan.coerce(v)));
+        return result;
+      }
+      throw unsupported(value);
+    }
+
+    @Override
+    Object read(JsonParser parser) throws IOException {
+      if (parser.currentToken() != JsonToken.START_OBJECT) {
+        return super.read(parser);
+      }
+      Map<Object, Object> result = new LinkedHashMap<>();
+      String name;
+      while ((name = parser.nextFieldName()) != null) {
+        parser.nextToken();
+        result.put(name, valuePlan.read(parser));
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Resolves the branch of a union up front, from the type of the value, rather than by trying each branch in turn.
+   * <br>
+   * The branches which could accept each Java type are computed once per type, in schema order. For each value the
+   * first of those candidates which {@link #accepts(Object) accepts} it is used. If that candidate still fails (e.g.
+   * a nested field of a record cannot be coerced) the remaining candidates are tried in order, so the result is
+   * always that of the first branch able to coerce the value.
+   */
+  static class UnionPlan extends CoercionPlan {
+    private static final CoercionPlan[] NO_CANDIDATES = new CoercionPlan[0];
+
+    private CoercionPlan[] branches;
+    private boolean nullable;
+    private final Map<Class<?>, CoercionPlan[]> candidatesByType = new ConcurrentHashMap<>();
+
+    UnionPlan(Schema schema) {
+      super(schema);
+    }
+
+    void setBranches(CoercionPlan[] branches) {
+      this.branches = branches;
+      this.nullable = Arrays.stream(branches).anyMatch(b -> b instanceof NullPlan);
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return candidatesFor(type).length > 0;
+    }
+
+    @Override
+    Object coerce(Object value) {
+      if (value == null) {
+        // only a null branch can accept a null value
+        if (nullable) {
+          return null;
+        }
+        throw unsupported(null);
+      }
+      for (CoercionPlan candidate : candidatesFor(value.getClass())) {
+        if (candidate.accepts(value)) {
+          try {
+            return candidate.coerce(value);
+          }
+          catch (Exception e) {
+            // fall back to the next candidate
+          }
+        }
+      }
+      throw unsupported(value);
+    }
+
+    @Override
+    Object read(JsonParser parser) throws IOException {
+      JsonToken token = parser.currentToken();
+      if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+        CoercionPlan[] candidates = candidatesFor(token == JsonToken.START_OBJECT ? LinkedHashMap.class : ArrayList.class);
+        if (candidates.length == 1) {
+          return candidates[0].read(parser);
+        }
+        // more than one branch could take the value, which must be materialized so each can be tried in turn
+      }
+      return super.read(parser);
+    }
+
+    private CoercionPlan[] candidatesFor(Class<?> type) {
+      CoercionPlan[] candidates = candidatesByType.get(type);
+      if (candidates == null) {
+        candidates = Arrays.stream(branches).filter(b -> b.acceptsType(type)).toArray(CoercionPlan[]::new);
+        candidates = candidates.length == 0 ? NO_CANDIDATES : candidates;
+        candidatesByType.put(type, candidates);
+      }
+      return candidates;
+    }
+  }
+
+  //-- Primitives
+
+  static class StringPlan extends CoercionPlan {
+    StringPlan(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return true;
+    }
+
+    @Override
+    Object coerce(Object value) {
+      return value.toString();
+    }
+  }
+
+  static class BytesPlan extends CoercionPlan {
+    BytesPlan(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return type == byte[].class || type == String.class;
+    }
+
+    @Override
+    Object coerce(Object value) {
+      if (value instanceof byte[]) {
+        return value;
+      }
+      else if (value instanceof String) {
+        return ((String) value).getBytes();
+      }
+      throw unsupported(value);
+    }
+  }
+
+  static class IntPlan extends CoercionPlan {
+    IntPlan(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return type == Integer.class || type == BigInteger.class || type == String.class;
+    }
+
+    @Override
+    boolean accepts(Object value) {
+      if (value instanceof BigInteger) {
+        return ((BigInteger) value).bitLength() < Integer.SIZE;
+      }
+      return !(value instanceof String) || isIntegral((String) value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    Object coerce(Object value) {
+      if (value instanceof Integer) {
+        return value;
+      }
+      else if (value instanceof BigInteger) {
+        return ((BigInteger) value).intValueExact();
+      }
+      else if (value instanceof String) {
+        return Integer.parseInt((String) value);
+      }
+      throw unsupported(value);
+    }
+  }
+
+  static class LongPlan extends CoercionPlan {
+    LongPlan(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return type == Long.class || type == Integer.class || type == BigInteger.class || type == String.class;
+    }
+
+    @Override
+    boolean accepts(Object value) {
+      if (value instanceof BigInteger) {
+        return ((BigInteger) value).bitLength() < Long.SIZE;
+      }
+      return !(value instanceof String) || isIntegral((String) value, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    Object coerce(Object value) {
+      if (value instanceof Long) {
+        return value;
+      }
+      else if (value instanceof Integer) {
+        return ((Integer) value).longValue();
+      }
+      else if (value instanceof BigInteger) {
+        return ((BigInteger) value).longValueExact();
+      }
+      else if (value instanceof String) {
+        return Long.parseLong((String) value);
+      }
+      throw unsupported(value);
+    }
+  }
+
+  static class FloatPlan extends CoercionPlan {
+    FloatPlan(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return type == Float.class || type == BigDecimal.class || type == String.class;
+    }
+
+    @Override
+    boolean accepts(Object value) {
+      if (value instanceof BigDecimal) {
+        return !Float.isInfinite(((BigDecimal) value).floatValue());
+      }
+      return !(value instanceof String) || isFloatingPoint((String) value);
+    }
+
+    @Override
+    Object coerce(Object value) {
+      if (value instanceof Float) {
+        return value;
+      }
+      else if (value instanceof BigDecimal) {
+        float result = ((BigDecimal) value).floatValue();
+        if (!Float.isInfinite(result)) {
+          return result;
+        }
+      }
+      else if (value instanceof String) {
+        return Float.parseFloat((String) value);
+      }
+      throw unsupported(value);
+    }
+  }
+
+  static class DoublePlan extends CoercionPlan {
+    DoublePlan(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return type == Double.class || type == Float.class || type == BigDecimal.class || type == String.class;
+    }
+
+    @Override
+    boolean accepts(Object value) {
+      if (value instanceof BigDecimal) {
+        return !Double.isInfinite(((BigDecimal) value).doubleValue());
+      }
+      return !(value instanceof String) || isFloatingPoint((String) value);
+    }
+
+    @Override
+    Object coerce(Object value) {
+      if (value instanceof Double) {
+        return value;
+      }
+      else if (value instanceof Float) {
+        return ((Float) value).doubleValue();
+      }
+      else if (value instanceof BigDecimal) {
+        double result = ((BigDecimal) value).doubleValue();
+        if (!Double.isInfinite(result)) {
+          return result;
+        }
+      }
+      else if (value instanceof String) {
+        return Double.parseDouble((String) value);
+      }
+      throw unsupported(value);
+    }
+  }
+
+  static class BooleanPlan extends CoercionPlan {
+    BooleanPlan(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return type == Boolean.class || type == String.class;
+    }
+
+    @Override
+    Object coerce(Object value) {
+      if (value instanceof Boolean) {
+        return value;
+      }
+      else if (value instanceof String) {
+        return Boolean.parseBoolean((String) value);
+      }
+      throw unsupported(value);
+    }
+  }
+
+  static class NullPlan extends CoercionPlan {
+    NullPlan(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    boolean acceptsType(Class<?> type) {
+      return JsonProperties.Null.class.isAssignableFrom(type);
+    }
+
+    @Override
+    Object coerce(Object value) {
+      if (value == null || value instanceof JsonProperties.Null) {
+        return null;
+      }
+      throw unsupported(value);
+    }
+  }
+
+}
@@ -0,0 +1,168 @@
+package org.cedar.schemas.avro.util;
+
+import org.apache.avro.Schema;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Records how each field of the records built by {@link AvroUtils#mapToAvro} and
+ * {@link AvroUtils#jsonToAvroLenient} was coerced on the current thread, for debugging a single record:
+ * <pre>
+ * try (CoercionTrace trace = CoercionTrace.start()) {
+ *   AvroUtils.mapToAvro(input, ParsedRecord.class);
+ *   trace.getEvents().forEach(System.out::println);
+ * }
+ * </pre>
+ * When no trace is running, the coercion code only pays for a single volatile read per record.
+ */
+public class CoercionTrace implements AutoCloseable {
+
+  private static volatile int running = 0;
+  private static final ThreadLocal<CoercionTrace> current = new ThreadLocal<>();
+
+  private final CoercionTrace previous;
+  private final List<Event> events = new ArrayList<>();
+  private final Deque<String> path = new ArrayDeque<>();
+  private boolean closed = false;
+
+  private CoercionTrace(CoercionTrace previous) {
+    this.previous = previous;
+  }
+
+  /**
+   * Starts tracing coercion on the current thread, until the returned trace is closed
+   */
+  public static CoercionTrace start() {
+    CoercionTrace trace = new CoercionTrace(current.get());
+    current.set(trace);
+    synchronized (CoercionTrace.class) {
+      running++;
+    }
+    return trace;
+  }
+
+  /**
+   * @return The trace running on the current thread, or null if there isn't one
+   */
+  static CoercionTrace active() {
+    return running == 0 ? null : current.get();
+  }
+
+  @Override
+  public void close() {
+    if (closed) { return; }
+    closed = true;
+    if (previous != null) {
+      current.set(previous);
+    }
+    else {
+      current.remove();
+    }
+    synchronized (CoercionTrace.class) {
+      running--;
+    }
+  }
+
+  /**
+   * @return The fields coerced so far, in the order they were completed
+   */
+  public List<Event> getEvents() {
+    return Collections.unmodifiableList(events);
+  }
+
+  void enter(String field) {
+    path.addLast(field);
+  }
+
+  void exit() {
+    path.removeLast();
+  }
+
+  void coerced(Schema schema, String input, Object result) {
+    events.add(new Event(currentPath(), schema, input, describe(result), null));
+  }
+
+  void failed(Schema schema, String input, Exception failure) {
+    events.add(new Event(currentPath(), schema, input, null, failure.getMessage()));
+  }
+
+  private String currentPath() {
+    return String.join(".", path);
+  }
+
+  static String describe(Object value) {
+    return value == null ? "null" : value.getClass().getSimpleName();
+  }
+
+  /**
+   * The coercion of a single field
+   */
+  public static class Event {
+    private final String path;
+    private final String schema;
+    private final Schema.Type schemaType;
+    private final String input;
+    private final String result;
+    private final String failure;
+
+    Event(String path, Schema schema, String input, String result, String failure) {
+      this.path = path;
+      this.schema = schema.getFullName();
+      this.schemaType = schema.getType();
+      this.input = input;
+      this.result = result;
+      this.failure = failure;
+    }
+
+    /**
+     * @return The dot-separated field names leading to the field from the outermost record
+     */
+    public String getPath() {
+      return path;
+    }
+
+    public String getSchema() {
+      return schema;
+    }
+
+    public Schema.Type getSchemaType() {
+      return schemaType;
+    }
+
+    /**
+     * @return The type of the input value, the JSON token it was read from, or "default" if the field's default
+     * was used
+     */
+    public String getInput() {
+      return input;
+    }
+
+    /**
+     * @return The type of the coerced value, or null if coercion failed
+     */
+    public String getResult() {
+      return result;
+    }
+
+    /**
+     * @return The reason coercion failed, or null if it succeeded
+     */
+    public String getFailure() {
+      return failure;
+    }
+
+    public boolean isFailed() {
+      return result == null;
+    }
+
+    @Override
+    public String toString() {
+      return path + " [" + schema + "]: " + input + " -> " + (isFailed() ? "failed: " + failure : result);
+    }
+  }
+
+}
@@ -0,0 +1,199 @@
+package org.cedar.schemas.avro.util;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+
+import java.util.*;
+
+/**
+ * A read-only map view of an Avro record, with the same contents as {@link AvroUtils#avroToMap(GenericRecord)} but
+ * backed directly by the record. Nested records are wrapped in views of their own, and collections and maps in
+ * list and map views, as they are accessed rather than being copied up front.
+ * <br>
+ * Changes to the underlying record are visible through the view.
+ */
+class RecordMapView extends AbstractMap<String, Object> {
+
+  private final GenericRecord record;
+  private final List<Schema.Field> fields;
+  private Object[] wrapped;
+  private Set<Entry<String, Object>> entrySet;
+
+  RecordMapView(GenericRecord record) {
+    this.record = record;
+    this.fields = record.getSchema().getFields();
+  }
+
+  @Override
+  public int size() {
+    return fields.size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof String && record.getSchema().getField((String) key) != null;
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (!(key instanceof String)) { return null; }
+    Schema.Field field = record.getSchema().getField((String) key);
+    return field == null ? null : valueAt(field.pos());
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          return new Iterator<Entry<String, Object>>() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+              return position < fields.size();
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+              if (!hasNext()) { throw new NoSuchElementException(); }
+              int current = position++;
+              return new SimpleImmutableEntry<>(fields.get(current).name(), valueAt(current));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return fields.size();
+        }
+      };
+    }
+    return entrySet;
+  }
+
+  private Object valueAt(int position) {
+    Object value = record.get(position);
+    if (!(value instanceof GenericRecord || value instanceof Collection || value instanceof Map)) {
+      return value;
+    }
+    // keep the wrapper so repeated access to a nested value doesn't keep wrapping it again
+    if (wrapped == null) {
+      wrapped = new Object[fields.size()];
+    }
+    Object view = wrapped[position];
+    if (view == null || !wraps(view, value)) {
+      view = wrap(value);
+      wrapped[position] = view;
+    }
+    return view;
+  }
+
+  private static boolean wraps(Object view, Object value) {
+    if (view instanceof RecordMapView) { return ((RecordMapView) view).record == value; }
+    if (view instanceof ListView) { return ((ListView) view).source == value; }
+    if (view instanceof MapView) { return ((MapView) view).source == value; }
+    return false;
+  }
+
+  private static Object wrap(Object value) {
+    if (value instanceof GenericRecord) {
+      return new RecordMapView((GenericRecord) value);
+    }
+    if (value instanceof Collection) {
+      return new ListView((Collection<?>) value);
+    }
+    if (value instanceof Map) {
+      return new MapView((Map<?, ?>) value);
+    }
+    return value;
+  }
+
+  // like avroCollectionToList, only record elements are transformed
+  private static Object wrapElement(Object value) {
+    return value instanceof GenericRecord ? new RecordMapView((GenericRecord) value) : value;
+  }
+
+  private static class ListView extends AbstractList<Object> {
+    private final Collection<?> source;
+    private final List<?> elements;
+
+    ListView(Collection<?> source) {
+      this.source = source;
+      // lists, including the GenericData.Arrays of decoded records, are viewed directly so that changes show through;
+      // Avro doesn't produce any other collections, which are copied
+      this.elements = source instanceof List ? (List<?>) source : new ArrayList<>(source);
+    }
+
+    @Override
+    public Object get(int index) {
+      return wrapElement(elements.get(index));
+    }
+
+    @Override
+    public int size() {
+      return elements.size();
+    }
+  }
+
+  private static class MapView extends AbstractMap<String, Object> {
+    private final Map<?, ?> source;
+    private Set<Entry<String, Object>> entrySet;
+
+    MapView(Map<?, ?> source) {
+      this.source = source;
+    }
+
+    @Override
+    public int size() {
+      return source.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return source.containsKey(key) || (key instanceof String && source.containsKey(new Utf8((String) key)));
+    }
+
+    @Override
+    public Object get(Object key) {
+      Object value = source.get(key);
+      if (value == null && key instanceof String && !source.containsKey(key)) {
+        value = source.get(new Utf8((String) key));
+      }
+      return wrapElement(value);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+      if (entrySet == null) {
+        entrySet = new AbstractSet<Entry<String, Object>>() {
+          @Override
+          public Iterator<Entry<String, Object>> iterator() {
+            Iterator<? extends Entry<?, ?>> entries = source.entrySet().iterator();
+            return new Iterator<Entry<String, Object>>() {
+              @Override
+              public boolean hasNext() {
+                return entries.hasNext();
+              }
+
+              @Override
+              public Entry<String, Object> next() {
+                Entry<?, ?> entry = entries.next();
+                return new SimpleImmutableEntry<>(String.valueOf(entry.getKey()), wrapElement(entry.getValue()));
+              }
+            };
+          }
+
+          @Override
+          public int size() {
+            return source.size();
+          }
+        };
+      }
+      return entrySet;
+    }
+  }
+
+}
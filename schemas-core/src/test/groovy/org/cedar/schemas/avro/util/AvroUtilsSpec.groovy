@@ -1,12 +1,23 @@
 package org.cedar.schemas.avro.util
 
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.databind.ObjectMapper
+import groovy.json.JsonOutput
 import groovy.json.JsonSlurper
+import org.apache.avro.Schema
+import org.apache.avro.generic.GenericData
+import org.apache.avro.message.BinaryMessageEncoder
+import org.apache.avro.message.MissingSchemaException
+import org.cedar.schemas.avro.psi.AggregatedInput
+import org.cedar.schemas.avro.psi.Analysis
 import org.cedar.schemas.avro.psi.Checksum
 import org.cedar.schemas.avro.psi.ChecksumAlgorithm
 import org.cedar.schemas.avro.psi.Discovery
 import org.cedar.schemas.avro.psi.FileInformation
+import org.cedar.schemas.avro.geojson.Point
 import org.cedar.schemas.avro.psi.FileLocation
 import org.cedar.schemas.avro.psi.Input
+import org.cedar.schemas.avro.psi.KeywordsElement
 import org.cedar.schemas.avro.psi.Method
 import org.cedar.schemas.avro.psi.OperationType
 import org.cedar.schemas.avro.psi.ParsedRecord
@@ -14,10 +25,19 @@ import org.cedar.schemas.avro.psi.Publishing
 import org.cedar.schemas.avro.psi.RecordType
 import spock.lang.Specification
 import spock.lang.Unroll
+import java.lang.ref.WeakReference
+import java.nio.BufferOverflowException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
 
 @Unroll
 class AvroUtilsSpec extends Specification {
 
+  static nullSchema = Schema.create(Schema.Type.NULL)
+  static longSchema = Schema.create(Schema.Type.LONG)
+
   def 'transforms an Input into a map'() {
     def builder = Input.newBuilder()
     builder.type = RecordType.granule
@@ -139,6 +159,118 @@ class AvroUtilsSpec extends Specification {
     result.optionalAttributes['answer'] == map.optionalAttributes.answer
   }
 
+  def 'coercion plans are compiled once per schema'() {
+    expect:
+    CoercionPlan.forSchema(FileInformation.classSchema).is(CoercionPlan.forSchema(FileInformation.classSchema))
+    CoercionPlan.forClass(FileInformation).is(CoercionPlan.forClass(FileInformation))
+  }
+
+  def 'records built from a map do not share mutable default values'() {
+    when:
+    def first = AvroUtils.mapToAvro([name: 'first'], FileInformation)
+    def second = AvroUtils.mapToAvro([name: 'second'], FileInformation)
+    first.checksums.add(Checksum.newBuilder().setAlgorithm(ChecksumAlgorithm.MD5).setValue('abc').build())
+
+    then:
+    first.checksums.size() == 1
+    second.checksums.size() == 0
+  }
+
+  def 'coerces #value for a schema of type #type'() {
+    expect:
+    AvroUtils.coerceValueForSchema(value, schema) == expected
+
+    where:
+    type      | schema                                     | value                      | expected
+    'enum'    | ChecksumAlgorithm.classSchema              | 'SHA1'                     | ChecksumAlgorithm.SHA1
+    'enum'    | ChecksumAlgorithm.classSchema              | ChecksumAlgorithm.MD5      | ChecksumAlgorithm.MD5
+    'long'    | Schema.create(Schema.Type.LONG)            | 42                         | 42L
+    'long'    | Schema.create(Schema.Type.LONG)            | '42'                       | 42L
+    'double'  | Schema.create(Schema.Type.DOUBLE)          | 1.5f                       | 1.5d
+    'boolean' | Schema.create(Schema.Type.BOOLEAN)         | 'true'                     | true
+    'union'   | Schema.createUnion(nullSchema, longSchema) | null                       | null
+    'union'   | Schema.createUnion(nullSchema, longSchema) | '7'                        | 7L
+    'array'   | Schema.createArray(longSchema)             | [1, '2']                   | [1L, 2L]
+    'map'     | Schema.createMap(longSchema)               | [a: 1]                     | [a: 1L]
+  }
+
+  def 'fails to coerce #value for a schema of type #type'() {
+    when:
+    AvroUtils.coerceValueForSchema(value, schema)
+
+    then:
+    thrown(UnsupportedOperationException)
+
+    where:
+    type     | schema                                     | value
+    'enum'   | ChecksumAlgorithm.classSchema              | 'NOT_AN_ALGORITHM'
+    'long'   | Schema.create(Schema.Type.LONG)            | true
+    'union'  | Schema.createUnion(nullSchema, longSchema) | [1]
+    'record' | Checksum.classSchema                       | 'not a map'
+  }
+
+  def 'resolves union #types for value #value'() {
+    def schema = Schema.createUnion(types.collect { Schema.create(Schema.Type.valueOf(it.toUpperCase())) })
+
+    expect:
+    AvroUtils.coerceValueForSchema(value, schema) == expected
+
+    where:
+    types                     | value                   | expected
+    ['null', 'string']        | 'text'                  | 'text'
+    ['string', 'null']        | null                    | null
+    ['null', 'int', 'string'] | '12'                    | 12
+    ['null', 'int', 'string'] | 'abc'                   | 'abc'
+    ['null', 'int', 'string'] | '99999999999'           | '99999999999'
+    ['null', 'int', 'long']   | 99999999999             | 99999999999L
+    ['null', 'int', 'long']   | 2G ** 40                | 2L ** 40
+    ['null', 'float', 'long'] | '1.5e3'                 | 1500f
+    ['null', 'double']        | 2.5G                    | 2.5d
+  }
+
+  def 'checks integral strings without parsing: #value'() {
+    expect:
+    CoercionPlan.isIntegral(value, Integer.MIN_VALUE, Integer.MAX_VALUE) == isInt
+    CoercionPlan.isIntegral(value, Long.MIN_VALUE, Long.MAX_VALUE) == isLong
+
+    where:
+    value                  | isInt | isLong
+    '0'                    | true  | true
+    '-2147483648'          | true  | true
+    '2147483647'           | true  | true
+    '+2147483648'          | false | true
+    '-9223372036854775808' | false | true
+    '9223372036854775808'  | false | false
+    '000000000000000000001'| true  | true
+    ''                     | false | false
+    '-'                    | false | false
+    '1.0'                  | false | false
+    ' 1'                   | false | false
+  }
+
+  def 'checks floating point strings without parsing: #value'() {
+    expect:
+    CoercionPlan.isFloatingPoint(value) == expected
+    if (expected) {
+      Double.parseDouble(value)
+    }
+
+    where:
+    value     | expected
+    '1'       | true
+    ' -1.5 '  | true
+    '.5'      | true
+    '5.'      | true
+    '1e10'    | true
+    '1.5E-3f' | true
+    'NaN'     | true
+    '0x1p3'   | true
+    '.'       | false
+    '1e'      | false
+    'abc'     | false
+    '1.0.0'   | false
+  }
+
   def 'leniently parses json into a FileInformation'() {
     def json = '{"name":"testfile"}'
 
@@ -158,6 +290,95 @@ class AvroUtilsSpec extends Specification {
     result.optionalAttributes.size() == 0
   }
 
+  def 'leniently parses json #inputType with the same rules as mapToAvro'() {
+    def json = JsonOutput.toJson([
+        name              : 'testfile',
+        size              : '42',
+        unknownField      : [nested: [1, 2, 3]],
+        checksums         : [[algorithm: 'SHA1', value: 'xyz', unknown: true]],
+        optionalAttributes: [answer: 42],
+        headers           : null
+    ])
+    def expected = AvroUtils.mapToAvro(new ObjectMapper().readValue(json, Map), FileInformation)
+
+    when:
+    def result = AvroUtils.jsonToAvroLenient(input(json), FileInformation.classSchema)
+
+    then:
+    result.equals(expected)
+    result.size == 42
+    result.checksums[0].algorithm == ChecksumAlgorithm.SHA1
+    result.optionalAttributes == [answer: '42']
+    result.format == null
+
+    where:
+    inputType | input
+    'string'  | { String it -> it }
+    'stream'  | { String it -> new ByteArrayInputStream(it.getBytes('UTF-8')) }
+  }
+
+  def 'leniently parses json from a parser without a codec'() {
+    def json = '{"name":"testfile","format":{"nested":[1,2]},"headers":["a","b"],"checksums":[{"algorithm":"MD5","value":"abc"}]}'
+    def expected = AvroUtils.mapToAvro(new ObjectMapper().readValue(json, Map), FileInformation)
+    def parser = new JsonFactory().createParser(json)
+
+    when:
+    def result = AvroUtils.jsonToAvroLenient(parser, FileInformation.classSchema)
+
+    then:
+    result.equals(expected)
+    result.checksums[0].algorithm == ChecksumAlgorithm.MD5
+  }
+
+  def 'leniently parses a full record from json'() {
+    def record = ParsedRecord.newBuilder()
+        .setType(RecordType.granule)
+        .setDiscovery(Discovery.newBuilder()
+            .setFileIdentifier('test_id')
+            .setKeywords([KeywordsElement.newBuilder().setValues(['a', 'b']).setNamespace('test').build()])
+            .setSpatialBounding(Point.newBuilder().setCoordinates([1.5d, 2.5d]).build())
+            .build())
+        .setFileLocations(['testURI': FileLocation.newBuilder().setUri('testURI').build()])
+        .build()
+    def json = AvroUtils.avroToJson(record).replaceAll(/"dsmmAverage": [^,]+, /, '')
+
+    when:
+    def result = AvroUtils.<ParsedRecord> jsonToAvroLenient(json, ParsedRecord.classSchema)
+
+    then:
+    result.equals(record)
+    result.equals(AvroUtils.mapToAvro(new ObjectMapper().readValue(json, Map), ParsedRecord))
+  }
+
+  def 'lenient json parsing handles #description'() {
+    when:
+    def result = AvroUtils.jsonToAvroLenient(json as String, FileInformation.classSchema)
+
+    then:
+    result == null
+    noExceptionThrown()
+
+    where:
+    description     | json
+    'a null string' | null
+    'a null value'  | 'null'
+  }
+
+  def 'lenient json parsing fails for #description'() {
+    when:
+    AvroUtils.jsonToAvroLenient(json, FileInformation.classSchema)
+
+    then:
+    thrown(exception)
+
+    where:
+    description           | json                   | exception
+    'an empty document'   | ''                     | IOException
+    'a json array'        | '[]'                   | IOException
+    'malformed json'      | '{"name":'             | IOException
+    'an uncoercible value'| '{"size": "forty-two"}'| IllegalStateException
+  }
+
   def 'ParsedRecord has empty array of errors by default'() {
     def record = ParsedRecord.newBuilder().setType(RecordType.collection).build()
 
@@ -199,6 +420,225 @@ class AvroUtilsSpec extends Specification {
     'stream'  | new ByteArrayInputStream('{"isPrivate":true,"until":null}'.bytes)
   }
 
+  def 'builds avro objects from utf-8 json #inputType'() {
+    def json = '{"isPrivate":true,"until":{"long":42}}'
+
+    when:
+    def record = AvroUtils.<Publishing> jsonToAvro(input(json.getBytes('UTF-8')), Publishing.classSchema)
+
+    then:
+    record instanceof Publishing
+    record.isPrivate
+    record.until == 42L
+
+    where:
+    inputType           | input
+    'bytes'             | { byte[] it -> it }
+    'heap byte buffer'  | { byte[] it -> ByteBuffer.wrap(it) }
+    'direct byte buffer'| { byte[] it -> ByteBuffer.allocateDirect(it.length).put(it).flip() }
+  }
+
+  def 'json readers are shared per schema and decode non-ascii text'() {
+    def reader = AvroJsonReader.<FileLocation> forSchema(FileLocation.classSchema)
+    def json = '{"uri":"file:///données/☃","type":null,"deleted":false,"restricted":false,"asynchronous":false,' +
+        '"locality":null,"lastModified":null,"serviceType":null,"optionalAttributes":{}}'
+
+    expect:
+    reader.is(AvroJsonReader.forSchema(FileLocation.classSchema))
+    reader.read(json).uri == 'file:///données/☃'
+    reader.read(json.getBytes('UTF-8')).uri == 'file:///données/☃'
+  }
+
+  def 'json readers populate a reused instance'() {
+    def reader = AvroJsonReader.<Publishing> forSchema(Publishing.classSchema)
+    def reuse = new Publishing()
+
+    when:
+    def result = reader.read('{"isPrivate":true,"until":null}', reuse)
+
+    then:
+    result.is(reuse)
+    result.isPrivate
+  }
+
+  def 'json readers can be used concurrently'() {
+    def reader = AvroJsonReader.<Publishing> forSchema(Publishing.classSchema)
+    def pool = Executors.newFixedThreadPool(4)
+
+    when:
+    def futures = (1..200).collect { i ->
+      pool.submit({ reader.read("{\"isPrivate\":${i % 2 == 0},\"until\":{\"long\":${i}}}") } as Callable)
+    }
+    def results = futures*.get()
+
+    then:
+    results.eachWithIndex { Publishing record, int index ->
+      assert record.until == index + 1
+      assert record.isPrivate == ((index + 1) % 2 == 0)
+    }
+
+    cleanup:
+    pool.shutdown()
+  }
+
+  def 'reads a batch of json documents in order with #description'() {
+    def documents = (1..500).collect { i -> json(i).toString() }
+    def pool = Executors.newFixedThreadPool(3)
+
+    when:
+    def result = configure(AvroBatchReader.<Publishing> forSchema(Publishing.classSchema), pool).read(documents)
+
+    then:
+    !result.hasErrors()
+    result.size() == 500
+    result.records*.until == (1L..500L).toList()
+
+    cleanup:
+    pool.shutdown()
+
+    where:
+    description           | configure                                                          | json
+    'the common pool'     | { AvroBatchReader r, executor -> r }                               | { "{\"isPrivate\":true,\"until\":{\"long\":${it}}}" }
+    'a dedicated pool'    | { AvroBatchReader r, executor -> r.parallelism(2) }                | { "{\"isPrivate\":true,\"until\":{\"long\":${it}}}" }
+    'a supplied executor' | { AvroBatchReader r, executor -> r.executor(executor) }            | { "{\"isPrivate\":true,\"until\":{\"long\":${it}}}" }
+    'lenient decoding'    | { AvroBatchReader r, executor -> r.lenient(true).parallelism(8) } | { "{\"until\":\"${it}\"}" }
+  }
+
+  def 'collects per-document errors without aborting a batch'() {
+    def documents = [
+        '{"isPrivate":true,"until":null}',
+        '{"isPrivate":"nope","until":null}',
+        'not json',
+        '{"isPrivate":false,"until":{"long":1}}',
+        null,
+    ]
+
+    when:
+    def result = AvroBatchReader.<Publishing> forSchema(Publishing.classSchema).parallelism(2).read(documents)
+
+    then:
+    result.size() == 5
+    result.records[0].isPrivate
+    result.records[1] == null
+    result.records[2] == null
+    result.records[3].until == 1L
+    result.records[4] == null
+    result.errors.keySet() as List == [1, 2, 4]
+    result.errors.values().every { it instanceof Exception }
+    result.errors[4] instanceof IllegalArgumentException
+  }
+
+  def 'reads a batch of newline-delimited json leniently'() {
+    def ndjson = '{"isPrivate":"true","until":"42"}\n\n{"isPrivate":false}\n{"until":"soon"}\n'
+
+    when:
+    def result = AvroBatchReader.<Publishing> forSchema(Publishing.classSchema)
+        .lenient(true)
+        .readLines(new ByteArrayInputStream(ndjson.getBytes('UTF-8')))
+
+    then:
+    result.size() == 3
+    result.records[0].isPrivate
+    result.records[0].until == 42L
+    !result.records[1].isPrivate
+    result.records[2] == null
+    result.errors.keySet() as List == [2]
+    result.errors[2] instanceof IllegalStateException
+  }
+
+  def 'streams documents to a listener with at most #maxInFlight in flight'() {
+    def pulled = new java.util.concurrent.atomic.AtomicLong()
+    def documents = java.util.stream.LongStream.rangeClosed(1, 2_500)
+        .mapToObj { it % 1000 == 0 ? 'not json' : "{\"isPrivate\":true,\"until\":{\"long\":${it}}}".toString() }
+        .peek { pulled.incrementAndGet() }
+    def delivered = []
+    def errors = [:]
+    def mostAhead = 0L
+    def listener = new AvroBatchReader.Listener<Publishing>() {
+      void onRecord(long index, Publishing record) {
+        mostAhead = Math.max(mostAhead, pulled.get() - delivered.size())
+        delivered << record.until
+      }
+
+      void onError(long index, Exception error) {
+        delivered << null
+        errors[index] = error
+      }
+    }
+
+    when:
+    def count = AvroBatchReader.<Publishing> forSchema(Publishing.classSchema)
+        .parallelism(2)
+        .maxInFlight(maxInFlight)
+        .read(documents, listener)
+
+    then:
+    count == 2_500
+    delivered.size() == 2_500
+    delivered.findAll().size() == 2_498
+    delivered[0] == 1L
+    delivered[2_499] == 2_500L
+    errors.keySet() as List == [999L, 1999L]
+    mostAhead <= maxInFlight
+
+    where:
+    maxInFlight << [1, 300, 10_000]
+  }
+
+  def 'reads more documents while earlier records are passed to the listener'() {
+    def pulled = new java.util.concurrent.atomic.AtomicLong()
+    def documents = java.util.stream.LongStream.rangeClosed(1, 1_000)
+        .mapToObj { "{\"isPrivate\":true,\"until\":{\"long\":${it}}}".toString() }
+        .peek { pulled.incrementAndGet() }
+    def pulledAt = [:]
+    def listener = new AvroBatchReader.Listener<Publishing>() {
+      void onRecord(long index, Publishing record) { pulledAt[index] = pulled.get() }
+
+      void onError(long index, Exception error) {}
+    }
+
+    when:
+    AvroBatchReader.<Publishing> forSchema(Publishing.classSchema)
+        .parallelism(2)
+        .maxInFlight(100)
+        .read(documents, listener)
+
+    then: 'the first documents were replaced as they were delivered, rather than after all 100 were'
+    pulledAt[50L] > 100
+    pulledAt.every { index, count -> count - index <= 100 }
+  }
+
+  def 'streams newline-delimited json to a listener'() {
+    def ndjson = '{"isPrivate":"true","until":"42"}\n\n{"isPrivate":false}\n{"until":"soon"}\n'
+    def outcomes = []
+    def listener = new AvroBatchReader.Listener<Publishing>() {
+      void onRecord(long index, Publishing record) { outcomes << [index, record.isPrivate] }
+
+      void onError(long index, Exception error) { outcomes << [index, error.class] }
+    }
+
+    when:
+    def count = AvroBatchReader.<Publishing> forSchema(Publishing.classSchema)
+        .lenient(true)
+        .maxInFlight(2)
+        .readLines(new ByteArrayInputStream(ndjson.getBytes('UTF-8')), listener)
+
+    then:
+    count == 3
+    outcomes == [[0L, true], [1L, false], [2L, IllegalStateException]]
+  }
+
+  def 'rejects a max in flight of #maxInFlight'() {
+    when:
+    AvroBatchReader.forSchema(Publishing.classSchema).maxInFlight(maxInFlight)
+
+    then:
+    thrown(IllegalArgumentException)
+
+    where:
+    maxInFlight << [0, -1]
+  }
+
   def 'reads the example record from json'() {
     when:
     def inputStream = ClassLoader.systemClassLoader.getResourceAsStream('example-record-avro.json')
@@ -208,4 +648,384 @@ class AvroUtilsSpec extends Specification {
     inputRecord instanceof ParsedRecord
   }
 
+  def 'binary codec round trips #type.simpleName records'() {
+    def inputStream = ClassLoader.systemClassLoader.getResourceAsStream('example-record-avro.json')
+    def parsedRecord = AvroUtils.<ParsedRecord> jsonToAvro(inputStream, ParsedRecord.classSchema)
+    def record = select(parsedRecord)
+    def codec = AvroBinaryCodec.forSchema(type.classSchema)
+
+    when:
+    def bytes = codec.encode(record)
+    def direct = ByteBuffer.allocateDirect(bytes.length + 2).put((byte) 0).put(bytes).flip().position(1)
+    def heap = ByteBuffer.allocate(bytes.length + 8)
+    codec.encode(record, heap)
+    heap.flip()
+
+    then:
+    codec.is(AvroBinaryCodec.forSchema(type.classSchema))
+    codec.decode(bytes).equals(record)
+    codec.decode(direct).equals(record)
+    direct.position() == 1
+    codec.decode(heap).equals(record)
+    codec.decode(new ByteArrayInputStream(bytes), null).equals(record)
+
+    where:
+    type           | select
+    ParsedRecord   | { ParsedRecord it -> it }
+    Discovery      | { ParsedRecord it -> it.discovery }
+    Analysis       | { ParsedRecord it -> it.analysis }
+    AggregatedInput| { ParsedRecord it -> AggregatedInput.newBuilder().setFileInformation(it.fileInformation).setFileLocations(it.fileLocations).setPublishing(it.publishing).setRelationships(it.relationships).build() }
+  }
+
+  def 'binary codec leaves a byte buffer as it was when a record does not fit'() {
+    def inputStream = ClassLoader.systemClassLoader.getResourceAsStream('example-record-avro.json')
+    def record = AvroUtils.<ParsedRecord> jsonToAvro(inputStream, ParsedRecord.classSchema)
+    def codec = AvroBinaryCodec.<ParsedRecord> forSchema(ParsedRecord.classSchema)
+    def bytes = codec.encode(record)
+    def small = ByteBuffer.allocate(16).position(3)
+
+    when:
+    codec.encode(record, small)
+
+    then:
+    thrown(BufferOverflowException)
+    small.position() == 3
+
+    when:
+    def large = ByteBuffer.allocate(bytes.length + 3).position(3)
+    codec.encode(record, large)
+
+    then:
+    large.position() == bytes.length + 3
+    Arrays.copyOfRange(large.array(), 3, large.position()) == bytes
+    codec.encode(record) == bytes
+  }
+
+  def 'binary codec encodes correctly after a record fails part way'() {
+    def inputStream = ClassLoader.systemClassLoader.getResourceAsStream('example-record-avro.json')
+    def record = AvroUtils.<ParsedRecord> jsonToAvro(inputStream, ParsedRecord.classSchema)
+    def codec = AvroBinaryCodec.<ParsedRecord> forSchema(ParsedRecord.classSchema)
+    def bytes = codec.encode(record)
+    def invalid = ParsedRecord.newBuilder(record).build()
+    invalid.put('fileLocations', null)
+
+    when:
+    codec.encode(invalid)
+
+    then:
+    thrown(NullPointerException)
+    codec.encode(record) == bytes
+  }
+
+  def 'binary codec single-object messages match the generated encoding'() {
+    def inputStream = ClassLoader.systemClassLoader.getResourceAsStream('example-record-avro.json')
+    def record = AvroUtils.<ParsedRecord> jsonToAvro(inputStream, ParsedRecord.classSchema)
+    def codec = AvroBinaryCodec.<ParsedRecord> forSchema(ParsedRecord.classSchema)
+
+    when:
+    def message = codec.encodeMessage(record)
+
+    then:
+    message == record.toByteBuffer()
+    message.duplicate().order(ByteOrder.LITTLE_ENDIAN).getLong(2) == codec.fingerprint
+    codec.decodeMessage(message).equals(record)
+    ParsedRecord.fromByteBuffer(message.duplicate()).equals(record)
+  }
+
+  def 'binary codec reuses instances and rejects unknown fingerprints'() {
+    def codec = AvroBinaryCodec.<Publishing> forSchema(Publishing.classSchema)
+    def record = Publishing.newBuilder().setIsPrivate(true).setUntil(42L).build()
+    def reuse = new Publishing()
+
+    when:
+    def result = codec.decode(codec.encode(record), reuse)
+
+    then:
+    result.is(reuse)
+    result.equals(record)
+
+    when:
+    AvroBinaryCodec.forSchema(Checksum.classSchema).decodeMessage(codec.encodeMessage(record))
+
+    then:
+    thrown(MissingSchemaException)
+  }
+
+  def 'binary codec decodes other schema versions without changing the shared codec'() {
+    def oldSchema = new Schema.Parser().parse('''{
+      "type": "record", "namespace": "org.cedar.schemas.avro.psi", "name": "Publishing",
+      "fields": [{"name": "isPrivate", "type": "boolean"}]
+    }''')
+    def oldRecord = new GenericData.Record(oldSchema)
+    oldRecord.put('isPrivate', true)
+    def message = new BinaryMessageEncoder(GenericData.get(), oldSchema).encode(oldRecord)
+    def shared = AvroBinaryCodec.<Publishing> forSchema(Publishing.classSchema)
+
+    when:
+    def codec = shared.withWriterSchema(oldSchema)
+
+    then:
+    !codec.is(shared)
+    codec.decodeMessage(message.duplicate()) == Publishing.newBuilder().setIsPrivate(true).build()
+
+    when:
+    shared.decodeMessage(message.duplicate())
+
+    then:
+    thrown(MissingSchemaException)
+  }
+
+  def 'json writer round trips standard avro json'() {
+    def inputStream = ClassLoader.systemClassLoader.getResourceAsStream('example-record-avro.json')
+    def record = AvroUtils.<ParsedRecord> jsonToAvro(inputStream, ParsedRecord.classSchema)
+
+    when:
+    def json = AvroJsonWriter.avro().toJson(record)
+    def bytes = AvroJsonWriter.avro().toJsonBytes(record)
+
+    then:
+    AvroUtils.<ParsedRecord> jsonToAvro(json, ParsedRecord.classSchema).equals(record)
+    AvroUtils.<ParsedRecord> jsonToAvro(bytes, ParsedRecord.classSchema).equals(record)
+  }
+
+  def 'plain json writer matches avroToJson'() {
+    def inputStream = ClassLoader.systemClassLoader.getResourceAsStream('example-record-avro.json')
+    def record = AvroUtils.<ParsedRecord> jsonToAvro(inputStream, ParsedRecord.classSchema)
+    def slurper = new JsonSlurper()
+
+    expect:
+    slurper.parseText(AvroJsonWriter.plain().toJson(record)) == slurper.parseText(AvroUtils.avroToJson(record))
+  }
+
+  def 'json writer streams non-ascii text as utf-8'() {
+    def record = FileLocation.newBuilder().setUri('file:///données/☃').build()
+    def out = new ByteArrayOutputStream()
+
+    when:
+    AvroJsonWriter.plain().write(record, out)
+
+    then:
+    new JsonSlurper().parseText(out.toString('UTF-8')).uri == 'file:///données/☃'
+  }
+
+  def 'json writer can leave out #description'() {
+    def record = FileLocation.newBuilder().setUri('test').setType(null).setServiceType('Amazon:AWS:S3').build()
+
+    when:
+    def json = writer.toJson(record)
+    def fields = new JsonSlurper().parseText(json)
+
+    then:
+    fields.keySet() == expectedFields as Set
+    AvroUtils.<FileLocation> jsonToAvroLenient(json, FileLocation.classSchema).equals(record)
+
+    where:
+    description | writer                                                     | expectedFields
+    'nothing'   | AvroJsonWriter.plain()                                     | FileLocation.classSchema.fields*.name()
+    'nulls'     | AvroJsonWriter.plain().omitNulls(true)                     | ['uri', 'deleted', 'restricted', 'asynchronous', 'serviceType', 'optionalAttributes']
+    'defaults'  | AvroJsonWriter.plain().omitDefaults(true)                  | ['uri', 'serviceType']
+    'both'      | AvroJsonWriter.plain().omitNulls(true).omitDefaults(true) | ['uri', 'serviceType']
+  }
+
+  def 'avro json writer round trips with #description'() {
+    def record = FileLocation.newBuilder().setUri('test').setType(null).setServiceType('Amazon:AWS:S3').build()
+    def writer = configure(AvroJsonWriter.avro())
+
+    when:
+    def json = writer.toJson(record)
+
+    then:
+    new JsonSlurper().parseText(json).keySet() == FileLocation.classSchema.fields*.name() as Set
+    AvroUtils.<FileLocation> jsonToAvro(json, FileLocation.classSchema).equals(record)
+
+    where:
+    description             | configure
+    'nulls not left out'    | { AvroJsonWriter it -> it.omitNulls(false) }
+    'defaults not left out' | { AvroJsonWriter it -> it.omitDefaults(false) }
+  }
+
+  def 'avro json writer refuses to leave out #description'() {
+    when:
+    configure(AvroJsonWriter.avro())
+
+    then:
+    thrown(IllegalStateException)
+
+    where:
+    description | configure
+    'nulls'     | { AvroJsonWriter it -> it.omitNulls(true) }
+    'defaults'  | { AvroJsonWriter it -> it.omitDefaults(true) }
+  }
+
+  def 'map views have the same contents as avroToMap'() {
+    def inputStream = ClassLoader.systemClassLoader.getResourceAsStream('example-record-avro.json')
+    def record = AvroUtils.<ParsedRecord> jsonToAvro(inputStream, ParsedRecord.classSchema)
+
+    when:
+    def view = AvroUtils.avroToMapView(record)
+
+    then:
+    view == AvroUtils.avroToMap(record)
+    AvroUtils.avroToMap(record) == view
+    view.keySet() as List == ParsedRecord.classSchema.fields*.name()
+    view.discovery.is(view.discovery)
+    view.discovery.keywords[0] instanceof Map
+    view.discovery.keywords[0].values == record.discovery.keywords[0].values
+    JsonOutput.toJson(view) == JsonOutput.toJson(AvroUtils.avroToMap(record))
+  }
+
+  def 'map views are read-only and backed by the record'() {
+    def record = ParsedRecord.newBuilder()
+        .setFileLocations(['testURI': FileLocation.newBuilder().setUri('testURI').build()])
+        .build()
+    def view = AvroUtils.avroToMapView(record)
+
+    expect:
+    view.fileLocations.testURI.uri == 'testURI'
+    view.containsKey('type')
+    view.type == null
+    !view.containsKey('notAField')
+    view.notAField == null
+
+    when:
+    record.put('fileLocations', ['otherURI': FileLocation.newBuilder().setUri('otherURI').build()])
+
+    then:
+    view.fileLocations.keySet() == ['otherURI'] as Set
+
+    when:
+    view.put('type', RecordType.granule)
+
+    then:
+    thrown(UnsupportedOperationException)
+
+    when:
+    view.errors.add('error')
+
+    then:
+    thrown(UnsupportedOperationException)
+  }
+
+  def 'map views show changes to the arrays of decoded records'() {
+    def inputStream = ClassLoader.systemClassLoader.getResourceAsStream('example-record-avro.json')
+    def record = AvroUtils.<ParsedRecord> jsonToAvro(inputStream, ParsedRecord.classSchema)
+    def keywords = record.discovery.keywords
+    def view = AvroUtils.avroToMapView(record)
+    def keywordsView = view.discovery.keywords
+    def size = keywords.size()
+
+    expect:
+    keywords instanceof GenericData.Array
+
+    when:
+    keywords.add(KeywordsElement.newBuilder().setValues(['added']).setNamespace('test').build())
+    keywords[0].values.set(0, 'changed')
+
+    then:
+    keywordsView.size() == size + 1
+    keywordsView[size].values == ['added']
+    view.discovery.keywords[0].values[0] == 'changed'
+  }
+
+  def 'caches avro type lookups by name'() {
+    expect:
+    AvroTypes.lookup(ParsedRecord.name).is(AvroTypes.lookup(ParsedRecord.name))
+    AvroTypes.lookup(ParsedRecord).is(AvroTypes.lookup(ParsedRecord.name))
+    AvroUtils.findAvroClass(ParsedRecord.name) == ParsedRecord
+    AvroUtils.findEnum(RecordType.name) == RecordType
+    AvroTypes.lookup(RecordType.name).constants == RecordType.values().collectEntries { [(it.name()): it] }
+    AvroTypes.lookup(ParsedRecord.name).newRecord() instanceof ParsedRecord
+  }
+
+  def 'does not keep class loaders it has looked up types with'() {
+    def loader = new URLClassLoader(new URL[0], AvroUtilsSpec.classLoader)
+    def reference = new WeakReference(loader)
+    AvroTypes.lookup(ParsedRecord.name, loader)
+    AvroTypes.lookup('org.cedar.schemas.avro.psi.NotAType', loader)
+    loader = null
+
+    when:
+    for (int i = 0; i < 10 && reference.get() != null; i++) {
+      System.gc()
+      Thread.sleep(10)
+    }
+
+    then:
+    reference.get() == null
+  }
+
+  def 'caches failed avro type lookups'() {
+    def type = AvroTypes.lookup('org.cedar.schemas.avro.psi.NotAType')
+
+    expect:
+    type.missing
+    type.is(AvroTypes.lookup('org.cedar.schemas.avro.psi.NotAType'))
+
+    when:
+    AvroUtils.findAvroClass('org.cedar.schemas.avro.psi.NotAType')
+
+    then:
+    thrown(ClassNotFoundException)
+
+    when:
+    AvroUtils.findEnum(ParsedRecord.name)
+
+    then:
+    thrown(IllegalArgumentException)
+
+    when:
+    AvroUtils.findAvroFixed(RecordType.name)
+
+    then:
+    thrown(IllegalArgumentException)
+  }
+
+  def 'traces coercion of each field of a record'() {
+    def input = [fileLocations: [testURI: [uri: 'testURI', deleted: 'true']]]
+
+    when:
+    def trace = CoercionTrace.start()
+    AvroUtils.mapToAvro(input, ParsedRecord)
+    trace.close()
+    def events = trace.events.collectEntries { [(it.path): it] }
+
+    then:
+    events['fileLocations.testURI'] == null // map keys and array indices are not part of the path
+    events['fileLocations'].input == 'LinkedHashMap'
+    events['fileLocations'].result == 'LinkedHashMap'
+    events['fileLocations.deleted'].input == 'String'
+    events['fileLocations.deleted'].result == 'Boolean'
+    events['fileLocations.type'].input == 'default'
+    events['type'].schemaType == Schema.Type.UNION
+    !events.values().any { it.failed }
+
+    when: 'nothing is traced once the trace is closed'
+    AvroUtils.mapToAvro(input, ParsedRecord)
+
+    then:
+    trace.events.size() == events.size()
+    CoercionTrace.active() == null
+  }
+
+  def 'traces failed coercion of streamed json'() {
+    def json = '{"isPrivate":{"nested":true},"until":"42"}'
+
+    when:
+    def trace = CoercionTrace.start()
+    try {
+      AvroUtils.jsonToAvroLenient(json, Publishing.classSchema)
+    }
+    finally {
+      trace.close()
+    }
+
+    then:
+    thrown(IllegalStateException)
+    trace.events.size() == 1
+    trace.events[0].path == 'isPrivate'
+    trace.events[0].input == 'START_OBJECT'
+    trace.events[0].failed
+    trace.events[0].failure
+  }
+
 }
@@ -1,6 +1,7 @@
 plugins {
   groovy
   jacoco
+  id("me.champeau.jmh").version("0.6.8")
   `java-library`
   `maven-publish`
 }
@@ -26,6 +27,11 @@ dependencies {
   testImplementation("org.spockframework:spock-core:${Versions.SPOCK}")
 }
 
+jmh {
+  // benchmarks parse the test documents
+  includeTests.set(true)
+}
+
 tasks {
   val sourceJar = register<Jar>("sourceJar") {
     archiveClassifier.set("sources")
@@ -0,0 +1,62 @@
+package org.cedar.schemas.parse;
+
+import org.cedar.schemas.avro.psi.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link DefaultParser#fillInDefaults} with chaining each of the {@code setDefault...} methods, for a record
+ * with the Discovery parsed from the full test document
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DefaultParserBenchmark {
+
+  ParsedRecord record;
+
+  @Setup
+  public void setup() throws IOException {
+    try (InputStream input = DefaultParserBenchmark.class.getClassLoader().getResourceAsStream("test-iso-metadata.xml")) {
+      Discovery discovery = ISOStreamParser.parseXMLMetadataToDiscovery(input);
+      record = ParsedRecord.newBuilder()
+          .setType(RecordType.granule)
+          .setDiscovery(Discovery.newBuilder(discovery).setTitle(null).setDataFormats(Collections.emptyList()).build())
+          .setFileInformation(FileInformation.newBuilder().setName("file.nc").setFormat("NetCDF").build())
+          .setFileLocations(Collections.singletonMap("s3://bucket/file.nc", FileLocation.newBuilder()
+              .setUri("s3://bucket/file.nc")
+              .setType(FileLocationType.ACCESS)
+              .setServiceType("Amazon:AWS:S3")
+              .build()))
+          .build();
+    }
+    catch (Exception e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Benchmark
+  public ParsedRecord fillInDefaults() {
+    return DefaultParser.fillInDefaults(record);
+  }
+
+  @Benchmark
+  public ParsedRecord chainedDefaults() {
+    ParsedRecord.Builder builder = ParsedRecord.newBuilder(record);
+    DefaultParser.setDefaultTitle(builder);
+    DefaultParser.setDefaultFileId(builder);
+    DefaultParser.setDefaultParentId(builder);
+    DefaultParser.setDefaultHierarchyName(builder);
+    DefaultParser.setDefaultLinks(builder);
+    DefaultParser.setDefaultDataFormats(builder);
+    return builder.build();
+  }
+
+}
@@ -0,0 +1,65 @@
+package org.cedar.schemas.parse;
+
+import groovy.xml.XmlSlurper;
+import groovy.xml.slurpersupport.GPathResult;
+import org.cedar.schemas.avro.psi.Discovery;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing with a new {@link XmlSlurper} or context per document against a shared {@link XmlParserContext}, on its own
+ * and as part of parsing a whole {@link Discovery}, for a small and a large document
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlParserBenchmark {
+
+  @Param({"small", "large"})
+  String document;
+
+  String xml;
+
+  @Setup
+  public void setup() throws IOException {
+    String file = document.equals("small") ? "test-iso-point-coords-metadata.xml" : "test-iso-metadata.xml";
+    try (InputStream input = XmlParserBenchmark.class.getClassLoader().getResourceAsStream(file)) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+        bytes.write(buffer, 0, read);
+      }
+      xml = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  @Benchmark
+  public GPathResult newSlurper() throws Exception {
+    return new XmlSlurper().parseText(xml);
+  }
+
+  @Benchmark
+  public GPathResult sharedContext() throws Exception {
+    return XmlParserContext.getDefault().parseText(xml);
+  }
+
+  @Benchmark
+  public Discovery discoveryWithNewContext() throws Exception {
+    return ISOParser.parseXMLMetadataToDiscovery(xml, new XmlParserContext());
+  }
+
+  @Benchmark
+  public Discovery discoveryWithSharedContext() throws Exception {
+    return ISOParser.parseXMLMetadataToDiscovery(xml);
+  }
+
+}
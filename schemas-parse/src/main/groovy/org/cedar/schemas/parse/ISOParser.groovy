@@ -1,171 +1,362 @@
 package org.cedar.schemas.parse
 
 import groovy.json.JsonOutput
+import groovy.transform.CompileStatic
+import groovy.transform.stc.ClosureParams
+import groovy.transform.stc.SimpleType
 import groovy.xml.slurpersupport.GPathResult
-import groovy.xml.XmlSlurper
 import org.apache.commons.text.StringEscapeUtils
 import org.cedar.schemas.avro.geojson.LineString
 import org.cedar.schemas.avro.geojson.Point
 import org.cedar.schemas.avro.geojson.Polygon
 import org.cedar.schemas.avro.geojson.MultiPolygon
 import org.cedar.schemas.avro.psi.*
-
+import org.cedar.schemas.avro.util.AvroBinaryCodec
+import org.cedar.schemas.avro.util.AvroJsonWriter
+import org.cedar.schemas.avro.util.AvroUtils
+
+import java.nio.ByteBuffer
+
+/**
+ * Parses ISO 19115-2 metadata into a {@link Discovery}.
+ * <br>
+ * The parser is statically compiled, so GPath navigation is spelled out through {@link #path} rather than resolved
+ * by Groovy's dynamic property lookup, e.g. {@code path(node, 'a', 'b')} is {@code node.a.b}. Descendant lookups,
+ * i.e. {@code node.'**'.findAll { it.name() == 'c' }}, go through an {@link ISOElementIndex} of the document, which
+ * is built once by {@link #parseXMLMetadataToDiscovery} and shared by all of the section parsers. Each section parser
+ * can also be called on its own, in which case it indexes the document itself. Given a {@link DiscoveryProjection},
+ * only the section parsers feeding the projected fields are run.
+ */
+@CompileStatic
 class ISOParser {
 
+  // The Discovery fields populated by each of the section parsers which populates more than one
+  static final List<String> CITATION_FIELDS = ['fileIdentifier', 'parentIdentifier', 'hierarchyLevelName', 'doi',
+      'purpose', 'status', 'credit', 'title', 'alternateTitle', 'description', 'thumbnail', 'thumbnailDescription',
+      'creationDate', 'revisionDate', 'publicationDate', 'citeAsStatements', 'crossReferences', 'largerWorks',
+      'useLimitation', 'legalConstraints', 'accessFeeStatement', 'orderingInstructions', 'edition'].asImmutable()
+  static final List<String> KEYWORDS_FIELDS = ['keywords', 'topicCategories'].asImmutable()
+  static final List<String> SPATIAL_FIELDS = ['spatialBounding', 'isGlobal'].asImmutable()
+  static final List<String> DSMM_FIELDS = ['dsmmAccessibility', 'dsmmDataIntegrity', 'dsmmDataQualityAssessment',
+      'dsmmDataQualityAssurance', 'dsmmDataQualityControlMonitoring', 'dsmmPreservability',
+      'dsmmProductionSustainability', 'dsmmTransparencyTraceability', 'dsmmUsability', 'dsmmAverage'].asImmutable()
+  static final List<String> MISCELLANEOUS_FIELDS = ['updateFrequency', 'presentationForm'].asImmutable()
+
+  private static final AvroBinaryCodec<Discovery> DISCOVERY_CODEC = AvroBinaryCodec.<Discovery>forSchema(Discovery.classSchema)
+
   static String parseXMLMetadata(String xml) {
     return JsonOutput.toJson(parseXMLMetadataToDiscovery(xml))
   }
 
+  static String parseXMLMetadata(InputStream xml) {
+    return JsonOutput.toJson(parseXMLMetadataToDiscovery(xml))
+  }
+
+  static String parseXMLMetadata(byte[] xml) {
+    return JsonOutput.toJson(parseXMLMetadataToDiscovery(xml))
+  }
+
+  static String parseXMLMetadata(ByteBuffer xml) {
+    return JsonOutput.toJson(parseXMLMetadataToDiscovery(xml))
+  }
+
+  /**
+   * Parses a document into standard Avro JSON, written by a precompiled {@link AvroJsonWriter} rather than
+   * introspected like {@link #parseXMLMetadata(String)}, which can be read back strictly with
+   * {@link AvroUtils#jsonToAvro(String, org.apache.avro.Schema)}.
+   *
+   * @param xml The document
+   * @return The Discovery as Avro JSON
+   */
+  static String parseXMLMetadataToAvroJson(String xml) {
+    return AvroJsonWriter.avro().toJson(parseXMLMetadataToDiscovery(xml))
+  }
+
+  /**
+   * @param xml The encoded document
+   * @param out The stream to write the Discovery to as UTF-8 Avro JSON, which is left open
+   * @see #parseXMLMetadataToAvroJson(String)
+   */
+  static void parseXMLMetadataToAvroJson(InputStream xml, OutputStream out) {
+    AvroJsonWriter.avro().write(parseXMLMetadataToDiscovery(xml), out)
+  }
+
+  /**
+   * @param xml The document
+   * @return The Discovery in the Avro binary format, without a schema or fingerprint
+   */
+  static byte[] parseXMLMetadataToAvroBinary(String xml) {
+    return DISCOVERY_CODEC.encode(parseXMLMetadataToDiscovery(xml))
+  }
+
+  /**
+   * @param xml The encoded document
+   * @param out The stream to write the Discovery to in the Avro binary format, which is left open
+   */
+  static void parseXMLMetadataToAvroBinary(InputStream xml, OutputStream out) {
+    DISCOVERY_CODEC.encode(parseXMLMetadataToDiscovery(xml), out)
+  }
+
   static Discovery parseXMLMetadataToDiscovery(String xml) {
+    return parseXMLMetadataToDiscovery(xml, XmlParserContext.default)
+  }
 
-    def metadata = new XmlSlurper().parseText(xml)
+  /**
+   * @param xml The document
+   * @param context The context to parse the document with, which can be shared between threads
+   * @return The parsed Discovery
+   */
+  static Discovery parseXMLMetadataToDiscovery(String xml, XmlParserContext context) {
+    return parseXMLMetadataToDiscovery(context.parseText(xml))
+  }
 
-    // Parse related data maps from the xml:
-    def citationInfo = parseCitationInfo(metadata)
-    def keywordsMap = parseKeywordsAndTopics(metadata)
-    def dsmmMap = parseDSMM(metadata)
-    def spatialMap = parseSpatialInfo(metadata)
-    def services = parseServices(metadata)
-    def miscellaneous = parseMiscellaneous(metadata)
+  /**
+   * Parses an encoded document, e.g. a record value read from Kafka, without first decoding it into a String. The
+   * encoding is detected from the document's byte order mark or XML declaration, defaulting to UTF-8.
+   *
+   * @param xml The document, which is read to its end but not closed
+   * @return The parsed Discovery
+   */
+  static Discovery parseXMLMetadataToDiscovery(InputStream xml) {
+    return parseXMLMetadataToDiscovery(xml, XmlParserContext.default)
+  }
+
+  static Discovery parseXMLMetadataToDiscovery(InputStream xml, XmlParserContext context) {
+    return parseXMLMetadataToDiscovery(context.parse(xml))
+  }
+
+  /**
+   * @see #parseXMLMetadataToDiscovery(InputStream)
+   */
+  static Discovery parseXMLMetadataToDiscovery(byte[] xml) {
+    return parseXMLMetadataToDiscovery(xml, XmlParserContext.default)
+  }
+
+  static Discovery parseXMLMetadataToDiscovery(byte[] xml, XmlParserContext context) {
+    return parseXMLMetadataToDiscovery(context.parse(xml))
+  }
+
+  /**
+   * @param xml The document, as the remaining bytes of the buffer, which are parsed in place
+   * @see #parseXMLMetadataToDiscovery(InputStream)
+   */
+  static Discovery parseXMLMetadataToDiscovery(ByteBuffer xml) {
+    return parseXMLMetadataToDiscovery(xml, XmlParserContext.default)
+  }
+
+  static Discovery parseXMLMetadataToDiscovery(ByteBuffer xml, XmlParserContext context) {
+    return parseXMLMetadataToDiscovery(context.parse(xml))
+  }
 
+  /**
+   * @param metadata The already parsed document
+   * @return The parsed Discovery
+   */
+  static Discovery parseXMLMetadataToDiscovery(GPathResult metadata) {
+    return parseXMLMetadataToDiscovery(metadata, DiscoveryProjection.ALL)
+  }
+
+  /**
+   * Parses only the given fields of a document, skipping the sections of it which don't feed any of them.
+   *
+   * @param xml The document
+   * @param projection The fields to populate
+   * @return A Discovery with the projected fields parsed and the rest left at their defaults
+   */
+  static Discovery parseXMLMetadataToDiscovery(String xml, DiscoveryProjection projection) {
+    return parseXMLMetadataToDiscovery(XmlParserContext.default.parseText(xml), projection)
+  }
+
+  static Discovery parseXMLMetadataToDiscovery(InputStream xml, DiscoveryProjection projection) {
+    return parseXMLMetadataToDiscovery(XmlParserContext.default.parse(xml), projection)
+  }
+
+  static Discovery parseXMLMetadataToDiscovery(byte[] xml, DiscoveryProjection projection) {
+    return parseXMLMetadataToDiscovery(XmlParserContext.default.parse(xml), projection)
+  }
+
+  static Discovery parseXMLMetadataToDiscovery(ByteBuffer xml, DiscoveryProjection projection) {
+    return parseXMLMetadataToDiscovery(XmlParserContext.default.parse(xml), projection)
+  }
+
+  static Discovery parseXMLMetadataToDiscovery(GPathResult metadata, DiscoveryProjection projection) {
+    // miscellaneous info is read by path alone, every other section needs the index
+    ISOElementIndex index = MISCELLANEOUS_FIELDS.containsAll(projection.fields) ? null : ISOElementIndex.of(metadata)
     def builder = Discovery.newBuilder()
-    builder.fileIdentifier = citationInfo.fileIdentifier
-    builder.parentIdentifier = citationInfo.parentIdentifier
-    builder.hierarchyLevelName = citationInfo.hierarchyLevelName
-    builder.doi = citationInfo.doi
-    builder.purpose = citationInfo.purpose
-    builder.status = citationInfo.status
-    builder.credit = citationInfo.credit
-    builder.title = citationInfo.title
-    builder.alternateTitle = citationInfo.alternateTitle
-    builder.description = citationInfo.description
-    builder.keywords = keywordsMap.keywords as List
-    builder.topicCategories = keywordsMap.topicCategories as List
-    builder.temporalBounding = parseTemporalBounding(metadata)
-    builder.spatialBounding = spatialMap.spatialBounding
-    builder.isGlobal = spatialMap.isGlobal
-    builder.acquisitionInstruments = acquisitionInstruments(metadata)
-    builder.acquisitionOperations = acquisitionOperations(metadata)
-    builder.acquisitionPlatforms = acquisitionPlatforms(metadata)
-    builder.dataFormats = parseDataFormats(metadata)
-    builder.links = parseLinks(metadata)
-    builder.responsibleParties = parseResponsibleParties(metadata)
-    builder.thumbnail = citationInfo.thumbnail
-    builder.thumbnailDescription = citationInfo.thumbnailDescription
-    builder.creationDate = citationInfo.creationDate as String
-    builder.revisionDate = citationInfo.revisionDate as String
-    builder.publicationDate = citationInfo.publicationDate as String
-    builder.citeAsStatements = citationInfo.citeAsStatements as List
-    builder.crossReferences = citationInfo.crossReferences as List
-    builder.largerWorks = citationInfo.largerWorks as List
-    builder.useLimitation = citationInfo.useLimitation
-    builder.legalConstraints = citationInfo.legalConstraints as List
-    builder.accessFeeStatement = citationInfo.accessFeeStatement
-    builder.orderingInstructions = citationInfo.orderingInstructions
-    builder.edition = citationInfo.edition
-    builder.dsmmAccessibility = dsmmMap.Accessibility
-    builder.dsmmDataIntegrity = dsmmMap.DataIntegrity
-    builder.dsmmDataQualityAssessment = dsmmMap.DataQualityAssessment
-    builder.dsmmDataQualityAssurance = dsmmMap.DataQualityAssurance
-    builder.dsmmDataQualityControlMonitoring = dsmmMap.DataQualityControlMonitoring
-    builder.dsmmPreservability = dsmmMap.Preservability
-    builder.dsmmProductionSustainability = dsmmMap.ProductionSustainability
-    builder.dsmmTransparencyTraceability = dsmmMap.TransparencyTraceability
-    builder.dsmmUsability = dsmmMap.Usability
-    builder.dsmmAverage = dsmmMap.average
-    builder.updateFrequency = miscellaneous.updateFrequency
-    builder.presentationForm = miscellaneous.presentationForm
-    builder.services = services as List
 
-    return builder.build()
+    // Parse related data maps from the xml:
+    if (projection.includesAny(CITATION_FIELDS)) {
+      def citationInfo = parseCitationInfo(metadata, index)
+      builder.fileIdentifier = citationInfo.fileIdentifier as String
+      builder.parentIdentifier = citationInfo.parentIdentifier as String
+      builder.hierarchyLevelName = citationInfo.hierarchyLevelName as String
+      builder.doi = citationInfo.doi as String
+      builder.purpose = citationInfo.purpose as String
+      builder.status = citationInfo.status as String
+      builder.credit = citationInfo.credit as String
+      builder.title = citationInfo.title as String
+      builder.alternateTitle = citationInfo.alternateTitle as String
+      builder.description = citationInfo.description as String
+      builder.thumbnail = citationInfo.thumbnail as String
+      builder.thumbnailDescription = citationInfo.thumbnailDescription as String
+      builder.creationDate = citationInfo.creationDate as String
+      builder.revisionDate = citationInfo.revisionDate as String
+      builder.publicationDate = citationInfo.publicationDate as String
+      builder.citeAsStatements = citationInfo.citeAsStatements as List
+      builder.crossReferences = citationInfo.crossReferences as List
+      builder.largerWorks = citationInfo.largerWorks as List
+      builder.useLimitation = citationInfo.useLimitation as String
+      builder.legalConstraints = citationInfo.legalConstraints as List
+      builder.accessFeeStatement = citationInfo.accessFeeStatement as String
+      builder.orderingInstructions = citationInfo.orderingInstructions as String
+      builder.edition = citationInfo.edition as String
+    }
+    if (projection.includesAny(KEYWORDS_FIELDS)) {
+      def keywordsMap = parseKeywordsAndTopics(metadata, index)
+      builder.keywords = keywordsMap.keywords as List
+      builder.topicCategories = keywordsMap.topicCategories as List
+    }
+    if (projection.includes('temporalBounding')) {
+      builder.temporalBounding = parseTemporalBounding(metadata, index)
+    }
+    if (projection.includesAny(SPATIAL_FIELDS)) {
+      def spatialMap = parseSpatialInfo(metadata, index)
+      builder.spatialBounding = spatialMap.spatialBounding
+      builder.isGlobal = spatialMap.isGlobal as Boolean
+    }
+    if (projection.includes('acquisitionInstruments')) {
+      builder.acquisitionInstruments = acquisitionInstruments(metadata, index)
+    }
+    if (projection.includes('acquisitionOperations')) {
+      builder.acquisitionOperations = acquisitionOperations(metadata, index)
+    }
+    if (projection.includes('acquisitionPlatforms')) {
+      builder.acquisitionPlatforms = acquisitionPlatforms(metadata, index)
+    }
+    if (projection.includes('dataFormats')) {
+      builder.dataFormats = parseDataFormats(metadata, index)
+    }
+    if (projection.includes('links')) {
+      builder.links = parseLinks(metadata, index)
+    }
+    if (projection.includes('responsibleParties')) {
+      builder.responsibleParties = parseResponsibleParties(metadata, index)
+    }
+    if (projection.includesAny(DSMM_FIELDS)) {
+      def dsmmMap = parseDSMM(metadata, index)
+      builder.dsmmAccessibility = dsmmMap.Accessibility as Integer
+      builder.dsmmDataIntegrity = dsmmMap.DataIntegrity as Integer
+      builder.dsmmDataQualityAssessment = dsmmMap.DataQualityAssessment as Integer
+      builder.dsmmDataQualityAssurance = dsmmMap.DataQualityAssurance as Integer
+      builder.dsmmDataQualityControlMonitoring = dsmmMap.DataQualityControlMonitoring as Integer
+      builder.dsmmPreservability = dsmmMap.Preservability as Integer
+      builder.dsmmProductionSustainability = dsmmMap.ProductionSustainability as Integer
+      builder.dsmmTransparencyTraceability = dsmmMap.TransparencyTraceability as Integer
+      builder.dsmmUsability = dsmmMap.Usability as Integer
+      builder.dsmmAverage = dsmmMap.average as Float
+    }
+    if (projection.includesAny(MISCELLANEOUS_FIELDS)) {
+      def miscellaneous = parseMiscellaneous(metadata)
+      builder.updateFrequency = miscellaneous.updateFrequency as String
+      builder.presentationForm = miscellaneous.presentationForm as String
+    }
+    if (projection.includes('services')) {
+      builder.services = parseServices(metadata, index) as List
+    }
+
+    // sections set some fields which weren't asked for, e.g. all of the citation info for just a title
+    return projection.apply(builder.build())
   }
 
   static Map parseCitationInfo(GPathResult metadata) {
-    def fileIdentifier
-    def parentIdentifier
-    def hierarchyLevelName
-    def doi
-    def purpose
-    def status
-    def credit
-    def title
-    def alternateTitle
-    def description
-    def thumbnail
-    def thumbnailDescription
-    def creationDate
-    def revisionDate
-    def publicationDate
-    Set citeAsStatements = []
-    Set crossReferences = []
-    Set largerWorks = []
-    def useLimitation
-    def legalConstraints
-    def accessFeeStatement
-    def orderingInstructions
-    def edition
-
-    def idInfo = metadata.identificationInfo.MD_DataIdentification
-
-    fileIdentifier = metadata.fileIdentifier.CharacterString.text() ?: null
-    parentIdentifier = metadata.parentIdentifier.Anchor.text() ?: metadata.parentIdentifier.CharacterString.text() ?: null
-    hierarchyLevelName = metadata.hierarchyLevelName.CharacterString.text().toLowerCase() ?: null
-
-    purpose = idInfo.purpose.text() ?: null
-    status = idInfo.status.MD_ProgressCode.@codeListValue.text() ?: null
-    credit = idInfo.credit.text() ?: null
-
-    def identifiers = idInfo.citation.CI_Citation.'**'.findAll { it.name() == 'identifier' }
-    doi = identifiers.findResult(null, { identifier ->
-      def anchor = identifier.MD_Identifier.code.Anchor
-      def titleTag = anchor.'@xlink:title'.text()
+    return parseCitationInfo(metadata, ISOElementIndex.of(metadata))
+  }
+
+  static Map parseCitationInfo(GPathResult metadata, ISOElementIndex index) {
+    String fileIdentifier
+    String parentIdentifier
+    String hierarchyLevelName
+    String doi
+    String purpose
+    String status
+    String credit
+    String title
+    String alternateTitle
+    String description
+    String thumbnail
+    String thumbnailDescription
+    String creationDate
+    String revisionDate
+    String publicationDate
+    Set<String> citeAsStatements = []
+    Set<Reference> crossReferences = []
+    Set<Reference> largerWorks = []
+    String useLimitation
+    Set<String> legalConstraints
+    String accessFeeStatement
+    String orderingInstructions
+    String edition
+
+    def idInfo = path(metadata, 'identificationInfo', 'MD_DataIdentification')
+
+    fileIdentifier = path(metadata, 'fileIdentifier', 'CharacterString').text() ?: null
+    parentIdentifier = path(metadata, 'parentIdentifier', 'Anchor').text() ?: path(metadata, 'parentIdentifier', 'CharacterString').text() ?: null
+    hierarchyLevelName = path(metadata, 'hierarchyLevelName', 'CharacterString').text().toLowerCase() ?: null
+
+    purpose = path(idInfo, 'purpose').text() ?: null
+    status = path(idInfo, 'status', 'MD_ProgressCode', '@codeListValue').text() ?: null
+    credit = path(idInfo, 'credit').text() ?: null
+
+    def identifiers = index.descendants(path(idInfo, 'citation', 'CI_Citation'), 'identifier')
+    doi = identifiers.findResult(null, { GPathResult identifier ->
+      def anchor = path(identifier, 'MD_Identifier', 'code', 'Anchor')
+      def titleTag = path(anchor, '@xlink:title').text()
       if (titleTag == 'DOI') {
         return anchor.text()
       }
-    })
-    title = idInfo.citation.CI_Citation.title.CharacterString.text() ?: null
-    alternateTitle = idInfo.citation.CI_Citation.alternateTitle.CharacterString.text() ?: null
-    description = idInfo.abstract.CharacterString.text() ?: null
-    def thumbnailPath = idInfo.graphicOverview.MD_BrowseGraphic
-    thumbnail = StringEscapeUtils.unescapeXml(thumbnailPath.fileName.CharacterString.text()) ?: null
-    thumbnailDescription = thumbnailPath.fileDescription.CharacterString.text() ?: null
+      return null
+    }) as String
+    title = path(idInfo, 'citation', 'CI_Citation', 'title', 'CharacterString').text() ?: null
+    alternateTitle = path(idInfo, 'citation', 'CI_Citation', 'alternateTitle', 'CharacterString').text() ?: null
+    description = path(idInfo, 'abstract', 'CharacterString').text() ?: null
+    def thumbnailPath = path(idInfo, 'graphicOverview', 'MD_BrowseGraphic')
+    thumbnail = StringEscapeUtils.unescapeXml(path(thumbnailPath, 'fileName', 'CharacterString').text()) ?: null
+    thumbnailDescription = path(thumbnailPath, 'fileDescription', 'CharacterString').text() ?: null
 
     // Miscellaneous dates:
-    def dates = idInfo.citation.CI_Citation.'**'.findAll { it.name() == 'date' }
+    def dates = index.descendants(path(idInfo, 'citation', 'CI_Citation'), 'date')
     dates.each { date ->
-      def dateType = date.CI_Date.dateType.CI_DateTypeCode.@codeListValue.text()
+      def dateType = path(date, 'CI_Date', 'dateType', 'CI_DateTypeCode', '@codeListValue').text()
       if (dateType == 'publication') {
-        publicationDate = date.CI_Date.date.Date.text() ?: null
+        publicationDate = path(date, 'CI_Date', 'date', 'Date').text() ?: null
       }
       else if (dateType == 'creation') {
-        creationDate = date.CI_Date.date.Date.text() ?: null
+        creationDate = path(date, 'CI_Date', 'date', 'Date').text() ?: null
       }
       else if (dateType == 'revision') {
-        revisionDate = date.CI_Date.date.Date.text() ?: null
+        revisionDate = path(date, 'CI_Date', 'date', 'Date').text() ?: null
       }
     }
 
     // Cite-As Statements
-    def otherConstraints = idInfo.resourceConstraints.MD_LegalConstraints.'**'.findAll {
-      it.name() == 'otherConstraints'
-    }
-    def citationConstraints = otherConstraints.findAll { it.CharacterString.text().toLowerCase().contains('cite') }
-    citeAsStatements = citationConstraints.collect { it.CharacterString.text() }.toSet()
+    def otherConstraints = index.descendants(path(idInfo, 'resourceConstraints', 'MD_LegalConstraints'), 'otherConstraints')
+    def citationConstraints = otherConstraints.findAll { path(it, 'CharacterString').text().toLowerCase().contains('cite') }
+    citeAsStatements = citationConstraints.collect { path(it, 'CharacterString').text() }.toSet()
 
     // Cross References & Larger Works
-    def aggregationInfo = metadata.'**'.findAll { it.name() == 'aggregationInfo' }
+    def aggregationInfo = index.descendants(metadata, 'aggregationInfo')
 
     aggregationInfo.each { aggInfo ->
-      def associationType = aggInfo.MD_AggregateInformation.associationType.DS_AssociationTypeCode.@codeListValue.text() ?: null
+      def associationType = path(aggInfo, 'MD_AggregateInformation', 'associationType', 'DS_AssociationTypeCode', '@codeListValue').text() ?: null
       if (associationType == 'crossReference' || associationType == 'largerWorkCitation') {
-        def citation = aggInfo.MD_AggregateInformation.aggregateDataSetName.CI_Citation
-        def onlineResources = citation.'**'.findAll { it.name() == 'CI_OnlineResource' }
+        def citation = path(aggInfo, 'MD_AggregateInformation', 'aggregateDataSetName', 'CI_Citation')
+        def onlineResources = index.descendants(citation, 'CI_OnlineResource')
 
         def links = onlineResources.collect { parseLink(it) }
 
         def referenceBuilder = Reference.newBuilder()
-        referenceBuilder.title = citation.title.CharacterString.text() ?: null
-        referenceBuilder.date  = citation.date.CI_Date.date.Date.text() ?: null
+        referenceBuilder.title = path(citation, 'title', 'CharacterString').text() ?: null
+        referenceBuilder.date  = path(citation, 'date', 'CI_Date', 'date', 'Date').text() ?: null
         referenceBuilder.links = links
         def reference = referenceBuilder.build()
 
@@ -179,11 +370,12 @@ class ISOParser {
     }
 
     // Use Limitation, Legal Constraints, Access Fee Statements, Ordering Instructions, and Edition
-    useLimitation = idInfo.resourceConstraints.MD_Constraints.useLimitation.CharacterString.text() ?: null
-    legalConstraints = otherConstraints.collect { return it.CharacterString.text() ?: null } as Set
-    accessFeeStatement = metadata.distributionInfo.MD_Distribution.distributionOrderProcess.MD_StandardOrderProcess.fees.CharacterString.text() ?: null
-    orderingInstructions = metadata.distributionInfo.MD_Distribution.distributionOrderProcess.MD_StandardOrderProcess.orderingInstructions.CharacterString.text() ?: null
-    edition = idInfo.citation.CI_Citation.edition.CharacterString.text() ?: null
+    useLimitation = path(idInfo, 'resourceConstraints', 'MD_Constraints', 'useLimitation', 'CharacterString').text() ?: null
+    legalConstraints = otherConstraints.collect { return path(it, 'CharacterString').text() ?: null } as Set
+    def orderProcess = path(metadata, 'distributionInfo', 'MD_Distribution', 'distributionOrderProcess', 'MD_StandardOrderProcess')
+    accessFeeStatement = path(orderProcess, 'fees', 'CharacterString').text() ?: null
+    orderingInstructions = path(orderProcess, 'orderingInstructions', 'CharacterString').text() ?: null
+    edition = path(idInfo, 'citation', 'CI_Citation', 'edition', 'CharacterString').text() ?: null
 
     return [
         fileIdentifier      : fileIdentifier,
@@ -213,27 +405,26 @@ class ISOParser {
   }
 
   static Map parseKeywordsAndTopics(GPathResult metadata) {
-    def extractKnownText = { k ->
-      def text = k.CharacterString.text() ?: k.Anchor.text()
-      return text.trim()
-    }
+    return parseKeywordsAndTopics(metadata, ISOElementIndex.of(metadata))
+  }
 
-    def idInfo = metadata.identificationInfo.MD_DataIdentification
+  static Map parseKeywordsAndTopics(GPathResult metadata, ISOElementIndex index) {
+    def idInfo = path(metadata, 'identificationInfo', 'MD_DataIdentification')
 
-    def keywords = [] as Set
-    def topicCategories = [] as Set
+    Set<KeywordsElement> keywords = [] as Set
+    Set<String> topicCategories = [] as Set
 
-    topicCategories.addAll(idInfo.topicCategory.'**'.findAll { it.name() == 'MD_TopicCategoryCode' }*.text())
+    topicCategories.addAll(index.descendants(path(idInfo, 'topicCategory'), 'MD_TopicCategoryCode').collect { it.text() })
 
-    def keywordGroups = idInfo.descriptiveKeywords.'**'.findAll { it.name() == 'MD_Keywords' }
+    def keywordGroups = index.descendants(path(idInfo, 'descriptiveKeywords'), 'MD_Keywords')
     keywordGroups.each { group ->
-      def namespace = group.thesaurusName.CI_Citation.title.CharacterString.text()
-      def type = group.type.MD_KeywordTypeCode.@codeListValue.text() ?: null
-      def keywordsInGroup = group.'**'.findAll { it.name() == 'keyword' }
-      def values = [] as Set
+      def namespace = path(group, 'thesaurusName', 'CI_Citation', 'title', 'CharacterString').text()
+      def type = path(group, 'type', 'MD_KeywordTypeCode', '@codeListValue').text() ?: null
+      def keywordsInGroup = index.descendants(group, 'keyword')
+      Set<String> values = [] as Set
 
       keywordsInGroup.each { k ->
-        def text = k.CharacterString.text() ?: k.Anchor.text()
+        def text = path(k, 'CharacterString').text() ?: path(k, 'Anchor').text()
         if (text) {
           // Replace any non-trimmed whitespace with a single space character (e.g., in case of tabs or linefeeds)
           values.add(text.trim().replaceAll("\\s+", " "))
@@ -255,24 +446,29 @@ class ISOParser {
   }
 
   static TemporalBounding parseTemporalBounding(GPathResult metadata) {
-    def boundingExtent = metadata.identificationInfo.MD_DataIdentification.extent.EX_Extent
+    return parseTemporalBounding(metadata, ISOElementIndex.of(metadata))
+  }
+
+  static TemporalBounding parseTemporalBounding(GPathResult metadata, ISOElementIndex index) {
+    def boundingExtent = path(metadata, 'identificationInfo', 'MD_DataIdentification', 'extent', 'EX_Extent')
 
-    def description = boundingExtent[0].description.CharacterString.text() ?: null
-    def time = boundingExtent.temporalElement?.'**'?.find { it -> it.name() == 'EX_TemporalExtent' }?.extent
+    def description = path((GPathResult) boundingExtent[0], 'description', 'CharacterString').text() ?: null
+    def temporalExtent = index.first(path(boundingExtent, 'temporalElement'), 'EX_TemporalExtent')
+    GPathResult time = temporalExtent != null ? path(temporalExtent, 'extent') : null
 
     String beginText, beginIndeterminateText, endText, endIndeterminateText, instantText, instantIndeterminateText
     if (time) {
       // parse potential date fields out of XML
-      beginText = time.TimePeriod.beginPosition.text() ?:
-          time.TimePeriod.begin.TimeInstant.timePosition.text() ?: null
-      beginIndeterminateText = time.TimePeriod.beginPosition.@indeterminatePosition.text() ?:
-          time.TimePeriod.begin.TimeInstant.timePosition.@indeterminatePosition.text() ?: null
-      endText = time.TimePeriod.endPosition.text() ?:
-          time.TimePeriod.end.TimeInstant.timePosition.text() ?: null
-      endIndeterminateText = time.TimePeriod.endPosition.@indeterminatePosition.text() ?:
-          time.TimePeriod.end.TimeInstant.timePosition.@indeterminatePosition.text() ?: null
-      instantText = time.TimeInstant.timePosition.text() ?: null
-      instantIndeterminateText = time.TimeInstant.timePosition.@indeterminatePosition.text() ?: null
+      beginText = path(time, 'TimePeriod', 'beginPosition').text() ?:
+          path(time, 'TimePeriod', 'begin', 'TimeInstant', 'timePosition').text() ?: null
+      beginIndeterminateText = path(time, 'TimePeriod', 'beginPosition', '@indeterminatePosition').text() ?:
+          path(time, 'TimePeriod', 'begin', 'TimeInstant', 'timePosition', '@indeterminatePosition').text() ?: null
+      endText = path(time, 'TimePeriod', 'endPosition').text() ?:
+          path(time, 'TimePeriod', 'end', 'TimeInstant', 'timePosition').text() ?: null
+      endIndeterminateText = path(time, 'TimePeriod', 'endPosition', '@indeterminatePosition').text() ?:
+          path(time, 'TimePeriod', 'end', 'TimeInstant', 'timePosition', '@indeterminatePosition').text() ?: null
+      instantText = path(time, 'TimeInstant', 'timePosition').text() ?: null
+      instantIndeterminateText = path(time, 'TimeInstant', 'timePosition', '@indeterminatePosition').text() ?: null
     }
 
     // returns avro TemporalBounding object
@@ -289,8 +485,12 @@ class ISOParser {
   }
 
   static Map parseSpatialInfo(GPathResult metadata) {
-    def space = metadata.identificationInfo.MD_DataIdentification.extent.EX_Extent.geographicElement
-    def bbox = space?.'**'?.find { it -> it.name() == 'EX_GeographicBoundingBox' }
+    return parseSpatialInfo(metadata, ISOElementIndex.of(metadata))
+  }
+
+  static Map parseSpatialInfo(GPathResult metadata, ISOElementIndex index) {
+    def space = path(metadata, 'identificationInfo', 'MD_DataIdentification', 'extent', 'EX_Extent', 'geographicElement')
+    def bbox = index.first(space, 'EX_GeographicBoundingBox')
 
     def spatialBounding = parseBounding(bbox)
     def isGlobal = checkIsGlobal(spatialBounding)
@@ -304,45 +504,43 @@ class ISOParser {
       return null
     }
 
-    Double west = (bbox.westBoundLongitude == "null" || bbox.westBoundLongitude == "") ? null : bbox.westBoundLongitude.Decimal.toDouble()
-    Double east = (bbox.eastBoundLongitude == "null" || bbox.eastBoundLongitude == "") ? null : bbox.eastBoundLongitude.Decimal.toDouble()
-    Double north = (bbox.northBoundLatitude == "null" || bbox.northBoundLatitude == "") ? null : bbox.northBoundLatitude.Decimal.toDouble()
-    Double south = (bbox.southBoundLatitude == "null" || bbox.southBoundLatitude == "") ? null : bbox.southBoundLatitude.Decimal.toDouble()
+    Double west = parseCoordinate((GPathResult) bbox, 'westBoundLongitude')
+    Double east = parseCoordinate((GPathResult) bbox, 'eastBoundLongitude')
+    Double north = parseCoordinate((GPathResult) bbox, 'northBoundLatitude')
+    Double south = parseCoordinate((GPathResult) bbox, 'southBoundLatitude')
 
     // all corners are null, return a null GeoJSON object
     if (west == null && east == null && north == null && south == null) {
       return null
     }
 
-    def coordinates, builder
-
     if (west == east && north == south) {
-      builder = Point.newBuilder()
-      coordinates = [west, north]
+      List<Double> coordinates = [west, north]
+      return Point.newBuilder().setCoordinates(coordinates).build()
     }
     else if (west == east || north == south) {
       // Note: Because we are parsing the 'Geographic Bounding Box' element, only horizontal or vertical lines can be
       //       determined. A diagonal line will be interpreted as a polygon.
-      builder = LineString.newBuilder()
-      coordinates = [[west, south], [east, north]]
+      def coordinates = (List<Object>) [[west, south], [east, north]]
+      return LineString.newBuilder().setCoordinates(coordinates).build()
     }
     else if (west > east) {
-      builder = MultiPolygon.newBuilder()
-      coordinates = [
+      def coordinates = (List<Object>) [
         [[[-180.0d, south], [east, south], [east, north], [-180.0d, north], [-180.0d, south]]],
         [[[west, south], [180.0d, south], [180.0d, north], [west, north], [west, south]]]
         ]
+      return MultiPolygon.newBuilder().setCoordinates(coordinates).build()
     }
     else {
       // this returns with correlating null values as well
-      builder = Polygon.newBuilder()
-      coordinates = [[[west, south], [east, south], [east, north], [west, north], [west, south]]]
+      def coordinates = (List<Object>) [[[west, south], [east, south], [east, north], [west, north], [west, south]]]
+      return Polygon.newBuilder().setCoordinates(coordinates).build()
     }
+  }
 
-    // returns avro Geometry object
-    builder.coordinates = coordinates
-
-    return builder.build()
+  private static Double parseCoordinate(GPathResult bbox, String name) {
+    def corner = path(bbox, name)
+    return (corner == "null" || corner == "") ? null : path(corner, 'Decimal').toDouble()
   }
 
   static def checkIsGlobal(def bounds) {
@@ -350,7 +548,7 @@ class ISOParser {
       return false
     }
 
-    def coords = bounds.coordinates[0]
+    def coords = (List<List>) ((Polygon) bounds).coordinates[0]
     def west = coords[0][0]
     def east = coords[1][0]
     def north = coords[2][1]
@@ -360,16 +558,18 @@ class ISOParser {
   }
 
   static List<Instruments> acquisitionInstruments(GPathResult metadata) {
-    def acquisitionInstruments = [] as Set
-    def instruments = metadata.acquisitionInformation.MI_AcquisitionInformation.'**'.findAll {
-      it.name() == 'MI_Instrument'
-    }
+    return acquisitionInstruments(metadata, ISOElementIndex.of(metadata))
+  }
+
+  static List<Instruments> acquisitionInstruments(GPathResult metadata, ISOElementIndex index) {
+    Set<Instruments> acquisitionInstruments = [] as Set
+    def instruments = index.descendants(path(metadata, 'acquisitionInformation', 'MI_AcquisitionInformation'), 'MI_Instrument')
 
     instruments.each { e ->
       def builder = Instruments.newBuilder()
-      builder.instrumentIdentifier = e.identifier.MD_Identifier.code.CharacterString.text() ?: e.identifier.MD_Identifier.code.Anchor.text() ?: null
-      builder.instrumentType = e.type.CharacterString.text() ?: e.type.Anchor.text() ?: null
-      builder.instrumentDescription = e.description.CharacterString.text() ?: null
+      builder.instrumentIdentifier = path(e, 'identifier', 'MD_Identifier', 'code', 'CharacterString').text() ?: path(e, 'identifier', 'MD_Identifier', 'code', 'Anchor').text() ?: null
+      builder.instrumentType = path(e, 'type', 'CharacterString').text() ?: path(e, 'type', 'Anchor').text() ?: null
+      builder.instrumentDescription = path(e, 'description', 'CharacterString').text() ?: null
       acquisitionInstruments.add(builder.build())
     }
 
@@ -377,65 +577,72 @@ class ISOParser {
   }
 
   static List<Operation> acquisitionOperations(GPathResult metadata) {
-    def results = [] as Set
-    def operations = metadata.acquisitionInformation.MI_AcquisitionInformation.'**'.findAll {
-      it.name() == 'MI_Operation'
-    }
+    return acquisitionOperations(metadata, ISOElementIndex.of(metadata))
+  }
+
+  static List<Operation> acquisitionOperations(GPathResult metadata, ISOElementIndex index) {
+    Set<Operation> results = [] as Set
+    def operations = index.descendants(path(metadata, 'acquisitionInformation', 'MI_AcquisitionInformation'), 'MI_Operation')
 
     operations.each { e ->
       def builder = Operation.newBuilder()
-      builder.operationDescription = e.description.CharacterString.text() ?: null
-      builder.operationIdentifier = e.identifier.MD_Identifier.code.CharacterString.text() ?: e.identifier.MD_Identifier.code.Anchor.text() ?: null
-      builder.operationStatus = e.status.MD_ProgressCode.@codeListValue.text() ?: null
-      builder.operationType = e.type.MI_OperationTypeCode.@codeListValue.text() ?: null // FIXME not sure on path
+      builder.operationDescription = path(e, 'description', 'CharacterString').text() ?: null
+      builder.operationIdentifier = path(e, 'identifier', 'MD_Identifier', 'code', 'CharacterString').text() ?: path(e, 'identifier', 'MD_Identifier', 'code', 'Anchor').text() ?: null
+      builder.operationStatus = path(e, 'status', 'MD_ProgressCode', '@codeListValue').text() ?: null
+      builder.operationType = path(e, 'type', 'MI_OperationTypeCode', '@codeListValue').text() ?: null // FIXME not sure on path
       results.add(builder.build())
     }
     return results.toList()
   }
 
   static List<Platform> acquisitionPlatforms(GPathResult metadata) {
-    def results = [] as Set
-    def platforms = metadata.acquisitionInformation.MI_AcquisitionInformation.'**'.findAll {
-      it.name() == 'MI_Platform'
-    }
+    return acquisitionPlatforms(metadata, ISOElementIndex.of(metadata))
+  }
+
+  static List<Platform> acquisitionPlatforms(GPathResult metadata, ISOElementIndex index) {
+    Set<Platform> results = [] as Set
+    def platforms = index.descendants(path(metadata, 'acquisitionInformation', 'MI_AcquisitionInformation'), 'MI_Platform')
 
     platforms.each { e ->
       def builder = Platform.newBuilder()
-      builder.platformIdentifier = e.identifier.MD_Identifier.code.CharacterString.text() ?: e.identifier.MD_Identifier.code.Anchor.text() ?: null
-      builder.platformDescription = e.description.CharacterString.text() ?: null
-      builder.platformSponsor = e.sponsor.CI_ResponsibleParty.organisationName.'**'.findAll {
-        it.name() == 'CharacterString'
-      }*.text()
+      builder.platformIdentifier = path(e, 'identifier', 'MD_Identifier', 'code', 'CharacterString').text() ?: path(e, 'identifier', 'MD_Identifier', 'code', 'Anchor').text() ?: null
+      builder.platformDescription = path(e, 'description', 'CharacterString').text() ?: null
+      builder.platformSponsor = index.descendants(path(e, 'sponsor', 'CI_ResponsibleParty', 'organisationName'), 'CharacterString').collect { it.text() }
       results.add(builder.build())
     }
     return results.toList()
   }
 
   static List<DataFormat> parseDataFormats(GPathResult metadata) {
-    def formats = metadata.distributionInfo.MD_Distribution.'**'.findAll { it.name() == 'MD_Format' }
-    def uniqueFormat = formats.collect(ISOParser.&parseDataFormat).findAll() as Set
+    return parseDataFormats(metadata, ISOElementIndex.of(metadata))
+  }
+
+  static List<DataFormat> parseDataFormats(GPathResult metadata, ISOElementIndex index) {
+    def formats = index.descendants(path(metadata, 'distributionInfo', 'MD_Distribution'), 'MD_Format')
+    def uniqueFormat = formats.collect { parseDataFormat(it) }.findAll() as Set
     return uniqueFormat.toList()
   }
 
   static DataFormat parseDataFormat(GPathResult node) {
     if (!node) { return null }
     def builder = DataFormat.newBuilder()
-    builder.name    = node?.name?.CharacterString.text() ? (node.name.CharacterString.text() as String).toUpperCase() : null
-    builder.version = node.version.CharacterString.text() ?: null
+    def name = path(node, 'name', 'CharacterString').text()
+    builder.name    = name ? name.toUpperCase() : null
+    builder.version = path(node, 'version', 'CharacterString').text() ?: null
     return builder.build()
   }
 
   static List<Link> parseLinks(GPathResult metadata) {
-    def allLinkNodes = metadata.distributionInfo.MD_Distribution.'**'.findAll {
-      it.name() == 'CI_OnlineResource'
-    }
-    def allUniqueLinks = allLinkNodes.collect(ISOParser.&parseLink).findAll() as Set
+    return parseLinks(metadata, ISOElementIndex.of(metadata))
+  }
+
+  static List<Link> parseLinks(GPathResult metadata, ISOElementIndex index) {
+    def allLinkNodes = index.descendants(path(metadata, 'distributionInfo', 'MD_Distribution'), 'CI_OnlineResource')
+    def allUniqueLinks = allLinkNodes.collect { parseLink(it) }.findAll() as Set
 
     // Find all contact links and remove them
-    def allContactLinkNodes = metadata.distributionInfo.MD_Distribution.distributor.MD_Distributor.distributorContact.'**'.findAll {
-      it.name() == 'CI_OnlineResource'
-    }
-    def allUniqueContactLinks = allContactLinkNodes.collect(ISOParser.&parseLink).findAll() as Set
+    def allContactLinkNodes = index.descendants(path(metadata, 'distributionInfo', 'MD_Distribution', 'distributor', 'MD_Distributor', 'distributorContact'), 'CI_OnlineResource')
+    def allUniqueContactLinks = allContactLinkNodes.collect { parseLink(it) }.findAll() as Set
 
     allUniqueLinks.removeAll(allUniqueContactLinks)
     return allUniqueLinks.toList()
@@ -444,30 +651,32 @@ class ISOParser {
   static Link parseLink(GPathResult node) {
     if (!node) { return null }
     def builder = Link.newBuilder()
-    builder.linkName        = node.name?.CharacterString?.text()?.trim() ?: null
-    builder.linkProtocol    = node.protocol?.CharacterString?.text()?.trim() ?: null
-    builder.linkUrl         = StringEscapeUtils.unescapeXml(node.linkage?.URL?.text()?.trim()) ?: null
-    builder.linkDescription = node.description?.CharacterString?.text()?.trim() ?: null
-    builder.linkFunction    = node.function?.CI_OnLineFunctionCode?.@codeListValue?.text()?.trim() ?: null
+    builder.linkName        = path(node, 'name', 'CharacterString').text().trim() ?: null
+    builder.linkProtocol    = path(node, 'protocol', 'CharacterString').text().trim() ?: null
+    builder.linkUrl         = StringEscapeUtils.unescapeXml(path(node, 'linkage', 'URL').text().trim()) ?: null
+    builder.linkDescription = path(node, 'description', 'CharacterString').text().trim() ?: null
+    builder.linkFunction    = path(node, 'function', 'CI_OnLineFunctionCode', '@codeListValue').text().trim() ?: null
     return builder.build()
   }
 
   static List<ResponsibleParty> parseResponsibleParties(GPathResult metadata) {
-    def partyNodes = metadata.identificationInfo.MD_DataIdentification.'**'.findAll {
-      it.name() == 'CI_ResponsibleParty'
-    }
-    def uniqueParties = partyNodes.collect(ISOParser.&parseParty).findAll() as Set
+    return parseResponsibleParties(metadata, ISOElementIndex.of(metadata))
+  }
+
+  static List<ResponsibleParty> parseResponsibleParties(GPathResult metadata, ISOElementIndex index) {
+    def partyNodes = index.descendants(path(metadata, 'identificationInfo', 'MD_DataIdentification'), 'CI_ResponsibleParty')
+    def uniqueParties = partyNodes.collect { parseParty(it) }.findAll() as Set
     return uniqueParties.toList()
   }
 
   static ResponsibleParty parseParty(GPathResult node) {
     if (!node) { return null }
-    String individualName = node.individualName.CharacterString.text() ?: node.individualName.Anchor.text() ?: null
-    String organizationName = node.organisationName.CharacterString.text() ?: node.organisationName.Anchor.text() ?: null
-    String positionName = node.positionName.CharacterString.text() ?: node.positionName.Anchor.text() ?: null
-    String role = node.role.CI_RoleCode.@codeListValue.text() ?: null
-    String email = node.contactInfo.CI_Contact.address.CI_Address.electronicMailAddress.CharacterString.text() ?: null
-    String phone = node.contactInfo.CI_Contact.phone.CI_Telephone.voice.CharacterString.text() ?: null
+    String individualName = path(node, 'individualName', 'CharacterString').text() ?: path(node, 'individualName', 'Anchor').text() ?: null
+    String organizationName = path(node, 'organisationName', 'CharacterString').text() ?: path(node, 'organisationName', 'Anchor').text() ?: null
+    String positionName = path(node, 'positionName', 'CharacterString').text() ?: path(node, 'positionName', 'Anchor').text() ?: null
+    String role = path(node, 'role', 'CI_RoleCode', '@codeListValue').text() ?: null
+    String email = path(node, 'contactInfo', 'CI_Contact', 'address', 'CI_Address', 'electronicMailAddress', 'CharacterString').text() ?: null
+    String phone = path(node, 'contactInfo', 'CI_Contact', 'phone', 'CI_Telephone', 'voice', 'CharacterString').text() ?: null
     def builder = ResponsibleParty.newBuilder()
     builder.individualName  = individualName
     builder.organizationName= organizationName
@@ -479,7 +688,11 @@ class ISOParser {
   }
 
   static Map parseDSMM(GPathResult metadata) {
-    def dsmmMap = [
+    return parseDSMM(metadata, ISOElementIndex.of(metadata))
+  }
+
+  static Map parseDSMM(GPathResult metadata, ISOElementIndex index) {
+    def dsmmMap = (Map<String, Object>) [
         'Accessibility'               : 0,
         'DataIntegrity'               : 0,
         'DataQualityAssessment'       : 0,
@@ -490,7 +703,7 @@ class ISOParser {
         'TransparencyTraceability'    : 0,
         'Usability'                   : 0
     ]
-    def scoreMap = [
+    Map<String, Integer> scoreMap = [
         'notAvailable': 0,
         'adHoc'       : 1,
         'minimal'     : 2,
@@ -499,31 +712,31 @@ class ISOParser {
         'optimal'     : 5
     ]
 
-    def dsmmValues = []
-    def dsmm = metadata.dataQualityInfo.DQ_DataQuality.report.DQ_ConceptualConsistency.'**'.find {
-      e -> e.nameOfMeasure.CharacterString.text() == 'Data Stewardship Maturity Assessment'
+    List<GPathResult> dsmmValues = []
+    def dsmm = findDescendant(path(metadata, 'dataQualityInfo', 'DQ_DataQuality', 'report', 'DQ_ConceptualConsistency')) {
+      e -> path(e, 'nameOfMeasure', 'CharacterString').text() == 'Data Stewardship Maturity Assessment'
     }
     if (dsmm) {
-      dsmmValues = dsmm.result.DQ_QuantitativeResult.'**'.findAll { it.name() == 'Record' }
+      dsmmValues = index.descendants(path(dsmm, 'result', 'DQ_QuantitativeResult'), 'Record')
     }
 
     dsmmValues.each { r ->
-      def measureUrl = r.CodeListValue.@codeList.text() ?: r.CodeListValue.@codelist.text() // FIXME Handling a typo until it's resolved
+      def measureUrl = path(r, 'CodeListValue', '@codeList').text() ?: path(r, 'CodeListValue', '@codelist').text() // FIXME Handling a typo until it's resolved
       def measure = measureUrl.substring(measureUrl.lastIndexOf('#') + 1)
-      def score = scoreMap.get(r.CodeListValue.@codeListValue.text())
+      def score = scoreMap.get(path(r, 'CodeListValue', '@codeListValue').text())
       dsmmMap.replace(measure, score)
     }
 
-    def avg = dsmmMap.values().sum() / dsmmMap.size()
+    def avg = (Number) dsmmMap.values().sum() / dsmmMap.size()
     dsmmMap.put('average', avg)
 
     return dsmmMap
   }
 
   static Map parseMiscellaneous(GPathResult metadata) {
-    def dataId = metadata.identificationInfo.MD_DataIdentification ?: null
-    def updateFrequency = dataId.resourceMaintenance.MD_MaintenanceInformation.maintenanceAndUpdateFrequency.MD_MaintenanceFrequencyCode.@codeListValue.text() ?: null
-    def presentationForm = dataId.citation.CI_Citation.presentationForm.CI_PresentationFormCode.@codeListValue.text() ?: null
+    GPathResult dataId = path(metadata, 'identificationInfo', 'MD_DataIdentification') ?: null
+    def updateFrequency = path(dataId, 'resourceMaintenance', 'MD_MaintenanceInformation', 'maintenanceAndUpdateFrequency', 'MD_MaintenanceFrequencyCode', '@codeListValue').text() ?: null
+    def presentationForm = path(dataId, 'citation', 'CI_Citation', 'presentationForm', 'CI_PresentationFormCode', '@codeListValue').text() ?: null
     return [
         updateFrequency : updateFrequency,
         presentationForm: presentationForm
@@ -531,28 +744,60 @@ class ISOParser {
   }
 
   static List<Service> parseServices(GPathResult metadata) {
-    def serviceNodes = metadata.identificationInfo.'**'.findAll {
-      it.name() == 'SV_ServiceIdentification'
-    }
-    def uniqueServices = serviceNodes.collect(ISOParser.&parseService).findAll().toSet()
+    return parseServices(metadata, ISOElementIndex.of(metadata))
+  }
+
+  static List<Service> parseServices(GPathResult metadata, ISOElementIndex index) {
+    def serviceNodes = index.descendants(path(metadata, 'identificationInfo'), 'SV_ServiceIdentification')
+    def uniqueServices = serviceNodes.collect { parseService(it, index) }.findAll().toSet()
     return uniqueServices.toList()
   }
 
   static Service parseService(GPathResult node) {
+    return node ? parseService(node, ISOElementIndex.of(node)) : null
+  }
+
+  static Service parseService(GPathResult node, ISOElementIndex index) {
     if (!node) { return null }
-    def operationNodes = node.'**'.findAll {
-      it.name() == 'containsOperations'
-    }
-    def uniqueOperations = operationNodes.collect({parseLink(it?.SV_OperationMetadata?.connectPoint?.CI_OnlineResource)}).findAll().toSet()
+    def operationNodes = index.descendants(node, 'containsOperations')
+    def uniqueOperations = operationNodes.collect({parseLink(path(it, 'SV_OperationMetadata', 'connectPoint', 'CI_OnlineResource'))}).findAll().toSet()
+    def citation = path(node, 'citation', 'CI_Citation')
     def builder = Service.newBuilder()
-    builder.title          = (node?.citation?.CI_Citation?.title?.CharacterString as String).trim()
-    builder.alternateTitle = (node?.citation?.CI_Citation?.alternateTitle?.CharacterString as String).trim()
-    builder.description    = (node?.abstract?.CharacterString as String).trim()
-    builder.date           = node?.citation?.CI_Citation?.date?.Date as String
-    builder.dateType       = node?.citation?.CI_Citation?.dateType?.CI_DateTypeCode as String
-    builder.pointOfContact = parseParty(node?.pointOfContact?.CI_ResponsibleParty)
+    builder.title          = path(citation, 'title', 'CharacterString').text().trim()
+    builder.alternateTitle = path(citation, 'alternateTitle', 'CharacterString').text().trim()
+    builder.description    = path(node, 'abstract', 'CharacterString').text().trim()
+    builder.date           = path(citation, 'date', 'Date').text()
+    builder.dateType       = path(citation, 'dateType', 'CI_DateTypeCode').text()
+    builder.pointOfContact = parseParty(path(node, 'pointOfContact', 'CI_ResponsibleParty'))
     builder.operations     = uniqueOperations.toList()
     return builder.build()
   }
 
+  /**
+   * @return The result of navigating through the given child element (or '@attribute') names, like {@code node.a.b}
+   */
+  static GPathResult path(GPathResult node, String... names) {
+    def result = node
+    for (String name : names) {
+      result = (GPathResult) result.getProperty(name)
+    }
+    return result
+  }
+
+  /**
+   * @return The first of the nodes, and all of their descendants in document order, which matches the predicate, or
+   * null if none do, like {@code nodes.'**'.find(predicate)}
+   */
+  static GPathResult findDescendant(GPathResult nodes,
+      @ClosureParams(value = SimpleType, options = 'groovy.xml.slurpersupport.GPathResult') Closure<Boolean> predicate) {
+    Iterator iterator = nodes.depthFirst()
+    while (iterator.hasNext()) {
+      def node = (GPathResult) iterator.next()
+      if (predicate.call(node)) {
+        return node
+      }
+    }
+    return null
+  }
+
 }
@@ -1,5 +1,6 @@
 package org.cedar.schemas.parse;
 
+import org.apache.avro.Schema;
 import org.cedar.schemas.avro.psi.*;
 
 import java.util.*;
@@ -9,6 +10,24 @@ import java.util.stream.Stream;
 
 public class DefaultParser {
 
+  private static final DefaultRule<String> TITLE_RULE = DefaultRule.whenMissing("title",
+      Discovery.Builder::getTitle, Discovery.Builder::setTitle, DefaultParser::defaultTitle);
+  private static final DefaultRule<String> FILE_ID_RULE = DefaultRule.whenMissing("fileIdentifier",
+      Discovery.Builder::getFileIdentifier, Discovery.Builder::setFileIdentifier, DefaultParser::defaultFileId);
+  private static final DefaultRule<String> PARENT_ID_RULE = DefaultRule.whenMissing("parentIdentifier",
+      Discovery.Builder::getParentIdentifier, Discovery.Builder::setParentIdentifier, DefaultParser::defaultParentId);
+  private static final DefaultRule<String> HIERARCHY_NAME_RULE = DefaultRule.whenMissing("hierarchyLevelName",
+      Discovery.Builder::getHierarchyLevelName, Discovery.Builder::setHierarchyLevelName, DefaultParser::defaultHierarchyName);
+  private static final DefaultRule<List<Link>> LINKS_RULE = DefaultRule.merging("links",
+      Discovery.Builder::getLinks, Discovery.Builder::setLinks, DefaultParser::defaultLinks, DefaultParser::mergeLinks);
+  private static final DefaultRule<List<DataFormat>> DATA_FORMATS_RULE = DefaultRule.whenMissing("dataFormats",
+      Discovery.Builder::getDataFormats, Discovery.Builder::setDataFormats, DefaultParser::defaultDataFormats);
+
+  private static final int DISCOVERY_POSITION = ParsedRecord.getClassSchema().getField("discovery").pos();
+
+  static final DefaultRules STANDARD_RULES = DefaultRules.of(
+      TITLE_RULE, FILE_ID_RULE, PARENT_ID_RULE, HIERARCHY_NAME_RULE, LINKS_RULE, DATA_FORMATS_RULE);
+
   /**
    * Given a {@link ParsedRecord}, fill in any empty fields for which a default can be calculated. For instance
    * if the record's {@link Discovery} does not have a title, it will be set with the default, which is the the
@@ -17,21 +36,40 @@ public class DefaultParser {
    * In general, only fields which have no value will be set with their defaults. The exception is the links,
    * which will have the defaults merged into the input values, with inputs taking precedence.
    * See: {@link #setDefaultLinks(ParsedRecord.Builder)}
+   * <br>
+   * The defaults are the {@link DefaultRules#standard() standard rules}.
    *
    * @param inputRecord The input record
    * @return A new record with any missing fields with defaults filled in
    */
   public static ParsedRecord fillInDefaults(ParsedRecord inputRecord) {
-    return Optional.ofNullable(inputRecord)
-        .map(ParsedRecord::newBuilder)
-        .map(DefaultParser::setDefaultTitle)
-        .map(DefaultParser::setDefaultFileId)
-        .map(DefaultParser::setDefaultParentId)
-        .map(DefaultParser::setDefaultHierarchyName)
-        .map(DefaultParser::setDefaultLinks)
-        .map(DefaultParser::setDefaultDataFormats)
-        .map(ParsedRecord.Builder::build)
-        .orElse(null);
+    return fillInDefaults(inputRecord, STANDARD_RULES);
+  }
+
+  /**
+   * Given a {@link ParsedRecord}, apply each of the given default rules to its {@link Discovery} in turn.
+   * <br>
+   * All of the rules are applied to a single {@link Discovery.Builder}, so the record's Discovery is copied and
+   * built once however many rules there are, rather than once per default like chaining the {@code setDefault...}
+   * methods would.
+   *
+   * @param inputRecord The input record
+   * @param rules The defaults to apply
+   * @return A new record with the defaults applied
+   */
+  public static ParsedRecord fillInDefaults(ParsedRecord inputRecord, DefaultRules rules) {
+    if (inputRecord == null) {
+      return null;
+    }
+    // the rules may only read the record's Discovery, which is replaced before building, so the builder shares it
+    // rather than copying it a second time
+    ParsedRecord.Builder builder = ParsedRecord.newBuilder(withoutDiscovery(inputRecord))
+        .setDiscovery(inputRecord.getDiscovery());
+    Discovery.Builder discovery = getDiscoveryBuilder(inputRecord.getDiscovery());
+    for (DefaultRule<?> rule : rules.getRules()) {
+      rule.apply(builder, discovery);
+    }
+    return builder.setDiscovery(discovery.build()).build();
   }
 
   /**
@@ -70,11 +108,7 @@ public class DefaultParser {
    * @return An updated builder
    */
   public static ParsedRecord.Builder setDefaultTitle(ParsedRecord.Builder builder) {
-    if (discoveryStringMissing(builder, Discovery::getTitle)) {
-      Discovery discovery = getDiscoveryBuilder(builder).setTitle(defaultTitle(builder)).build();
-      builder.setDiscovery(discovery);
-    }
-    return builder;
+    return applyToDiscovery(builder, TITLE_RULE);
   }
 
   /**
@@ -96,11 +130,7 @@ public class DefaultParser {
    * @return An updated builder
    */
   public static ParsedRecord.Builder setDefaultFileId(ParsedRecord.Builder builder) {
-    if (discoveryStringMissing(builder, Discovery::getFileIdentifier)) {
-      Discovery discovery = getDiscoveryBuilder(builder).setFileIdentifier(defaultFileId(builder)).build();
-      builder.setDiscovery(discovery);
-    }
-    return builder;
+    return applyToDiscovery(builder, FILE_ID_RULE);
   }
 
   /**
@@ -122,11 +152,7 @@ public class DefaultParser {
    * @return An updated builder
    */
   public static ParsedRecord.Builder setDefaultParentId(ParsedRecord.Builder builder) {
-    if (discoveryStringMissing(builder, Discovery::getParentIdentifier)) {
-      Discovery discovery = getDiscoveryBuilder(builder).setParentIdentifier(defaultParentId(builder)).build();
-      builder.setDiscovery(discovery);
-    }
-    return builder;
+    return applyToDiscovery(builder, PARENT_ID_RULE);
   }
 
   /**
@@ -152,11 +178,7 @@ public class DefaultParser {
    * @return An updated builder
    */
   public static ParsedRecord.Builder setDefaultHierarchyName(ParsedRecord.Builder builder) {
-    if (discoveryStringMissing(builder, Discovery::getHierarchyLevelName)) {
-      Discovery discovery = getDiscoveryBuilder(builder).setHierarchyLevelName(defaultHierarchyName(builder)).build();
-      builder.setDiscovery(discovery);
-    }
-    return builder;
+    return applyToDiscovery(builder, HIERARCHY_NAME_RULE);
   }
 
   /**
@@ -181,17 +203,22 @@ public class DefaultParser {
    * @return An updated builder
    */
   public static ParsedRecord.Builder setDefaultLinks(ParsedRecord.Builder builder) {
-    Map<String, Link> defaultLinksByUrl = defaultLinks(builder).stream()
+    return applyToDiscovery(builder, LINKS_RULE);
+  }
+
+  /**
+   * @param links The existing discovery links, if any
+   * @param defaultLinks The default links
+   * @return The default links, overridden by any existing link with the same URL
+   */
+  private static List<Link> mergeLinks(List<Link> links, List<Link> defaultLinks) {
+    Map<String, Link> defaultLinksByUrl = defaultLinks.stream()
         .collect(Collectors.toMap(Link::getLinkUrl, Function.identity()));
     // add existing discovery links, overriding defaults based on URL
-    if (!discoveryListEmpty(builder, Discovery::getLinks)) {
-      builder.getDiscovery().getLinks().forEach(l -> defaultLinksByUrl.put(l.getLinkUrl(), l));
+    if (links != null) {
+      links.forEach(l -> defaultLinksByUrl.put(l.getLinkUrl(), l));
     }
-    Discovery discovery = getDiscoveryBuilder(builder)
-        .setLinks(new ArrayList<>(defaultLinksByUrl.values()))
-        .build();
-    builder.setDiscovery(discovery);
-    return builder;
+    return new ArrayList<>(defaultLinksByUrl.values());
   }
 
   /**
@@ -223,11 +250,7 @@ public class DefaultParser {
    * @return An updated builder
    */
   public static ParsedRecord.Builder setDefaultDataFormats(ParsedRecord.Builder builder) {
-    if (discoveryListEmpty(builder, Discovery::getDataFormats)) {
-      Discovery discovery = getDiscoveryBuilder(builder).setDataFormats(defaultDataFormats(builder)).build();
-      builder.setDiscovery(discovery);
-    }
-    return builder;
+    return applyToDiscovery(builder, DATA_FORMATS_RULE);
   }
 
   /**
@@ -249,31 +272,18 @@ public class DefaultParser {
   }
 
   /**
-   * Checks whether or not the record builder has a Discovery object where the given string field is present and not empty.
-   * @param builder The input builder
-   * @param discoveryStringGetter A function reference to a {@link Discovery} getter which returns a string
-   * @return true if the given string field is missing or empty
-   */
-  private static boolean discoveryStringMissing(ParsedRecord.Builder builder, Function<Discovery, String> discoveryStringGetter) {
-    return Optional.ofNullable(builder)
-        .map(ParsedRecord.Builder::getDiscovery)
-        .map(discoveryStringGetter)
-        .map(String::isEmpty)
-        .orElse(true);
-  }
-
-  /**
-   * Checks whether or not the record builder has a Discovery object where the given List field is present and not empty.
+   * Applies one default rule to a copy of the record builder's Discovery, and sets the result back on the record
+   * builder if the rule applied.
    * @param builder The input builder
-   * @param discoveryListGetter A function reference to a {@link Discovery} getter which returns a List
-   * @return true if the given list field is missing or empty
+   * @param rule The default to apply
+   * @return The updated builder
    */
-  private static boolean discoveryListEmpty(ParsedRecord.Builder builder, Function<Discovery, List> discoveryListGetter) {
-    return Optional.ofNullable(builder)
-        .map(ParsedRecord.Builder::getDiscovery)
-        .map(discoveryListGetter)
-        .map(List::isEmpty)
-        .orElse(true);
+  private static ParsedRecord.Builder applyToDiscovery(ParsedRecord.Builder builder, DefaultRule<?> rule) {
+    Discovery.Builder discovery = getDiscoveryBuilder(builder);
+    if (rule.apply(builder, discovery)) {
+      builder.setDiscovery(discovery.build());
+    }
+    return builder;
   }
 
   /**
@@ -294,10 +304,26 @@ public class DefaultParser {
    * @return A {@link Discovery.Builder} instance built on the existing discovery value, if present
    */
   private static Discovery.Builder getDiscoveryBuilder(ParsedRecord.Builder builder) {
-    return Optional.ofNullable(builder)
-        .map(ParsedRecord.Builder::getDiscovery)
-        .map(Discovery::newBuilder)
-        .orElse(Discovery.newBuilder());
+    return getDiscoveryBuilder(builder == null ? null : builder.getDiscovery());
+  }
+
+  private static Discovery.Builder getDiscoveryBuilder(Discovery discovery) {
+    return discovery == null ? Discovery.newBuilder() : Discovery.newBuilder(discovery);
+  }
+
+  /**
+   * @param record A record
+   * @return A shallow copy of the record without its {@link Discovery}, so that a builder made from it deep-copies
+   * everything but the Discovery
+   */
+  private static ParsedRecord withoutDiscovery(ParsedRecord record) {
+    ParsedRecord result = new ParsedRecord();
+    for (Schema.Field field : ParsedRecord.getClassSchema().getFields()) {
+      if (field.pos() != DISCOVERY_POSITION) {
+        result.put(field.pos(), record.get(field.pos()));
+      }
+    }
+    return result;
   }
 
 }
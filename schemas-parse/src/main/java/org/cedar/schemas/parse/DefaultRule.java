@@ -0,0 +1,139 @@
+package org.cedar.schemas.parse;
+
+import org.cedar.schemas.avro.psi.Discovery;
+import org.cedar.schemas.avro.psi.ParsedRecord;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A default for one field of a {@link Discovery}, declared as the field it targets, where its value comes from, and
+ * when it applies. Rules are grouped into {@link DefaultRules}, which {@link DefaultParser#fillInDefaults(ParsedRecord,
+ * DefaultRules)} applies in a single pass.
+ * <br>
+ * Most defaults only fill in a field that is missing, i.e. null or empty:
+ * <pre>{@code
+ * DefaultRule.whenMissing("description", Discovery.Builder::getDescription, Discovery.Builder::setDescription,
+ *     record -> record.getFileInformation().getName())
+ *     .when(record -> record.getFileInformation() != null)
+ * }</pre>
+ * while others combine the default with the existing value, like the links do with
+ * {@link #merging(String, Function, BiConsumer, Function, BinaryOperator)}.
+ * <br>
+ * Sources and conditions are given the input record, whose Discovery is the one being filled in <em>before</em> any
+ * rule has applied: a rule does not see the defaults set by the rules before it. Only the getter, and so the
+ * missing check and the existing value passed to a merge, sees the Discovery as filled in so far. A default derived
+ * from another defaulted field, e.g. a description from a defaulted title, should compute that field's default from
+ * the record itself, e.g. with {@link DefaultParser#defaultTitle(ParsedRecord.Builder)}.
+ *
+ * @param <T> The type of the field
+ */
+public class DefaultRule<T> {
+
+  private final String field;
+  private final Function<Discovery.Builder, T> getter;
+  private final BiConsumer<Discovery.Builder, T> setter;
+  private final Function<ParsedRecord.Builder, T> source;
+  private final BinaryOperator<T> merge;
+  private final Predicate<ParsedRecord.Builder> condition;
+
+  private DefaultRule(String field, Function<Discovery.Builder, T> getter, BiConsumer<Discovery.Builder, T> setter,
+                      Function<ParsedRecord.Builder, T> source, BinaryOperator<T> merge,
+                      Predicate<ParsedRecord.Builder> condition) {
+    if (Discovery.getClassSchema().getField(field) == null) {
+      throw new IllegalArgumentException("Unknown Discovery field: " + field);
+    }
+    this.field = field;
+    this.getter = Objects.requireNonNull(getter);
+    this.setter = Objects.requireNonNull(setter);
+    this.source = Objects.requireNonNull(source);
+    this.merge = merge;
+    this.condition = condition;
+  }
+
+  /**
+   * A rule which sets the field to its default if it is null or empty
+   *
+   * @param field The name of the Discovery field
+   * @param getter Gets the field from a Discovery builder
+   * @param setter Sets the field on a Discovery builder
+   * @param source Computes the default value from the record, whose Discovery is the input's, without any defaults
+   * @return The rule
+   */
+  public static <T> DefaultRule<T> whenMissing(String field, Function<Discovery.Builder, T> getter,
+                                               BiConsumer<Discovery.Builder, T> setter,
+                                               Function<ParsedRecord.Builder, T> source) {
+    return new DefaultRule<>(field, getter, setter, source, null, null);
+  }
+
+  /**
+   * A rule which always sets the field, to a combination of its default and its existing value
+   *
+   * @param merge Combines the existing value, which may be null, with the default value
+   * @see #whenMissing(String, Function, BiConsumer, Function)
+   */
+  public static <T> DefaultRule<T> merging(String field, Function<Discovery.Builder, T> getter,
+                                           BiConsumer<Discovery.Builder, T> setter,
+                                           Function<ParsedRecord.Builder, T> source, BinaryOperator<T> merge) {
+    return new DefaultRule<>(field, getter, setter, source, Objects.requireNonNull(merge), null);
+  }
+
+  /**
+   * @param condition An additional condition on the record for the rule to apply, which sees the input's Discovery
+   *                  without any defaults
+   * @return A copy of this rule which only applies when the condition, and any existing one, holds
+   */
+  public DefaultRule<T> when(Predicate<ParsedRecord.Builder> condition) {
+    Predicate<ParsedRecord.Builder> combined = this.condition == null ? condition : this.condition.and(condition);
+    return new DefaultRule<>(field, getter, setter, source, merge, combined);
+  }
+
+  /**
+   * @return The name of the Discovery field this rule sets
+   */
+  public String getField() {
+    return field;
+  }
+
+  /**
+   * Applies this rule to a Discovery being built for a record.
+   *
+   * @param record The record the default is computed from
+   * @param discovery The Discovery to update
+   * @return true if the rule applied, and so may have changed the Discovery
+   */
+  boolean apply(ParsedRecord.Builder record, Discovery.Builder discovery) {
+    if (condition != null && !condition.test(record)) {
+      return false;
+    }
+    T current = getter.apply(discovery);
+    if (merge != null) {
+      setter.accept(discovery, merge.apply(current, source.apply(record)));
+      return true;
+    }
+    if (isMissing(current)) {
+      setter.accept(discovery, source.apply(record));
+      return true;
+    }
+    return false;
+  }
+
+  private static boolean isMissing(Object value) {
+    if (value == null) { return true; }
+    if (value instanceof CharSequence) { return ((CharSequence) value).length() == 0; }
+    if (value instanceof Collection) { return ((Collection<?>) value).isEmpty(); }
+    if (value instanceof Map) { return ((Map<?, ?>) value).isEmpty(); }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "DefaultRule{" + field + (merge != null ? ", merging" : ", when missing") + "}";
+  }
+
+}
@@ -0,0 +1,84 @@
+package org.cedar.schemas.parse;
+
+import org.cedar.schemas.avro.psi.ParsedRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An ordered, immutable set of {@link DefaultRule}s, applied by
+ * {@link DefaultParser#fillInDefaults(ParsedRecord, DefaultRules)} in a single pass over one Discovery builder.
+ * <br>
+ * Deployments can add defaults of their own, or replace the standard ones, without changing DefaultParser:
+ * <pre>{@code
+ * DefaultRules rules = DefaultRules.standard().with(siteDescriptionRule);
+ * ParsedRecord filledIn = DefaultParser.fillInDefaults(record, rules);
+ * }</pre>
+ * Each rule's source and condition see the input record as it was, not the defaults set by the rules before it (see
+ * {@link DefaultRule}).
+ */
+public class DefaultRules {
+
+  private final List<DefaultRule<?>> rules;
+
+  private DefaultRules(DefaultRule<?>[] rules) {
+    this.rules = Collections.unmodifiableList(Arrays.asList(rules));
+  }
+
+  /**
+   * @return The defaults applied by {@link DefaultParser#fillInDefaults(ParsedRecord)}
+   */
+  public static DefaultRules standard() {
+    return DefaultParser.STANDARD_RULES;
+  }
+
+  public static DefaultRules of(DefaultRule<?>... rules) {
+    DefaultRules result = new DefaultRules(new DefaultRule<?>[0]);
+    for (DefaultRule<?> rule : rules) {
+      result = result.with(rule);
+    }
+    return result;
+  }
+
+  /**
+   * @param rule A rule to add
+   * @return A copy of these rules with the rule in place of any existing rule for the same field, or after all of
+   * them if there is none
+   */
+  public DefaultRules with(DefaultRule<?> rule) {
+    List<DefaultRule<?>> result = new ArrayList<>(rules);
+    for (int i = 0; i < result.size(); i++) {
+      if (result.get(i).getField().equals(rule.getField())) {
+        result.set(i, rule);
+        return new DefaultRules(result.toArray(new DefaultRule<?>[0]));
+      }
+    }
+    result.add(rule);
+    return new DefaultRules(result.toArray(new DefaultRule<?>[0]));
+  }
+
+  /**
+   * @param field The name of a Discovery field
+   * @return A copy of these rules without the rule for the field
+   */
+  public DefaultRules without(String field) {
+    List<DefaultRule<?>> result = new ArrayList<>(rules);
+    result.removeIf(rule -> rule.getField().equals(field));
+    return new DefaultRules(result.toArray(new DefaultRule<?>[0]));
+  }
+
+  /**
+   * @return The rules, in the order they're applied
+   */
+  public List<DefaultRule<?>> getRules() {
+    return rules;
+  }
+
+  @Override
+  public String toString() {
+    return "DefaultRules" + rules;
+  }
+
+}
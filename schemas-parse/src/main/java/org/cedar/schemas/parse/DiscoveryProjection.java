@@ -0,0 +1,117 @@
+package org.cedar.schemas.parse;
+
+import org.apache.avro.Schema;
+import org.cedar.schemas.avro.psi.Discovery;
+
+import java.util.*;
+
+/**
+ * The set of {@link Discovery} fields a parser should populate, so the sections of a document which only feed other
+ * fields can be skipped. Fields outside of the projection are left at their schema defaults.
+ * <br>
+ * Fields are named as they are in the Discovery schema, e.g. {@code DiscoveryProjection.of("fileIdentifier", "title",
+ * "temporalBounding", "spatialBounding")}.
+ */
+public class DiscoveryProjection {
+
+  /**
+   * Every field, i.e. a full parse
+   */
+  public static final DiscoveryProjection ALL = new DiscoveryProjection(fieldNames(Discovery.getClassSchema()));
+
+  private final Set<String> fields;
+
+  private DiscoveryProjection(Set<String> fields) {
+    this.fields = Collections.unmodifiableSet(fields);
+  }
+
+  /**
+   * @param fields The names of the fields to populate
+   * @return The projection
+   * @throws IllegalArgumentException If a name is not a Discovery field
+   */
+  public static DiscoveryProjection of(String... fields) {
+    return of(Arrays.asList(fields));
+  }
+
+  public static DiscoveryProjection of(Collection<String> fields) {
+    Schema schema = Discovery.getClassSchema();
+    Set<String> result = new LinkedHashSet<>();
+    for (String field : fields) {
+      if (schema.getField(field) == null) {
+        throw new IllegalArgumentException("Unknown Discovery field: " + field);
+      }
+      result.add(field);
+    }
+    return new DiscoveryProjection(result);
+  }
+
+  /**
+   * @return The names of the fields to populate
+   */
+  public Set<String> getFields() {
+    return fields;
+  }
+
+  public boolean includes(String field) {
+    return fields.contains(field);
+  }
+
+  /**
+   * @return true if any of the given fields are to be populated
+   */
+  public boolean includesAny(Collection<String> fields) {
+    for (String field : fields) {
+      if (this.fields.contains(field)) { return true; }
+    }
+    return false;
+  }
+
+  /**
+   * @return true if every Discovery field is to be populated
+   */
+  public boolean isAll() {
+    return fields.size() == ALL.fields.size();
+  }
+
+  /**
+   * @param discovery A fully or partially populated Discovery
+   * @return The discovery itself if every field is projected, otherwise a copy with only the projected fields and
+   * defaults for the rest
+   */
+  public Discovery apply(Discovery discovery) {
+    if (isAll()) { return discovery; }
+    Discovery result = Discovery.newBuilder().build();
+    for (String field : fields) {
+      int position = Discovery.getClassSchema().getField(field).pos();
+      result.put(position, discovery.get(position));
+    }
+    return result;
+  }
+
+  private static Set<String> fieldNames(Schema schema) {
+    Set<String> result = new LinkedHashSet<>();
+    for (Schema.Field field : schema.getFields()) {
+      result.add(field.name());
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) { return true; }
+    if (o == null || getClass() != o.getClass()) { return false; }
+    return fields.equals(((DiscoveryProjection) o).fields);
+  }
+
+  @Override
+  public int hashCode() {
+    return fields.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "DiscoveryProjection" + fields;
+  }
+
+}
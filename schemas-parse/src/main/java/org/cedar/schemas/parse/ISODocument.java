@@ -0,0 +1,365 @@
+package org.cedar.schemas.parse;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * An encoded XML document to be parsed by an {@link ISOIngestPipeline}, along with a name identifying where it came
+ * from, e.g. its path.
+ * <br>
+ * Documents are read lazily from their source as the stream is consumed, and streams which read from files must be
+ * closed once they've been consumed.
+ */
+public class ISODocument {
+
+  private final String name;
+  private final byte[] content;
+
+  public ISODocument(String name, byte[] content) {
+    this.name = name;
+    this.content = content;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return The document, with its encoding given by its XML declaration
+   */
+  public byte[] getContent() {
+    return content;
+  }
+
+  /**
+   * @param directory The directory to read
+   * @return The .xml files in the directory and its subdirectories, in path order, named by their paths
+   * @throws IOException If the directory can't be listed
+   */
+  public static Stream<ISODocument> fromDirectory(Path directory) throws IOException {
+    Stream<Path> paths = Files.walk(directory);
+    try {
+      Iterator<Path> sorted = paths
+          .filter(path -> Files.isRegularFile(path) && isXml(path.getFileName().toString()))
+          .sorted()
+          .iterator();
+      return stream(sorted, paths)
+          .map(path -> new ISODocument(path.toString(), readAll(path)));
+    }
+    catch (RuntimeException e) {
+      paths.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @param archive A .zip, .tar, .tar.gz or .tgz file
+   * @return The .xml entries of the archive, in archive order, named by their paths within it
+   * @throws IOException If the archive can't be opened
+   * @throws IllegalArgumentException If the file is not one of the supported types of archive
+   */
+  public static Stream<ISODocument> fromArchive(Path archive) throws IOException {
+    String name = archive.getFileName().toString().toLowerCase();
+    if (name.endsWith(".zip")) {
+      return fromZip(new BufferedInputStream(Files.newInputStream(archive)));
+    }
+    if (name.endsWith(".tar")) {
+      return fromTar(new BufferedInputStream(Files.newInputStream(archive)));
+    }
+    if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+      InputStream raw = Files.newInputStream(archive);
+      try {
+        return fromTar(new BufferedInputStream(new GZIPInputStream(raw)));
+      }
+      catch (IOException | RuntimeException e) {
+        raw.close();
+        throw e;
+      }
+    }
+    throw new IllegalArgumentException("Unsupported archive type: " + archive);
+  }
+
+  /**
+   * @param zip A zip archive, which is closed with the returned stream
+   * @return The .xml entries of the archive
+   */
+  public static Stream<ISODocument> fromZip(InputStream zip) {
+    ZipInputStream input = new ZipInputStream(zip);
+    Iterator<ISODocument> entries = new Iterator<ISODocument>() {
+      // read on the first call to hasNext, so a failure surfaces after the stream that closes the input is returned
+      private ISODocument next;
+      private boolean fetched = false;
+
+      private ISODocument advance() {
+        try {
+          ZipEntry entry;
+          while ((entry = input.getNextEntry()) != null) {
+            if (!entry.isDirectory() && isXml(entry.getName())) {
+              return new ISODocument(entry.getName(), readAll(input));
+            }
+          }
+          return null;
+        }
+        catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      @Override
+      public boolean hasNext() {
+        if (!fetched) {
+          next = advance();
+          fetched = true;
+        }
+        return next != null;
+      }
+
+      @Override
+      public ISODocument next() {
+        if (!hasNext()) { throw new NoSuchElementException(); }
+        fetched = false;
+        return next;
+      }
+    };
+    return stream(entries, input);
+  }
+
+  /**
+   * @param tar An uncompressed tar archive, in the ustar, GNU or POSIX format, which is closed with the returned stream
+   * @return The .xml entries of the archive
+   */
+  public static Stream<ISODocument> fromTar(InputStream tar) {
+    return stream(new TarEntries(tar), tar);
+  }
+
+  /**
+   * @param documents The documents
+   * @return The documents, named by their position, e.g. "document-0"
+   */
+  public static Stream<ISODocument> fromBytes(Iterator<byte[]> documents) {
+    Iterator<ISODocument> named = new Iterator<ISODocument>() {
+      private long position = 0;
+
+      @Override
+      public boolean hasNext() {
+        return documents.hasNext();
+      }
+
+      @Override
+      public ISODocument next() {
+        return new ISODocument("document-" + position++, documents.next());
+      }
+    };
+    return stream(named, null);
+  }
+
+  private static <T> Stream<T> stream(Iterator<T> iterator, AutoCloseable resource) {
+    Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+    Stream<T> result = StreamSupport.stream(spliterator, false);
+    return resource == null ? result : result.onClose(() -> {
+      try {
+        resource.close();
+      }
+      catch (Exception e) {
+        throw new IllegalStateException("Unable to close document source", e);
+      }
+    });
+  }
+
+  private static boolean isXml(String name) {
+    return name.toLowerCase().endsWith(".xml");
+  }
+
+  private static byte[] readAll(Path path) {
+    try {
+      return Files.readAllBytes(path);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static byte[] readAll(InputStream input) throws IOException {
+    return readAll(input, Long.MAX_VALUE);
+  }
+
+  private static byte[] readAll(InputStream input, long limit) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    long remaining = limit;
+    int read;
+    while (remaining > 0 && (read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+      result.write(buffer, 0, read);
+      remaining -= read;
+    }
+    if (limit != Long.MAX_VALUE && remaining > 0) {
+      throw new EOFException("Truncated archive entry");
+    }
+    return result.toByteArray();
+  }
+
+  /**
+   * The regular file entries of a tar archive, with the long names of GNU and POSIX archives applied
+   */
+  private static class TarEntries implements Iterator<ISODocument> {
+    private static final int BLOCK = 512;
+
+    private final InputStream input;
+    private final byte[] header = new byte[BLOCK];
+    private ISODocument next;
+    private boolean fetched = false;
+
+    TarEntries(InputStream input) {
+      this.input = input;
+    }
+
+    private ISODocument advance() {
+      try {
+        String longName = null;
+        while (readBlock(header)) {
+          if (isZeros(header)) {
+            // the end of archive marker
+            return null;
+          }
+          long size = parseOctal(header, 124, 12);
+          char type = (char) header[156];
+          String name = longName != null ? longName : headerName(header);
+          longName = null;
+
+          if (type == 'L') {
+            longName = trimNulls(new String(readEntry(size), StandardCharsets.UTF_8));
+          }
+          else if (type == 'x') {
+            longName = paxPath(new String(readEntry(size), StandardCharsets.UTF_8));
+          }
+          else if ((type == '0' || type == '\0') && isXml(name)) {
+            return new ISODocument(name, readEntry(size));
+          }
+          else {
+            skipEntry(size);
+          }
+        }
+        return null;
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private byte[] readEntry(long size) throws IOException {
+      byte[] content = readAll(input, size);
+      skipFully(padding(size));
+      return content;
+    }
+
+    private void skipEntry(long size) throws IOException {
+      skipFully(size + padding(size));
+    }
+
+    private static long padding(long size) {
+      return (BLOCK - size % BLOCK) % BLOCK;
+    }
+
+    private void skipFully(long count) throws IOException {
+      long remaining = count;
+      while (remaining > 0) {
+        long skipped = input.skip(remaining);
+        if (skipped <= 0) {
+          if (input.read() == -1) { throw new EOFException("Truncated archive entry"); }
+          skipped = 1;
+        }
+        remaining -= skipped;
+      }
+    }
+
+    private boolean readBlock(byte[] block) throws IOException {
+      int total = 0;
+      while (total < block.length) {
+        int read = input.read(block, total, block.length - total);
+        if (read == -1) {
+          if (total == 0) { return false; }
+          throw new EOFException("Truncated archive header");
+        }
+        total += read;
+      }
+      return true;
+    }
+
+    private static boolean isZeros(byte[] block) {
+      for (byte b : block) {
+        if (b != 0) { return false; }
+      }
+      return true;
+    }
+
+    private static String headerName(byte[] header) {
+      String name = field(header, 0, 100);
+      boolean ustar = field(header, 257, 6).startsWith("ustar");
+      String prefix = ustar ? field(header, 345, 155) : "";
+      return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private static String field(byte[] header, int offset, int length) {
+      int end = offset;
+      while (end < offset + length && header[end] != 0) { end++; }
+      return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long parseOctal(byte[] header, int offset, int length) {
+      long result = 0;
+      for (int i = offset; i < offset + length; i++) {
+        byte b = header[i];
+        if (b >= '0' && b <= '7') {
+          result = result * 8 + (b - '0');
+        }
+        else if (result > 0 || (b != ' ' && b != 0)) {
+          break;
+        }
+      }
+      return result;
+    }
+
+    private static String trimNulls(String value) {
+      int end = value.indexOf('\0');
+      return end < 0 ? value : value.substring(0, end);
+    }
+
+    /**
+     * @return The path from a set of POSIX extended header records, each of the form "length key=value\n"
+     */
+    private static String paxPath(String records) {
+      for (String record : records.split("\n")) {
+        int space = record.indexOf(' ');
+        if (space >= 0 && record.startsWith("path=", space + 1)) {
+          return record.substring(space + 1 + "path=".length());
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (!fetched) {
+        next = advance();
+        fetched = true;
+      }
+      return next != null;
+    }
+
+    @Override
+    public ISODocument next() {
+      if (!hasNext()) { throw new NoSuchElementException(); }
+      fetched = false;
+      return next;
+    }
+  }
+
+}
@@ -0,0 +1,145 @@
+package org.cedar.schemas.parse;
+
+import groovy.xml.slurpersupport.GPathResult;
+import groovy.xml.slurpersupport.Node;
+
+import java.util.*;
+
+/**
+ * An index of the elements of a parsed document by local name, so the descendants of a node with a given name
+ * can be looked up without walking its subtree.
+ * <br>
+ * The index is built with a single depth-first walk, numbering the elements in document order and recording where
+ * each element's subtree ends. The descendants of an element with a name are then the indexed elements with that
+ * name whose numbers fall within its subtree, found with a binary search. Results are the same nodes, in the same
+ * order, as {@code nodes.'**'.findAll { it.name() == name }}.
+ */
+public class ISOElementIndex {
+
+  private final Map<Node, Integer> positions = new IdentityHashMap<>();
+  private final List<GPathResult> elements = new ArrayList<>();
+  private int[] subtreeEnds = new int[256];
+  private final Map<String, Positions> byName = new HashMap<>();
+
+  private ISOElementIndex() {}
+
+  /**
+   * @param document The parsed document, or any other nodes to index the subtrees of
+   * @return The index of the elements of the document
+   */
+  public static ISOElementIndex of(GPathResult document) {
+    ISOElementIndex index = new ISOElementIndex();
+    Iterator<?> roots = document.iterator();
+    while (roots.hasNext()) {
+      index.add((GPathResult) roots.next());
+    }
+    return index;
+  }
+
+  private void add(GPathResult element) {
+    int position = elements.size();
+    positions.put((Node) element.getAt(0), position);
+    elements.add(element);
+    byName.computeIfAbsent(element.name(), name -> new Positions()).add(position);
+
+    Iterator<?> children = element.children().iterator();
+    while (children.hasNext()) {
+      add((GPathResult) children.next());
+    }
+
+    if (position >= subtreeEnds.length) {
+      subtreeEnds = Arrays.copyOf(subtreeEnds, Math.max(subtreeEnds.length * 2, position + 1));
+    }
+    subtreeEnds[position] = elements.size() - 1;
+  }
+
+  /**
+   * @return The number of indexed elements
+   */
+  public int size() {
+    return elements.size();
+  }
+
+  /**
+   * @param nodes The nodes to search
+   * @param name The local name to find
+   * @return The nodes, and their descendants, with the name in document order
+   */
+  public List<GPathResult> descendants(GPathResult nodes, String name) {
+    Positions named = byName.get(name);
+    List<GPathResult> result = new ArrayList<>();
+    Iterator<?> roots = nodes.nodeIterator();
+    while (roots.hasNext()) {
+      Integer root = positions.get(roots.next());
+      if (root == null) {
+        // not part of the indexed document
+        return walk(nodes, name);
+      }
+      if (named == null) { continue; }
+      int end = subtreeEnds[root];
+      for (int i = named.from(root); i < named.size && named.items[i] <= end; i++) {
+        result.add(elements.get(named.items[i]));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param nodes The nodes to search
+   * @param name The local name to find
+   * @return The first of the nodes, and their descendants, with the name in document order, or null if there are none
+   */
+  public GPathResult first(GPathResult nodes, String name) {
+    Positions named = byName.get(name);
+    Iterator<?> roots = nodes.nodeIterator();
+    while (roots.hasNext()) {
+      Integer root = positions.get(roots.next());
+      if (root == null) {
+        List<GPathResult> found = walk(nodes, name);
+        return found.isEmpty() ? null : found.get(0);
+      }
+      if (named == null) { continue; }
+      int i = named.from(root);
+      if (i < named.size && named.items[i] <= subtreeEnds[root]) {
+        return elements.get(named.items[i]);
+      }
+    }
+    return null;
+  }
+
+  private static List<GPathResult> walk(GPathResult nodes, String name) {
+    List<GPathResult> result = new ArrayList<>();
+    Iterator<?> iterator = nodes.depthFirst();
+    while (iterator.hasNext()) {
+      GPathResult node = (GPathResult) iterator.next();
+      if (node.name().equals(name)) {
+        result.add(node);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The ascending positions of the elements with one name
+   */
+  private static class Positions {
+    private int[] items = new int[4];
+    private int size = 0;
+
+    void add(int position) {
+      if (size == items.length) {
+        items = Arrays.copyOf(items, size * 2);
+      }
+      items[size++] = position;
+    }
+
+    /**
+     * @return The index of the first position at or after the given one
+     */
+    int from(int position) {
+      int i = Arrays.binarySearch(items, 0, size, position);
+      return i >= 0 ? i : -i - 1;
+    }
+  }
+
+}
@@ -0,0 +1,312 @@
+package org.cedar.schemas.parse;
+
+import org.cedar.schemas.avro.psi.Discovery;
+import org.cedar.schemas.avro.psi.ErrorEvent;
+import org.cedar.schemas.avro.psi.ParsedRecord;
+import org.cedar.schemas.avro.psi.RecordType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Parses many ISO documents into {@link ParsedRecord}s on a bounded pool of worker threads.
+ * <br>
+ * Each document is parsed into a {@link Discovery} and then passed through the configured stages in turn, all on the
+ * same worker, e.g. {@link DefaultParser#fillInDefaults} and then {@code Analyzers::addAnalysis} from the
+ * schemas-analyze module. Documents are read from their source only as fast as the workers keep up, with at most
+ * {@link Builder#maxInFlight(int)} of them read and not yet emitted at a time, so memory use is bounded however large the
+ * source is.
+ * <br>
+ * Results are passed to the sink on the thread calling {@link #run}, either in the order the documents were read or
+ * in the order they finish. A document which fails to parse, or fails in a stage, still produces a result, carrying
+ * an {@link ErrorEvent} whose detail names the document and the failure.
+ * <pre>{@code
+ * ISOIngestPipeline pipeline = ISOIngestPipeline.builder()
+ *     .type(RecordType.collection)
+ *     .stage(DefaultParser::fillInDefaults)
+ *     .stage(Analyzers::addAnalysis)
+ *     .build();
+ * try (Stream<ISODocument> documents = ISODocument.fromArchive(path)) {
+ *   pipeline.run(documents, result -> ...);
+ * }
+ * }</pre>
+ * Pipelines are immutable and can be run any number of times, each run with its own pool.
+ */
+public class ISOIngestPipeline {
+  private static final Logger log = LoggerFactory.getLogger(ISOIngestPipeline.class);
+
+  /**
+   * Parses one encoded document
+   */
+  @FunctionalInterface
+  public interface Parser {
+    Discovery parse(byte[] xml) throws Exception;
+  }
+
+  private final Parser parser;
+  private final List<UnaryOperator<ParsedRecord>> stages;
+  private final RecordType type;
+  private final int threads;
+  private final int maxInFlight;
+  private final boolean ordered;
+
+  private ISOIngestPipeline(Builder builder) {
+    this.parser = builder.parser;
+    this.stages = Collections.unmodifiableList(new ArrayList<>(builder.stages));
+    this.type = builder.type;
+    this.threads = builder.threads;
+    this.maxInFlight = builder.maxInFlight > 0 ? builder.maxInFlight : builder.threads * 4;
+    this.ordered = builder.ordered;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Parses every document in the stream, blocking until all of them have been passed to the sink.
+   *
+   * @param documents The documents to parse, which are read on the calling thread
+   * @param sink Receives each result, on the calling thread
+   * @return The number of documents parsed
+   * @throws InterruptedException If the calling thread is interrupted, in which case outstanding work is cancelled
+   */
+  public long run(Stream<ISODocument> documents, Consumer<Result> sink) throws InterruptedException {
+    ExecutorService pool = Executors.newFixedThreadPool(threads, new WorkerFactory());
+    try {
+      return ordered ? runOrdered(documents.iterator(), sink, pool) : runUnordered(documents.iterator(), sink, pool);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private long runOrdered(Iterator<ISODocument> documents, Consumer<Result> sink, ExecutorService pool)
+      throws InterruptedException {
+    Deque<Future<Result>> inFlight = new ArrayDeque<>();
+    long count = 0;
+    while (documents.hasNext()) {
+      if (inFlight.size() >= maxInFlight) {
+        sink.accept(await(inFlight.removeFirst()));
+      }
+      ISODocument document = documents.next();
+      long position = count++;
+      inFlight.addLast(pool.submit(() -> process(document, position)));
+    }
+    while (!inFlight.isEmpty()) {
+      sink.accept(await(inFlight.removeFirst()));
+    }
+    return count;
+  }
+
+  private long runUnordered(Iterator<ISODocument> documents, Consumer<Result> sink, ExecutorService pool)
+      throws InterruptedException {
+    CompletionService<Result> completed = new ExecutorCompletionService<>(pool);
+    int inFlight = 0;
+    long count = 0;
+    while (documents.hasNext()) {
+      if (inFlight >= maxInFlight) {
+        sink.accept(await(completed.take()));
+        inFlight--;
+      }
+      ISODocument document = documents.next();
+      long position = count++;
+      completed.submit(() -> process(document, position));
+      inFlight++;
+    }
+    for (; inFlight > 0; inFlight--) {
+      sink.accept(await(completed.take()));
+    }
+    return count;
+  }
+
+  private static Result await(Future<Result> future) throws InterruptedException {
+    try {
+      return future.get();
+    }
+    catch (ExecutionException e) {
+      // process() handles exceptions itself, so this is an Error
+      throw new IllegalStateException("Ingest worker failed", e.getCause());
+    }
+  }
+
+  private Result process(ISODocument document, long position) {
+    ParsedRecord record;
+    try {
+      record = ParsedRecord.newBuilder()
+          .setType(type)
+          .setDiscovery(parser.parse(document.getContent()))
+          .build();
+    }
+    catch (Exception e) {
+      log.debug("Unable to parse {}", document.getName(), e);
+      record = ParsedRecord.newBuilder()
+          .setType(type)
+          .setErrors(new ArrayList<>(Collections.singletonList(error("Parsing failed", document, e))))
+          .build();
+      return new Result(document.getName(), position, record);
+    }
+
+    for (UnaryOperator<ParsedRecord> stage : stages) {
+      try {
+        record = stage.apply(record);
+      }
+      catch (Exception e) {
+        log.debug("Unable to process {}", document.getName(), e);
+        List<ErrorEvent> errors = new ArrayList<>(record.getErrors());
+        errors.add(error("Processing failed", document, e));
+        record = ParsedRecord.newBuilder(record).setErrors(errors).build();
+        break;
+      }
+    }
+    return new Result(document.getName(), position, record);
+  }
+
+  // the source of an error is the application which reports it, so the document is named in the detail instead
+  private static ErrorEvent error(String title, ISODocument document, Exception e) {
+    Throwable cause = e;
+    while (cause.getCause() != null && cause.getCause() != cause) {
+      cause = cause.getCause();
+    }
+    String detail = document.getName() + ": " + describe(e);
+    if (cause != e) {
+      detail += " (caused by " + describe(cause) + ")";
+    }
+    return ErrorEvent.newBuilder()
+        .setTitle(title)
+        .setDetail(detail)
+        .build();
+  }
+
+  private static String describe(Throwable e) {
+    return e.getClass().getSimpleName() + ": " + e.getMessage();
+  }
+
+  private static class WorkerFactory implements ThreadFactory {
+    private static final AtomicInteger pools = new AtomicInteger();
+    private final int pool = pools.incrementAndGet();
+    private final AtomicInteger workers = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "iso-ingest-" + pool + "-" + workers.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  /**
+   * The record parsed from one document
+   */
+  public static class Result {
+    private final String name;
+    private final long position;
+    private final ParsedRecord record;
+
+    Result(String name, long position, ParsedRecord record) {
+      this.name = name;
+      this.position = position;
+      this.record = record;
+    }
+
+    /**
+     * @return The name of the document
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return The position of the document in its source, from 0
+     */
+    public long getPosition() {
+      return position;
+    }
+
+    /**
+     * @return The parsed record, which has errors if the document couldn't be fully processed
+     */
+    public ParsedRecord getRecord() {
+      return record;
+    }
+  }
+
+  public static class Builder {
+    private Parser parser = xml -> ISOStreamParser.parseXMLMetadataToDiscoveryStrictly(new ByteArrayInputStream(xml));
+    private final List<UnaryOperator<ParsedRecord>> stages = new ArrayList<>();
+    private RecordType type;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int maxInFlight;
+    private boolean ordered = true;
+
+    private Builder() {}
+
+    /**
+     * @param parser How to parse each document. Defaults to
+     *               {@link ISOStreamParser#parseXMLMetadataToDiscoveryStrictly}, which parses in a single pass and
+     *               rejects the documents ISOParser rejects; {@code ISOParser::parseXMLMetadataToDiscovery} can be
+     *               used instead. The lenient {@link ISOStreamParser#parseXMLMetadataToDiscovery} differs from
+     *               ISOParser in two ways: it parses a document without an MD_DataIdentification, and it scores an
+     *               unknown DSMM code as 0, which still counts towards the average.
+     */
+    public Builder parser(Parser parser) {
+      this.parser = Objects.requireNonNull(parser);
+      return this;
+    }
+
+    /**
+     * @param stage A step applied to each parsed record, after the stages added before it
+     */
+    public Builder stage(UnaryOperator<ParsedRecord> stage) {
+      this.stages.add(Objects.requireNonNull(stage));
+      return this;
+    }
+
+    /**
+     * @param type The type given to every parsed record, none by default
+     */
+    public Builder type(RecordType type) {
+      this.type = type;
+      return this;
+    }
+
+    /**
+     * @param threads The number of worker threads, the number of processors by default
+     */
+    public Builder threads(int threads) {
+      if (threads < 1) { throw new IllegalArgumentException("threads must be at least 1"); }
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * @param maxInFlight The most documents read but not yet passed to the sink, four per thread by default
+     */
+    public Builder maxInFlight(int maxInFlight) {
+      if (maxInFlight < 1) { throw new IllegalArgumentException("maxInFlight must be at least 1"); }
+      this.maxInFlight = maxInFlight;
+      return this;
+    }
+
+    /**
+     * @param ordered true, the default, to emit results in the order documents are read, or false to emit them as
+     *                soon as they're ready. With ordered output, a slow document holds back those read after it.
+     */
+    public Builder ordered(boolean ordered) {
+      this.ordered = ordered;
+      return this;
+    }
+
+    public ISOIngestPipeline build() {
+      return new ISOIngestPipeline(this);
+    }
+  }
+
+}
@@ -0,0 +1,1010 @@
+package org.cedar.schemas.parse;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.cedar.schemas.avro.geojson.LineString;
+import org.cedar.schemas.avro.geojson.MultiPolygon;
+import org.cedar.schemas.avro.geojson.Point;
+import org.cedar.schemas.avro.geojson.Polygon;
+import org.cedar.schemas.avro.psi.*;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * A streaming alternative to {@link ISOParser#parseXMLMetadataToDiscovery(String)}, producing the same
+ * {@link Discovery} from a single pass over the document with a StAX cursor.
+ * <br>
+ * Rather than building the whole document tree, elements are routed by their path to the extractor for the fields
+ * they hold. Only the element being extracted from is kept, e.g. one child of the MD_DataIdentification at a time,
+ * and it is discarded as soon as its fields have been read, so memory use is bounded by the largest such section
+ * rather than by the size of the document.
+ * <br>
+ * The output matches ISOParser field for field, with two deliberate exceptions for documents ISOParser fails on:
+ * a document without an MD_DataIdentification is parsed rather than rejected, and a DSMM score with an unknown
+ * code leaves that measure at 0 instead of failing the average. {@link #parseXMLMetadataToDiscoveryStrictly}
+ * rejects both, like ISOParser does.
+ * <br>
+ * Documents with a DOCTYPE declaration are rejected, like they are by ISOParser.
+ */
+public class ISOStreamParser {
+
+  private static final String XLINK_NAMESPACE = "http://www.w3.org/1999/xlink";
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final String[] NO_ATTRIBUTES = new String[0];
+  private static final List<String> DSMM_MEASURES = Arrays.asList(
+      "Accessibility", "DataIntegrity", "DataQualityAssessment", "DataQualityAssurance",
+      "DataQualityControlMonitoring", "Preservability", "ProductionSustainability", "TransparencyTraceability",
+      "Usability");
+  private static final Map<String, Integer> DSMM_SCORES = new HashMap<>();
+  static {
+    DSMM_SCORES.put("notAvailable", 0);
+    DSMM_SCORES.put("adHoc", 1);
+    DSMM_SCORES.put("minimal", 2);
+    DSMM_SCORES.put("intermediate", 3);
+    DSMM_SCORES.put("advanced", 4);
+    DSMM_SCORES.put("optimal", 5);
+  }
+
+  // factories are only thread-safe once configured, and are cheap to keep around
+  private static final ThreadLocal<XMLInputFactory> factories = ThreadLocal.withInitial(ISOStreamParser::newFactory);
+
+  /**
+   * The sections of the document which are extracted as a whole, and the Discovery fields they populate
+   */
+  private enum Route {
+    ROOT_FIELD("fileIdentifier", "parentIdentifier", "hierarchyLevelName"),
+    SERVICES("services"),
+    DATA_IDENTIFICATION("doi", "purpose", "status", "credit", "title", "alternateTitle", "description", "keywords",
+        "topicCategories", "temporalBounding", "spatialBounding", "isGlobal", "responsibleParties", "thumbnail",
+        "thumbnailDescription", "creationDate", "revisionDate", "publicationDate", "citeAsStatements",
+        "useLimitation", "legalConstraints", "edition", "updateFrequency", "presentationForm", "services"),
+    DISTRIBUTION("dataFormats", "links", "accessFeeStatement", "orderingInstructions"),
+    ACQUISITION("acquisitionInstruments", "acquisitionOperations", "acquisitionPlatforms"),
+    DSMM("dsmmAccessibility", "dsmmDataIntegrity", "dsmmDataQualityAssessment", "dsmmDataQualityAssurance",
+        "dsmmDataQualityControlMonitoring", "dsmmPreservability", "dsmmProductionSustainability",
+        "dsmmTransparencyTraceability", "dsmmUsability", "dsmmAverage"),
+    AGGREGATION("crossReferences", "largerWorks");
+
+    private final List<String> fields;
+
+    Route(String... fields) {
+      this.fields = Arrays.asList(fields);
+    }
+
+    static Set<Route> feeding(DiscoveryProjection projection) {
+      Set<Route> result = EnumSet.noneOf(Route.class);
+      for (Route route : values()) {
+        if (projection.includesAny(route.fields)) {
+          result.add(route);
+        }
+      }
+      return result;
+    }
+  }
+
+  public static Discovery parseXMLMetadataToDiscovery(String xml) throws XMLStreamException {
+    return parseXMLMetadataToDiscovery(new StringReader(xml));
+  }
+
+  /**
+   * @param xml The document, with its encoding detected from the XML declaration
+   * @return The parsed Discovery
+   * @throws XMLStreamException If the document is not well-formed or has a DOCTYPE declaration
+   */
+  public static Discovery parseXMLMetadataToDiscovery(InputStream xml) throws XMLStreamException {
+    return parseXMLMetadataToDiscovery(xml, DiscoveryProjection.ALL);
+  }
+
+  public static Discovery parseXMLMetadataToDiscovery(Reader xml) throws XMLStreamException {
+    return parseXMLMetadataToDiscovery(xml, DiscoveryProjection.ALL);
+  }
+
+  /**
+   * Parses only the given fields of a document. The sections of the document which don't feed any of them are
+   * streamed past without being captured.
+   *
+   * @param xml The document
+   * @param projection The fields to populate
+   * @return A Discovery with the projected fields parsed and the rest left at their defaults
+   * @throws XMLStreamException If the document is not well-formed or has a DOCTYPE declaration
+   */
+  public static Discovery parseXMLMetadataToDiscovery(String xml, DiscoveryProjection projection) throws XMLStreamException {
+    return parseXMLMetadataToDiscovery(new StringReader(xml), projection);
+  }
+
+  public static Discovery parseXMLMetadataToDiscovery(InputStream xml, DiscoveryProjection projection) throws XMLStreamException {
+    return parse(factories.get().createXMLStreamReader(xml), projection);
+  }
+
+  public static Discovery parseXMLMetadataToDiscovery(Reader xml, DiscoveryProjection projection) throws XMLStreamException {
+    return parse(factories.get().createXMLStreamReader(xml), projection);
+  }
+
+  /**
+   * Parses a document, rejecting those ISOParser fails on which {@link #parseXMLMetadataToDiscovery(InputStream)}
+   * accepts, so that the two parsers accept the same documents as well as producing the same Discovery.
+   *
+   * @param xml The document, with its encoding detected from the XML declaration
+   * @return The parsed Discovery
+   * @throws XMLStreamException If the document is not well-formed or has a DOCTYPE declaration
+   * @throws IllegalArgumentException If the document has no MD_DataIdentification, or a DSMM score with an unknown
+   *                                  code
+   */
+  public static Discovery parseXMLMetadataToDiscoveryStrictly(InputStream xml) throws XMLStreamException {
+    return parse(factories.get().createXMLStreamReader(xml), DiscoveryProjection.ALL, true);
+  }
+
+  private static XMLInputFactory newFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    return factory;
+  }
+
+  private static Discovery parse(XMLStreamReader reader, DiscoveryProjection projection) throws XMLStreamException {
+    return parse(reader, projection, false);
+  }
+
+  private static Discovery parse(XMLStreamReader reader, DiscoveryProjection projection, boolean strict)
+      throws XMLStreamException {
+    try {
+      ISOStreamParser parser = new ISOStreamParser(Route.feeding(projection));
+      parser.read(reader);
+      if (strict) {
+        parser.checkAcceptedByISOParser();
+      }
+      return projection.apply(parser.toDiscovery());
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  //--------------
+  // Extracted state
+  //--------------
+  private final StringBuilder fileIdentifier = new StringBuilder();
+  private final StringBuilder parentIdentifierAnchor = new StringBuilder();
+  private final StringBuilder parentIdentifierString = new StringBuilder();
+  private final StringBuilder hierarchyLevelName = new StringBuilder();
+  private String doi;
+  private final StringBuilder purpose = new StringBuilder();
+  private final StringBuilder status = new StringBuilder();
+  private final StringBuilder credit = new StringBuilder();
+  private final StringBuilder title = new StringBuilder();
+  private final StringBuilder alternateTitle = new StringBuilder();
+  private final StringBuilder edition = new StringBuilder();
+  private final StringBuilder presentationForm = new StringBuilder();
+  private final StringBuilder description = new StringBuilder();
+  private final StringBuilder thumbnail = new StringBuilder();
+  private final StringBuilder thumbnailDescription = new StringBuilder();
+  private String creationDate;
+  private String revisionDate;
+  private String publicationDate;
+  private final List<String> otherConstraints = new ArrayList<>();
+  private final StringBuilder useLimitation = new StringBuilder();
+  private final Set<Reference> crossReferences = new LinkedHashSet<>();
+  private final Set<Reference> largerWorks = new LinkedHashSet<>();
+  private final StringBuilder accessFeeStatement = new StringBuilder();
+  private final StringBuilder orderingInstructions = new StringBuilder();
+  private final StringBuilder updateFrequency = new StringBuilder();
+  private final Set<String> topicCategories = new LinkedHashSet<>();
+  private final Set<KeywordsElement> keywords = new LinkedHashSet<>();
+  private boolean extentSeen = false;
+  private String extentDescription;
+  private List<Node> temporalExtent;
+  private Node boundingBox;
+  private final Set<Instruments> instruments = new LinkedHashSet<>();
+  private final Set<Operation> operations = new LinkedHashSet<>();
+  private final Set<Platform> platforms = new LinkedHashSet<>();
+  private final Set<DataFormat> dataFormats = new LinkedHashSet<>();
+  private final Set<Link> links = new LinkedHashSet<>();
+  private final Set<Link> contactLinks = new LinkedHashSet<>();
+  private final Set<ResponsibleParty> responsibleParties = new LinkedHashSet<>();
+  private final List<Service> services = new ArrayList<>();
+  private Map<String, Integer> dsmm;
+  // what ISOParser rejects a document for
+  private boolean dataIdentificationSeen = false;
+  private String unknownDsmmCode;
+
+  private final Set<Route> wanted;
+
+  private ISOStreamParser(Set<Route> wanted) {
+    this.wanted = wanted;
+  }
+
+  //--------------
+  // Streaming
+  //--------------
+
+  private void read(XMLStreamReader reader) throws XMLStreamException {
+    List<String> path = new ArrayList<>();
+    Deque<Node> open = new ArrayDeque<>();
+    StringBuilder text = new StringBuilder();
+    List<Route> routes = new ArrayList<>();
+    List<Node> matches = new ArrayList<>();
+
+    while (reader.hasNext()) {
+      int event = reader.next();
+      switch (event) {
+        case XMLStreamConstants.START_ELEMENT:
+          String name = reader.getLocalName();
+          if (path.size() == 2 && name.equals("MD_DataIdentification") && path.get(1).equals("identificationInfo")) {
+            dataIdentificationSeen = true;
+          }
+          Route route = route(path, name);
+          if (route != null && !wanted.contains(route)) {
+            route = null;
+          }
+          boolean aggregation = name.equals("aggregationInfo") && wanted.contains(Route.AGGREGATION);
+          if (!open.isEmpty() || route != null || aggregation) {
+            flushText(open, text);
+            Node node = new Node(name, attributes(reader));
+            if (!open.isEmpty()) {
+              open.peek().content.add(node);
+            }
+            open.push(node);
+            if (route != null) {
+              routes.add(route);
+              matches.add(node);
+            }
+            if (aggregation) {
+              routes.add(Route.AGGREGATION);
+              matches.add(node);
+            }
+          }
+          path.add(name);
+          break;
+
+        case XMLStreamConstants.END_ELEMENT:
+          path.remove(path.size() - 1);
+          if (!open.isEmpty()) {
+            flushText(open, text);
+            open.pop();
+            if (open.isEmpty()) {
+              // the outermost captured element is complete, so everything matched within it can be extracted
+              for (int i = 0; i < routes.size(); i++) {
+                extract(routes.get(i), matches.get(i));
+              }
+              routes.clear();
+              matches.clear();
+            }
+          }
+          break;
+
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          if (!open.isEmpty()) {
+            text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+          }
+          break;
+
+        case XMLStreamConstants.DTD:
+          throw new XMLStreamException("DOCTYPE declarations are not allowed", reader.getLocation());
+
+        default:
+          break;
+      }
+    }
+  }
+
+  /**
+   * @param path The names of the open elements, from the root
+   * @param name The name of the element being opened
+   * @return The section the element starts, or null if it doesn't start one
+   */
+  private static Route route(List<String> path, String name) {
+    switch (path.size()) {
+      case 1:
+        return name.equals("fileIdentifier") || name.equals("parentIdentifier") || name.equals("hierarchyLevelName") ?
+            Route.ROOT_FIELD : null;
+      case 2:
+        return path.get(1).equals("identificationInfo") && !name.equals("MD_DataIdentification") ?
+            Route.SERVICES : null;
+      case 3:
+        String section = path.get(1);
+        String container = path.get(2);
+        if (section.equals("identificationInfo") && container.equals("MD_DataIdentification")) {
+          return Route.DATA_IDENTIFICATION;
+        }
+        if (section.equals("distributionInfo") && container.equals("MD_Distribution")) {
+          return Route.DISTRIBUTION;
+        }
+        if (section.equals("acquisitionInformation") && container.equals("MI_AcquisitionInformation")) {
+          return Route.ACQUISITION;
+        }
+        return null;
+      case 4:
+        return name.equals("DQ_ConceptualConsistency") && path.get(1).equals("dataQualityInfo") &&
+            path.get(2).equals("DQ_DataQuality") && path.get(3).equals("report") ? Route.DSMM : null;
+      default:
+        return null;
+    }
+  }
+
+  private static String[] attributes(XMLStreamReader reader) {
+    int count = reader.getAttributeCount();
+    if (count == 0) { return NO_ATTRIBUTES; }
+    String[] result = new String[count * 3];
+    for (int i = 0; i < count; i++) {
+      String namespace = reader.getAttributeNamespace(i);
+      result[i * 3] = namespace == null ? "" : namespace;
+      result[i * 3 + 1] = reader.getAttributeLocalName(i);
+      result[i * 3 + 2] = reader.getAttributeValue(i);
+    }
+    return result;
+  }
+
+  // like XmlSlurper, whitespace-only text between elements is dropped and everything else is kept as-is
+  private static void flushText(Deque<Node> open, StringBuilder text) {
+    if (text.length() == 0) { return; }
+    String chunk = text.toString();
+    text.setLength(0);
+    if (!open.isEmpty() && chunk.trim().length() > 0) {
+      open.peek().content.add(chunk);
+    }
+  }
+
+  //--------------
+  // Extraction
+  //--------------
+
+  private void extract(Route route, Node node) {
+    switch (route) {
+      case ROOT_FIELD:
+        extractRootField(node);
+        break;
+      case SERVICES:
+        extractServices(node);
+        break;
+      case DATA_IDENTIFICATION:
+        extractDataIdentification(node);
+        break;
+      case DISTRIBUTION:
+        extractDistribution(node);
+        break;
+      case ACQUISITION:
+        extractAcquisition(node);
+        break;
+      case DSMM:
+        extractDSMM(node);
+        break;
+      case AGGREGATION:
+        extractAggregation(node);
+        break;
+    }
+  }
+
+  private void extractRootField(Node node) {
+    switch (node.name) {
+      case "fileIdentifier":
+        fileIdentifier.append(text(path(node, "CharacterString")));
+        break;
+      case "parentIdentifier":
+        parentIdentifierAnchor.append(text(path(node, "Anchor")));
+        parentIdentifierString.append(text(path(node, "CharacterString")));
+        break;
+      case "hierarchyLevelName":
+        hierarchyLevelName.append(text(path(node, "CharacterString")));
+        break;
+    }
+  }
+
+  private void extractDataIdentification(Node node) {
+    switch (node.name) {
+      case "purpose":
+        purpose.append(text(node));
+        break;
+      case "status":
+        status.append(attribute(path(node, "MD_ProgressCode"), "codeListValue"));
+        break;
+      case "credit":
+        credit.append(text(node));
+        break;
+      case "citation":
+        for (Node citation : path(node, "CI_Citation")) {
+          extractCitation(citation);
+        }
+        break;
+      case "abstract":
+        description.append(text(path(node, "CharacterString")));
+        break;
+      case "graphicOverview":
+        thumbnail.append(text(path(node, "MD_BrowseGraphic", "fileName", "CharacterString")));
+        thumbnailDescription.append(text(path(node, "MD_BrowseGraphic", "fileDescription", "CharacterString")));
+        break;
+      case "resourceConstraints":
+        for (Node constraint : descendants(path(node, "MD_LegalConstraints"), "otherConstraints")) {
+          otherConstraints.add(text(path(constraint, "CharacterString")));
+        }
+        useLimitation.append(text(path(node, "MD_Constraints", "useLimitation", "CharacterString")));
+        break;
+      case "topicCategory":
+        for (Node topic : descendants(node, "MD_TopicCategoryCode")) {
+          topicCategories.add(text(topic));
+        }
+        break;
+      case "descriptiveKeywords":
+        for (Node group : descendants(node, "MD_Keywords")) {
+          keywords.add(parseKeywords(group));
+        }
+        break;
+      case "extent":
+        for (Node extent : path(node, "EX_Extent")) {
+          extractExtent(extent);
+        }
+        break;
+      case "resourceMaintenance":
+        updateFrequency.append(attribute(path(node, "MD_MaintenanceInformation", "maintenanceAndUpdateFrequency",
+            "MD_MaintenanceFrequencyCode"), "codeListValue"));
+        break;
+    }
+    for (Node party : descendants(node, "CI_ResponsibleParty")) {
+      responsibleParties.add(parseParty(Collections.singletonList(party)));
+    }
+    extractServices(node);
+  }
+
+  private void extractCitation(Node citation) {
+    title.append(text(path(citation, "title", "CharacterString")));
+    alternateTitle.append(text(path(citation, "alternateTitle", "CharacterString")));
+    edition.append(text(path(citation, "edition", "CharacterString")));
+    presentationForm.append(attribute(path(citation, "presentationForm", "CI_PresentationFormCode"), "codeListValue"));
+
+    if (doi == null) {
+      for (Node identifier : descendants(citation, "identifier")) {
+        List<Node> anchor = path(identifier, "MD_Identifier", "code", "Anchor");
+        if (attribute(anchor, XLINK_NAMESPACE, "title").equals("DOI")) {
+          doi = text(anchor);
+          break;
+        }
+      }
+    }
+
+    for (Node date : descendants(citation, "date")) {
+      String dateType = attribute(path(date, "CI_Date", "dateType", "CI_DateTypeCode"), "codeListValue");
+      String value = orNull(text(path(date, "CI_Date", "date", "Date")));
+      if (dateType.equals("publication")) {
+        publicationDate = value;
+      }
+      else if (dateType.equals("creation")) {
+        creationDate = value;
+      }
+      else if (dateType.equals("revision")) {
+        revisionDate = value;
+      }
+    }
+  }
+
+  private static KeywordsElement parseKeywords(Node group) {
+    Set<String> values = new LinkedHashSet<>();
+    for (Node keyword : descendants(group, "keyword")) {
+      String text = or(text(path(keyword, "CharacterString")), text(path(keyword, "Anchor")));
+      if (!text.isEmpty()) {
+        // Replace any non-trimmed whitespace with a single space character (e.g., in case of tabs or linefeeds)
+        values.add(WHITESPACE.matcher(text.trim()).replaceAll(" "));
+      }
+    }
+    return KeywordsElement.newBuilder()
+        .setValues(new ArrayList<>(values))
+        .setType(orNull(attribute(path(group, "type", "MD_KeywordTypeCode"), "codeListValue")))
+        .setNamespace(text(path(group, "thesaurusName", "CI_Citation", "title", "CharacterString")))
+        .build();
+  }
+
+  private void extractExtent(Node extent) {
+    if (!extentSeen) {
+      extentSeen = true;
+      extentDescription = orNull(text(path(extent, "description", "CharacterString")));
+    }
+    if (temporalExtent == null) {
+      Node found = first(path(extent, "temporalElement"), n -> n.name.equals("EX_TemporalExtent"));
+      if (found != null) {
+        temporalExtent = path(found, "extent");
+      }
+    }
+    if (boundingBox == null) {
+      boundingBox = first(path(extent, "geographicElement"), n -> n.name.equals("EX_GeographicBoundingBox"));
+    }
+  }
+
+  private void extractServices(Node node) {
+    for (Node service : descendants(node, "SV_ServiceIdentification")) {
+      services.add(parseService(service));
+    }
+  }
+
+  private void extractDistribution(Node node) {
+    for (Node format : descendants(node, "MD_Format")) {
+      dataFormats.add(parseDataFormat(format));
+    }
+    for (Node link : descendants(node, "CI_OnlineResource")) {
+      links.add(parseLink(Collections.singletonList(link)));
+    }
+    if (node.name.equals("distributor")) {
+      for (Node link : descendants(path(node, "MD_Distributor", "distributorContact"), "CI_OnlineResource")) {
+        contactLinks.add(parseLink(Collections.singletonList(link)));
+      }
+    }
+    if (node.name.equals("distributionOrderProcess")) {
+      accessFeeStatement.append(text(path(node, "MD_StandardOrderProcess", "fees", "CharacterString")));
+      orderingInstructions.append(text(path(node, "MD_StandardOrderProcess", "orderingInstructions", "CharacterString")));
+    }
+  }
+
+  private void extractAcquisition(Node node) {
+    for (Node e : descendants(node, "MI_Instrument")) {
+      instruments.add(Instruments.newBuilder()
+          .setInstrumentIdentifier(identifierCode(e))
+          .setInstrumentType(orNull(or(text(path(e, "type", "CharacterString")), text(path(e, "type", "Anchor")))))
+          .setInstrumentDescription(orNull(text(path(e, "description", "CharacterString"))))
+          .build());
+    }
+    for (Node e : descendants(node, "MI_Operation")) {
+      operations.add(Operation.newBuilder()
+          .setOperationDescription(orNull(text(path(e, "description", "CharacterString"))))
+          .setOperationIdentifier(identifierCode(e))
+          .setOperationStatus(orNull(attribute(path(e, "status", "MD_ProgressCode"), "codeListValue")))
+          .setOperationType(orNull(attribute(path(e, "type", "MI_OperationTypeCode"), "codeListValue")))
+          .build());
+    }
+    for (Node e : descendants(node, "MI_Platform")) {
+      List<String> sponsors = new ArrayList<>();
+      for (Node sponsor : descendants(path(e, "sponsor", "CI_ResponsibleParty", "organisationName"), "CharacterString")) {
+        sponsors.add(text(sponsor));
+      }
+      platforms.add(Platform.newBuilder()
+          .setPlatformIdentifier(identifierCode(e))
+          .setPlatformDescription(orNull(text(path(e, "description", "CharacterString"))))
+          .setPlatformSponsor(sponsors)
+          .build());
+    }
+  }
+
+  private static String identifierCode(Node node) {
+    List<Node> code = path(node, "identifier", "MD_Identifier", "code");
+    return orNull(or(text(children(code, "CharacterString")), text(children(code, "Anchor"))));
+  }
+
+  private void extractDSMM(Node node) {
+    if (dsmm != null) { return; }
+    Node assessment = first(Collections.singletonList(node), n ->
+        text(path(n, "nameOfMeasure", "CharacterString")).equals("Data Stewardship Maturity Assessment"));
+    if (assessment == null) { return; }
+
+    dsmm = new LinkedHashMap<>();
+    for (Node record : descendants(path(assessment, "result", "DQ_QuantitativeResult"), "Record")) {
+      List<Node> value = path(record, "CodeListValue");
+      // FIXME Handling a typo until it's resolved
+      String measureUrl = or(attribute(value, "codeList"), attribute(value, "codelist"));
+      String measure = measureUrl.substring(measureUrl.lastIndexOf('#') + 1);
+      String code = attribute(value, "codeListValue");
+      Integer score = DSMM_SCORES.get(code);
+      if (score != null && DSMM_MEASURES.contains(measure)) {
+        dsmm.put(measure, score);
+      }
+      else if (score == null && DSMM_MEASURES.contains(measure) && unknownDsmmCode == null) {
+        unknownDsmmCode = code;
+      }
+    }
+  }
+
+  private void extractAggregation(Node node) {
+    List<Node> info = path(node, "MD_AggregateInformation");
+    String associationType = orNull(attribute(children(info, "associationType", "DS_AssociationTypeCode"), "codeListValue"));
+    boolean crossReference = "crossReference".equals(associationType);
+    if (!crossReference && !"largerWorkCitation".equals(associationType)) { return; }
+
+    List<Node> citation = children(info, "aggregateDataSetName", "CI_Citation");
+    List<Link> citationLinks = new ArrayList<>();
+    for (Node link : descendants(citation, "CI_OnlineResource")) {
+      citationLinks.add(parseLink(Collections.singletonList(link)));
+    }
+    Reference reference = Reference.newBuilder()
+        .setTitle(orNull(text(children(citation, "title", "CharacterString"))))
+        .setDate(orNull(text(children(citation, "date", "CI_Date", "date", "Date"))))
+        .setLinks(citationLinks)
+        .build();
+    (crossReference ? crossReferences : largerWorks).add(reference);
+  }
+
+  private static DataFormat parseDataFormat(Node node) {
+    String name = text(path(node, "name", "CharacterString"));
+    return DataFormat.newBuilder()
+        .setName(name.isEmpty() ? null : name.toUpperCase())
+        .setVersion(orNull(text(path(node, "version", "CharacterString"))))
+        .build();
+  }
+
+  private static Link parseLink(List<Node> node) {
+    return Link.newBuilder()
+        .setLinkName(orNull(text(children(node, "name", "CharacterString")).trim()))
+        .setLinkProtocol(orNull(text(children(node, "protocol", "CharacterString")).trim()))
+        .setLinkUrl(orNull(StringEscapeUtils.unescapeXml(text(children(node, "linkage", "URL")).trim())))
+        .setLinkDescription(orNull(text(children(node, "description", "CharacterString")).trim()))
+        .setLinkFunction(orNull(attribute(children(node, "function", "CI_OnLineFunctionCode"), "codeListValue").trim()))
+        .build();
+  }
+
+  private static ResponsibleParty parseParty(List<Node> node) {
+    return ResponsibleParty.newBuilder()
+        .setIndividualName(stringOrAnchor(children(node, "individualName")))
+        .setOrganizationName(stringOrAnchor(children(node, "organisationName")))
+        .setPositionName(stringOrAnchor(children(node, "positionName")))
+        .setRole(orNull(attribute(children(node, "role", "CI_RoleCode"), "codeListValue")))
+        .setEmail(orNull(text(children(node, "contactInfo", "CI_Contact", "address", "CI_Address",
+            "electronicMailAddress", "CharacterString"))))
+        .setPhone(orNull(text(children(node, "contactInfo", "CI_Contact", "phone", "CI_Telephone", "voice",
+            "CharacterString"))))
+        .build();
+  }
+
+  private static String stringOrAnchor(List<Node> node) {
+    return orNull(or(text(children(node, "CharacterString")), text(children(node, "Anchor"))));
+  }
+
+  private static Service parseService(Node node) {
+    List<Link> serviceOperations = new ArrayList<>();
+    for (Node operation : descendants(node, "containsOperations")) {
+      serviceOperations.add(parseLink(path(operation, "SV_OperationMetadata", "connectPoint", "CI_OnlineResource")));
+    }
+    List<Node> citation = path(node, "citation", "CI_Citation");
+    return Service.newBuilder()
+        .setTitle(text(children(citation, "title", "CharacterString")).trim())
+        .setAlternateTitle(text(children(citation, "alternateTitle", "CharacterString")).trim())
+        .setDescription(text(path(node, "abstract", "CharacterString")).trim())
+        .setDate(text(children(citation, "date", "Date")))
+        .setDateType(text(children(citation, "dateType", "CI_DateTypeCode")))
+        .setPointOfContact(parseParty(path(node, "pointOfContact", "CI_ResponsibleParty")))
+        .setOperations(new ArrayList<>(toSet(serviceOperations)))
+        .build();
+  }
+
+  //--------------
+  // Assembly
+  //--------------
+
+  private void checkAcceptedByISOParser() {
+    if (!dataIdentificationSeen) {
+      throw new IllegalArgumentException("Document has no MD_DataIdentification");
+    }
+    if (unknownDsmmCode != null) {
+      throw new IllegalArgumentException("Unknown DSMM score code: " + unknownDsmmCode);
+    }
+  }
+
+  private Discovery toDiscovery() {
+    Object spatialBounding = parseBounding(boundingBox);
+
+    List<String> citeAsStatements = new ArrayList<>();
+    for (String constraint : otherConstraints) {
+      if (constraint.toLowerCase().contains("cite")) {
+        citeAsStatements.add(constraint);
+      }
+    }
+    Set<String> legalConstraints = new LinkedHashSet<>();
+    for (String constraint : otherConstraints) {
+      legalConstraints.add(orNull(constraint));
+    }
+    Set<Link> distributionLinks = new LinkedHashSet<>(links);
+    distributionLinks.removeAll(contactLinks);
+
+    Map<String, Integer> dsmmScores = new LinkedHashMap<>();
+    DSMM_MEASURES.forEach(measure -> dsmmScores.put(measure, 0));
+    if (dsmm != null) {
+      dsmmScores.putAll(dsmm);
+    }
+    int dsmmTotal = dsmmScores.values().stream().mapToInt(Integer::intValue).sum();
+
+    return Discovery.newBuilder()
+        .setFileIdentifier(orNull(fileIdentifier.toString()))
+        .setParentIdentifier(orNull(or(parentIdentifierAnchor.toString(), parentIdentifierString.toString())))
+        .setHierarchyLevelName(orNull(hierarchyLevelName.toString().toLowerCase()))
+        .setDoi(doi)
+        .setPurpose(orNull(purpose.toString()))
+        .setStatus(orNull(status.toString()))
+        .setCredit(orNull(credit.toString()))
+        .setTitle(orNull(title.toString()))
+        .setAlternateTitle(orNull(alternateTitle.toString()))
+        .setDescription(orNull(description.toString()))
+        .setKeywords(new ArrayList<>(keywords))
+        .setTopicCategories(new ArrayList<>(topicCategories))
+        .setTemporalBounding(parseTemporalBounding())
+        .setSpatialBounding(spatialBounding)
+        .setIsGlobal(checkIsGlobal(spatialBounding))
+        .setAcquisitionInstruments(new ArrayList<>(instruments))
+        .setAcquisitionOperations(new ArrayList<>(operations))
+        .setAcquisitionPlatforms(new ArrayList<>(platforms))
+        .setDataFormats(new ArrayList<>(dataFormats))
+        .setLinks(new ArrayList<>(distributionLinks))
+        .setResponsibleParties(new ArrayList<>(responsibleParties))
+        .setThumbnail(orNull(StringEscapeUtils.unescapeXml(thumbnail.toString())))
+        .setThumbnailDescription(orNull(thumbnailDescription.toString()))
+        .setCreationDate(creationDate)
+        .setRevisionDate(revisionDate)
+        .setPublicationDate(publicationDate)
+        .setCiteAsStatements(new ArrayList<>(toSet(citeAsStatements)))
+        .setCrossReferences(new ArrayList<>(crossReferences))
+        .setLargerWorks(new ArrayList<>(largerWorks))
+        .setUseLimitation(orNull(useLimitation.toString()))
+        .setLegalConstraints(new ArrayList<>(legalConstraints))
+        .setAccessFeeStatement(orNull(accessFeeStatement.toString()))
+        .setOrderingInstructions(orNull(orderingInstructions.toString()))
+        .setEdition(orNull(edition.toString()))
+        .setDsmmAccessibility(dsmmScores.get("Accessibility"))
+        .setDsmmDataIntegrity(dsmmScores.get("DataIntegrity"))
+        .setDsmmDataQualityAssessment(dsmmScores.get("DataQualityAssessment"))
+        .setDsmmDataQualityAssurance(dsmmScores.get("DataQualityAssurance"))
+        .setDsmmDataQualityControlMonitoring(dsmmScores.get("DataQualityControlMonitoring"))
+        .setDsmmPreservability(dsmmScores.get("Preservability"))
+        .setDsmmProductionSustainability(dsmmScores.get("ProductionSustainability"))
+        .setDsmmTransparencyTraceability(dsmmScores.get("TransparencyTraceability"))
+        .setDsmmUsability(dsmmScores.get("Usability"))
+        // the same rounding as ISOParser's BigDecimal division
+        .setDsmmAverage(new BigDecimal(dsmmTotal)
+            .divide(new BigDecimal(dsmmScores.size()), new MathContext(11)).floatValue())
+        .setUpdateFrequency(orNull(updateFrequency.toString()))
+        .setPresentationForm(orNull(presentationForm.toString()))
+        .setServices(new ArrayList<>(toSet(services)))
+        .build();
+  }
+
+  private TemporalBounding parseTemporalBounding() {
+    TemporalBounding.Builder builder = TemporalBounding.newBuilder().setDescription(extentDescription);
+    if (temporalExtent != null) {
+      List<Node> time = temporalExtent;
+      List<Node> beginPosition = children(time, "TimePeriod", "beginPosition");
+      List<Node> beginInstant = children(time, "TimePeriod", "begin", "TimeInstant", "timePosition");
+      List<Node> endPosition = children(time, "TimePeriod", "endPosition");
+      List<Node> endInstant = children(time, "TimePeriod", "end", "TimeInstant", "timePosition");
+      List<Node> instant = children(time, "TimeInstant", "timePosition");
+      builder.setBeginDate(orNull(or(text(beginPosition), text(beginInstant))))
+          .setBeginIndeterminate(orNull(or(
+              attribute(beginPosition, "indeterminatePosition"), attribute(beginInstant, "indeterminatePosition"))))
+          .setEndDate(orNull(or(text(endPosition), text(endInstant))))
+          .setEndIndeterminate(orNull(or(
+              attribute(endPosition, "indeterminatePosition"), attribute(endInstant, "indeterminatePosition"))))
+          .setInstant(orNull(text(instant)))
+          .setInstantIndeterminate(orNull(attribute(instant, "indeterminatePosition")));
+    }
+    return builder.build();
+  }
+
+  private static Object parseBounding(Node bbox) {
+    if (bbox == null) { return null; }
+
+    Double west = coordinate(bbox, "westBoundLongitude");
+    Double east = coordinate(bbox, "eastBoundLongitude");
+    Double north = coordinate(bbox, "northBoundLatitude");
+    Double south = coordinate(bbox, "southBoundLatitude");
+
+    if (west == null && east == null && north == null && south == null) {
+      return null;
+    }
+
+    if (same(west, east) && same(north, south)) {
+      return Point.newBuilder().setCoordinates(Arrays.asList(west, north)).build();
+    }
+    else if (same(west, east) || same(north, south)) {
+      // Note: Because we are parsing the 'Geographic Bounding Box' element, only horizontal or vertical lines can be
+      //       determined. A diagonal line will be interpreted as a polygon.
+      return LineString.newBuilder()
+          .setCoordinates(Arrays.asList(Arrays.asList(west, south), Arrays.asList(east, north)))
+          .build();
+    }
+    else if (greater(west, east)) {
+      return MultiPolygon.newBuilder()
+          .setCoordinates(Arrays.asList(
+              Collections.singletonList(ring(-180.0d, east, north, south)),
+              Collections.singletonList(ring(west, 180.0d, north, south))))
+          .build();
+    }
+    else {
+      // this returns with correlating null values as well
+      return Polygon.newBuilder().setCoordinates(Collections.singletonList(ring(west, east, north, south))).build();
+    }
+  }
+
+  private static List<List<Double>> ring(Double west, Double east, Double north, Double south) {
+    return Arrays.asList(
+        Arrays.asList(west, south), Arrays.asList(east, south), Arrays.asList(east, north),
+        Arrays.asList(west, north), Arrays.asList(west, south));
+  }
+
+  private static Double coordinate(Node bbox, String name) {
+    List<Node> corner = path(bbox, name);
+    String text = text(corner);
+    if (text.equals("null") || text.isEmpty()) { return null; }
+    String decimal = text(children(corner, "Decimal"));
+    return decimal.isEmpty() ? null : Double.valueOf(decimal.trim());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static boolean checkIsGlobal(Object bounds) {
+    if (!(bounds instanceof Polygon)) { return false; }
+    List<List<Double>> coords = (List<List<Double>>) ((Polygon) bounds).getCoordinates().get(0);
+    return same(coords.get(0).get(0), -180.0d) && same(coords.get(1).get(0), 180.0d)
+        && same(coords.get(2).get(1), 90.0d) && same(coords.get(0).get(1), -90.0d);
+  }
+
+  // compare coordinates the way ISOParser's Groovy comparisons do, where null is equal to itself and less than
+  // any number
+  private static boolean same(Double a, Double b) {
+    if (a == null || b == null) { return a == b; }
+    return a.doubleValue() == b.doubleValue() || (a.isNaN() && b.isNaN());
+  }
+
+  private static boolean greater(Double a, Double b) {
+    if (a == null) { return false; }
+    return b == null || a > b;
+  }
+
+  //--------------
+  // Captured elements
+  //--------------
+
+  /**
+   * A captured element, holding its attributes as (namespace, local name, value) triples and its content as child
+   * nodes and text
+   */
+  private static final class Node {
+    final String name;
+    final String[] attributes;
+    final List<Object> content = new ArrayList<>(2);
+
+    Node(String name, String[] attributes) {
+      this.name = name;
+      this.attributes = attributes;
+    }
+  }
+
+  private static List<Node> path(Node node, String... names) {
+    return children(Collections.singletonList(node), names);
+  }
+
+  /**
+   * @return The elements at the end of the path of child element names from each of the nodes, in document order
+   */
+  private static List<Node> children(List<Node> nodes, String... names) {
+    List<Node> current = nodes;
+    for (String name : names) {
+      List<Node> next = new ArrayList<>(2);
+      for (Node node : current) {
+        for (Object child : node.content) {
+          if (child instanceof Node && ((Node) child).name.equals(name)) {
+            next.add((Node) child);
+          }
+        }
+      }
+      if (next.isEmpty()) { return Collections.emptyList(); }
+      current = next;
+    }
+    return current;
+  }
+
+  private static List<Node> descendants(Node node, String name) {
+    return descendants(Collections.singletonList(node), name);
+  }
+
+  /**
+   * @return The nodes and their descendants with the given name, in document order
+   */
+  private static List<Node> descendants(List<Node> nodes, String name) {
+    List<Node> result = new ArrayList<>();
+    for (Node node : nodes) {
+      collect(node, name, result);
+    }
+    return result;
+  }
+
+  private static void collect(Node node, String name, List<Node> result) {
+    if (node.name.equals(name)) {
+      result.add(node);
+    }
+    for (Object child : node.content) {
+      if (child instanceof Node) {
+        collect((Node) child, name, result);
+      }
+    }
+  }
+
+  /**
+   * @return The first of the nodes and their descendants, in document order, which match the predicate
+   */
+  private static Node first(List<Node> nodes, Predicate<Node> predicate) {
+    for (Node node : nodes) {
+      if (predicate.test(node)) { return node; }
+      for (Object child : node.content) {
+        if (child instanceof Node) {
+          Node found = first(Collections.singletonList((Node) child), predicate);
+          if (found != null) { return found; }
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String text(Node node) {
+    return text(Collections.singletonList(node));
+  }
+
+  /**
+   * @return All of the text within the nodes, concatenated in document order
+   */
+  private static String text(List<Node> nodes) {
+    if (nodes.isEmpty()) { return ""; }
+    if (nodes.size() == 1) {
+      List<Object> content = nodes.get(0).content;
+      if (content.size() == 1 && content.get(0) instanceof String) {
+        return (String) content.get(0);
+      }
+    }
+    StringBuilder builder = new StringBuilder();
+    for (Node node : nodes) {
+      appendText(node, builder);
+    }
+    return builder.toString();
+  }
+
+  private static void appendText(Node node, StringBuilder builder) {
+    for (Object child : node.content) {
+      if (child instanceof String) {
+        builder.append((String) child);
+      }
+      else {
+        appendText((Node) child, builder);
+      }
+    }
+  }
+
+  private static String attribute(List<Node> nodes, String name) {
+    return attribute(nodes, "", name);
+  }
+
+  /**
+   * @return The values of the attribute on each of the nodes, concatenated
+   */
+  private static String attribute(List<Node> nodes, String namespace, String name) {
+    String result = "";
+    for (Node node : nodes) {
+      for (int i = 0; i < node.attributes.length; i += 3) {
+        if (node.attributes[i].equals(namespace) && node.attributes[i + 1].equals(name)) {
+          result = result.concat(node.attributes[i + 2]);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static String or(String value, String fallback) {
+    return value.isEmpty() ? fallback : value;
+  }
+
+  private static String orNull(String value) {
+    return value == null || value.isEmpty() ? null : value;
+  }
+
+  /**
+   * Removes duplicates as Groovy's toSet does, sizing the set by the values, so that it iterates them in the same order
+   * as the set ISOParser builds
+   */
+  private static <T> Set<T> toSet(List<T> values) {
+    Set<T> set = new HashSet<>(values.size());
+    set.addAll(values);
+    return set;
+  }
+
+}
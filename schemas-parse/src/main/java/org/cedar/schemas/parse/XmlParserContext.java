@@ -0,0 +1,190 @@
+package org.cedar.schemas.parse;
+
+import groovy.xml.FactorySupport;
+import groovy.xml.XmlSlurper;
+import groovy.xml.slurpersupport.GPathResult;
+import groovy.xml.slurpersupport.Node;
+import groovy.xml.slurpersupport.NodeChild;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reusable XML parsing for {@link ISOParser}, in place of a {@code new XmlSlurper()} per document.
+ * <br>
+ * Creating an XmlSlurper looks up and configures a new SAX parser factory and builds a new parser from it, which
+ * for small documents costs more than parsing them. A context configures its factory once, with the same settings
+ * as the default XmlSlurper: namespace aware, not validating, secure processing on and DOCTYPE declarations
+ * disallowed. Each thread then keeps its own parser, which is reset and reused for every document it parses, so a
+ * context can be shared by any number of threads.
+ */
+public class XmlParserContext {
+
+  private static final String DISALLOW_DOCTYPE = "http://apache.org/xml/features/disallow-doctype-decl";
+  private static final XmlParserContext DEFAULT = new XmlParserContext();
+
+  private final SAXParserFactory factory;
+  private final ThreadLocal<SAXParser> parsers = ThreadLocal.withInitial(this::newParser);
+
+  public XmlParserContext() {
+    try {
+      factory = FactorySupport.createSaxParserFactory();
+    }
+    catch (ParserConfigurationException e) {
+      throw new IllegalStateException("Unable to create an XML parser factory", e);
+    }
+    factory.setNamespaceAware(true);
+    factory.setValidating(false);
+    setQuietly(factory, XMLConstants.FEATURE_SECURE_PROCESSING, true);
+    setQuietly(factory, DISALLOW_DOCTYPE, true);
+  }
+
+  /**
+   * @return The context shared by all callers which don't need one of their own
+   */
+  public static XmlParserContext getDefault() {
+    return DEFAULT;
+  }
+
+  public GPathResult parseText(String xml) throws IOException, SAXException {
+    return parse(new InputSource(new StringReader(xml)));
+  }
+
+  /**
+   * Parses an encoded document, detecting its encoding from its byte order mark or XML declaration, the same as
+   * {@link XmlSlurper#parse(InputStream)}. The stream is read to its end but not closed.
+   */
+  public GPathResult parse(InputStream xml) throws IOException, SAXException {
+    return parse(new InputSource(xml));
+  }
+
+  /**
+   * Parses an encoded document without first decoding it into a String
+   *
+   * @see #parse(InputStream)
+   */
+  public GPathResult parse(byte[] xml) throws IOException, SAXException {
+    return parse(new ByteArrayInputStream(xml));
+  }
+
+  /**
+   * Parses the remaining bytes of a buffer as an encoded document, without copying them. The buffer's position is
+   * left unchanged.
+   *
+   * @see #parse(InputStream)
+   */
+  public GPathResult parse(ByteBuffer xml) throws IOException, SAXException {
+    if (xml.hasArray()) {
+      return parse(new ByteArrayInputStream(xml.array(), xml.arrayOffset() + xml.position(), xml.remaining()));
+    }
+    return parse(new ByteBufferInputStream(xml.duplicate()));
+  }
+
+  /**
+   * Parses a document with the current thread's parser.
+   *
+   * @param input The document
+   * @return The root of the parsed document, the same as {@link XmlSlurper#parse(InputSource)} returns
+   */
+  public GPathResult parse(InputSource input) throws IOException, SAXException {
+    SAXParser parser = parsers.get();
+    // while it's in use, a nested parse on this thread, e.g. from a callback, gets a parser of its own
+    parsers.remove();
+    try {
+      parser.reset();
+      return new Slurper(parser.getXMLReader()).parse(input);
+    }
+    finally {
+      parsers.set(parser);
+    }
+  }
+
+  private SAXParser newParser() {
+    try {
+      // factories aren't guaranteed to be thread-safe
+      synchronized (factory) {
+        return factory.newSAXParser();
+      }
+    }
+    catch (ParserConfigurationException | SAXException e) {
+      throw new IllegalStateException("Unable to create an XML parser", e);
+    }
+  }
+
+  private static void setQuietly(SAXParserFactory factory, String feature, boolean value) {
+    try {
+      factory.setFeature(feature, value);
+    }
+    catch (ParserConfigurationException | SAXNotRecognizedException | SAXNotSupportedException e) {
+      // the same as XmlSlurper, features the parser doesn't support are left as they are
+    }
+  }
+
+  /**
+   * An XmlSlurper over an existing reader. XmlSlurper only records the namespace prefixes of a document when it
+   * creates its own parser, so they're recorded here instead, giving results identical to {@code new XmlSlurper()}.
+   */
+  private static class Slurper extends XmlSlurper {
+    private final Map<String, String> namespaceTagHints = new HashMap<>();
+
+    Slurper(XMLReader reader) {
+      super(reader);
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String namespaceUri) {
+      namespaceTagHints.put(prefix, namespaceUri);
+    }
+
+    @Override
+    public GPathResult getDocument() {
+      namespaceTagHints.put("xml", XMLConstants.XML_NS_URI);
+      return new NodeChild((Node) super.getDocument().getAt(0), null, namespaceTagHints);
+    }
+  }
+
+  /**
+   * Reads a direct or read-only buffer, which has no array to wrap
+   */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) { return 0; }
+      if (!buffer.hasRemaining()) { return -1; }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+
+}
@@ -114,6 +114,86 @@ class DefaultParserSpec extends Specification {
     actualFormats[0] == defaultDiscovery.dataFormats[0]
   }
 
+  def 'fills in defaults the same as applying each default in turn for #description'() {
+    given:
+    def copy = ParsedRecord.newBuilder(record).build()
+    def chained = [
+        DefaultParser.&setDefaultTitle, DefaultParser.&setDefaultFileId, DefaultParser.&setDefaultParentId,
+        DefaultParser.&setDefaultHierarchyName, DefaultParser.&setDefaultLinks, DefaultParser.&setDefaultDataFormats
+    ].inject(ParsedRecord.newBuilder(record)) { builder, setDefault -> setDefault(builder) }.build()
+
+    when:
+    def result = DefaultParser.fillInDefaults(record)
+
+    then:
+    result.equals(chained)
+    record.equals(copy)
+
+    where:
+    description              | record
+    'an empty record'        | emptyRecord
+    'a record without data'  | inputRecord
+    'a record with data'     | overriddenRecord
+    'a partial record'       | ParsedRecord.newBuilder(inputRecord).setDiscovery(Discovery.newBuilder().setTitle('title').setLinks(overriddenDiscovery.links).build()).build()
+  }
+
+  def 'fills in defaults without sharing any values with the input record'() {
+    when:
+    def result = DefaultParser.fillInDefaults(overriddenRecord)
+
+    then:
+    !result.discovery.is(overriddenRecord.discovery)
+    !result.discovery.links.is(overriddenRecord.discovery.links)
+    !result.fileInformation.is(overriddenRecord.fileInformation)
+    !result.fileLocations.is(overriddenRecord.fileLocations)
+  }
+
+  def 'applies additional default rules'() {
+    given:
+    def descriptionRule = DefaultRule.whenMissing('description', { it.description }, { b, v -> b.setDescription(v) },
+        { "A ${it.type} named ${it.fileInformation.name}" as String })
+    def rules = DefaultRules.standard().with(descriptionRule)
+
+    when:
+    def result = DefaultParser.fillInDefaults(input, rules)
+
+    then:
+    result.discovery.description == expected
+    result.discovery.title == DefaultParser.fillInDefaults(input).discovery.title
+
+    where:
+    input            | expected
+    inputRecord      | 'A granule named testFile.nc'
+    overriddenRecord | 'A granule named testFile.nc'
+    ParsedRecord.newBuilder(inputRecord).setDiscovery(Discovery.newBuilder().setDescription('existing').build()).build() | 'existing'
+  }
+
+  def 'replaces and removes standard default rules'() {
+    given:
+    def titleRule = DefaultRule.whenMissing('title', { it.title }, { b, v -> b.setTitle(v) }, { 'site title' })
+        .when({ it.type == RecordType.granule })
+    def rules = DefaultRules.standard().with(titleRule).without('dataFormats')
+
+    when:
+    def granule = DefaultParser.fillInDefaults(inputRecord, rules)
+    def collection = DefaultParser.fillInDefaults(ParsedRecord.newBuilder(inputRecord).setType(RecordType.collection).build(), rules)
+
+    then:
+    rules.rules*.field == ['title', 'fileIdentifier', 'parentIdentifier', 'hierarchyLevelName', 'links']
+    granule.discovery.title == 'site title'
+    granule.discovery.dataFormats.isEmpty()
+    collection.discovery.title == null
+    collection.discovery.fileIdentifier == fileName
+  }
+
+  def 'rejects a default rule for an unknown field'() {
+    when:
+    DefaultRule.whenMissing('notAField', { it.title }, { b, v -> b.setTitle(v) }, { 'title' })
+
+    then:
+    thrown(IllegalArgumentException)
+  }
+
   def 'builds full default Discovery from input record, ignoring existing discovery'() {
     when:
     // note: using the record with overridden discovery values should still produce default discovery values
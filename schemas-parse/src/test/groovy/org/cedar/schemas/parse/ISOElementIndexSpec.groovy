@@ -0,0 +1,48 @@
+package org.cedar.schemas.parse
+
+import groovy.xml.XmlSlurper
+import spock.lang.Specification
+import spock.lang.Unroll
+
+@Unroll
+class ISOElementIndexSpec extends Specification {
+
+  def document = ClassLoader.systemClassLoader.getResourceAsStream("test-iso-metadata.xml").text
+  def metadata = new XmlSlurper().parseText(document)
+  def index = ISOElementIndex.of(metadata)
+
+  def "indexes every element of the document"() {
+    expect:
+    index.size() == metadata.'**'.size()
+  }
+
+  def "finds the same descendants as '**' under #description"() {
+    given:
+    def nodes = roots(metadata)
+    def names = nodes.'**'.collect { it.name() }.unique() + ['notAnElement']
+
+    expect:
+    names.every { name ->
+      def expected = nodes.'**'.findAll { it.name() == name }
+      index.descendants(nodes, name)*.getAt(0) == expected*.getAt(0) &&
+          index.first(nodes, name)?.getAt(0) == expected.find()?.getAt(0)
+    }
+
+    where:
+    description                   | roots
+    'the document'                | { it }
+    'a single element'            | { it.identificationInfo.MD_DataIdentification }
+    'several elements'            | { it.identificationInfo }
+    'nested elements'             | { it.distributionInfo.MD_Distribution.distributor.MD_Distributor }
+    'no elements'                 | { it.notAnElement }
+  }
+
+  def "falls back to walking nodes from another document"() {
+    given:
+    def other = new XmlSlurper().parseText('<a><b><c/></b><c/></a>')
+
+    expect:
+    index.descendants(other, 'c').size() == 2
+    index.first(other.b, 'c').name() == 'c'
+  }
+}
@@ -0,0 +1,231 @@
+package org.cedar.schemas.parse
+
+import org.cedar.schemas.avro.psi.ParsedRecord
+import org.cedar.schemas.avro.psi.RecordType
+import spock.lang.Specification
+import spock.lang.TempDir
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.zip.GZIPOutputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+@Unroll
+class ISOIngestPipelineSpec extends Specification {
+
+  static final List<String> FILES = [
+      'test-iso-metadata.xml',
+      'test-iso-point-coords-metadata.xml',
+      'test-iso-any-null-coords-metadata.xml',
+      'test-iso-discontinous-antimeridian-coords.xml',
+      'test-iso-linestring-coords-metadata.xml',
+      'test-iso-global-polygon-coords.xml',
+      'test-iso-null-cords-metadata.xml',
+      'test-iso-zero-coords-metadata.xml'
+  ]
+
+  static final String NAMESPACES = 'xmlns:gmi="http://www.isotc211.org/2005/gmi" xmlns:gmd="http://www.isotc211.org/2005/gmd" ' +
+      'xmlns:gco="http://www.isotc211.org/2005/gco"'
+  static final String NO_DATA_ID = "<gmi:MI_Metadata ${NAMESPACES}/>"
+  static final String DATA_ID = "<gmi:MI_Metadata ${NAMESPACES}><gmd:identificationInfo><gmd:MD_DataIdentification/></gmd:identificationInfo></gmi:MI_Metadata>"
+  static final String UNKNOWN_DSMM = """<gmi:MI_Metadata ${NAMESPACES}>
+      <gmd:identificationInfo><gmd:MD_DataIdentification/></gmd:identificationInfo>
+      <gmd:dataQualityInfo><gmd:DQ_DataQuality><gmd:report><gmd:DQ_ConceptualConsistency>
+        <gmd:nameOfMeasure><gco:CharacterString>Data Stewardship Maturity Assessment</gco:CharacterString></gmd:nameOfMeasure>
+        <gmd:result><gmd:DQ_QuantitativeResult><gmd:value><gco:Record>
+          <gco:CodeListValue codeList="https://example.com/dsmm#Accessibility" codeListValue="bogus">bogus</gco:CodeListValue>
+        </gco:Record></gmd:value></gmd:DQ_QuantitativeResult></gmd:result>
+      </gmd:DQ_ConceptualConsistency></gmd:report></gmd:DQ_DataQuality></gmd:dataQualityInfo>
+    </gmi:MI_Metadata>"""
+
+  @TempDir
+  Path temp
+
+  def documents = FILES.collect { ClassLoader.systemClassLoader.getResourceAsStream(it).bytes }
+
+  def "parses documents in #description order"() {
+    given:
+    def pipeline = ISOIngestPipeline.builder()
+        .type(RecordType.collection)
+        .stage(DefaultParser.&fillInDefaults)
+        .threads(4)
+        .maxInFlight(3)
+        .ordered(ordered)
+        .build()
+    def inputs = (1..5).collectMany { documents }
+    def results = []
+
+    when:
+    def count = pipeline.run(ISODocument.fromBytes(inputs.iterator()), { results << it })
+
+    then:
+    count == inputs.size()
+    def expected = inputs.collect { serial(it) }
+    if (ordered) {
+      assert results*.position == (0L..<inputs.size()).toList()
+    }
+    results.every { it.record.equals(expected[it.position as int]) && it.name == "document-${it.position}" }
+    results*.position.sort() == (0L..<inputs.size()).toList()
+
+    where:
+    description | ordered
+    'input'     | true
+    'any'       | false
+  }
+
+  def "reads only as many documents ahead as are allowed in flight"() {
+    given:
+    def pipeline = ISOIngestPipeline.builder().threads(2).maxInFlight(3).build()
+    int read = 0
+    def source = [hasNext: { read < 20 }, next: { read++; documents[1] }] as Iterator<byte[]>
+    def ahead = []
+
+    when:
+    pipeline.run(ISODocument.fromBytes(source), { ahead << read - it.position - 1 })
+
+    then:
+    ahead.max() <= 3
+  }
+
+  def "records an error for a document which #description"() {
+    given:
+    def pipeline = ISOIngestPipeline.builder()
+        .stage(DefaultParser.&fillInDefaults)
+        .stage(stage)
+        .build()
+    def results = []
+
+    when:
+    pipeline.run(ISODocument.fromBytes([input.getBytes(StandardCharsets.UTF_8), documents[1]].iterator()), { results << it })
+
+    then:
+    results.size() == 2
+    results[0].record.errors.size() == 1
+    results[0].record.errors[0].title == title
+    results[0].record.errors[0].detail.startsWith('document-0: ')
+    results[0].record.errors[0].detail.contains(detail)
+    results[0].record.errors[0].source == null
+    results[1].record.errors.isEmpty()
+
+    where:
+    description                  | input            | stage                                                      | title               | detail
+    'is not xml'                 | 'not xml'        | { it }                                                     | 'Parsing failed'    | 'Exception'
+    'has no data identification' | NO_DATA_ID       | { it }                                                     | 'Parsing failed'    | 'MD_DataIdentification'
+    'has an unknown DSMM code'   | UNKNOWN_DSMM     | { it }                                                     | 'Parsing failed'    | 'Unknown DSMM score code: bogus'
+    'fails in a stage'           | DATA_ID          | { it.discovery.spatialBounding == null ? { throw new IllegalStateException('no bounds', new IOException('disk')) }() : it } | 'Processing failed' | 'IllegalStateException: no bounds (caused by IOException: disk)'
+  }
+
+  def "reads documents from a directory"() {
+    given:
+    Files.createDirectories(temp.resolve('b'))
+    Files.write(temp.resolve('b/second.xml'), documents[1])
+    Files.write(temp.resolve('a.xml'), documents[0])
+    Files.write(temp.resolve('ignored.txt'), 'not xml'.bytes)
+
+    when:
+    def read = ISODocument.fromDirectory(temp).withCloseable { it.collect { [it.name, it.content] } }
+
+    then:
+    read*.getAt(0) == [temp.resolve('a.xml').toString(), temp.resolve('b/second.xml').toString()]
+    read*.getAt(1) == [documents[0], documents[1]]
+  }
+
+  def "reads documents from a #type archive"() {
+    given:
+    def archive = temp.resolve("documents.${type}")
+    Files.write(archive, write([
+        'a.xml': documents[0], 'dir/': null, 'notes.txt': 'not xml'.bytes, ('x' * 120 + '/long-name.xml'): documents[1]
+    ]))
+
+    when:
+    def read = ISODocument.fromArchive(archive).withCloseable { it.collect { [it.name, it.content] } }
+
+    then:
+    read*.getAt(0) == ['a.xml', 'x' * 120 + '/long-name.xml']
+    read*.getAt(1) == [documents[0], documents[1]]
+
+    where:
+    type     | write
+    'zip'    | { Map entries -> zip(entries) }
+    'tar'    | { Map entries -> tar(entries) }
+    'tar.gz' | { Map entries -> gzip(tar(entries)) }
+  }
+
+  def "closes a zip archive whose first entry can't be read"() {
+    given:
+    def closed = new AtomicBoolean(false)
+    def source = new InputStream() {
+      @Override
+      int read() { throw new IOException('broken') }
+
+      @Override
+      void close() { closed.set(true) }
+    }
+
+    when:
+    ISODocument.fromZip(source).withCloseable { it.collect() }
+
+    then:
+    thrown(UncheckedIOException)
+    closed.get()
+  }
+
+  private static ParsedRecord serial(byte[] document) {
+    def record = ParsedRecord.newBuilder()
+        .setType(RecordType.collection)
+        .setDiscovery(ISOParser.parseXMLMetadataToDiscovery(document))
+        .build()
+    return DefaultParser.fillInDefaults(record)
+  }
+
+  private static byte[] zip(Map<String, byte[]> entries) {
+    def bytes = new ByteArrayOutputStream()
+    new ZipOutputStream(bytes).withCloseable { zip ->
+      entries.each { name, content ->
+        zip.putNextEntry(new ZipEntry(name))
+        if (content != null) { zip.write(content) }
+        zip.closeEntry()
+      }
+    }
+    return bytes.toByteArray()
+  }
+
+  private static byte[] gzip(byte[] content) {
+    def bytes = new ByteArrayOutputStream()
+    new GZIPOutputStream(bytes).withCloseable { it.write(content) }
+    return bytes.toByteArray()
+  }
+
+  // a GNU tar, with long names in a preceding 'L' entry
+  private static byte[] tar(Map<String, byte[]> entries) {
+    def bytes = new ByteArrayOutputStream()
+    entries.each { name, content ->
+      if (name.length() > 100) {
+        def longName = (name + '\0').getBytes(StandardCharsets.UTF_8)
+        writeTarEntry(bytes, '././@LongLink', 'L' as char, longName)
+      }
+      writeTarEntry(bytes, name.take(100), content == null ? '5' as char : '0' as char, content ?: new byte[0])
+    }
+    bytes.write(new byte[1024])
+    return bytes.toByteArray()
+  }
+
+  private static void writeTarEntry(ByteArrayOutputStream out, String name, char type, byte[] content) {
+    def header = new byte[512]
+    def put = { String value, int offset -> value.getBytes(StandardCharsets.UTF_8).eachWithIndex { b, i -> header[offset + i] = b } }
+    put(name, 0)
+    put('0000644', 100)
+    put(String.format('%011o', content.length), 124)
+    put('        ', 148)
+    header[156] = type as byte
+    put('ustar  ', 257)
+    put(String.format('%06o', header.toList().sum { (it as int) & 0xFF }) + '\0 ', 148)
+    out.write(header)
+    out.write(content)
+    out.write(new byte[(512 - content.length % 512) % 512])
+  }
+}
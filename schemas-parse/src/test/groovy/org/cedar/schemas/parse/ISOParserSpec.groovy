@@ -5,12 +5,16 @@ import org.cedar.schemas.avro.geojson.PointType
 import org.cedar.schemas.avro.geojson.PolygonType
 import org.cedar.schemas.avro.geojson.MultiPolygonType
 import org.cedar.schemas.avro.psi.*
+import org.cedar.schemas.avro.util.AvroBinaryCodec
 import org.cedar.schemas.avro.util.AvroUtils
 import groovy.xml.XmlSlurper
 import org.xml.sax.SAXParseException
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
 @Unroll
 class ISOParserSpec extends Specification {
 
@@ -544,4 +548,95 @@ class ISOParserSpec extends Specification {
     then: 'we throw an exception instead of parsing attack-vector xml'
     thrown(SAXParseException)
   }
+
+  def "parses a document from #type the same as from a String"() {
+    given:
+    def bytes = document.getBytes(StandardCharsets.UTF_8)
+
+    expect:
+    ISOParser.parseXMLMetadataToDiscovery(input(bytes)).equals(ISOParser.parseXMLMetadataToDiscovery(document))
+
+    where:
+    type                  | input
+    'a stream'            | { byte[] b -> new ByteArrayInputStream(b) }
+    'bytes'               | { byte[] b -> b }
+    'a heap buffer'       | { byte[] b -> ByteBuffer.wrap(([0, 0] + b.toList() + [0]) as byte[], 2, b.length).slice() }
+    'a direct buffer'     | { byte[] b -> ByteBuffer.allocateDirect(b.length).put(b).flip() }
+  }
+
+  def "reads the encoding of bytes from their declaration"() {
+    given:
+    def document = '''<?xml version="1.0" encoding="ISO-8859-1"?>
+<gmi:MI_Metadata xmlns:gco="http://www.isotc211.org/2005/gco" xmlns:gmd="http://www.isotc211.org/2005/gmd" xmlns:gmi="http://www.isotc211.org/2005/gmi">
+  <gmd:fileIdentifier><gco:CharacterString>café</gco:CharacterString></gmd:fileIdentifier>
+</gmi:MI_Metadata>'''
+
+    when:
+    def result = ISOParser.parseXMLMetadataToDiscovery(document.getBytes(StandardCharsets.ISO_8859_1))
+
+    then:
+    result.fileIdentifier == 'café'
+  }
+
+  def "parses only #fields"() {
+    given:
+    def full = ISOParser.parseXMLMetadataToDiscovery(document)
+    def defaults = Discovery.newBuilder().build()
+
+    when:
+    def result = ISOParser.parseXMLMetadataToDiscovery(document, DiscoveryProjection.of(fields))
+
+    then:
+    Discovery.classSchema.fields.every { field ->
+      def expected = field.name() in fields ? full.get(field.pos()) : defaults.get(field.pos())
+      result.get(field.pos()) == expected
+    }
+
+    where:
+    fields << [
+        ['fileIdentifier', 'title', 'temporalBounding', 'spatialBounding'],
+        ['keywords', 'dsmmAverage', 'services'],
+        ['updateFrequency'],
+        [],
+        Discovery.classSchema.fields*.name()
+    ]
+  }
+
+  def "rejects a projection of an unknown field"() {
+    when:
+    DiscoveryProjection.of('fileIdentifier', 'notAField')
+
+    then:
+    def e = thrown(IllegalArgumentException)
+    e.message.contains('notAField')
+  }
+
+  def "parses a document into Avro JSON"() {
+    given:
+    def expected = ISOParser.parseXMLMetadataToDiscovery(document)
+    def out = new ByteArrayOutputStream()
+
+    when:
+    def json = ISOParser.parseXMLMetadataToAvroJson(document)
+    ISOParser.parseXMLMetadataToAvroJson(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)), out)
+
+    then:
+    AvroUtils.jsonToAvro(json, Discovery.classSchema).equals(expected)
+    out.toString('UTF-8') == json
+  }
+
+  def "parses a document into Avro binary"() {
+    given:
+    def expected = ISOParser.parseXMLMetadataToDiscovery(document)
+    def codec = AvroBinaryCodec.<Discovery>forSchema(Discovery.classSchema)
+    def out = new ByteArrayOutputStream()
+
+    when:
+    def bytes = ISOParser.parseXMLMetadataToAvroBinary(document)
+    ISOParser.parseXMLMetadataToAvroBinary(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)), out)
+
+    then:
+    codec.decode(bytes).equals(expected)
+    out.toByteArray() == bytes
+  }
 }
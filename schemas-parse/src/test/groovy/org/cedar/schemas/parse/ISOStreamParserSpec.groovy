@@ -0,0 +1,236 @@
+package org.cedar.schemas.parse
+
+import org.cedar.schemas.avro.psi.Discovery
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import javax.xml.stream.XMLStreamException
+import java.nio.charset.StandardCharsets
+
+@Unroll
+class ISOStreamParserSpec extends Specification {
+
+  static final String NAMESPACES = 'xmlns:gco="http://www.isotc211.org/2005/gco" xmlns:gmd="http://www.isotc211.org/2005/gmd" ' +
+      'xmlns:gmi="http://www.isotc211.org/2005/gmi" xmlns:gml="http://www.opengis.net/gml/3.2" ' +
+      'xmlns:gmx="http://www.isotc211.org/2005/gmx" xmlns:xlink="http://www.w3.org/1999/xlink" ' +
+      'xmlns:srv="http://www.isotc211.org/2005/srv"'
+
+  static final String DSMM_WITH_UNKNOWN_CODE = '''
+      <gmd:identificationInfo><gmd:MD_DataIdentification/></gmd:identificationInfo>
+      <gmd:dataQualityInfo><gmd:DQ_DataQuality><gmd:report><gmd:DQ_ConceptualConsistency>
+        <gmd:nameOfMeasure><gco:CharacterString>Data Stewardship Maturity Assessment</gco:CharacterString></gmd:nameOfMeasure>
+        <gmd:result><gmd:DQ_QuantitativeResult><gmd:value><gco:Record>
+          <gco:CodeListValue codeList="https://example.com/dsmm#Accessibility" codeListValue="bogus">bogus</gco:CodeListValue>
+        </gco:Record></gmd:value></gmd:DQ_QuantitativeResult></gmd:result>
+      </gmd:DQ_ConceptualConsistency></gmd:report></gmd:DQ_DataQuality></gmd:dataQualityInfo>'''
+
+  def "parses #file the same as ISOParser"() {
+    given:
+    def document = ClassLoader.systemClassLoader.getResourceAsStream(file).text
+
+    when:
+    def result = ISOStreamParser.parseXMLMetadataToDiscovery(document)
+
+    then:
+    result.equals(ISOParser.parseXMLMetadataToDiscovery(document))
+
+    where:
+    file << [
+        'test-iso-metadata.xml',
+        'test-iso-point-coords-metadata.xml',
+        'test-iso-any-null-coords-metadata.xml',
+        'test-iso-discontinous-antimeridian-coords.xml',
+        'test-iso-linestring-coords-metadata.xml',
+        'test-iso-global-polygon-coords.xml',
+        'test-iso-null-cords-metadata.xml',
+        'test-iso-zero-coords-metadata.xml'
+    ]
+  }
+
+  def "parses #description the same as ISOParser"() {
+    given:
+    def document = """<?xml version="1.0" encoding="UTF-8"?>
+<gmi:MI_Metadata ${NAMESPACES}>
+${body}
+</gmi:MI_Metadata>"""
+
+    when:
+    def result = ISOStreamParser.parseXMLMetadataToDiscovery(document)
+
+    then:
+    result.equals(ISOParser.parseXMLMetadataToDiscovery(document))
+
+    where:
+    description                     | body
+    'text split by markup'          | '''
+      <gmd:fileIdentifier><gco:CharacterString>ab<!-- comment -->cd<![CDATA[<ef>]]>&amp;gh</gco:CharacterString></gmd:fileIdentifier>
+      <gmd:parentIdentifier><gmx:Anchor> parent </gmx:Anchor><gco:CharacterString>ignored</gco:CharacterString></gmd:parentIdentifier>
+      <gmd:hierarchyLevelName><gco:CharacterString>DataSet</gco:CharacterString></gmd:hierarchyLevelName>'''
+    'repeated data identification'  | '''
+      <gmd:identificationInfo><gmd:MD_DataIdentification>
+        <gmd:citation><gmd:CI_Citation>
+          <gmd:title><gco:CharacterString>first</gco:CharacterString></gmd:title>
+          <gmd:date><gmd:CI_Date><gmd:date><gco:Date>2001</gco:Date></gmd:date>
+            <gmd:dateType><gmd:CI_DateTypeCode codeListValue="revision"/></gmd:dateType></gmd:CI_Date></gmd:date>
+        </gmd:CI_Citation></gmd:citation>
+        <gmd:purpose> padded <gco:CharacterString>purpose</gco:CharacterString></gmd:purpose>
+        <gmd:extent><gmd:EX_Extent><gmd:description><gco:CharacterString>first extent</gco:CharacterString></gmd:description></gmd:EX_Extent></gmd:extent>
+      </gmd:MD_DataIdentification></gmd:identificationInfo>
+      <gmd:identificationInfo><gmd:MD_DataIdentification>
+        <gmd:citation><gmd:CI_Citation><gmd:title><gco:CharacterString>second</gco:CharacterString></gmd:title></gmd:CI_Citation></gmd:citation>
+        <gmd:extent><gmd:EX_Extent>
+          <gmd:description><gco:CharacterString>second extent</gco:CharacterString></gmd:description>
+          <gmd:temporalElement><gmd:EX_TemporalExtent><gmd:extent>
+            <gml:TimeInstant><gml:timePosition indeterminatePosition="now"/></gml:TimeInstant>
+          </gmd:extent></gmd:EX_TemporalExtent></gmd:temporalElement>
+          <gmd:geographicElement><gmd:EX_GeographicBoundingBox>
+            <gmd:westBoundLongitude><gco:Decimal>170</gco:Decimal></gmd:westBoundLongitude>
+            <gmd:eastBoundLongitude><gco:Decimal>-170</gco:Decimal></gmd:eastBoundLongitude>
+            <gmd:southBoundLatitude><gco:Decimal> -10 </gco:Decimal></gmd:southBoundLatitude>
+            <gmd:northBoundLatitude>null</gmd:northBoundLatitude>
+          </gmd:EX_GeographicBoundingBox></gmd:geographicElement>
+        </gmd:EX_Extent></gmd:extent>
+        <gmd:descriptiveKeywords><gmd:MD_Keywords>
+          <gmd:keyword><gco:CharacterString>  two
+            words\t</gco:CharacterString></gmd:keyword>
+          <gmd:keyword><gmx:Anchor>anchored</gmx:Anchor></gmd:keyword>
+          <gmd:keyword><gco:CharacterString>anchored</gco:CharacterString></gmd:keyword>
+        </gmd:MD_Keywords></gmd:descriptiveKeywords>
+      </gmd:MD_DataIdentification></gmd:identificationInfo>'''
+    'services and aggregation'      | '''
+      <gmd:identificationInfo><srv:SV_ServiceIdentification>
+        <srv:containsOperations><srv:SV_OperationMetadata><srv:connectPoint><gmd:CI_OnlineResource>
+          <gmd:linkage><gmd:URL> https://example.com/a?b=1&amp;c=2 </gmd:URL></gmd:linkage>
+        </gmd:CI_OnlineResource></srv:connectPoint></srv:SV_OperationMetadata></srv:containsOperations>
+        <srv:containsOperations/>
+        <gmd:aggregationInfo><gmd:MD_AggregateInformation>
+          <gmd:aggregateDataSetName><gmd:CI_Citation><gmd:title><gco:CharacterString>larger</gco:CharacterString></gmd:title></gmd:CI_Citation></gmd:aggregateDataSetName>
+          <gmd:associationType><gmd:DS_AssociationTypeCode codeListValue="largerWorkCitation"/></gmd:associationType>
+        </gmd:MD_AggregateInformation></gmd:aggregationInfo>
+      </srv:SV_ServiceIdentification></gmd:identificationInfo>'''
+    'operations without linkage'    | '''
+      <gmd:identificationInfo><srv:SV_ServiceIdentification>
+        <srv:containsOperations><srv:SV_OperationMetadata><srv:connectPoint><gmd:CI_OnlineResource>
+          <gmd:name><gco:CharacterString>no linkage</gco:CharacterString></gmd:name>
+        </gmd:CI_OnlineResource></srv:connectPoint></srv:SV_OperationMetadata></srv:containsOperations>
+        <srv:containsOperations><srv:SV_OperationMetadata><srv:connectPoint><gmd:CI_OnlineResource/>
+        </srv:connectPoint></srv:SV_OperationMetadata></srv:containsOperations>
+        <srv:containsOperations><srv:SV_OperationMetadata><srv:operationName><gco:CharacterString>no connect point</gco:CharacterString></srv:operationName>
+        </srv:SV_OperationMetadata></srv:containsOperations>
+        <srv:containsOperations><srv:SV_OperationMetadata><srv:connectPoint><gmd:CI_OnlineResource>
+          <gmd:linkage><gmd:URL>https://example.com/wms</gmd:URL></gmd:linkage>
+          <gmd:protocol><gco:CharacterString>OGC:WMS</gco:CharacterString></gmd:protocol>
+        </gmd:CI_OnlineResource></srv:connectPoint></srv:SV_OperationMetadata></srv:containsOperations>
+        <srv:containsOperations><srv:SV_OperationMetadata><srv:connectPoint><gmd:CI_OnlineResource>
+          <gmd:linkage><gmd:URL>https://example.com/wcs</gmd:URL></gmd:linkage>
+          <gmd:protocol><gco:CharacterString>OGC:WCS</gco:CharacterString></gmd:protocol>
+        </gmd:CI_OnlineResource></srv:connectPoint></srv:SV_OperationMetadata></srv:containsOperations>
+        <srv:containsOperations><srv:SV_OperationMetadata><srv:connectPoint><gmd:CI_OnlineResource>
+          <gmd:linkage><gmd:URL>https://example.com/wms</gmd:URL></gmd:linkage>
+          <gmd:protocol><gco:CharacterString>OGC:WMS</gco:CharacterString></gmd:protocol>
+        </gmd:CI_OnlineResource></srv:connectPoint></srv:SV_OperationMetadata></srv:containsOperations>
+      </srv:SV_ServiceIdentification></gmd:identificationInfo>'''
+    'distribution without data id'  | '''
+      <gmd:distributionInfo><gmd:MD_Distribution>
+        <gmd:distributionFormat><gmd:MD_Format><gmd:name><gco:CharacterString>netCDF</gco:CharacterString></gmd:name></gmd:MD_Format></gmd:distributionFormat>
+        <gmd:distributor><gmd:MD_Distributor><gmd:distributorContact><gmd:CI_OnlineResource>
+          <gmd:linkage><gmd:URL>https://example.com/contact</gmd:URL></gmd:linkage>
+        </gmd:CI_OnlineResource></gmd:distributorContact></gmd:MD_Distributor></gmd:distributor>
+        <gmd:transferOptions><gmd:CI_OnlineResource><gmd:linkage><gmd:URL>https://example.com/contact</gmd:URL></gmd:linkage></gmd:CI_OnlineResource></gmd:transferOptions>
+        <gmd:transferOptions><gmd:CI_OnlineResource><gmd:linkage><gmd:URL>https://example.com/data</gmd:URL></gmd:linkage></gmd:CI_OnlineResource></gmd:transferOptions>
+      </gmd:MD_Distribution></gmd:distributionInfo>
+      <gmd:identificationInfo><gmd:MD_DataIdentification/></gmd:identificationInfo>'''
+  }
+
+  def "parses only #fields of #file the same as ISOParser"() {
+    given:
+    def document = ClassLoader.systemClassLoader.getResourceAsStream(file).text
+    def projection = DiscoveryProjection.of(fields)
+
+    expect:
+    ISOStreamParser.parseXMLMetadataToDiscovery(document, projection)
+        .equals(ISOParser.parseXMLMetadataToDiscovery(document, projection))
+
+    where:
+    [file, fields] << [
+        ['test-iso-metadata.xml', 'test-iso-point-coords-metadata.xml'],
+        [
+            ['fileIdentifier', 'title', 'temporalBounding', 'spatialBounding'],
+            ['services', 'links', 'largerWorks'],
+            ['dsmmAverage', 'acquisitionPlatforms'],
+            []
+        ]
+    ].combinations()
+  }
+
+  def "parses a document without data identification"() {
+    given:
+    def document = """<gmi:MI_Metadata ${NAMESPACES}>
+      <gmd:fileIdentifier><gco:CharacterString>id</gco:CharacterString></gmd:fileIdentifier>
+    </gmi:MI_Metadata>"""
+
+    when:
+    def result = ISOStreamParser.parseXMLMetadataToDiscovery(document)
+
+    then:
+    result.fileIdentifier == 'id'
+    result.title == null
+    result.temporalBounding.equals(Discovery.newBuilder().temporalBoundingBuilder.build())
+  }
+
+  def "strictly parses #file the same as leniently"() {
+    given:
+    def document = ClassLoader.systemClassLoader.getResourceAsStream(file).bytes
+
+    expect:
+    ISOStreamParser.parseXMLMetadataToDiscoveryStrictly(new ByteArrayInputStream(document))
+        .equals(ISOStreamParser.parseXMLMetadataToDiscovery(new ByteArrayInputStream(document)))
+
+    where:
+    file << ['test-iso-metadata.xml', 'test-iso-point-coords-metadata.xml']
+  }
+
+  def "strictly rejects a document which #description, like ISOParser"() {
+    given:
+    def document = """<gmi:MI_Metadata ${NAMESPACES}>
+${body}
+</gmi:MI_Metadata>"""
+
+    when:
+    ISOStreamParser.parseXMLMetadataToDiscoveryStrictly(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)))
+
+    then:
+    def e = thrown(IllegalArgumentException)
+    e.message.contains(message)
+
+    where:
+    description                  | message                  | body
+    'has no data identification' | 'MD_DataIdentification'  | '<gmd:fileIdentifier><gco:CharacterString>id</gco:CharacterString></gmd:fileIdentifier>'
+    'has an unknown DSMM code'   | 'bogus'                  | DSMM_WITH_UNKNOWN_CODE
+  }
+
+  def "reads the encoding of a stream from its declaration"() {
+    given:
+    def document = """<?xml version="1.0" encoding="ISO-8859-1"?>
+<gmi:MI_Metadata ${NAMESPACES}>
+  <gmd:fileIdentifier><gco:CharacterString>café</gco:CharacterString></gmd:fileIdentifier>
+</gmi:MI_Metadata>"""
+
+    when:
+    def result = ISOStreamParser.parseXMLMetadataToDiscovery(new ByteArrayInputStream(document.getBytes(StandardCharsets.ISO_8859_1)))
+
+    then:
+    result.fileIdentifier == 'café'
+  }
+
+  def "rejects a document with a DOCTYPE"() {
+    given:
+    def document = ClassLoader.systemClassLoader.getResourceAsStream("attack.xml").text
+
+    when:
+    ISOStreamParser.parseXMLMetadataToDiscovery(document)
+
+    then:
+    thrown(XMLStreamException)
+  }
+}
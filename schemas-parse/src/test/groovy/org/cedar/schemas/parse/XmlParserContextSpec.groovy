@@ -0,0 +1,67 @@
+package org.cedar.schemas.parse
+
+import groovy.xml.XmlSlurper
+import groovy.xml.XmlUtil
+import org.xml.sax.SAXParseException
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class XmlParserContextSpec extends Specification {
+
+  def document = ClassLoader.systemClassLoader.getResourceAsStream("test-iso-metadata.xml").text
+
+  def "parses a document the same as XmlSlurper"() {
+    expect:
+    XmlUtil.serialize(XmlParserContext.default.parseText(document)) == XmlUtil.serialize(new XmlSlurper().parseText(document))
+  }
+
+  def "reuses one parser for many documents"() {
+    given:
+    def context = new XmlParserContext()
+
+    expect:
+    (1..3).every { context.parseText("<a><b>${it}</b></a>").b.text() == "${it}" as String }
+  }
+
+  def "parses a document inside another parse on the same thread"() {
+    given:
+    def context = new XmlParserContext()
+    def outer = context.parseText('<a><b>outer</b></a>')
+    def inner = context.parseText('<c>inner</c>')
+
+    expect:
+    outer.b.text() == 'outer'
+    inner.text() == 'inner'
+  }
+
+  def "can be shared by many threads"() {
+    given:
+    def context = new XmlParserContext()
+    def expected = ISOParser.parseXMLMetadataToDiscovery(document)
+    def pool = Executors.newFixedThreadPool(8)
+
+    when:
+    def results = pool.invokeAll((1..32).collect {
+      { -> ISOParser.parseXMLMetadataToDiscovery(document, context) } as Callable
+    })*.get()
+
+    then:
+    results.every { it.equals(expected) }
+
+    cleanup:
+    pool.shutdown()
+  }
+
+  def "rejects a document with a DOCTYPE"() {
+    given:
+    def attack = ClassLoader.systemClassLoader.getResourceAsStream("attack.xml").text
+
+    when:
+    new XmlParserContext().parseText(attack)
+
+    then:
+    thrown(SAXParseException)
+  }
+}